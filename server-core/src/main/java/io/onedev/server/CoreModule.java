@@ -115,6 +115,7 @@ import io.onedev.server.entitymanager.IssueQuerySettingManager;
 import io.onedev.server.entitymanager.IssueVoteManager;
 import io.onedev.server.entitymanager.IssueWatchManager;
 import io.onedev.server.entitymanager.MembershipManager;
+import io.onedev.server.entitymanager.MergePreviewManager;
 import io.onedev.server.entitymanager.MilestoneManager;
 import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.entitymanager.PullRequestAssignmentManager;
@@ -150,6 +151,7 @@ import io.onedev.server.entitymanager.impl.DefaultIssueQuerySettingManager;
 import io.onedev.server.entitymanager.impl.DefaultIssueVoteManager;
 import io.onedev.server.entitymanager.impl.DefaultIssueWatchManager;
 import io.onedev.server.entitymanager.impl.DefaultMembershipManager;
+import io.onedev.server.entitymanager.impl.DefaultMergePreviewManager;
 import io.onedev.server.entitymanager.impl.DefaultMilestoneManager;
 import io.onedev.server.entitymanager.impl.DefaultProjectManager;
 import io.onedev.server.entitymanager.impl.DefaultPullRequestAssignmentManager;
@@ -165,8 +167,18 @@ import io.onedev.server.entitymanager.impl.DefaultSettingManager;
 import io.onedev.server.entitymanager.impl.DefaultSshKeyManager;
 import io.onedev.server.entitymanager.impl.DefaultUserAuthorizationManager;
 import io.onedev.server.entitymanager.impl.DefaultUserManager;
+import io.onedev.server.git.ArchiveManager;
+import io.onedev.server.git.CommitQueryManager;
+import io.onedev.server.git.DefaultArchiveManager;
+import io.onedev.server.git.DefaultCommitQueryManager;
+import io.onedev.server.git.DefaultDiffManager;
+import io.onedev.server.git.DefaultGitMaintenanceManager;
+import io.onedev.server.git.DefaultGitTransportExecutor;
+import io.onedev.server.git.DiffManager;
 import io.onedev.server.git.GitFilter;
+import io.onedev.server.git.GitMaintenanceManager;
 import io.onedev.server.git.GitSshCommandCreator;
+import io.onedev.server.git.GitTransportExecutor;
 import io.onedev.server.git.config.GitConfig;
 import io.onedev.server.git.hookcallback.GitPostReceiveCallback;
 import io.onedev.server.git.hookcallback.GitPreReceiveCallback;
@@ -194,6 +206,7 @@ import io.onedev.server.notification.BuildNotificationManager;
 import io.onedev.server.notification.CodeCommentNotificationManager;
 import io.onedev.server.notification.CommitNotificationManager;
 import io.onedev.server.notification.DefaultMailManager;
+import io.onedev.server.notification.DefaultWebHookManager;
 import io.onedev.server.notification.IssueNotificationManager;
 import io.onedev.server.notification.MailManager;
 import io.onedev.server.notification.PullRequestNotificationManager;
@@ -235,12 +248,15 @@ import io.onedev.server.security.DefaultWebSecurityManager;
 import io.onedev.server.security.FilterChainConfigurator;
 import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.security.realm.AbstractAuthorizingRealm;
+import io.onedev.server.security.realm.AuthorizationCache;
 import io.onedev.server.ssh.DefaultKeyPairProvider;
 import io.onedev.server.ssh.DefaultSshAuthenticator;
 import io.onedev.server.ssh.SshAuthenticator;
 import io.onedev.server.ssh.SshCommandCreator;
 import io.onedev.server.ssh.SshServerLauncher;
+import io.onedev.server.storage.ArtifactStorageManager;
 import io.onedev.server.storage.AttachmentStorageManager;
+import io.onedev.server.storage.DefaultArtifactStorageManager;
 import io.onedev.server.storage.DefaultAttachmentStorageManager;
 import io.onedev.server.storage.DefaultStorageManager;
 import io.onedev.server.storage.StorageManager;
@@ -355,6 +371,7 @@ public class CoreModule extends AbstractPluginModule {
 		bind(PullRequestCommentManager.class).to(DefaultPullRequestCommentManager.class);
 		bind(CodeCommentManager.class).to(DefaultCodeCommentManager.class);
 		bind(PullRequestManager.class).to(DefaultPullRequestManager.class);
+		bind(MergePreviewManager.class).to(DefaultMergePreviewManager.class);
 		bind(PullRequestUpdateManager.class).to(DefaultPullRequestUpdateManager.class);
 		bind(ProjectManager.class).to(DefaultProjectManager.class);
 		bind(UserManager.class).to(DefaultUserManager.class);
@@ -379,8 +396,14 @@ public class CoreModule extends AbstractPluginModule {
 		bind(PullRequestChangeManager.class).to(DefaultPullRequestChangeManager.class);
 		bind(CodeCommentReplyManager.class).to(DefaultCodeCommentReplyManager.class);
 		bind(AttachmentStorageManager.class).to(DefaultAttachmentStorageManager.class);
+		bind(ArtifactStorageManager.class).to(DefaultArtifactStorageManager.class);
 		bind(PullRequestInfoManager.class).to(DefaultPullRequestInfoManager.class);
 		bind(WorkExecutor.class).to(DefaultWorkExecutor.class);
+		bind(GitTransportExecutor.class).to(DefaultGitTransportExecutor.class);
+		bind(DiffManager.class).to(DefaultDiffManager.class);
+		bind(ArchiveManager.class).to(DefaultArchiveManager.class);
+		bind(GitMaintenanceManager.class).to(DefaultGitMaintenanceManager.class);
+		bind(CommitQueryManager.class).to(DefaultCommitQueryManager.class);
 		bind(PullRequestNotificationManager.class);
 		bind(CommitNotificationManager.class);
 		bind(BuildNotificationManager.class);
@@ -406,7 +429,7 @@ public class CoreModule extends AbstractPluginModule {
 		bind(SshKeyManager.class).to(DefaultSshKeyManager.class);
 		bind(BuildMetricManager.class).to(DefaultBuildMetricManager.class);
 		
-		bind(WebHookManager.class);
+		bind(WebHookManager.class).to(DefaultWebHookManager.class);
 		
 		contribute(ImplementationProvider.class, new ImplementationProvider() {
 
@@ -542,6 +565,7 @@ public class CoreModule extends AbstractPluginModule {
 	
 	private void configureSecurity() {
 		contributeFromPackage(Realm.class, AbstractAuthorizingRealm.class);
+		bind(AuthorizationCache.class);
 		
 		bind(RememberMeManager.class).to(DefaultRememberMeManager.class);
 		bind(WebSecurityManager.class).to(DefaultWebSecurityManager.class);
@@ -11,16 +11,19 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
@@ -133,7 +136,9 @@ import io.onedev.server.web.editable.annotation.Interpolative;
 @Singleton
 public class DefaultJobManager implements JobManager, Runnable, CodePullAuthorizationSource {
 
-	private static final int CHECK_INTERVAL = 1000; // check internal in milli-seconds
+	private static final int CHECK_INTERVAL = 1000; // check internal of job timeouts in milli-seconds
+	
+	private static final int RECONCILE_INTERVAL = 60000; // interval of full unfinished builds check in milli-seconds
 	
 	private static final Logger logger = LoggerFactory.getLogger(DefaultJobManager.class);
 	
@@ -143,6 +148,8 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 	
 	private final Map<Long, Collection<String>> scheduledTasks = new ConcurrentHashMap<>();
 	
+	private final Set<Long> buildsToCheck = new LinkedHashSet<>();
+	
 	private final ProjectManager projectManager;
 	
 	private final BuildManager buildManager;
@@ -425,7 +432,7 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 				File projectGitDir = build.getProject().getGitDir();
 
 				AtomicReference<JobExecution> executionRef = new AtomicReference<>(null);
-				executionRef.set(new JobExecution(executorService.submit(new Runnable() {
+				executionRef.set(new JobExecution(startExecution(buildId, new Runnable() {
 
 					@Override
 					public void run() {
@@ -639,6 +646,9 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 												}
 												
 											});
+											JobExecution execution = executionRef.get();
+											if (execution != null)
+												execution.setWaiting(true);
 											try {						
 												Thread.sleep(retryDelay.get() * (long)(Math.pow(2, retried.get())) * 1000L);
 											} catch (InterruptedException e2) {
@@ -649,8 +659,10 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 												@Override
 												public void run() {
 													JobExecution execution = executionRef.get();
-													if (execution != null)
+													if (execution != null) {
+														execution.setWaiting(false);
 														execution.updateBeginTime();
+													}
 													Build build = buildManager.load(buildId);
 													build.setPendingDate(new Date());
 													build.setStatus(Build.Status.PENDING);
@@ -687,6 +699,45 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 		}
 	}
 	
+	private Future<?> startExecution(Long buildId, Runnable runnable) {
+		FutureTask<Void> future = new FutureTask<Void>(runnable, null) {
+
+			@Override
+			protected void done() {
+				requestCheck(buildId);
+			}
+			
+		};
+		executorService.execute(future);
+		return future;
+	}
+	
+	/**
+	 * Wake up the scheduler thread to check specified build. Builds are only checked 
+	 * upon changes of their own state or their dependencies' state, instead of 
+	 * querying all unfinished builds periodically
+	 */
+	private void requestCheck(Long buildId) {
+		synchronized (buildsToCheck) {
+			buildsToCheck.add(buildId);
+			buildsToCheck.notifyAll();
+		}
+	}
+	
+	private void requestCheckAfterCommit(Collection<Long> buildIds) {
+		transactionManager.runAfterCommit(new Runnable() {
+
+			@Override
+			public void run() {
+				synchronized (buildsToCheck) {
+					buildsToCheck.addAll(buildIds);
+					buildsToCheck.notifyAll();
+				}
+			}
+			
+		});
+	}
+	
 	private void log(Throwable e, SimpleLogger logger) {
 		if (e instanceof ExplicitException)
 			logger.error(e.getMessage());
@@ -924,7 +975,9 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 	@Transactional
 	@Listen
 	public void on(EntityRemoved event) {
-		if (event.getEntity() instanceof Project) {
+		if (event.getEntity() instanceof Build) {
+			requestCheckAfterCommit(Sets.newHashSet(((Build) event.getEntity()).getId()));
+		} else if (event.getEntity() instanceof Project) {
 			Long projectId = ((Project) event.getEntity()).getId();
 			transactionManager.runAfterCommit(new Runnable() {
 
@@ -1054,6 +1107,9 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 		if (thread != null) {
 			Thread copy = thread;
 			thread = null;
+			synchronized (buildsToCheck) {
+				buildsToCheck.notifyAll();
+			}
 			try {
 				copy.join();
 			} catch (InterruptedException e) {
@@ -1063,88 +1119,131 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 		scheduledTasks.clear();
 	}
 
+	private void check(Build build) {
+		if (build.getStatus() == Build.Status.RUNNING || build.getStatus() == Build.Status.PENDING) {
+			JobExecution execution = jobExecutions.get(build.getId());
+			if (execution != null) {
+				if (execution.isTimedout())
+					execution.cancel(null);
+			} else if (thread != null) {
+				try {
+					jobExecutions.put(build.getId(), execute(build));
+				} catch (Throwable t) {
+					if (t instanceof ExplicitException)
+						markBuildError(build, t.getMessage());
+					else
+						markBuildError(build, Throwables.getStackTraceAsString(t));
+				}
+			}
+		} else if (build.getStatus() == Build.Status.WAITING) {
+			if (build.getRetryDate() != null) {
+				JobExecution execution = jobExecutions.get(build.getId());
+				if (execution == null && thread != null) {
+					build.setStatus(Build.Status.PENDING);
+					build.setPendingDate(new Date());
+					listenerRegistry.post(new BuildPending(build));
+					requestCheckAfterCommit(Sets.newHashSet(build.getId()));
+				}
+			} else if (build.getDependencies().stream().anyMatch(it -> it.isRequireSuccessful() 
+					&& it.getDependency().isFinished() 
+					&& it.getDependency().getStatus() != Build.Status.SUCCESSFUL)) {
+				markBuildError(build, "Some dependencies are required to be successful but failed");
+			} else if (build.getDependencies().stream().allMatch(it->it.getDependency().isFinished())) {
+				build.setStatus(Build.Status.PENDING);
+				build.setPendingDate(new Date());
+				listenerRegistry.post(new BuildPending(build));
+				requestCheckAfterCommit(Sets.newHashSet(build.getId()));
+			}
+		} 
+	}
+	
+	private void checkExecution(Long buildId) {
+		JobExecution execution = jobExecutions.get(buildId);
+		if (execution != null) {
+			Build build = buildManager.get(buildId);
+			if (build == null || build.isFinished()) {
+				jobExecutions.remove(buildId);
+				execution.cancel(null);
+			} else if (execution.isDone()) {
+				jobExecutions.remove(buildId);
+				try {
+					execution.check();
+					build.setStatus(Build.Status.SUCCESSFUL);
+				} catch (TimeoutException e) {
+					build.setStatus(Build.Status.TIMED_OUT);
+				} catch (CancellationException e) {
+					if (e instanceof CancellerAwareCancellationException) {
+						Long cancellerId = ((CancellerAwareCancellationException) e).getCancellerId();
+						if (cancellerId != null)
+							build.setCanceller(userManager.load(cancellerId));
+					}
+					build.setStatus(Build.Status.CANCELLED);
+				} catch (ExecutionException e) {
+					if (e.getCause() instanceof ExplicitException)
+						build.setStatus(Build.Status.FAILED, e.getCause().getMessage());
+					else
+						build.setStatus(Build.Status.FAILED, e.getMessage());
+				} catch (InterruptedException e) {
+				} finally {
+					build.setFinishDate(new Date());
+					listenerRegistry.post(new BuildFinished(build));
+				}
+			}
+		}
+	}
+	
 	@Override
 	public void run() {
+		long lastReconcileTime = 0;
 		while (!jobExecutions.isEmpty() || thread != null) {
 			try {
-				synchronized (this) {
-					transactionManager.run(new Runnable() {
-		
-						@Override
-						public void run() {
-							for (Build build: buildManager.queryUnfinished()) {
-								if (build.getStatus() == Build.Status.RUNNING || build.getStatus() == Build.Status.PENDING) {
-									JobExecution execution = jobExecutions.get(build.getId());
-									if (execution != null) {
-										if (execution.isTimedout())
-											execution.cancel(null);
-									} else if (thread != null) {
-										try {
-											jobExecutions.put(build.getId(), execute(build));
-										} catch (Throwable t) {
-											if (t instanceof ExplicitException)
-												markBuildError(build, t.getMessage());
-											else
-												markBuildError(build, Throwables.getStackTraceAsString(t));
-										}
-									}
-								} else if (build.getStatus() == Build.Status.WAITING) {
-									if (build.getRetryDate() != null) {
-										JobExecution execution = jobExecutions.get(build.getId());
-										if (execution == null && thread != null) {
-											build.setStatus(Build.Status.PENDING);
-											build.setPendingDate(new Date());
-											listenerRegistry.post(new BuildPending(build));
-										}
-									} else if (build.getDependencies().stream().anyMatch(it -> it.isRequireSuccessful() 
-											&& it.getDependency().isFinished() 
-											&& it.getDependency().getStatus() != Build.Status.SUCCESSFUL)) {
-										markBuildError(build, "Some dependencies are required to be successful but failed");
-									} else if (build.getDependencies().stream().allMatch(it->it.getDependency().isFinished())) {
-										build.setStatus(Build.Status.PENDING);
-										build.setPendingDate(new Date());
-										listenerRegistry.post(new BuildPending(build));
-									}
-								} 
-							}
-							for (Iterator<Map.Entry<Long, JobExecution>> it = jobExecutions.entrySet().iterator(); it.hasNext();) {
-								Map.Entry<Long, JobExecution> entry = it.next();
-								Build build = buildManager.get(entry.getKey());
-								JobExecution execution = entry.getValue();
-								if (build == null || build.isFinished()) {
-									it.remove();
-									execution.cancel(null);
-								} else if (execution.isDone()) {
-									it.remove();
-									try {
-										execution.check();
-										build.setStatus(Build.Status.SUCCESSFUL);
-									} catch (TimeoutException e) {
-										build.setStatus(Build.Status.TIMED_OUT);
-									} catch (CancellationException e) {
-										if (e instanceof CancellerAwareCancellationException) {
-											Long cancellerId = ((CancellerAwareCancellationException) e).getCancellerId();
-											if (cancellerId != null)
-												build.setCanceller(userManager.load(cancellerId));
-										}
-										build.setStatus(Build.Status.CANCELLED);
-									} catch (ExecutionException e) {
-										if (e.getCause() instanceof ExplicitException)
-											build.setStatus(Build.Status.FAILED, e.getCause().getMessage());
-										else
-											build.setStatus(Build.Status.FAILED, e.getMessage());
-									} catch (InterruptedException e) {
-									} finally {
-										build.setFinishDate(new Date());
-										listenerRegistry.post(new BuildFinished(build));
+				Collection<Long> buildIds;
+				synchronized (buildsToCheck) {
+					if (buildsToCheck.isEmpty() && (thread == null 
+							|| System.currentTimeMillis() - lastReconcileTime < RECONCILE_INTERVAL)) {
+						buildsToCheck.wait(CHECK_INTERVAL);
+					}
+					buildIds = new ArrayList<>(buildsToCheck);
+					buildsToCheck.clear();
+				}
+				
+				// Timeouts are checked in memory, and cancelled executions will request 
+				// check of their builds once done
+				for (JobExecution execution: jobExecutions.values()) {
+					if (!execution.isDone() && execution.isTimedout())
+						execution.cancel(null);
+				}
+				
+				boolean reconcile = thread != null 
+						&& System.currentTimeMillis() - lastReconcileTime >= RECONCILE_INTERVAL;
+				if (reconcile || !buildIds.isEmpty()) {
+					synchronized (this) {
+						transactionManager.run(new Runnable() {
+			
+							@Override
+							public void run() {
+								if (reconcile) {
+									// Safety net in case some state changes are not notified, for instance 
+									// builds left unfinished when server is restarted
+									for (Build build: buildManager.queryUnfinished())
+										check(build);
+									for (Long buildId: new ArrayList<>(jobExecutions.keySet()))
+										checkExecution(buildId);
+								} else {
+									for (Long buildId: buildIds) {
+										Build build = buildManager.get(buildId);
+										if (build != null && !build.isFinished())
+											check(build);
+										checkExecution(buildId);
 									}
 								}
 							}
-						}
-						
-					});
+							
+						});
+					}
+					if (reconcile)
+						lastReconcileTime = System.currentTimeMillis();
 				}
-				Thread.sleep(CHECK_INTERVAL);
 			} catch (Throwable e) {
 				logger.error("Error checking unfinished builds", e);
 			} 
@@ -1155,6 +1254,7 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 	public void on(BuildSubmitted event) {
 		Build build = event.getBuild();
 		FileUtils.deleteDir(build.getPublishDir());
+		requestCheckAfterCommit(Sets.newHashSet(build.getId()));
 	}
 
 	@Transactional
@@ -1167,6 +1267,11 @@ public class DefaultJobManager implements JobManager, Runnable, CodePullAuthoriz
 		}
 
 		Long buildId = build.getId();
+		
+		Collection<Long> buildIdsToCheck = Sets.newHashSet(buildId);
+		for (BuildDependence dependence: build.getDependents())
+			buildIdsToCheck.add(dependence.getDependent().getId());
+		requestCheckAfterCommit(buildIdsToCheck);
 
 		OneDev.getInstance(TransactionManager.class).runAfterCommit(new Runnable() {
 
@@ -16,6 +16,8 @@ public class JobExecution {
 	
 	private volatile Long cancellerId;
 	
+	private volatile boolean waiting;
+	
 	public JobExecution(Future<?> future, long timeout) {
 		this.future = future;
 		beginTime = System.currentTimeMillis();
@@ -32,7 +34,15 @@ public class JobExecution {
 	}
 
 	public boolean isTimedout() {
-		return System.currentTimeMillis() - beginTime > timeout;
+		return !waiting && System.currentTimeMillis() - beginTime > timeout;
+	}
+	
+	/**
+	 * Mark whether this execution is waiting to be retried. Timeout does not apply 
+	 * while waiting
+	 */
+	public void setWaiting(boolean waiting) {
+		this.waiting = waiting;
 	}
 	
 	public void updateBeginTime() {
@@ -1,30 +1,41 @@
 package io.onedev.server.buildspec.job.log;
 
 import java.io.BufferedInputStream;
-import java.io.BufferedOutputStream;
 import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.Lock;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
 import org.antlr.v4.runtime.tree.TerminalNode;
-import org.apache.commons.lang3.StringUtils;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Restrictions;
 import org.joda.time.DateTime;
 import org.joda.time.format.DateTimeFormat;
 import org.joda.time.format.DateTimeFormatter;
@@ -35,6 +46,7 @@ import com.google.common.base.Splitter;
 
 import io.onedev.commons.launcher.loader.Listen;
 import io.onedev.commons.utils.ExceptionUtils;
+import io.onedev.commons.utils.FileUtils;
 import io.onedev.commons.utils.LockUtils;
 import io.onedev.server.OneDev;
 import io.onedev.server.buildspec.job.log.instruction.LogInstruction;
@@ -42,10 +54,14 @@ import io.onedev.server.buildspec.job.log.instruction.LogInstructionParser.Instr
 import io.onedev.server.buildspec.job.log.instruction.LogInstructionParser.ParamContext;
 import io.onedev.server.entitymanager.BuildManager;
 import io.onedev.server.event.build.BuildFinished;
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.event.system.SystemStopping;
 import io.onedev.server.model.Build;
 import io.onedev.server.model.support.inputspec.SecretInput;
 import io.onedev.server.persistence.annotation.Sessional;
+import io.onedev.server.persistence.dao.EntityCriteria;
 import io.onedev.server.storage.StorageManager;
+import io.onedev.server.util.ServerConfig;
 import io.onedev.server.util.SimpleLogger;
 import io.onedev.server.web.websocket.WebSocketManager;
 
@@ -58,7 +74,21 @@ public class DefaultLogManager implements LogManager {
 
 	private static final int MAX_CACHE_ENTRIES = 10000;
 	
-	private static final String LOG_FILE = "build.log";
+	private static final int MAX_PENDING_ENTRIES = 10000;
+	
+	private static final String LOG_FILE = "build-log.data";
+	
+	private static final String LOG_INDEX_FILE = "build-log.index";
+	
+	private static final String LEGACY_LOG_FILE = "build.log";
+	
+	private static final int MIGRATION_BATCH_SIZE = 1000;
+	
+	private static final int MIGRATION_QUERY_SIZE = 1000;
+	
+	private static final int SEARCH_CONCURRENCY = Runtime.getRuntime().availableProcessors();
+	
+	private static final long SEARCH_POLL_INTERVAL = 100;
 	
 	private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormat.forPattern("HH:mm:ss");	
 	
@@ -70,19 +100,127 @@ public class DefaultLogManager implements LogManager {
 	
 	private final BuildManager buildManager;
 	
+	/*
+	 * Shared by all searches, so that concurrent searches do not multiply number of 
+	 * threads reading logs
+	 */
+	private final ThreadPoolExecutor searchExecutor = new ThreadPoolExecutor(SEARCH_CONCURRENCY, 
+			SEARCH_CONCURRENCY, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+	
 	private final Map<Long, LogSnippet> recentSnippets = new ConcurrentHashMap<>();
 	
+	private final Map<Long, LogIngestion> ingestions = new ConcurrentHashMap<>();
+	
+	private final int notificationInterval;
+	
+	private volatile Thread flushThread;
+	
+	private volatile Thread migrationThread;
+	
 	@Inject
 	public DefaultLogManager(StorageManager storageManager, WebSocketManager webSocketManager, 
-			BuildManager buildManager) {
+			BuildManager buildManager, ServerConfig serverConfig) {
 		this.storageManager = storageManager;
 		this.webSocketManager = webSocketManager;
 		this.buildManager = buildManager;
+		searchExecutor.allowCoreThreadTimeOut(true);
+		notificationInterval = serverConfig.getLogNotificationInterval();
 	}
 	
-	private File getLogFile(Long projectId, Long buildNumber) {
+	private IndexedLogFile getLogFile(Long projectId, Long buildNumber) {
 		File buildDir = storageManager.getBuildDir(projectId, buildNumber);
-		return new File(buildDir, LOG_FILE);
+		return new IndexedLogFile(new File(buildDir, LOG_FILE), new File(buildDir, LOG_INDEX_FILE));
+	}
+	
+	private File getLegacyLogFile(Long projectId, Long buildNumber) {
+		File buildDir = storageManager.getBuildDir(projectId, buildNumber);
+		return new File(buildDir, LEGACY_LOG_FILE);
+	}
+	
+	/*
+	 * Convert log written with Java serialization by previous versions to indexed format. 
+	 * Caller should hold write lock of the build log. Legacy logs are migrated by a background 
+	 * thread after system start, and are read directly until migrated
+	 */
+	private void migrateLegacyLog(Long projectId, Long buildNumber) {
+		File legacyLogFile = getLegacyLogFile(projectId, buildNumber);
+		if (legacyLogFile.exists()) {
+			IndexedLogFile logFile = getLogFile(projectId, buildNumber);
+			
+			// discard result of previous interrupted migration if there is any
+			logFile.delete();
+			
+			try {
+				List<JobLogEntryEx> entries = new ArrayList<>();
+				try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(legacyLogFile)))) {
+					while (true) {
+						entries.add(readLegacyLogEntry(ois));
+						if (entries.size() == MIGRATION_BATCH_SIZE) {
+							logFile.append(entries);
+							entries.clear();
+						}
+					}
+				} catch (EOFException e) {
+				}
+				logFile.append(entries);
+			} catch (IOException | ClassNotFoundException e) {
+				throw new RuntimeException(e);
+			}
+			FileUtils.deleteFile(legacyLogFile);
+		}
+	}
+	
+	private void migrateLegacyLogIfNecessary(BuildKey build) {
+		if (getLegacyLogFile(build.projectId, build.buildNumber).exists()) {
+			Lock lock = LockUtils.getReadWriteLock(getLockKey(build.buildId)).writeLock();
+			lock.lock();
+			try {
+				migrateLegacyLog(build.projectId, build.buildNumber);
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+	
+	// Caller should hold read lock of the build log
+	private List<JobLogEntryEx> readLegacyLog(File legacyLogFile) {
+		List<JobLogEntryEx> entries = new ArrayList<>();
+		try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(legacyLogFile)))) {
+			while (true) 
+				entries.add(readLegacyLogEntry(ois));
+		} catch (EOFException e) {
+		} catch (IOException | ClassNotFoundException e) {
+			throw new RuntimeException(e);
+		}
+		return entries;
+	}
+	
+	/*
+	 * Builds are queried by id in batches directly instead of through build query, as 
+	 * build query applies permission check of current user
+	 */
+	@Sessional
+	protected List<BuildKey> queryBuildKeys(Long afterId, int count) {
+		EntityCriteria<Build> criteria = buildManager.newCriteria();
+		criteria.add(Restrictions.gt(Build.PROP_ID, afterId));
+		criteria.addOrder(Order.asc(Build.PROP_ID));
+		List<BuildKey> buildKeys = new ArrayList<>();
+		for (Build build: buildManager.query(criteria, 0, count)) 
+			buildKeys.add(new BuildKey(build.getId(), build.getProject().getId(), build.getNumber()));
+		return buildKeys;
+	}
+	
+	private void migrateLegacyLogs() {
+		Long afterId = 0L;
+		List<BuildKey> buildKeys;
+		while (migrationThread != null && !(buildKeys = queryBuildKeys(afterId, MIGRATION_QUERY_SIZE)).isEmpty()) {
+			for (BuildKey buildKey: buildKeys) {
+				if (migrationThread == null)
+					return;
+				migrateLegacyLogIfNecessary(buildKey);
+			}
+			afterId = buildKeys.get(buildKeys.size()-1).buildId;
+		}
 	}
 	
 	@Override
@@ -92,50 +230,31 @@ public class DefaultLogManager implements LogManager {
 		Long buildNumber = build.getNumber();
 		Collection<String> secretValuesToMask = build.getSecretValuesToMask();
 		secretValuesToMask.addAll(jobSecretsToMask);
+		SecretMasker secretMasker = new SecretMasker(secretValuesToMask, SecretInput.MASK);
+		LogIngestion ingestion = ingestions.computeIfAbsent(buildId, 
+				key -> new LogIngestion(buildId, projectId, buildNumber, getLogFile(projectId, buildNumber)));
 		return new SimpleLogger() {
 			
 			private void doLog(String message, StyleBuilder styleBuilder) {
-				for (String maskSecret: secretValuesToMask)
-					message = StringUtils.replace(message, maskSecret, SecretInput.MASK);
-				
-				Lock lock = LockUtils.getReadWriteLock(getLockKey(buildId)).writeLock();
-				lock.lock();
+				message = secretMasker.mask(message);
+				JobLogEntryEx entry;
 				try {
-					LogSnippet snippet = recentSnippets.get(buildId);
-					if (snippet == null) {
-						File logFile = getLogFile(projectId, buildNumber);
-						if (!logFile.exists())	{
-							snippet = new LogSnippet();
-							recentSnippets.put(buildId, snippet);
-						}
-					}
-					if (snippet != null) {
-						boolean entryAdded = false;
-						try {
-							snippet.entries.add(JobLogEntryEx.parse(message, styleBuilder));
-							entryAdded = true;
-						} catch (Exception e) {
-							logger.error("Failed to parse job log message: " +  message, e);
-						}
-						if (entryAdded) {
-							if (snippet.entries.size() > MAX_CACHE_ENTRIES) {
-								File logFile = getLogFile(projectId, buildNumber);
-								try (ObjectOutputStream oos = newOutputStream(logFile)) {
-									while (snippet.entries.size() > MIN_CACHE_ENTRIES) {
-										writeLogEntry(oos, snippet.entries.remove(0));
-										snippet.offset++;
-									}
-								} catch (IOException e) {
-									throw new RuntimeException(e);
-								}
-							}
-							
-							webSocketManager.notifyObservableChange(Build.getLogWebSocketObservable(buildId));
-						}
+					entry = JobLogEntryEx.parse(message, styleBuilder);
+				} catch (Exception e) {
+					logger.error("Failed to parse job log message: " +  message, e);
+					return;
+				}
+				if (!ingestion.pendingEntries.offer(entry)) {
+					// Flush thread can not keep up, flush in job thread to slow down logging of the job  
+					flush(ingestion);
+					try {
+						ingestion.pendingEntries.put(entry);
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
 					}
-				} finally {
-					lock.unlock();
 				}
+				ingestion.receivedEntries.incrementAndGet();
+				ingestion.receivedChars.addAndGet(message.length());
 			}
 			
 			@Override
@@ -184,6 +303,80 @@ public class DefaultLogManager implements LogManager {
 		};
 	}
 	
+	/*
+	 * Move pending entries of specified build into recent snippet. Viewers are not notified 
+	 * here, but in next round of the flush thread
+	 */
+	private void flush(LogIngestion ingestion) {
+		if (ingestion.pendingEntries.isEmpty())
+			return;
+		
+		Lock lock = LockUtils.getReadWriteLock(getLockKey(ingestion.buildId)).writeLock();
+		lock.lock();
+		try {
+			doFlush(ingestion);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/*
+	 * Used by the flush thread so that a build whose log lock is held by others does not 
+	 * delay flushing of other builds. Skipped build will be flushed in next round
+	 */
+	private void tryFlush(LogIngestion ingestion) {
+		if (ingestion.pendingEntries.isEmpty())
+			return;
+		
+		Lock lock = LockUtils.getReadWriteLock(getLockKey(ingestion.buildId)).writeLock();
+		if (lock.tryLock()) {
+			try {
+				doFlush(ingestion);
+			} finally {
+				lock.unlock();
+			}
+		}
+	}
+	
+	// Caller should hold write lock of the build log
+	private void doFlush(LogIngestion ingestion) {
+		List<JobLogEntryEx> entries = new ArrayList<>();
+		ingestion.pendingEntries.drainTo(entries);
+		if (!entries.isEmpty()) {
+			LogSnippet snippet = recentSnippets.get(ingestion.buildId);
+			if (snippet == null) {
+				migrateLegacyLog(ingestion.projectId, ingestion.buildNumber);
+				if (!getLogFile(ingestion.projectId, ingestion.buildNumber).exists())	{
+					snippet = new LogSnippet();
+					recentSnippets.put(ingestion.buildId, snippet);
+				}
+			}
+			if (snippet != null) {
+				snippet.entries.addAll(entries);
+				if (snippet.entries.size() > MAX_CACHE_ENTRIES) {
+					List<JobLogEntryEx> entriesToFlush = new ArrayList<>();
+					while (snippet.entries.size() > MIN_CACHE_ENTRIES) {
+						entriesToFlush.add(snippet.entries.remove(0));
+						snippet.offset++;
+					}
+					try {
+						ingestion.logFile.append(entriesToFlush);
+					} catch (IOException e) {
+						throw new RuntimeException(e);
+					}
+				}
+				ingestion.flushes++;
+				ingestion.notificationPending = true;
+			}
+		}
+	}
+	
+	private void flush(Long buildId) {
+		LogIngestion ingestion = ingestions.get(buildId);
+		if (ingestion != null)
+			flush(ingestion);
+	}
+	
 	@Sessional
 	protected void doInSession(LogInstruction instruction, Long buildId, Map<String, List<String>> params) {
 		instruction.execute(buildManager.load(buildId), params);
@@ -192,66 +385,68 @@ public class DefaultLogManager implements LogManager {
 	private String getLockKey(Long buildId) {
 		return "build-log: " + buildId;
 	}
-
-	@Override
-	public boolean matches(Build build, Pattern pattern) {
-		Lock lock = LockUtils.getReadWriteLock(getLockKey(build.getId())).readLock();
+	
+	/*
+	 * Capture log of specified build while holding read lock of the build log. As log file is 
+	 * append only, captured log can then be read without the lock, so that reading a large 
+	 * log, or streaming it to a slow client, does not block flushing of the build log
+	 */
+	private LogSnapshot takeSnapshot(Long buildId, Long projectId, Long buildNumber) {
+		Lock lock = LockUtils.getReadWriteLock(getLockKey(buildId)).readLock();
 		lock.lock();
 		try {
-			LogSnippet snippet = recentSnippets.get(build.getId());
-			if (snippet != null) {
-				for (JobLogEntryEx entry: snippet.entries) {
-					if ((build.getRetryDate() == null || !entry.getDate().before(build.getRetryDate())) 
-							&& pattern.matcher(entry.getMessageText()).find()) {
-						return true;
-					}
-				}
-			}
-			
-			File logFile = getLogFile(build.getProject().getId(), build.getNumber());
-			
-			if (logFile.exists()) {
-				try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
-					while (true) {
-						JobLogEntry entry  = (JobLogEntry) ois.readObject();
-						if ((build.getRetryDate() == null || !entry.getDate().before(build.getRetryDate())) 
-								&& pattern.matcher(entry.getMessage()).find()) {
-							return true;
-						}
-					}
-				} catch (EOFException e) {
-				} catch (IOException|ClassNotFoundException e) {
-					throw new RuntimeException(e);
-				}
-			}
-			return false;
+			IndexedLogFile logFile = getLogFile(projectId, buildNumber);
+			LogSnippet snippet = recentSnippets.get(buildId);
+			File legacyLogFile = getLegacyLogFile(projectId, buildNumber);
+			if (snippet != null) 
+				return new LogSnapshot(logFile, snippet.offset, new ArrayList<>(snippet.entries));
+			else if (legacyLogFile.exists()) 
+				return new LogSnapshot(logFile, 0, readLegacyLog(legacyLogFile));
+			else 
+				return new LogSnapshot(logFile, logFile.size(), new ArrayList<>());
 		} finally {
 			lock.unlock();
 		}
 	}
 	
-	private List<JobLogEntryEx> readLogEntries(File logFile, int from, int count) {
-		List<JobLogEntryEx> entries = new ArrayList<>();
-		if (logFile.exists()) {
-			try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
-				int numOfReadEntries = 0;
-				while (numOfReadEntries < from) {
-					ois.readObject();
-					numOfReadEntries++;
-				}
-				while (count == 0 || numOfReadEntries - from < count) {
-					entries.add(readLogEntry(ois));
-					numOfReadEntries++;
+	private LogSnapshot takeSnapshot(Build build) {
+		return takeSnapshot(build.getId(), build.getProject().getId(), build.getNumber());
+	}
+
+	@Override
+	public boolean matches(Build build, Pattern pattern) {
+		flush(build.getId());
+		LogSnapshot snapshot = takeSnapshot(build);
+		for (JobLogEntryEx entry: snapshot.recentEntries) {
+			if ((build.getRetryDate() == null || !entry.getDate().before(build.getRetryDate())) 
+					&& pattern.matcher(entry.getMessageText()).find()) {
+				return true;
+			}
+		}
+		
+		try (IndexedLogFile.Reader reader = snapshot.logFile.openReader(0, snapshot.logSize)) {
+			JobLogEntryEx entry;
+			while ((entry = reader.next()) != null) {
+				if ((build.getRetryDate() == null || !entry.getDate().before(build.getRetryDate())) 
+						&& pattern.matcher(entry.getMessageText()).find()) {
+					return true;
 				}
-			} catch (EOFException e) {
-			} catch (IOException | ClassNotFoundException e) {
-				throw new RuntimeException(e);
 			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
 		}
-		return entries;
+		return false;
 	}
 	
-	private JobLogEntryEx readLogEntry(ObjectInputStream ois) throws ClassNotFoundException, IOException {
+	private List<JobLogEntryEx> readLogEntries(LogSnapshot snapshot, int from, int count) {
+		try {
+			return snapshot.logFile.read(from, count, snapshot.logSize);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	private JobLogEntryEx readLegacyLogEntry(ObjectInputStream ois) throws ClassNotFoundException, IOException {
 		Object obj = ois.readObject();
 		if (obj instanceof JobLogEntry)
 			return new JobLogEntryEx((JobLogEntry) obj);
@@ -259,30 +454,10 @@ public class DefaultLogManager implements LogManager {
 			return (JobLogEntryEx) obj;
 	}
 	
-	private void writeLogEntry(ObjectOutputStream oos, JobLogEntryEx logEntry) throws IOException {
-		JobLogEntry spaceEfficientVersion = logEntry.getSpaceEfficientVersion();
-		if (spaceEfficientVersion != null)
-			oos.writeObject(spaceEfficientVersion);
-		else
-			oos.writeObject(logEntry);
-	}
-	
-	private LogSnippet readLogSnippetReversely(File logFile, int count) {
+	private LogSnippet readLogSnippetReversely(LogSnapshot snapshot, int count) {
 		LogSnippet snippet = new LogSnippet();
-		if (logFile.exists()) {
-			try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(logFile)))) {
-				while (true) {
-					snippet.entries.add(readLogEntry(ois));
-					if (snippet.entries.size() > count) {
-						snippet.entries.remove(0);
-						snippet.offset ++;
-					}
-				}
-			} catch (EOFException e) {
-			} catch (IOException | ClassNotFoundException e) {
-				throw new RuntimeException(e);
-			}
-		}
+		snippet.offset = Math.max(0, snapshot.logSize - count);
+		snippet.entries.addAll(readLogEntries(snapshot, snippet.offset, count));
 		return snippet;
 	}
 	
@@ -300,74 +475,74 @@ public class DefaultLogManager implements LogManager {
 	@Sessional
 	@Override
 	public List<JobLogEntryEx> readLogEntries(Build build, int from, int count) {
-		Lock lock = LockUtils.getReadWriteLock(getLockKey(build.getId())).readLock();
-		lock.lock();
-		try {
-			File logFile = getLogFile(build.getProject().getId(), build.getNumber());
-			LogSnippet snippet = recentSnippets.get(build.getId());
-			if (snippet != null) {
-				if (from >= snippet.offset) {
-					return readLogEntries(snippet.entries, from - snippet.offset, count);
-				} else {
-					List<JobLogEntryEx> entries = new ArrayList<>();
-					entries.addAll(readLogEntries(logFile, from, count));
-					if (count == 0)
-						entries.addAll(snippet.entries);
-					else if (entries.size() < count) 
-						entries.addAll(readLogEntries(snippet.entries, 0, count - entries.size()));
-					return entries;
-				}
-			} else {
-				return readLogEntries(logFile, from, count);
-			}
-		} finally {
-			lock.unlock();
+		flush(build.getId());
+		LogSnapshot snapshot = takeSnapshot(build);
+		if (from >= snapshot.logSize) {
+			return readLogEntries(snapshot.recentEntries, from - snapshot.logSize, count);
+		} else {
+			List<JobLogEntryEx> entries = new ArrayList<>();
+			entries.addAll(readLogEntries(snapshot, from, count));
+			if (count == 0)
+				entries.addAll(snapshot.recentEntries);
+			else if (entries.size() < count) 
+				entries.addAll(readLogEntries(snapshot.recentEntries, 0, count - entries.size()));
+			return entries;
 		}
 	}
 
 	@Sessional
 	@Override
 	public LogSnippet readLogSnippetReversely(Build build, int count) {
-		Lock lock = LockUtils.getReadWriteLock(getLockKey(build.getId())).readLock();
-		lock.lock();
-		try {
-			File logFile = getLogFile(build.getProject().getId(), build.getNumber());
-			LogSnippet recentSnippet = recentSnippets.get(build.getId());
-			if (recentSnippet != null) {
-				LogSnippet snippet = new LogSnippet();
-				if (count <= recentSnippet.entries.size()) {
-					snippet.entries.addAll(recentSnippet.entries.subList(
-							recentSnippet.entries.size()-count, recentSnippet.entries.size()));
-				} else {
-					snippet.entries.addAll(readLogSnippetReversely(logFile, count - recentSnippet.entries.size()).entries);
-					snippet.entries.addAll(recentSnippet.entries);
-				}
-				snippet.offset = recentSnippet.entries.size() + recentSnippet.offset - snippet.entries.size();
-				return snippet;
-			} else {
-				return readLogSnippetReversely(logFile, count);
-			}
-		} finally {
-			lock.unlock();
+		flush(build.getId());
+		LogSnapshot snapshot = takeSnapshot(build);
+		List<JobLogEntryEx> recentEntries = snapshot.recentEntries;
+		LogSnippet snippet = new LogSnippet();
+		if (count <= recentEntries.size()) {
+			snippet.entries.addAll(recentEntries.subList(recentEntries.size()-count, recentEntries.size()));
+		} else {
+			snippet.entries.addAll(readLogSnippetReversely(snapshot, count - recentEntries.size()).entries);
+			snippet.entries.addAll(recentEntries);
 		}
+		snippet.offset = recentEntries.size() + snapshot.logSize - snippet.entries.size();
+		return snippet;
 	}
 	
-	private ObjectOutputStream newOutputStream(File logFile) {
+	@Override
+	public void search(Collection<Build> builds, Pattern pattern, int maxMatches, Consumer<LogMatch> consumer) {
+		LogSearch search = new LogSearch(pattern, maxMatches);
+		for (Build build: builds) 
+			search.targets.add(new BuildKey(build.getId(), build.getProject().getId(), build.getNumber()));
+		
+		int concurrency = Math.min(SEARCH_CONCURRENCY, search.targets.size());
+		List<Future<?>> futures = new ArrayList<>();
+		for (int i=0; i<concurrency; i++) 
+			futures.add(searchExecutor.submit(search));
+		
 		try {
-			if (logFile.exists()) {
-				return new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(logFile, true))) {
-
-					@Override
-					protected void writeStreamHeader() throws IOException {
-						reset();
-					}
-					
-				};
-			} else {
-				return new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(logFile)));
+			/*
+			 * Matches are handed off to calling thread, so that a slow consumer only holds up 
+			 * its own search instead of search threads shared by all searches 
+			 */
+			while (true) {
+				LogMatch match = search.matches.poll(SEARCH_POLL_INTERVAL, TimeUnit.MILLISECONDS);
+				if (match != null) {
+					consumer.accept(match);
+				} else if (futures.stream().allMatch(Future::isDone)) {
+					while ((match = search.matches.poll()) != null)
+						consumer.accept(match);
+					break;
+				}
 			}
-		} catch (IOException e) {
+			for (Future<?> future: futures) 
+				future.get();
+		} catch (InterruptedException e) {
 			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw ExceptionUtils.unchecked(e.getCause());
+		} finally {
+			search.stopped.set(true);
+			for (Future<?> future: futures)
+				future.cancel(false);
 		}
 	}
 	
@@ -375,15 +550,19 @@ public class DefaultLogManager implements LogManager {
 	@Listen
 	public void on(BuildFinished event) {
 		Build build = event.getBuild();
+		LogIngestion ingestion = ingestions.remove(build.getId());
+		if (ingestion != null) {
+			flush(ingestion);
+			if (ingestion.notificationPending)
+				webSocketManager.notifyObservableChange(Build.getLogWebSocketObservable(build.getId()));
+		}
 		Lock lock = LockUtils.getReadWriteLock(getLockKey(build.getId())).writeLock();
 		lock.lock();
 		try {
 			LogSnippet snippet = recentSnippets.remove(build.getId());
 			if (snippet != null) {
-				File logFile = getLogFile(build.getProject().getId(), build.getNumber());
-				try (ObjectOutputStream oos = newOutputStream(logFile)) {
-					for (JobLogEntryEx entry: snippet.entries)
-						writeLogEntry(oos, entry);
+				try {
+					getLogFile(build.getProject().getId(), build.getNumber()).append(snippet.entries);
 				} catch (IOException e) {
 					throw new RuntimeException(e);
 				} 
@@ -395,15 +574,233 @@ public class DefaultLogManager implements LogManager {
 
 	@Override
 	public InputStream openLogStream(Build build) {
+		flush(build.getId());
 		return new LogStream(build);
 	}
 
-	class LogStream extends InputStream {
+	@Listen
+	public void on(SystemStarted event) {
+		flushThread = new Thread(new Runnable() {
 
-		private ObjectInputStream ois;
+			@Override
+			public void run() {
+				while (flushThread != null) {
+					try {
+						Thread.sleep(notificationInterval);
+					} catch (InterruptedException e) {
+					}
+					for (LogIngestion ingestion: ingestions.values()) {
+						try {
+							tryFlush(ingestion);
+							if (ingestion.notificationPending) {
+								ingestion.notificationPending = false;
+								ingestion.notifications++;
+								webSocketManager.notifyObservableChange(Build.getLogWebSocketObservable(ingestion.buildId));
+							}
+						} catch (Exception e) {
+							logger.error("Error flushing log (build id: " + ingestion.buildId + ")", e);
+						}
+					}
+				}
+			}
+			
+		}, "Build Log Flusher");
+		flushThread.start();
 		
-		private final Lock lock;
+		migrationThread = new Thread(new Runnable() {
 
+			@Override
+			public void run() {
+				try {
+					migrateLegacyLogs();
+				} catch (Exception e) {
+					if (migrationThread != null)
+						logger.error("Error migrating legacy build logs", e);
+				}
+			}
+			
+		}, "Build Log Migrator");
+		migrationThread.start();
+	}
+	
+	@Listen
+	public void on(SystemStopping event) {
+		Thread thread = flushThread;
+		flushThread = null;
+		if (thread != null) 
+			thread.interrupt();
+		migrationThread = null;
+		searchExecutor.shutdownNow();
+		for (LogIngestion ingestion: ingestions.values()) {
+			try {
+				flush(ingestion);
+			} catch (Exception e) {
+				logger.error("Error flushing log (build id: " + ingestion.buildId + ")", e);
+			}
+		}
+	}
+	
+	@Override
+	public Map<Long, LogIngestionStats> getIngestionStats() {
+		Map<Long, LogIngestionStats> stats = new HashMap<>();
+		long now = System.currentTimeMillis();
+		for (LogIngestion ingestion: ingestions.values()) {
+			stats.put(ingestion.buildId, new LogIngestionStats(ingestion.receivedEntries.get(), 
+					ingestion.receivedChars.get(), ingestion.pendingEntries.size(), ingestion.flushes, 
+					ingestion.notifications, now - ingestion.startTime));
+		}
+		return stats;
+	}
+	
+	/*
+	 * Log entries of a running build are queued without locking by job threads, and are 
+	 * moved to recent snippet in batches by the flush thread, or by readers wanting to see 
+	 * the most recent log. The queue is bounded, and a job thread finding it full flushes 
+	 * by itself, so that memory does not grow if the flush thread falls behind
+	 */
+	private static class LogIngestion {
+		
+		final Long buildId;
+		
+		final Long projectId;
+		
+		final Long buildNumber;
+		
+		// only accessed while holding write lock of the build log
+		final IndexedLogFile logFile;
+		
+		final BlockingQueue<JobLogEntryEx> pendingEntries = new ArrayBlockingQueue<>(MAX_PENDING_ENTRIES);
+		
+		final AtomicLong receivedEntries = new AtomicLong(0);
+		
+		final AtomicLong receivedChars = new AtomicLong(0);
+		
+		final long startTime = System.currentTimeMillis();
+		
+		// below fields are only modified by the flush thread or while holding write lock of the build log
+		
+		volatile long flushes;
+		
+		volatile long notifications;
+		
+		volatile boolean notificationPending;
+		
+		LogIngestion(Long buildId, Long projectId, Long buildNumber, IndexedLogFile logFile) {
+			this.buildId = buildId;
+			this.projectId = projectId;
+			this.buildNumber = buildNumber;
+			this.logFile = logFile;
+		}
+		
+	}
+	
+	private static class LogSnapshot {
+		
+		final IndexedLogFile logFile;
+		
+		// number of entries in log file when snapshot is taken
+		final int logSize;
+		
+		// entries following log file
+		final List<JobLogEntryEx> recentEntries;
+		
+		LogSnapshot(IndexedLogFile logFile, int logSize, List<JobLogEntryEx> recentEntries) {
+			this.logFile = logFile;
+			this.logSize = logSize;
+			this.recentEntries = recentEntries;
+		}
+		
+	}
+	
+	private static class BuildKey {
+		
+		final Long buildId;
+		
+		final Long projectId;
+		
+		final Long buildNumber;
+		
+		BuildKey(Long buildId, Long projectId, Long buildNumber) {
+			this.buildId = buildId;
+			this.projectId = projectId;
+			this.buildNumber = buildNumber;
+		}
+		
+	}
+	
+	/*
+	 * Runs in multiple threads, each taking builds from the shared target queue until 
+	 * the queue is drained or the search is stopped. Found matches are put into the 
+	 * match queue to be consumed by the searching thread
+	 */
+	private class LogSearch implements Runnable {
+		
+		final Queue<BuildKey> targets = new ConcurrentLinkedQueue<>();
+		
+		final BlockingQueue<LogMatch> matches = new LinkedBlockingQueue<>();
+		
+		final AtomicBoolean stopped = new AtomicBoolean(false);
+		
+		final AtomicInteger numOfMatches = new AtomicInteger(0);
+		
+		final Pattern pattern;
+		
+		final int maxMatches;
+		
+		LogSearch(Pattern pattern, int maxMatches) {
+			this.pattern = pattern;
+			this.maxMatches = maxMatches;
+		}
+		
+		@Override
+		public void run() {
+			BuildKey target;
+			while (!stopped.get() && (target = targets.poll()) != null) {
+				try {
+					search(target);
+				} catch (Exception e) {
+					stopped.set(true);
+					throw ExceptionUtils.unchecked(e);
+				}
+			}
+		}
+		
+		private boolean onEntry(BuildKey target, int index, JobLogEntryEx entry) {
+			if (stopped.get())
+				return false;
+			String text = entry.getMessageText();
+			if (pattern.matcher(text).find()) {
+				int numOfMatches = this.numOfMatches.incrementAndGet();
+				if (numOfMatches <= maxMatches) {
+					matches.add(new LogMatch(target.buildId, target.buildNumber, 
+							index+1, entry.getDate(), text));
+				}
+				if (numOfMatches >= maxMatches) {
+					stopped.set(true);
+					return false;
+				}
+			}
+			return true;
+		}
+		
+		private void search(BuildKey target) throws IOException {
+			flush(target.buildId);
+			LogSnapshot snapshot = takeSnapshot(target.buildId, target.projectId, target.buildNumber);
+			snapshot.logFile.scan(snapshot.logSize, (index, entry) -> onEntry(target, index, entry));
+			
+			int index = snapshot.logSize;
+			for (JobLogEntryEx entry: snapshot.recentEntries) {
+				if (!onEntry(target, index++, entry))
+					break;
+			}
+		}
+		
+	}
+	
+	class LogStream extends InputStream {
+
+		private IndexedLogFile.Reader reader;
+		
 		private byte[] buffer = new byte[0];
 		
 		private byte[] recentBuffer;
@@ -411,24 +808,18 @@ public class DefaultLogManager implements LogManager {
 		private int pos = 0;
 		
 		public LogStream(Build build) {
-			lock = LockUtils.getReadWriteLock(getLockKey(build.getId())).readLock();
-			lock.lock();
+			LogSnapshot snapshot = takeSnapshot(build);
 			try {
-				File logFile = getLogFile(build.getProject().getId(), build.getNumber());
-				
-				if (logFile.exists())
-					ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(logFile)));
-				
-				LogSnippet snippet = recentSnippets.get(build.getId());
-				if (snippet != null) {
-					StringBuilder builder = new StringBuilder();
-					for (JobLogEntryEx entry: snippet.entries)
-						builder.append(renderAsText(entry) + "\n");
-					recentBuffer = builder.toString().getBytes(StandardCharsets.UTF_8);
-				}
-			} catch (Exception e) {
-				lock.unlock();
-				throw ExceptionUtils.unchecked(e);
+				reader = snapshot.logFile.openReader(0, snapshot.logSize);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			
+			if (!snapshot.recentEntries.isEmpty()) {
+				StringBuilder builder = new StringBuilder();
+				for (JobLogEntryEx entry: snapshot.recentEntries)
+					builder.append(renderAsText(entry) + "\n");
+				recentBuffer = builder.toString().getBytes(StandardCharsets.UTF_8);
 			}
 		}
 		
@@ -451,20 +842,19 @@ public class DefaultLogManager implements LogManager {
 		@Override
 		public int read() throws IOException {
 			if (pos == buffer.length) {
-				if (ois != null) {
-					try {
-						buffer = (renderAsText(readLogEntry(ois)) + "\n").getBytes(StandardCharsets.UTF_8);
-					} catch (EOFException e) {
-						ois.close();
-						ois = null;
+				if (reader != null) {
+					JobLogEntryEx entry = reader.next();
+					if (entry != null) {
+						buffer = (renderAsText(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+					} else {
+						reader.close();
+						reader = null;
 						if (recentBuffer != null) {
 							buffer = recentBuffer;
 							recentBuffer = null;
 						} else {
 							return -1;
 						}
-					} catch (ClassNotFoundException e) {
-						throw new RuntimeException(e);
 					}
 				} else if (recentBuffer != null) {
 					buffer = recentBuffer;
@@ -481,12 +871,8 @@ public class DefaultLogManager implements LogManager {
 		
 		@Override
 		public void close() throws IOException {
-			try {
-				if (ois != null)
-					ois.close();
-			} finally {
-				lock.unlock();
-			}
+			if (reader != null)
+				reader.close();
 		}
 				
 	}
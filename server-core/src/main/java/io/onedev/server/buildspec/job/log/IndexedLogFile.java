@@ -0,0 +1,324 @@
+package io.onedev.server.buildspec.job.log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import io.onedev.commons.utils.FileUtils;
+
+/**
+ * Append-only build log storage. Entries are encoded with {@link JobLogEntryEx#writeTo(java.io.DataOutput)}
+ * into a data file, and offset of each entry in data file is recorded as a fixed length long in
+ * a sidecar index file, so that entry <tt>n</tt> can be located by reading offset at position
+ * <tt>n*8</tt> of the index file. This makes range reads and tail reads proportional to number
+ * of entries read instead of size of the log.
+ * <p>
+ * This class does not handle concurrency. Callers should guard access with build log lock. 
+ * Since existing entries are never modified, entries within a size captured while holding 
+ * the lock can still be read after the lock is released. Reads use positional reads of file 
+ * channel, so that concurrent readers do not share any state.
+ */
+class IndexedLogFile {
+
+	private static final int OFFSET_SIZE = Long.BYTES;
+
+	private static final int READ_BUFFER_SIZE = 64*1024;
+	
+	private final File dataFile;
+
+	private final File indexFile;
+	
+	private boolean repaired;
+
+	public IndexedLogFile(File dataFile, File indexFile) {
+		this.dataFile = dataFile;
+		this.indexFile = indexFile;
+	}
+
+	public boolean exists() {
+		return indexFile.exists();
+	}
+
+	public void delete() {
+		if (dataFile.exists())
+			FileUtils.deleteFile(dataFile);
+		if (indexFile.exists())
+			FileUtils.deleteFile(indexFile);
+	}
+	
+	/**
+	 * @return
+	 * 			number of entries in the log
+	 */
+	public int size() {
+		return (int) (indexFile.length() / OFFSET_SIZE);
+	}
+
+	/**
+	 * Append entries to the log. Torn writes left by previous crash are repaired on first 
+	 * append after this file is opened
+	 */
+	public void append(Collection<JobLogEntryEx> entries) throws IOException {
+		if (!repaired) {
+			repair();
+			repaired = true;
+		}
+		
+		long offset = dataFile.length();
+		long[] offsets = new long[entries.size()];
+		try (DataOutputStream dataOutput = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(dataFile, true)))) {
+			int index = 0;
+			for (JobLogEntryEx entry: entries) {
+				offsets[index++] = offset + dataOutput.size();
+				entry.writeTo(dataOutput);
+			}
+		}
+		
+		// Index is written after data is closed, so that index never points to missing data
+		try (DataOutputStream indexOutput = new DataOutputStream(
+				new BufferedOutputStream(new FileOutputStream(indexFile, true)))) {
+			for (long each: offsets)
+				indexOutput.writeLong(each);
+		}
+	}
+
+	/*
+	 * Recover from torn writes, for instance if server crashes while appending. Partially 
+	 * written offset is removed from index file, and data file is truncated to end of last 
+	 * indexed entry, so that new entries are written right after it. Otherwise sequential 
+	 * reads would run into partial or unindexed data
+	 */
+	private void repair() throws IOException {
+		long indexLength = indexFile.length();
+		long dataLength = dataFile.length();
+		int size = (int) (indexLength / OFFSET_SIZE);
+		long dataEnd = 0;
+		if (dataLength == 0) {
+			size = 0;
+		} else if (size != 0) {
+			try (	RandomAccessFile indexAccess = new RandomAccessFile(indexFile, "r");
+					FileChannel dataChannel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ)) {
+				DataInputStream dataInput = new DataInputStream(Channels.newInputStream(dataChannel));
+				while (size != 0) {
+					indexAccess.seek((long)(size-1) * OFFSET_SIZE);
+					long offset = indexAccess.readLong();
+					if (offset < dataLength) {
+						dataChannel.position(offset);
+						try {
+							JobLogEntryEx.readFrom(dataInput);
+							dataEnd = dataChannel.position();
+							break;
+						} catch (EOFException e) {
+						}
+					}
+					size--;
+				}
+			}
+		}
+		if (indexLength != (long)size * OFFSET_SIZE) {
+			try (RandomAccessFile indexAccess = new RandomAccessFile(indexFile, "rw")) {
+				indexAccess.setLength((long)size * OFFSET_SIZE);
+			}
+		}
+		if (dataLength != dataEnd) {
+			try (RandomAccessFile dataAccess = new RandomAccessFile(dataFile, "rw")) {
+				dataAccess.setLength(dataEnd);
+			}
+		}
+	}
+	
+	/**
+	 * Open a reader to read entries sequentially
+	 *
+	 * @param from
+	 * 			index of the first entry to read
+	 * @return
+	 * 			reader of entries. Caller should close it after use
+	 */
+	public Reader openReader(int from) throws IOException {
+		return openReader(from, size());
+	}
+
+	/**
+	 * Open a reader to read entries sequentially, up to specified size
+	 *
+	 * @param from
+	 * 			index of the first entry to read
+	 * @param size
+	 * 			number of entries of the log to consider, usually captured while holding 
+	 * 			build log lock. Entries appended after it will not be read
+	 * @return
+	 * 			reader of entries. Caller should close it after use
+	 */
+	public Reader openReader(int from, int size) throws IOException {
+		return new Reader(from, size);
+	}
+
+	/**
+	 * Read specified number of entries
+	 *
+	 * @param from
+	 * 			index of the first entry to read
+	 * @param count
+	 * 			number of entries to read. Use <tt>0</tt> to read all entries since <tt>from</tt>
+	 * @return
+	 * 			read entries. Number of entries may be less than required count if there is
+	 * 			no enough entries
+	 */
+	public List<JobLogEntryEx> read(int from, int count) throws IOException {
+		return read(from, count, size());
+	}
+
+	/**
+	 * Same as {@link #read(int, int)}, but only considers specified number of entries of the log
+	 */
+	public List<JobLogEntryEx> read(int from, int count, int size) throws IOException {
+		List<JobLogEntryEx> entries = new ArrayList<>();
+		try (Reader reader = openReader(from, size)) {
+			JobLogEntryEx entry;
+			while ((count == 0 || entries.size() < count) && (entry = reader.next()) != null)
+				entries.add(entry);
+		}
+		return entries;
+	}
+
+	/**
+	 * Visit all entries in the log
+	 * 
+	 * @param visitor
+	 * 			visitor of entries
+	 */
+	public void scan(Visitor visitor) throws IOException {
+		scan(size(), visitor);
+	}
+	
+	/**
+	 * Same as {@link #scan(Visitor)}, but only visits specified number of entries of the log
+	 */
+	public void scan(int size, Visitor visitor) throws IOException {
+		try (Reader reader = openReader(0, size)) {
+			JobLogEntryEx entry;
+			int index = 0;
+			while ((entry = reader.next()) != null && visitor.visit(index++, entry));
+		}
+	}
+	
+	public static interface Visitor {
+		
+		/**
+		 * @param index
+		 * 			index of the entry in the log
+		 * @param entry
+		 * 			the entry
+		 * @return
+		 * 			<tt>true</tt> to continue visiting, <tt>false</tt> to stop
+		 */
+		boolean visit(int index, JobLogEntryEx entry);
+		
+	}
+	
+	/*
+	 * Read file channel from specified position with positional reads, which do not 
+	 * touch position of the channel
+	 */
+	private static class ChannelInputStream extends InputStream {
+
+		private final FileChannel channel;
+		
+		private long position;
+		
+		ChannelInputStream(FileChannel channel, long position) {
+			this.channel = channel;
+			this.position = position;
+		}
+		
+		@Override
+		public int read() throws IOException {
+			byte[] bytes = new byte[1];
+			if (read(bytes, 0, 1) == 1)
+				return bytes[0] & 0xff;
+			else
+				return -1;
+		}
+
+		@Override
+		public int read(byte[] bytes, int off, int len) throws IOException {
+			if (len == 0)
+				return 0;
+			int count = channel.read(ByteBuffer.wrap(bytes, off, len), position);
+			if (count > 0)
+				position += count;
+			return count;
+		}
+
+		@Override
+		public void close() throws IOException {
+			channel.close();
+		}
+		
+	}
+	
+	public class Reader implements Closeable {
+
+		private DataInputStream dataInput;
+
+		private int remaining;
+
+		Reader(int from, int size) throws IOException {
+			if (from < size) {
+				long offset;
+				try (RandomAccessFile indexAccess = new RandomAccessFile(indexFile, "r")) {
+					indexAccess.seek((long)from * OFFSET_SIZE);
+					offset = indexAccess.readLong();
+				}
+				FileChannel channel = FileChannel.open(dataFile.toPath(), StandardOpenOption.READ);
+				dataInput = new DataInputStream(new BufferedInputStream(
+						new ChannelInputStream(channel, offset), READ_BUFFER_SIZE));
+				remaining = size - from;
+			}
+		}
+
+		/**
+		 * @return
+		 * 			next entry, or <tt>null</tt> if there are no more entries
+		 */
+		@Nullable
+		public JobLogEntryEx next() throws IOException {
+			if (remaining != 0) {
+				remaining--;
+				try {
+					return JobLogEntryEx.readFrom(dataInput);
+				} catch (EOFException e) {
+					remaining = 0;
+				}
+			}
+			return null;
+		}
+
+		@Override
+		public void close() throws IOException {
+			if (dataInput != null)
+				dataInput.close();
+		}
+
+	}
+
+}
@@ -1,6 +1,10 @@
 package io.onedev.server.buildspec.job.log;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
@@ -276,6 +280,59 @@ public class JobLogEntryEx implements Serializable {
 		return builder.toString();
 	}
 	
+	/**
+	 * Write this entry in compact binary form. Messages with default style only take 
+	 * a flag byte besides the text
+	 * 
+	 * @param output
+	 * 			output to write entry to
+	 * @throws IOException
+	 */
+	public void writeTo(DataOutput output) throws IOException {
+		output.writeLong(date.getTime());
+		output.writeInt(messages.size());
+		for (Message message: messages) {
+			Style style = message.getStyle();
+			if (style.isDefault()) {
+				output.writeBoolean(false);
+			} else {
+				output.writeBoolean(true);
+				output.writeUTF(style.getColor());
+				output.writeUTF(style.getBackgroundColor());
+				output.writeBoolean(style.isBold());
+			}
+			byte[] textBytes = message.getText().getBytes(StandardCharsets.UTF_8);
+			output.writeInt(textBytes.length);
+			output.write(textBytes);
+		}
+	}
+	
+	/**
+	 * Read an entry previously written with {@link #writeTo(DataOutput)}
+	 * 
+	 * @param input
+	 * 			input to read entry from
+	 * @return
+	 * 			read entry
+	 * @throws IOException
+	 */
+	public static JobLogEntryEx readFrom(DataInput input) throws IOException {
+		Date date = new Date(input.readLong());
+		int numOfMessages = input.readInt();
+		List<Message> messages = new ArrayList<>(numOfMessages);
+		for (int i=0; i<numOfMessages; i++) {
+			Style style;
+			if (input.readBoolean()) 
+				style = new Style(input.readUTF(), input.readUTF(), input.readBoolean());
+			else 
+				style = new StyleBuilder().build();
+			byte[] textBytes = new byte[input.readInt()];
+			input.readFully(textBytes);
+			messages.add(new Message(style, new String(textBytes, StandardCharsets.UTF_8)));
+		}
+		return new JobLogEntryEx(date, messages);
+	}
+	
 	@Nullable
 	public JobLogEntry getSpaceEfficientVersion() {
 		StringBuilder builder = new StringBuilder();
@@ -0,0 +1,67 @@
+package io.onedev.server.buildspec.job.log;
+
+import java.io.Serializable;
+
+public class LogIngestionStats implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long receivedEntries;
+
+	private final long receivedChars;
+
+	private final int pendingEntries;
+
+	private final long flushes;
+
+	private final long notifications;
+
+	private final long duration;
+
+	public LogIngestionStats(long receivedEntries, long receivedChars, int pendingEntries,
+			long flushes, long notifications, long duration) {
+		this.receivedEntries = receivedEntries;
+		this.receivedChars = receivedChars;
+		this.pendingEntries = pendingEntries;
+		this.flushes = flushes;
+		this.notifications = notifications;
+		this.duration = duration;
+	}
+
+	public long getReceivedEntries() {
+		return receivedEntries;
+	}
+
+	public long getReceivedChars() {
+		return receivedChars;
+	}
+
+	/**
+	 * @return
+	 * 			number of received entries not yet written to the log
+	 */
+	public int getPendingEntries() {
+		return pendingEntries;
+	}
+
+	public long getFlushes() {
+		return flushes;
+	}
+
+	public long getNotifications() {
+		return notifications;
+	}
+
+	/**
+	 * @return
+	 * 			milliseconds since logging of the build started
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	public double getEntriesPerSecond() {
+		return duration != 0? receivedEntries * 1000.0 / duration: 0;
+	}
+
+}
@@ -3,6 +3,8 @@ package io.onedev.server.buildspec.job.log;
 import java.io.InputStream;
 import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 import java.util.regex.Pattern;
 
 import io.onedev.server.model.Build;
@@ -43,6 +45,31 @@ public interface LogManager {
 	 */
 	LogSnippet readLogSnippetReversely(Build build, int count);
 	
+	/**
+	 * Search logs of specified builds for entries matching specified pattern. Logs of different 
+	 * builds are searched in parallel by a thread pool shared by all searches, and matches are 
+	 * passed to consumer as soon as they are found. Matches of the same build are passed in 
+	 * line order, while matches of different builds may interleave
+	 * 
+	 * @param builds
+	 * 			builds to search logs of
+	 * @param pattern
+	 * 			pattern to search
+	 * @param maxMatches
+	 * 			max number of matches to find. Search stops as soon as this number is reached
+	 * @param consumer
+	 * 			consumer of matches. It is called in the calling thread
+	 */
+	void search(Collection<Build> builds, Pattern pattern, int maxMatches, Consumer<LogMatch> consumer);
+	
 	InputStream openLogStream(Build build);
 	
+	/**
+	 * Get log ingestion statistics of running builds
+	 * 
+	 * @return
+	 * 			map of build id to log ingestion statistics
+	 */
+	Map<Long, LogIngestionStats> getIngestionStats();
+	
 }
@@ -0,0 +1,52 @@
+package io.onedev.server.buildspec.job.log;
+
+import java.io.Serializable;
+import java.util.Date;
+
+public class LogMatch implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Long buildId;
+
+	private final Long buildNumber;
+
+	private final int line;
+
+	private final Date date;
+
+	private final String text;
+
+	public LogMatch(Long buildId, Long buildNumber, int line, Date date, String text) {
+		this.buildId = buildId;
+		this.buildNumber = buildNumber;
+		this.line = line;
+		this.date = date;
+		this.text = text;
+	}
+
+	public Long getBuildId() {
+		return buildId;
+	}
+
+	public Long getBuildNumber() {
+		return buildNumber;
+	}
+
+	/**
+	 * @return
+	 * 			1-based line number of the matched log entry
+	 */
+	public int getLine() {
+		return line;
+	}
+
+	public Date getDate() {
+		return date;
+	}
+
+	public String getText() {
+		return text;
+	}
+
+}
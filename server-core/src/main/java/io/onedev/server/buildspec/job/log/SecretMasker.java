@@ -0,0 +1,197 @@
+package io.onedev.server.buildspec.job.log;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * Mask multiple secrets of a text in a single pass with an Aho-Corasick automaton. The
+ * automaton is built once and can be used concurrently afterwards.
+ * <p>
+ * Secrets containing line breaks are also split into individual lines to be masked, as
+ * job log is received line by line, and a multi-line secret (a private key for instance)
+ * would otherwise never match any single log line. Only long lines are masked this way,
+ * as short lines of such secrets are often common text appearing in unrelated logs.
+ */
+public class SecretMasker {
+
+	/*
+	 * Lines of multi-line secret shorter than this are not masked individually to avoid 
+	 * masking common text such as braces, JSON keys or PEM headers, while body lines of 
+	 * PEM encoded keys (64 characters) are still masked
+	 */
+	private static final int MIN_SECRET_LINE_LEN = 32;
+
+	private static final int ROOT_TABLE_SIZE = 128;
+
+	private final Node root = new Node();
+
+	private final String mask;
+
+	public SecretMasker(Collection<String> secrets, String mask) {
+		this.mask = mask;
+
+		Set<String> patterns = new LinkedHashSet<>();
+		for (String secret: secrets) {
+			if (StringUtils.isNotEmpty(secret)) {
+				patterns.add(secret);
+				if (secret.indexOf('\n') != -1 || secret.indexOf('\r') != -1) {
+					for (String line: StringUtils.split(secret, "\r\n")) {
+						line = line.trim();
+						if (line.length() >= MIN_SECRET_LINE_LEN)
+							patterns.add(line);
+					}
+				}
+			}
+		}
+
+		List<Node> nodes = new ArrayList<>();
+		for (String pattern: patterns) {
+			Node node = root;
+			for (int i=0; i<pattern.length(); i++)
+				node = node.getOrAddChild(pattern.charAt(i));
+			node.matchLength = Math.max(node.matchLength, pattern.length());
+		}
+
+		// Compute failure links breadth first so that failure node is always processed first
+		Queue<Node> queue = new ArrayDeque<>();
+		for (Node child: root.building.values()) {
+			child.failure = root;
+			queue.add(child);
+		}
+		while (!queue.isEmpty()) {
+			Node node = queue.remove();
+			nodes.add(node);
+			node.matchLength = Math.max(node.matchLength, node.failure.matchLength);
+			for (char c: node.building.keySet()) {
+				Node child = node.building.get(c);
+				Node failure = node.failure;
+				while (failure != root && failure.building.get(c) == null)
+					failure = failure.failure;
+				Node failureChild = failure.building.get(c);
+				child.failure = failureChild != null? failureChild: root;
+				queue.add(child);
+			}
+		}
+
+		root.compact();
+		for (Node node: nodes)
+			node.compact();
+	}
+
+	public boolean isEmpty() {
+		return root.chars.length == 0;
+	}
+
+	public String mask(String text) {
+		if (isEmpty())
+			return text;
+
+		// start (inclusive) and end (exclusive) of ranges to mask, sorted and not overlapping
+		int[] ranges = null;
+		int rangeCount = 0;
+
+		Node node = root;
+		for (int i=0; i<text.length(); i++) {
+			char c = text.charAt(i);
+			Node child;
+			while ((child = node.getChild(c)) == null && node != root)
+				node = node.failure;
+			if (child == null)
+				continue;
+			node = child;
+
+			if (node.matchLength != 0) {
+				int start = i + 1 - node.matchLength;
+				int end = i + 1;
+				if (ranges == null)
+					ranges = new int[8];
+				// a longer secret ending here may cover previously found ranges
+				while (rangeCount != 0 && ranges[rangeCount*2-1] > start) {
+					start = Math.min(start, ranges[rangeCount*2-2]);
+					rangeCount--;
+				}
+				if (ranges.length < rangeCount*2+2)
+					ranges = Arrays.copyOf(ranges, ranges.length*2);
+				ranges[rangeCount*2] = start;
+				ranges[rangeCount*2+1] = end;
+				rangeCount++;
+			}
+		}
+
+		if (rangeCount == 0)
+			return text;
+
+		StringBuilder builder = new StringBuilder(text.length());
+		int last = 0;
+		for (int i=0; i<rangeCount; i++) {
+			builder.append(text, last, ranges[i*2]).append(mask);
+			last = ranges[i*2+1];
+		}
+		builder.append(text, last, text.length());
+		return builder.toString();
+	}
+
+	private class Node {
+
+		// direct lookup table for root as most characters are matched against root
+		Node[] rootChildren;
+
+		// only used while building the automaton
+		TreeMap<Character, Node> building = new TreeMap<>();
+
+		char[] chars;
+
+		Node[] children;
+
+		Node failure;
+
+		// length of longest secret ending at this node, 0 if none
+		int matchLength;
+
+		Node getOrAddChild(char c) {
+			Node child = building.get(c);
+			if (child == null) {
+				child = new Node();
+				building.put(c, child);
+			}
+			return child;
+		}
+
+		void compact() {
+			if (this == root) {
+				rootChildren = new Node[ROOT_TABLE_SIZE];
+				for (char c: building.keySet()) {
+					if (c < ROOT_TABLE_SIZE)
+						rootChildren[c] = building.get(c);
+				}
+			}
+			chars = new char[building.size()];
+			children = new Node[building.size()];
+			int index = 0;
+			for (char c: building.keySet()) {
+				chars[index] = c;
+				children[index] = building.get(c);
+				index++;
+			}
+			building = null;
+		}
+
+		Node getChild(char c) {
+			if (rootChildren != null && c < ROOT_TABLE_SIZE)
+				return rootChildren[c];
+			int index = Arrays.binarySearch(chars, c);
+			return index >= 0? children[index]: null;
+		}
+
+	}
+
+}
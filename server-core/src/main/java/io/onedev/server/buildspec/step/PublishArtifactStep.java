@@ -1,17 +1,21 @@
 package io.onedev.server.buildspec.step;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.Callable;
 
 import org.hibernate.validator.constraints.NotEmpty;
 
+import com.google.common.collect.Lists;
+
 import io.onedev.commons.codeassist.InputSuggestion;
 import io.onedev.commons.utils.FileUtils;
-import io.onedev.commons.utils.LockUtils;
+import io.onedev.server.OneDev;
 import io.onedev.server.buildspec.BuildSpec;
 import io.onedev.server.model.Build;
+import io.onedev.server.storage.ArtifactStorageManager;
 import io.onedev.server.util.SimpleLogger;
 import io.onedev.server.util.patternset.PatternSet;
 import io.onedev.server.web.editable.annotation.Editable;
@@ -50,17 +54,8 @@ public class PublishArtifactStep extends ServerStep {
 
 	@Override
 	public Map<String, byte[]> run(Build build, File filesDir, SimpleLogger jobLogger) {
-		LockUtils.write(build.getArtifactsLockKey(), new Callable<Void>() {
-
-			@Override
-			public Void call() throws Exception {
-				File artifactsDir = build.getArtifactsDir();
-				FileUtils.createDir(artifactsDir);
-				FileUtils.copyDirectory(filesDir, artifactsDir);
-				return null;
-			}
-			
-		});
+		Collection<File> files = FileUtils.listFiles(filesDir, Lists.newArrayList("**"), new ArrayList<>());
+		OneDev.getInstance(ArtifactStorageManager.class).publish(build, filesDir, files);
 		return null;
 	}
 
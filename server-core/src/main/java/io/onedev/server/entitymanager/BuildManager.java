@@ -4,6 +4,7 @@ import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Consumer;
 
 import javax.annotation.Nullable;
 
@@ -57,6 +58,27 @@ public interface BuildManager extends EntityManager<Build> {
 	List<Build> query(Project project, String term, int count);
 
 	List<Build> query(@Nullable Project project, EntityQuery<Build> buildQuery, int firstResult, int maxResults);
+	
+	/**
+	 * Query builds with keyset pagination. Unlike offset based query, cost of this method 
+	 * does not grow with number of previous pages
+	 * 
+	 * @param buildQuery
+	 * 			query to filter builds. Sorts of the query are ignored, and builds are always 
+	 * 			ordered by id descending
+	 * @param afterId
+	 * 			only return builds with id less than this value. Specify <tt>null</tt> to 
+	 * 			query the first page
+	 */
+	List<Build> queryAfter(@Nullable Project project, EntityQuery<Build> buildQuery, 
+			@Nullable Long afterId, int maxResults);
+	
+	/**
+	 * Iterate over all builds matching specified query with constant memory. Builds are 
+	 * queried batch by batch with {@link #queryAfter(Project, EntityQuery, Long, int)}, so 
+	 * they are ordered by id descending, and session is cleared after each batch
+	 */
+	void scroll(@Nullable Project project, EntityQuery<Build> buildQuery, Consumer<Build> consumer);
 
 	int count(@Nullable Project project, EntityCriteria<Build> buildCriteria);
 
@@ -78,4 +100,21 @@ public interface BuildManager extends EntityManager<Build> {
 
 	void delete(Collection<Build> builds);
 	
+	/**
+	 * @return
+	 * 			whether or not builds are being cleaned up according to build preservation 
+	 * 			settings of projects
+	 */
+	boolean isCleaningUp();
+	
+	int getCleanupProcessedProjects();
+	
+	int getCleanupTotalProjects();
+	
+	/**
+	 * @return
+	 * 			number of builds deleted by cleanup since server start
+	 */
+	long getCleanupDeletedBuilds();
+	
 }
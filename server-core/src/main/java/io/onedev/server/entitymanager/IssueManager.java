@@ -3,6 +3,7 @@ package io.onedev.server.entitymanager;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import javax.annotation.Nullable;
 
@@ -40,6 +41,27 @@ public interface IssueManager extends EntityManager<Issue> {
 	List<Issue> query(@Nullable Project project, EntityQuery<Issue> issueQuery, 
 			int firstResult, int maxResults, boolean loadFields);
 	
+	/**
+	 * Query issues with keyset pagination. Unlike offset based query, cost of this method 
+	 * does not grow with number of previous pages
+	 * 
+	 * @param issueQuery
+	 * 			query to filter issues. Sorts of the query are ignored, and issues are always 
+	 * 			ordered by id descending
+	 * @param afterId
+	 * 			only return issues with id less than this value. Specify <tt>null</tt> to 
+	 * 			query the first page
+	 */
+	List<Issue> queryAfter(@Nullable Project project, EntityQuery<Issue> issueQuery, 
+			@Nullable Long afterId, int maxResults);
+	
+	/**
+	 * Iterate over all issues matching specified query with constant memory. Issues are 
+	 * queried batch by batch with {@link #queryAfter(Project, EntityQuery, Long, int)}, so 
+	 * they are ordered by id descending, and session is cleared after each batch
+	 */
+	void scroll(@Nullable Project project, EntityQuery<Issue> issueQuery, Consumer<Issue> consumer);
+	
 	int count(@Nullable Project project, @Nullable IssueCriteria issueCriteria);
 	
 	List<Issue> query(Project project, String term, int count);
@@ -0,0 +1,55 @@
+package io.onedev.server.entitymanager;
+
+import io.onedev.server.model.PullRequest;
+
+/**
+ * Calculates merge previews of pull requests in background. Requests against the same 
+ * pull request are coalesced, merge results are reused for identical target head, head 
+ * and merge strategy, and previews of idle pull requests are only calculated when they 
+ * are viewed.
+ */
+public interface MergePreviewManager {
+
+	/**
+	 * Request to calculate merge preview of specified pull request if it is not up to date.
+	 * 
+	 * @param request
+	 * 			pull request to calculate merge preview for
+	 * @param onDemand
+	 * 			whether or not someone is waiting for the merge preview, for instance when 
+	 * 			the pull request is being viewed. On demand calculation is processed with 
+	 * 			highest priority even if the pull request is idle
+	 */
+	void calculate(PullRequest request, boolean onDemand);
+	
+	int getQueuedCount();
+	
+	int getCalculatingCount();
+	
+	long getCalculatedCount();
+	
+	/**
+	 * @return
+	 * 			number of merge previews taken from results of previous calculations 
+	 */
+	long getReusedCount();
+	
+	/**
+	 * @return
+	 * 			number of calculations deferred until pull request is viewed as it is idle  
+	 */
+	long getDeferredCount();
+	
+	/**
+	 * @return
+	 * 			average time in milliseconds requests waited in queue before being calculated
+	 */
+	long getAverageWaitTime();
+	
+	/**
+	 * @return
+	 * 			average time in milliseconds spent on calculating a merge preview
+	 */
+	long getAverageCalculationTime();
+	
+}
@@ -3,6 +3,7 @@ package io.onedev.server.entitymanager;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Consumer;
 
 import javax.annotation.Nullable;
 
@@ -67,6 +68,28 @@ public interface PullRequestManager extends EntityManager<PullRequest> {
 	List<PullRequest> query(@Nullable Project targetProject, EntityQuery<PullRequest> requestQuery, 
 			int firstResult, int maxResults, boolean loadReviews, boolean loadBuilds);
 	
+	/**
+	 * Query pull requests with keyset pagination. Unlike offset based query, cost of this 
+	 * method does not grow with number of previous pages
+	 * 
+	 * @param requestQuery
+	 * 			query to filter pull requests. Sorts of the query are ignored, and pull requests 
+	 * 			are always ordered by id descending
+	 * @param afterId
+	 * 			only return pull requests with id less than this value. Specify <tt>null</tt> 
+	 * 			to query the first page
+	 */
+	List<PullRequest> queryAfter(@Nullable Project targetProject, EntityQuery<PullRequest> requestQuery, 
+			@Nullable Long afterId, int maxResults);
+	
+	/**
+	 * Iterate over all pull requests matching specified query with constant memory. Pull 
+	 * requests are queried batch by batch with {@link #queryAfter(Project, EntityQuery, Long, int)}, 
+	 * so they are ordered by id descending, and session is cleared after each batch
+	 */
+	void scroll(@Nullable Project targetProject, EntityQuery<PullRequest> requestQuery, 
+			Consumer<PullRequest> consumer);
+	
 	int count(@Nullable Project targetProject, EntityCriteria<PullRequest> requestCriteria);
 	
 	List<PullRequest> query(Project targetProject, String term, int count);
@@ -1,5 +1,6 @@
 package io.onedev.server.entitymanager.impl;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -9,11 +10,19 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
@@ -36,15 +45,17 @@ import org.hibernate.criterion.MatchMode;
 import org.hibernate.criterion.Order;
 import org.hibernate.criterion.Restrictions;
 import org.hibernate.query.Query;
-import org.quartz.CronScheduleBuilder;
 import org.quartz.ScheduleBuilder;
+import org.quartz.SimpleScheduleBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
 import io.onedev.commons.launcher.loader.Listen;
+import io.onedev.commons.utils.ExceptionUtils;
 import io.onedev.commons.utils.FileUtils;
 import io.onedev.server.entitymanager.BuildDependenceManager;
 import io.onedev.server.entitymanager.BuildManager;
@@ -80,10 +91,12 @@ import io.onedev.server.search.entity.build.BuildQuery;
 import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.security.permission.AccessBuild;
 import io.onedev.server.security.permission.JobPermission;
+import io.onedev.server.storage.ArtifactStorageManager;
 import io.onedev.server.storage.StorageManager;
 import io.onedev.server.util.ProjectScopedNumber;
 import io.onedev.server.util.StatusInfo;
 import io.onedev.server.util.facade.BuildFacade;
+import io.onedev.server.util.facade.ProjectBelongingFacades;
 import io.onedev.server.util.schedule.SchedulableTask;
 import io.onedev.server.util.schedule.TaskScheduler;
 
@@ -94,6 +107,14 @@ public class DefaultBuildManager extends BaseEntityManager<Build> implements Bui
 	
 	private static final int CLEANUP_BATCH = 5000;
 	
+	// Number of projects cleaned up concurrently, kept low to leave database connections to others
+	private static final int CLEANUP_CONCURRENCY = 4;
+	
+	// Number of builds deleted in a single transaction
+	private static final int DELETE_BATCH = 100;
+	
+	private static final long DELETE_BATCH_INTERVAL = 100;
+	
 	private static final Logger logger = LoggerFactory.getLogger(DefaultBuildManager.class);
 	
 	private final BuildParamManager buildParamManager;
@@ -102,6 +123,8 @@ public class DefaultBuildManager extends BaseEntityManager<Build> implements Bui
 	
 	private final StorageManager storageManager;
 	
+	private final ArtifactStorageManager artifactStorageManager;
+	
 	private final ProjectManager projectManager;
 	
 	private final TaskScheduler taskScheduler;
@@ -110,7 +133,9 @@ public class DefaultBuildManager extends BaseEntityManager<Build> implements Bui
 	
 	private final TransactionManager transactionManager;
 	
-	private final Map<Long, BuildFacade> builds = new HashMap<>();
+	private final ExecutorService executorService;
+	
+	private final ProjectBelongingFacades<BuildFacade> builds = new ProjectBelongingFacades<>();
 	
 	private final ReadWriteLock buildsLock = new ReentrantReadWriteLock();
 	
@@ -118,21 +143,32 @@ public class DefaultBuildManager extends BaseEntityManager<Build> implements Bui
 	
 	private final ReadWriteLock jobNamesLock = new ReentrantReadWriteLock();
 	
+	private final AtomicBoolean cleaningUp = new AtomicBoolean(false);
+	
+	private final AtomicInteger cleanupProcessedProjects = new AtomicInteger(0);
+	
+	private final AtomicInteger cleanupTotalProjects = new AtomicInteger(0);
+	
+	private final AtomicLong cleanupDeletedBuilds = new AtomicLong(0);
+	
 	private String taskId;
 	
 	@Inject
 	public DefaultBuildManager(Dao dao, BuildParamManager buildParamManager, 
 			TaskScheduler taskScheduler, BuildDependenceManager buildDependenceManager,
-			StorageManager storageManager, ProjectManager projectManager, 
-			SessionManager sessionManager, TransactionManager transactionManager) {
+			StorageManager storageManager, ArtifactStorageManager artifactStorageManager, 
+			ProjectManager projectManager, SessionManager sessionManager, 
+			TransactionManager transactionManager, ExecutorService executorService) {
 		super(dao);
 		this.buildParamManager = buildParamManager;
 		this.buildDependenceManager = buildDependenceManager;
 		this.storageManager = storageManager;
+		this.artifactStorageManager = artifactStorageManager;
 		this.projectManager = projectManager;
 		this.taskScheduler = taskScheduler;
 		this.sessionManager = sessionManager;
 		this.transactionManager = transactionManager;
+		this.executorService = executorService;
 	}
 
 	@Transactional
@@ -140,7 +176,7 @@ public class DefaultBuildManager extends BaseEntityManager<Build> implements Bui
 	public void delete(Build build) {
     	super.delete(build);
     	
-		FileUtils.deleteDir(storageManager.getBuildDir(build.getProject().getId(), build.getNumber()));
+		File buildDir = storageManager.getBuildDir(build.getProject().getId(), build.getNumber());
 		Long buildId = build.getId();
 		transactionManager.runAfterCommit(new Runnable() {
 
@@ -152,6 +188,16 @@ public class DefaultBuildManager extends BaseEntityManager<Build> implements Bui
 				} finally {
 					buildsLock.writeLock().unlock();
 				}
+				
+				// Removing directory of large artifacts can take long, do not hold caller for it 
+				executorService.execute(new Runnable() {
+
+					@Override
+					public void run() {
+						FileUtils.deleteDir(buildDir);
+					}
+					
+				});
 			}
 		});
 	}
@@ -203,7 +249,7 @@ public class DefaultBuildManager extends BaseEntityManager<Build> implements Bui
 			public void run() {
 				buildsLock.writeLock().lock();
 				try {
-					builds.put(facade.getId(), facade);
+					builds.put(facade);
 				} finally {
 					buildsLock.writeLock().unlock();
 				}
@@ -229,11 +275,7 @@ public class DefaultBuildManager extends BaseEntityManager<Build> implements Bui
 				public void run() {
 					buildsLock.writeLock().lock();
 					try {
-						for (Iterator<Map.Entry<Long, BuildFacade>> it = builds.entrySet().iterator(); it.hasNext();) {
-							BuildFacade build = it.next().getValue();
-							if (build.getProjectId().equals(projectId))
-								it.remove();
-						}
+						builds.removeProject(projectId);
 					} finally {
 						buildsLock.writeLock().unlock();
 					}
@@ -542,6 +584,32 @@ public class DefaultBuildManager extends BaseEntityManager<Build> implements Bui
 		query.setMaxResults(maxResults);
 		return query.getResultList();
 	}
+	
+	@Sessional
+	@Override
+	public List<Build> queryAfter(@Nullable Project project, EntityQuery<Build> buildQuery, 
+			@Nullable Long afterId, int maxResults) {
+		CriteriaBuilder builder = getSession().getCriteriaBuilder();
+		CriteriaQuery<Build> criteriaQuery = builder.createQuery(Build.class);
+		Root<Build> root = criteriaQuery.from(Build.class);
+		criteriaQuery.select(root);
+		
+		List<Predicate> predicates = Lists.newArrayList(getPredicates(project, buildQuery.getCriteria(), root, builder));
+		if (afterId != null)
+			predicates.add(builder.lessThan(root.get(Build.PROP_ID), afterId));
+		criteriaQuery.where(predicates.toArray(new Predicate[0]));
+		criteriaQuery.orderBy(builder.desc(root.get(Build.PROP_ID)));
+		
+		Query<Build> query = getSession().createQuery(criteriaQuery);
+		query.setMaxResults(maxResults);
+		return query.getResultList();
+	}
+	
+	@Sessional
+	@Override
+	public void scroll(@Nullable Project project, EntityQuery<Build> buildQuery, Consumer<Build> consumer) {
+		scroll((afterId, batchSize) -> queryAfter(project, buildQuery, afterId, batchSize), consumer);
+	}
 
 	private void applyOrders(Root<Build> root, CriteriaQuery<?> criteriaQuery, CriteriaBuilder builder, 
 			EntityQuery<Build> buildQuery) {
@@ -653,69 +721,188 @@ public class DefaultBuildManager extends BaseEntityManager<Build> implements Bui
 
 	@Override
 	public void execute() {
-		long maxId = getMaxId();
-		Collection<Long> idsToPreserve = new HashSet<>();
-		
-		sessionManager.run(new Runnable() {
+		if (!cleaningUp.compareAndSet(false, true))
+			return;
+		try {
+			Queue<Long> projectIds = new ConcurrentLinkedQueue<>(sessionManager.call(new Callable<List<Long>>() {
 
-			@Override
-			public void run() {
-				for (Project project: projectManager.query()) {
-					logger.debug("Populating preserved build ids of project '" + project.getName() + "'...");
-					List<BuildPreservation> preservations = project.getBuildSetting().getBuildPreservations();
-					if (preservations.isEmpty()) {
-						idsToPreserve.addAll(queryIds(project, new BuildQuery(), 0, Integer.MAX_VALUE));
-					} else {
-						for (BuildPreservation preservation: preservations) {
+				@Override
+				public List<Long> call() {
+					return projectManager.query().stream().map(it->it.getId()).collect(Collectors.toList());
+				}
+				
+			}));
+			cleanupTotalProjects.set(projectIds.size());
+			cleanupProcessedProjects.set(0);
+			
+			List<Future<?>> futures = new ArrayList<>();
+			for (int i=0; i<CLEANUP_CONCURRENCY; i++) {
+				futures.add(executorService.submit(new Runnable() {
+
+					@Override
+					public void run() {
+						Long projectId;
+						while ((projectId = projectIds.poll()) != null) {
 							try {
-								BuildQuery query = BuildQuery.parse(project, preservation.getCondition(), false, false);
-								int count;
-								if (preservation.getCount() != null)
-									count = preservation.getCount();
-								else
-									count = Integer.MAX_VALUE;
-								idsToPreserve.addAll(queryIds(project, query, 0, count));
+								cleanup(projectId);
 							} catch (Exception e) {
-								String message = String.format("Error parsing build preserve condition(project: %s, condition: %s)", 
-										project.getName(), preservation.getCondition());
-								logger.error(message, e);
-								idsToPreserve.addAll(queryIds(project, new BuildQuery(), 0, Integer.MAX_VALUE));
+								logger.error("Error cleaning up builds (project id: " + projectId + ")", e);
 							}
+							cleanupProcessedProjects.incrementAndGet();
 						}
 					}
+					
+				}));
+			}
+			for (Future<?> future: futures) {
+				try {
+					future.get();
+				} catch (InterruptedException e) {
+					throw new RuntimeException(e);
+				} catch (ExecutionException e) {
+					throw ExceptionUtils.unchecked(e.getCause());
 				}
 			}
+		} finally {
+			cleaningUp.set(false);
+		}
+	}
+	
+	private void cleanup(Long projectId) {
+		long maxId = sessionManager.call(new Callable<Long>() {
+
+			@Override
+			public Long call() {
+				return getMaxId();
+			}
 			
 		});
-
-		EntityCriteria<Build> criteria = newCriteria();
-		AtomicInteger firstResult = new AtomicInteger(0);
 		
-		while (transactionManager.call(new Callable<Boolean>() {
+		Collection<Long> idsToPreserve = sessionManager.call(new Callable<Collection<Long>>() {
 
 			@Override
-			public Boolean call() {
-				List<Build> builds = query(criteria, firstResult.get(), CLEANUP_BATCH);
-				if (!builds.isEmpty()) {
-					logger.debug("Checking build preservation: {}->{}", 
-							firstResult.get()+1, firstResult.get()+builds.size());
+			public Collection<Long> call() {
+				Project project = projectManager.get(projectId);
+				if (project == null) // deleted after cleanup started
+					return Sets.newHashSet();
+				logger.debug("Populating preserved build ids of project '" + project.getName() + "'...");
+				List<BuildPreservation> preservations = project.getBuildSetting().getBuildPreservations();
+				if (preservations.isEmpty()) 
+					return null;
+				
+				Collection<Long> idsToPreserve = new HashSet<>();
+				for (BuildPreservation preservation: preservations) {
+					try {
+						BuildQuery query = BuildQuery.parse(project, preservation.getCondition(), false, false);
+						int count;
+						if (preservation.getCount() != null)
+							count = preservation.getCount();
+						else
+							count = Integer.MAX_VALUE;
+						idsToPreserve.addAll(queryIds(project, query, 0, count));
+					} catch (Exception e) {
+						String message = String.format("Error parsing build preserve condition(project: %s, condition: %s)", 
+								project.getName(), preservation.getCondition());
+						logger.error(message, e);
+						return null;
+					}
 				}
-				for (Build build: builds) {
-					if (build.isFinished() && build.getId() <= maxId && !idsToPreserve.contains(build.getId())) {
-						logger.debug("Deleting build " + build.getFQN() + "...");
-						delete(build);
+				return idsToPreserve;
+			}
+			
+		});
+		
+		// null means all builds of the project should be preserved
+		if (idsToPreserve != null) {
+			long lastId = 0;
+			while (true) {
+				List<Long> ids = queryFinishedIds(projectId, lastId, maxId);
+				if (ids.isEmpty())
+					break;
+				lastId = ids.get(ids.size()-1);
+				
+				List<Long> idsToDelete = ids.stream()
+						.filter(it->!idsToPreserve.contains(it))
+						.collect(Collectors.toList());
+				for (List<Long> partition: Lists.partition(idsToDelete, DELETE_BATCH)) {
+					transactionManager.run(new Runnable() {
+
+						@Override
+						public void run() {
+							for (Long buildId: partition) {
+								Build build = get(buildId);
+								if (build != null) {
+									logger.debug("Deleting build " + build.getFQN() + "...");
+									delete(build);
+								}
+							}
+						}
+						
+					});
+					cleanupDeletedBuilds.addAndGet(partition.size());
+					
+					// Give way to other database operations 
+					try {
+						Thread.sleep(DELETE_BATCH_INTERVAL);
+					} catch (InterruptedException e) {
+						throw new RuntimeException(e);
 					}
 				}
-				firstResult.set(firstResult.get() + CLEANUP_BATCH);
-				return builds.size() == CLEANUP_BATCH;
+			}
+		}
+		
+		// Also reclaims artifacts of builds deleted manually since last cleanup
+		if (sessionManager.call(() -> projectManager.get(projectId) != null))
+			artifactStorageManager.collectGarbage(projectId);
+	}
+	
+	private List<Long> queryFinishedIds(Long projectId, long afterId, long maxId) {
+		return sessionManager.call(new Callable<List<Long>>() {
+
+			@Override
+			public List<Long> call() {
+				CriteriaBuilder builder = getSession().getCriteriaBuilder();
+				CriteriaQuery<Long> criteriaQuery = builder.createQuery(Long.class);
+				Root<Build> root = criteriaQuery.from(Build.class);
+				criteriaQuery.select(root.get(Build.PROP_ID));
+				criteriaQuery.where(
+						builder.equal(root.get(Build.PROP_PROJECT).get(Project.PROP_ID), projectId), 
+						builder.greaterThan(root.get(Build.PROP_ID), afterId), 
+						builder.lessThanOrEqualTo(root.get(Build.PROP_ID), maxId), 
+						root.get(Build.PROP_STATUS).in(Status.FAILED, Status.CANCELLED, Status.SUCCESSFUL, Status.TIMED_OUT));
+				criteriaQuery.orderBy(builder.asc(root.get(Build.PROP_ID)));
+				
+				Query<Long> query = getSession().createQuery(criteriaQuery);
+				query.setMaxResults(CLEANUP_BATCH);
+				return query.list();
 			}
 			
-		})) {}
+		});
+	}
+	
+	@Override
+	public boolean isCleaningUp() {
+		return cleaningUp.get();
+	}
+
+	@Override
+	public int getCleanupProcessedProjects() {
+		return cleanupProcessedProjects.get();
+	}
+
+	@Override
+	public int getCleanupTotalProjects() {
+		return cleanupTotalProjects.get();
+	}
+
+	@Override
+	public long getCleanupDeletedBuilds() {
+		return cleanupDeletedBuilds.get();
 	}
 
 	@Override
 	public ScheduleBuilder<?> getScheduleBuilder() {
-		return CronScheduleBuilder.dailyAtHourAndMinute(0, 0);
+		return SimpleScheduleBuilder.repeatHourlyForever();
 	}
 	
 	@SuppressWarnings("unchecked")
@@ -727,7 +914,7 @@ public class DefaultBuildManager extends BaseEntityManager<Build> implements Bui
 		for (Object[] fields: (List<Object[]>)query.list()) {
 			Long buildId = (Long) fields[0];
 			Long projectId = (Long)fields[1];
-			builds.put(buildId, new BuildFacade(buildId, projectId, (String)fields[2]));
+			builds.put(new BuildFacade(buildId, projectId, (String)fields[2]));
 			populateJobNames(projectId, (String)fields[3]);
 		}
 		taskId = taskScheduler.schedule(this);
@@ -838,12 +1025,7 @@ public class DefaultBuildManager extends BaseEntityManager<Build> implements Bui
 	public Collection<Long> getIdsByProject(Long projectId) {
 		buildsLock.readLock().lock();
 		try {
-			Collection<Long> buildIds = new HashSet<>();
-			for (BuildFacade build: builds.values()) {
-				if (build.getProjectId().equals(projectId))
-					buildIds.add(build.getId());
-			}
-			return buildIds;
+			return builds.getIds(projectId);
 		} finally {
 			buildsLock.readLock().unlock();
 		}
@@ -854,11 +1036,9 @@ public class DefaultBuildManager extends BaseEntityManager<Build> implements Bui
 		buildsLock.readLock().lock();
 		try {
 			Collection<Long> buildIds = new HashSet<>();
-			for (BuildFacade build: builds.values()) {
-				if (build.getProjectId().equals(projectId) 
-						&& commitHashes.contains(build.getCommitHash())) {
+			for (BuildFacade build: builds.getFacades(projectId)) {
+				if (commitHashes.contains(build.getCommitHash()))
 					buildIds.add(build.getId());
-				}
 			}
 			return buildIds;
 		} finally {
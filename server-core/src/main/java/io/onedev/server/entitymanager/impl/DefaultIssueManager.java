@@ -10,6 +10,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
@@ -82,6 +83,7 @@ import io.onedev.server.util.MilestoneAndState;
 import io.onedev.server.util.Pair;
 import io.onedev.server.util.ProjectScopedNumber;
 import io.onedev.server.util.facade.IssueFacade;
+import io.onedev.server.util.facade.ProjectBelongingFacades;
 import io.onedev.server.web.component.issue.workflowreconcile.UndefinedFieldResolution;
 import io.onedev.server.web.component.issue.workflowreconcile.UndefinedFieldValue;
 import io.onedev.server.web.component.issue.workflowreconcile.UndefinedFieldValuesResolution;
@@ -112,7 +114,7 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 	
 	private final RoleManager roleManager;
 	
-	private final Map<Long, IssueFacade> cache = new HashMap<>();
+	private final ProjectBelongingFacades<IssueFacade> cache = new ProjectBelongingFacades<>();
 	
 	private final ReadWriteLock cacheLock = new ReentrantReadWriteLock();
 	
@@ -145,7 +147,7 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 		Query<?> query = dao.getSession().createQuery("select id, project.id, number from Issue");
 		for (Object[] fields: (List<Object[]>)query.list()) {
 			Long issueId = (Long) fields[0];
-			cache.put(issueId, new IssueFacade(issueId, (Long)fields[1], (Long)fields[2]));
+			cache.put(new IssueFacade(issueId, (Long)fields[1], (Long)fields[2]));
 		}
 	}
 	
@@ -216,7 +218,7 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 			public void run() {
 				cacheLock.writeLock().lock();
 				try {
-					cache.put(facade.getId(), facade);
+					cache.put(facade);
 				} finally {
 					cacheLock.writeLock().unlock();
 				}
@@ -295,6 +297,36 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 		return issues;
 	}
 	
+	@Sessional
+	@Override
+	public List<Issue> queryAfter(@Nullable Project project, EntityQuery<Issue> issueQuery, 
+			@Nullable Long afterId, int maxResults) {
+		CriteriaBuilder builder = getSession().getCriteriaBuilder();
+		CriteriaQuery<Issue> criteriaQuery = builder.createQuery(Issue.class);
+		Root<Issue> root = criteriaQuery.from(Issue.class);
+		
+		List<Predicate> predicates = new ArrayList<>();
+		for (Predicate predicate: getPredicates(project, issueQuery.getCriteria(), root, builder))
+			predicates.add(predicate);
+		if (afterId != null)
+			predicates.add(builder.lessThan(root.get(Issue.PROP_ID), afterId));
+		criteriaQuery.where(predicates.toArray(new Predicate[0]));
+		criteriaQuery.orderBy(builder.desc(root.get(Issue.PROP_ID)));
+		
+		Query<Issue> query = getSession().createQuery(criteriaQuery);
+		query.setMaxResults(maxResults);
+		List<Issue> issues = query.getResultList();
+		if (!issues.isEmpty())
+			issueFieldManager.populateFields(issues);
+		return issues;
+	}
+	
+	@Sessional
+	@Override
+	public void scroll(@Nullable Project project, EntityQuery<Issue> issueQuery, Consumer<Issue> consumer) {
+		scroll((afterId, batchSize) -> queryAfter(project, issueQuery, afterId, batchSize), consumer);
+	}
+	
 	@Transactional
 	@Listen
 	public void on(IssueEvent event) {
@@ -702,11 +734,7 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 				public void run() {
 					cacheLock.writeLock().lock();
 					try {
-						for (Iterator<Map.Entry<Long, IssueFacade>> it = cache.entrySet().iterator(); it.hasNext();) {
-							IssueFacade issue = it.next().getValue();
-							if (issue.getProjectId().equals(projectId))
-								it.remove();
-						}
+						cache.removeProject(projectId);
 					} finally {
 						cacheLock.writeLock().unlock();
 					}
@@ -720,10 +748,8 @@ public class DefaultIssueManager extends BaseEntityManager<Issue> implements Iss
 		cacheLock.readLock().lock();
 		try {
 			Collection<Long> issueNumbers = new HashSet<>();
-			for (IssueFacade issue: cache.values()) {
-				if (projectId.equals(issue.getProjectId()))
-					issueNumbers.add(issue.getNumber());
-			}
+			for (IssueFacade issue: cache.getFacades(projectId)) 
+				issueNumbers.add(issue.getNumber());
 			return issueNumbers;
 		} finally {
 			cacheLock.readLock().unlock();
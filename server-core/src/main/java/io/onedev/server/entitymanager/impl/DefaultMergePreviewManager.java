@@ -0,0 +1,459 @@
+package io.onedev.server.entitymanager.impl;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+import org.apache.commons.lang3.builder.HashCodeBuilder;
+import org.eclipse.jgit.lib.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import io.onedev.commons.launcher.loader.Listen;
+import io.onedev.commons.launcher.loader.ListenerRegistry;
+import io.onedev.server.buildspec.BuildSpec;
+import io.onedev.server.buildspec.job.Job;
+import io.onedev.server.buildspec.job.trigger.JobTrigger;
+import io.onedev.server.buildspec.job.trigger.PullRequestUpdateTrigger;
+import io.onedev.server.entitymanager.MergePreviewManager;
+import io.onedev.server.event.pullrequest.PullRequestMergePreviewCalculated;
+import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.model.Project;
+import io.onedev.server.model.PullRequest;
+import io.onedev.server.model.support.pullrequest.MergePreview;
+import io.onedev.server.model.support.pullrequest.MergeStrategy;
+import io.onedev.server.persistence.SessionManager;
+import io.onedev.server.persistence.TransactionManager;
+import io.onedev.server.persistence.dao.Dao;
+import io.onedev.server.util.concurrent.PrioritizedRunnable;
+import io.onedev.server.util.work.WorkExecutor;
+
+@Singleton
+public class DefaultMergePreviewManager implements MergePreviewManager {
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultMergePreviewManager.class);
+
+	private static final int ON_DEMAND_PRIORITY = 10;
+
+	private static final int RECENTLY_VIEWED_PRIORITY = 30;
+
+	private static final int RECENTLY_UPDATED_PRIORITY = 50;
+
+	private static final int NORMAL_PRIORITY = 70;
+
+	private static final long RECENT_VIEW_PERIOD = TimeUnit.HOURS.toMillis(1);
+
+	private static final long RECENT_UPDATE_PERIOD = TimeUnit.DAYS.toMillis(1);
+
+	/*
+	 * Merge preview of pull requests without update in this period will only be calculated on 
+	 * demand, unless there are jobs triggered by pull request update 
+	 */
+	private static final long IDLE_PERIOD = TimeUnit.DAYS.toMillis(7);
+
+	private static final int MAX_CACHED_RESULTS = 10000;
+
+	private final Dao dao;
+
+	private final SessionManager sessionManager;
+
+	private final TransactionManager transactionManager;
+
+	private final ListenerRegistry listenerRegistry;
+
+	private final WorkExecutor workExecutor;
+
+	private final Map<Long, QueuedRequest> queuedRequests = new HashMap<>();
+
+	private final Set<Long> calculatingRequestIds = new HashSet<>();
+
+	// Map of calculating request id to priority of its recalculation
+	private final Map<Long, Integer> recalculatePriorities = new HashMap<>();
+
+	private final Map<Long, Long> viewTimes = new HashMap<>();
+
+	private final Cache<MergeKey, MergeResult> mergeResults = CacheBuilder.newBuilder()
+			.maximumSize(MAX_CACHED_RESULTS).build();
+
+	private final AtomicLong calculatedCount = new AtomicLong(0);
+
+	private final AtomicLong reusedCount = new AtomicLong(0);
+
+	private final AtomicLong deferredCount = new AtomicLong(0);
+
+	private final AtomicLong startedCount = new AtomicLong(0);
+
+	private final AtomicLong totalWaitTime = new AtomicLong(0);
+
+	private final AtomicLong totalCalculationTime = new AtomicLong(0);
+
+	private volatile boolean stopping;
+
+	@Inject
+	public DefaultMergePreviewManager(Dao dao, SessionManager sessionManager,
+			TransactionManager transactionManager, ListenerRegistry listenerRegistry,
+			WorkExecutor workExecutor) {
+		this.dao = dao;
+		this.sessionManager = sessionManager;
+		this.transactionManager = transactionManager;
+		this.listenerRegistry = listenerRegistry;
+		this.workExecutor = workExecutor;
+	}
+
+	@Override
+	public void calculate(PullRequest request, boolean onDemand) {
+		Long requestId = request.getId();
+		long now = System.currentTimeMillis();
+		int priority;
+		boolean idle = false;
+		synchronized (this) {
+			if (onDemand) {
+				if (viewTimes.size() >= MAX_CACHED_RESULTS)
+					viewTimes.values().removeIf(it -> now - it >= RECENT_VIEW_PERIOD);
+				viewTimes.put(requestId, now);
+				priority = ON_DEMAND_PRIORITY;
+			} else {
+				Long viewTime = viewTimes.get(requestId);
+				if (viewTime != null && now - viewTime < RECENT_VIEW_PERIOD) {
+					priority = RECENTLY_VIEWED_PRIORITY;
+				} else {
+					if (viewTime != null)
+						viewTimes.remove(requestId);
+					Date updateDate = request.getLastUpdate()!=null? request.getLastUpdate().getDate(): null;
+					if (updateDate == null || now - updateDate.getTime() < RECENT_UPDATE_PERIOD) {
+						priority = RECENTLY_UPDATED_PRIORITY;
+					} else {
+						priority = NORMAL_PRIORITY;
+						idle = now - updateDate.getTime() >= IDLE_PERIOD;
+					}
+				}
+			}
+		}
+		
+		// Build spec is read outside of the lock as it may need to access the repository
+		if (idle && !hasUpdateTriggeredJob(request)) {
+			deferredCount.incrementAndGet();
+			return;
+		}
+
+		transactionManager.runAfterCommit(new Runnable() {
+
+			@Override
+			public void run() {
+				enqueue(requestId, priority);
+			}
+
+		});
+	}
+
+	/*
+	 * Jobs with pull request update trigger run when merge preview is calculated. Build spec 
+	 * of merge commit is not known before calculation, so we check build specs of both sides
+	 */
+	private boolean hasUpdateTriggeredJob(PullRequest request) {
+		Set<ObjectId> commitIds = new HashSet<>();
+		ObjectId targetHeadCommitId = request.getTarget().getObjectId(false);
+		if (targetHeadCommitId != null)
+			commitIds.add(targetHeadCommitId);
+		commitIds.add(ObjectId.fromString(request.getLatestUpdate().getHeadCommitHash()));
+		for (ObjectId commitId: commitIds) {
+			try {
+				BuildSpec buildSpec = request.getTargetProject().getBuildSpec(commitId);
+				if (buildSpec != null) {
+					for (Job job: buildSpec.getJobMap().values()) {
+						for (JobTrigger trigger: job.getTriggers()) {
+							if (trigger instanceof PullRequestUpdateTrigger)
+								return true;
+						}
+					}
+				}
+			} catch (Exception e) {
+				// Do not defer so that invalid build spec can be reported when jobs are triggered 
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private synchronized void enqueue(Long requestId, int priority) {
+		if (stopping)
+			return;
+		if (calculatingRequestIds.contains(requestId)) {
+			/*
+			 * Target or source branch may be updated while calculating, so we calculate
+			 * again after current calculation finishes. Only one recalculation is needed
+			 * no matter how many requests arrive in the mean time, and it takes the most 
+			 * urgent priority of them
+			 */
+			recalculatePriorities.merge(requestId, priority, Math::min);
+		}
+		QueuedRequest queuedRequest = queuedRequests.get(requestId);
+		if (queuedRequest != null) {
+			if (priority < queuedRequest.priority)
+				queuedRequest.priority = priority;
+		} else if (!calculatingRequestIds.contains(requestId)) {
+			queuedRequests.put(requestId, new QueuedRequest(priority));
+
+			/*
+			 * Each submitted runnable picks the most urgent queued request when it runs,
+			 * instead of the request causing the submission. This way priority of a queued
+			 * request can be raised, and number of runnables always matches number of
+			 * queued requests
+			 */
+			workExecutor.execute(new PrioritizedRunnable(priority) {
+
+				@Override
+				public void run() {
+					Long requestId = pollQueuedRequest();
+					if (requestId != null)
+						doCalculate(requestId);
+				}
+
+			});
+		}
+	}
+
+	@Nullable
+	private synchronized Long pollQueuedRequest() {
+		Long mostUrgentRequestId = null;
+		QueuedRequest mostUrgentRequest = null;
+		for (Map.Entry<Long, QueuedRequest> entry: queuedRequests.entrySet()) {
+			QueuedRequest queuedRequest = entry.getValue();
+			if (mostUrgentRequest == null || queuedRequest.priority < mostUrgentRequest.priority
+					|| queuedRequest.priority == mostUrgentRequest.priority
+							&& queuedRequest.queueTime < mostUrgentRequest.queueTime) {
+				mostUrgentRequestId = entry.getKey();
+				mostUrgentRequest = queuedRequest;
+			}
+		}
+		if (mostUrgentRequestId != null) {
+			queuedRequests.remove(mostUrgentRequestId);
+			calculatingRequestIds.add(mostUrgentRequestId);
+			startedCount.incrementAndGet();
+			totalWaitTime.addAndGet(System.currentTimeMillis() - mostUrgentRequest.queueTime);
+		}
+		return mostUrgentRequestId;
+	}
+
+	private void doCalculate(Long requestId) {
+		long startTime = System.currentTimeMillis();
+		try {
+			sessionManager.run(new Runnable() {
+
+				@Override
+				public void run() {
+					PullRequest request = dao.get(PullRequest.class, requestId);
+					if (request != null && request.isOpen() && !request.isMergedIntoTarget()) {
+						MergePreview mergePreview = request.getMergePreview();
+						if (mergePreview == null) {
+							mergePreview = new MergePreview(request.getTarget().getObjectName(),
+									request.getLatestUpdate().getHeadCommitHash(), request.getMergeStrategy(), null);
+							ObjectId merged = merge(request, mergePreview);
+							if (merged != null)
+								mergePreview.setMergeCommitHash(merged.name());
+							mergePreview.syncRef(request);
+							request.setLastMergePreview(mergePreview);
+							dao.persist(request);
+							listenerRegistry.post(new PullRequestMergePreviewCalculated(request));
+						} else {
+							mergePreview.syncRef(request);
+						}
+					}
+				}
+
+			});
+		} catch (Exception e) {
+			logger.error("Error calculating merge preview of pull request (id: " + requestId + ")", e);
+		} finally {
+			totalCalculationTime.addAndGet(System.currentTimeMillis() - startTime);
+			Integer recalculatePriority;
+			synchronized (this) {
+				calculatingRequestIds.remove(requestId);
+				recalculatePriority = recalculatePriorities.remove(requestId);
+			}
+			if (recalculatePriority != null)
+				enqueue(requestId, recalculatePriority);
+		}
+	}
+
+	@Nullable
+	private ObjectId merge(PullRequest request, MergePreview mergePreview) {
+		Project targetProject = request.getTargetProject();
+		MergeKey mergeKey = new MergeKey(targetProject.getId(), mergePreview.getTargetHeadCommitHash(),
+				mergePreview.getHeadCommitHash(), mergePreview.getMergeStrategy());
+		MergeResult mergeResult = mergeResults.getIfPresent(mergeKey);
+		if (mergeResult != null) {
+			if (mergeResult.mergeCommitHash == null) {
+				reusedCount.incrementAndGet();
+				return null;
+			} else if (mergeResult.isReusableBy(request)) {
+				ObjectId mergeCommitId = ObjectId.fromString(mergeResult.mergeCommitHash);
+				try {
+					if (targetProject.getRepository().hasObject(mergeCommitId)) {
+						reusedCount.incrementAndGet();
+						return mergeCommitId;
+					}
+				} catch (Exception e) {
+					logger.error("Error checking existence of commit: " + mergeResult.mergeCommitHash, e);
+				}
+			}
+		}
+
+		logger.debug("Calculating merge preview of pull request #{} in project '{}'...",
+				request.getNumber(), targetProject.getName());
+		ObjectId merged = mergePreview.getMergeStrategy().merge(request,
+				"Merge preview of pull request #" + request.getNumber());
+		calculatedCount.incrementAndGet();
+
+		String mergeCommitHash = merged!=null? merged.name(): null;
+		mergeResults.put(mergeKey, new MergeResult(request.getId(), mergeCommitHash,
+				mergeCommitHash != null && mergeCommitHash.equals(mergePreview.getHeadCommitHash())));
+		return merged;
+	}
+
+	@Listen
+	public synchronized void on(SystemStopping event) {
+		stopping = true;
+		queuedRequests.clear();
+	}
+
+	@Override
+	public synchronized int getQueuedCount() {
+		return queuedRequests.size();
+	}
+
+	@Override
+	public synchronized int getCalculatingCount() {
+		return calculatingRequestIds.size();
+	}
+
+	@Override
+	public long getCalculatedCount() {
+		return calculatedCount.get();
+	}
+
+	@Override
+	public long getReusedCount() {
+		return reusedCount.get();
+	}
+
+	@Override
+	public long getDeferredCount() {
+		return deferredCount.get();
+	}
+
+	@Override
+	public long getAverageWaitTime() {
+		long started = startedCount.get();
+		if (started != 0)
+			return totalWaitTime.get() / started;
+		else
+			return 0;
+	}
+
+	@Override
+	public long getAverageCalculationTime() {
+		long started = startedCount.get();
+		if (started != 0)
+			return totalCalculationTime.get() / started;
+		else
+			return 0;
+	}
+
+	private static class QueuedRequest {
+
+		final long queueTime = System.currentTimeMillis();
+
+		int priority;
+
+		QueuedRequest(int priority) {
+			this.priority = priority;
+		}
+
+	}
+
+	private static class MergeKey {
+
+		private final Long targetProjectId;
+
+		private final String targetHeadCommitHash;
+
+		private final String headCommitHash;
+
+		private final MergeStrategy mergeStrategy;
+
+		MergeKey(Long targetProjectId, String targetHeadCommitHash, String headCommitHash,
+				MergeStrategy mergeStrategy) {
+			this.targetProjectId = targetProjectId;
+			this.targetHeadCommitHash = targetHeadCommitHash;
+			this.headCommitHash = headCommitHash;
+			this.mergeStrategy = mergeStrategy;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof MergeKey))
+				return false;
+			if (this == other)
+				return true;
+			MergeKey otherKey = (MergeKey) other;
+			return new EqualsBuilder()
+					.append(targetProjectId, otherKey.targetProjectId)
+					.append(targetHeadCommitHash, otherKey.targetHeadCommitHash)
+					.append(headCommitHash, otherKey.headCommitHash)
+					.append(mergeStrategy, otherKey.mergeStrategy)
+					.isEquals();
+		}
+
+		@Override
+		public int hashCode() {
+			return new HashCodeBuilder(17, 37)
+					.append(targetProjectId)
+					.append(targetHeadCommitHash)
+					.append(headCommitHash)
+					.append(mergeStrategy)
+					.toHashCode();
+		}
+
+	}
+
+	private static class MergeResult {
+
+		final Long requestId;
+
+		@Nullable
+		final String mergeCommitHash;
+
+		final boolean fastForwarded;
+
+		MergeResult(Long requestId, @Nullable String mergeCommitHash, boolean fastForwarded) {
+			this.requestId = requestId;
+			this.mergeCommitHash = mergeCommitHash;
+			this.fastForwarded = fastForwarded;
+		}
+
+		/*
+		 * Merge commits created by other pull requests carry their own commit message and
+		 * author, and can only be reused by other pull requests if they do not contain pull
+		 * request specific information, for instance fast-forwarded or rebased commits
+		 */
+		boolean isReusableBy(PullRequest request) {
+			return requestId.equals(request.getId()) || fastForwarded
+					|| request.getMergeStrategy() == MergeStrategy.REBASE_SOURCE_BRANCH_COMMITS;
+		}
+
+	}
+
+}
@@ -21,6 +21,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
@@ -60,6 +61,7 @@ import io.onedev.commons.utils.ExplicitException;
 import io.onedev.commons.utils.LockUtils;
 import io.onedev.server.OneDev;
 import io.onedev.server.entitymanager.BuildManager;
+import io.onedev.server.entitymanager.MergePreviewManager;
 import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.entitymanager.PullRequestAssignmentManager;
 import io.onedev.server.entitymanager.PullRequestChangeManager;
@@ -123,19 +125,14 @@ import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.security.permission.ReadCode;
 import io.onedev.server.util.ProjectAndBranch;
 import io.onedev.server.util.ProjectScopedNumber;
-import io.onedev.server.util.concurrent.Prioritized;
 import io.onedev.server.util.markdown.MarkdownManager;
 import io.onedev.server.util.reviewrequirement.ReviewRequirement;
-import io.onedev.server.util.work.BatchWorkManager;
-import io.onedev.server.util.work.BatchWorker;
 
 @Singleton
 public class DefaultPullRequestManager extends BaseEntityManager<PullRequest> implements PullRequestManager {
 
 	private static final Logger logger = LoggerFactory.getLogger(DefaultPullRequestManager.class);
 	
-	private static final int PREVIEW_CALC_PRIORITY = 50;
-	
 	private final PullRequestUpdateManager pullRequestUpdateManager;
 	
 	private final ProjectManager projectManager;
@@ -150,7 +147,7 @@ public class DefaultPullRequestManager extends BaseEntityManager<PullRequest> im
 	
 	private final CommitInfoManager commitInfoManager;
 
-	private final BatchWorkManager batchWorkManager;
+	private final MergePreviewManager mergePreviewManager;
 	
 	private final PullRequestChangeManager pullRequestChangeManager;
 	
@@ -163,7 +160,7 @@ public class DefaultPullRequestManager extends BaseEntityManager<PullRequest> im
 	@Inject
 	public DefaultPullRequestManager(Dao dao, PullRequestUpdateManager pullRequestUpdateManager,  
 			PullRequestReviewManager pullRequestReviewManager, MarkdownManager markdownManager, 
-			BatchWorkManager batchWorkManager, ListenerRegistry listenerRegistry, 
+			MergePreviewManager mergePreviewManager, ListenerRegistry listenerRegistry, 
 			SessionManager sessionManager, PullRequestChangeManager pullRequestChangeManager, 
 			ExecutorService executorService, BuildManager buildManager, 
 			TransactionManager transactionManager, ProjectManager projectManager, 
@@ -173,7 +170,7 @@ public class DefaultPullRequestManager extends BaseEntityManager<PullRequest> im
 		this.pullRequestUpdateManager = pullRequestUpdateManager;
 		this.pullRequestReviewManager = pullRequestReviewManager;
 		this.transactionManager = transactionManager;
-		this.batchWorkManager = batchWorkManager;
+		this.mergePreviewManager = mergePreviewManager;
 		this.sessionManager = sessionManager;
 		this.listenerRegistry = listenerRegistry;
 		this.pullRequestChangeManager = pullRequestChangeManager;
@@ -464,50 +461,7 @@ public class DefaultPullRequestManager extends BaseEntityManager<PullRequest> im
 						 */
 						pullRequestReviewManager.saveReviews(request);
 						
-						Long requestId = request.getId();
-						transactionManager.runAfterCommit(new Runnable() {
-							
-							@Override
-							public void run() {
-								BatchWorker previewCalcWorker = new BatchWorker("request-" + requestId + "-previewMerge", 1) {
-
-									@Override
-									public void doWorks(Collection<Prioritized> works) {
-										sessionManager.run(new Runnable() {
-
-											@Override
-											public void run() {
-												Preconditions.checkState(works.size() == 1);
-												PullRequest request = load(requestId);
-												Project targetProject = request.getTargetProject();
-												if (request.isOpen() && !request.isMergedIntoTarget()) {
-													MergePreview mergePreview = request.getMergePreview();
-													if (mergePreview == null) {
-														mergePreview = new MergePreview(request.getTarget().getObjectName(), 
-																request.getLatestUpdate().getHeadCommitHash(), request.getMergeStrategy(), null);
-														logger.debug("Calculating merge preview of pull request #{} in project '{}'...", 
-																request.getNumber(), targetProject.getName());
-														ObjectId merged = mergePreview.getMergeStrategy().merge(request, "Merge preview of pull request #" + request.getNumber());
-														if (merged != null)
-															mergePreview.setMergeCommitHash(merged.name());
-														mergePreview.syncRef(request);
-														request.setLastMergePreview(mergePreview);
-														dao.persist(request);
-														listenerRegistry.post(new PullRequestMergePreviewCalculated(request));
-													} else {
-														mergePreview.syncRef(request);
-													}
-												} 
-											}
-											
-										});
-									}
-									
-								};						
-								batchWorkManager.submit(previewCalcWorker, new Prioritized(PREVIEW_CALC_PRIORITY));								
-							}
-							
-						});
+						mergePreviewManager.calculate(request, false);
 					}
 				}
 			}
@@ -945,6 +899,33 @@ public class DefaultPullRequestManager extends BaseEntityManager<PullRequest> im
 		return requests;
 	}
 	
+	@Sessional
+	@Override
+	public List<PullRequest> queryAfter(@Nullable Project targetProject, EntityQuery<PullRequest> requestQuery, 
+			@Nullable Long afterId, int maxResults) {
+		CriteriaBuilder builder = getSession().getCriteriaBuilder();
+		CriteriaQuery<PullRequest> criteriaQuery = builder.createQuery(PullRequest.class);
+		criteriaQuery.distinct(true);
+		Root<PullRequest> root = criteriaQuery.from(PullRequest.class);
+		
+		List<Predicate> predicates = Lists.newArrayList(getPredicates(targetProject, requestQuery.getCriteria(), root, builder));
+		if (afterId != null)
+			predicates.add(builder.lessThan(root.get(PullRequest.PROP_ID), afterId));
+		criteriaQuery.where(predicates.toArray(new Predicate[0]));
+		criteriaQuery.orderBy(builder.desc(root.get(PullRequest.PROP_ID)));
+		
+		Query<PullRequest> query = getSession().createQuery(criteriaQuery);
+		query.setMaxResults(maxResults);
+		return query.getResultList();
+	}
+	
+	@Sessional
+	@Override
+	public void scroll(@Nullable Project targetProject, EntityQuery<PullRequest> requestQuery, 
+			Consumer<PullRequest> consumer) {
+		scroll((afterId, batchSize) -> queryAfter(targetProject, requestQuery, afterId, batchSize), consumer);
+	}
+	
 	@Sessional
 	@Override
 	public int count(@Nullable Project targetProject,  
@@ -0,0 +1,52 @@
+package io.onedev.server.git;
+
+import java.io.File;
+import java.io.OutputStream;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import io.onedev.server.model.Project;
+
+/**
+ * Generates zip/tar.gz archives of repository commits, and caches generated archives on
+ * disk so that repeated downloads of the same commit (for instance a release tag fetched
+ * by many CI jobs) do not need to compress the tree again.
+ *
+ * @author robin
+ *
+ */
+public interface ArchiveManager {
+
+	public static final String FORMAT_ZIP = "zip";
+
+	public static final String FORMAT_TGZ = "tgz";
+
+	/**
+	 * Get cached archive file of specified commit, generating it if necessary. If the
+	 * archive is being generated by another thread, this method waits for that generation
+	 * instead of starting a new one.
+	 *
+	 * @param format
+	 * 			either {@link #FORMAT_ZIP} or {@link #FORMAT_TGZ}
+	 * @return
+	 * 			cached archive file, or <tt>null</tt> if archive caching is disabled. Returned
+	 * 			file may be removed by cache eviction at any time, so it should be opened
+	 * 			right away
+	 */
+	@Nullable
+	File getArchive(Project project, ObjectId commitId, String format);
+
+	/**
+	 * Generate archive of specified commit into specified output stream without caching
+	 */
+	void writeArchive(Project project, ObjectId commitId, String format, OutputStream os);
+
+	long getHitCount();
+
+	long getMissCount();
+
+	long getCachedSize();
+
+}
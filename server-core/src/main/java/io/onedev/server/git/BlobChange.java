@@ -18,6 +18,7 @@ import com.google.common.base.Preconditions;
 
 import io.onedev.commons.jsyntax.Tokenized;
 import io.onedev.commons.utils.PlanarRange;
+import io.onedev.server.OneDev;
 import io.onedev.server.code.CodeProblem;
 import io.onedev.server.model.CodeComment;
 import io.onedev.server.model.Project;
@@ -71,55 +72,14 @@ public abstract class BlobChange implements Serializable {
 		return newBlobIdent.path != null? newBlobIdent.path: oldBlobIdent.path;
 	}
 	
+	/**
+	 * Get diff blocks of this change. Calculated diffs are cached by {@link DiffManager} 
+	 * and shared, so returned blocks should not be modified
+	 */
 	public List<DiffBlock<Tokenized>> getDiffBlocks() {
 		if (diffBlocks == null) {
 			try {
-				if (type == ChangeType.ADD || type == ChangeType.COPY) {
-					if (getNewText() != null) {
-						List<String> newLines = getNewText().getLines();
-						if (newLines.size() <= DiffUtils.MAX_DIFF_SIZE) {
-							List<String> oldLines = new ArrayList<>();
-							diffBlocks = DiffUtils.diff(
-									oldLines, "a.txt", 
-									newLines, newBlobIdent.isFile()?newBlobIdent.path:"b.txt", 
-									WhitespaceOption.DEFAULT);
-						} else {
-							diffBlocks = new ArrayList<>();
-						}
-					} else {
-						diffBlocks = new ArrayList<>();
-					}
-				} else if (type == ChangeType.DELETE) {
-					if (getOldText() != null) {
-						List<String> oldLines = getOldText().getLines();
-						if (oldLines.size() <= DiffUtils.MAX_DIFF_SIZE) {
-							List<String> newLines = new ArrayList<>();
-							diffBlocks = DiffUtils.diff(
-									oldLines, oldBlobIdent.isFile()?oldBlobIdent.path:"a.txt", 
-									newLines, "b.txt", 
-									WhitespaceOption.DEFAULT);
-						} else {
-							diffBlocks = new ArrayList<>();
-						}
-					} else {
-						diffBlocks = new ArrayList<>();
-					}
-				} else {
-					if (getOldText() != null && getNewText() != null) {
-						List<String> oldLines = getOldText().getLines();
-						List<String> newLines = getNewText().getLines();
-						if (oldLines.size() + newLines.size() <= DiffUtils.MAX_DIFF_SIZE) {
-							diffBlocks = DiffUtils.diff(
-									oldLines, oldBlobIdent.isFile()?newBlobIdent.path:"a.txt", 
-									newLines, newBlobIdent.isFile()?newBlobIdent.path:"b.txt", 
-									whitespaceOption);
-						} else { 
-							diffBlocks = new ArrayList<>();
-						}
-					} else {
-						diffBlocks = new ArrayList<>();
-					}
-				}
+				diffBlocks = OneDev.getInstance(DiffManager.class).getDiffBlocks(this);
 			} catch (Exception e) {
 				throw new RuntimeException("Error calculating diff of file: " + getPath(), e);
 			}
@@ -127,6 +87,44 @@ public abstract class BlobChange implements Serializable {
 		return diffBlocks;
 	}
 	
+	List<DiffBlock<Tokenized>> calcDiffBlocks() {
+		if (type == ChangeType.ADD || type == ChangeType.COPY) {
+			if (getNewText() != null) {
+				List<String> newLines = getNewText().getLines();
+				if (newLines.size() <= DiffUtils.MAX_DIFF_SIZE) {
+					List<String> oldLines = new ArrayList<>();
+					return DiffUtils.diff(
+							oldLines, "a.txt", 
+							newLines, newBlobIdent.isFile()?newBlobIdent.path:"b.txt", 
+							WhitespaceOption.DEFAULT);
+				} 
+			} 
+		} else if (type == ChangeType.DELETE) {
+			if (getOldText() != null) {
+				List<String> oldLines = getOldText().getLines();
+				if (oldLines.size() <= DiffUtils.MAX_DIFF_SIZE) {
+					List<String> newLines = new ArrayList<>();
+					return DiffUtils.diff(
+							oldLines, oldBlobIdent.isFile()?oldBlobIdent.path:"a.txt", 
+							newLines, "b.txt", 
+							WhitespaceOption.DEFAULT);
+				} 
+			} 
+		} else {
+			if (getOldText() != null && getNewText() != null) {
+				List<String> oldLines = getOldText().getLines();
+				List<String> newLines = getNewText().getLines();
+				if (oldLines.size() + newLines.size() <= DiffUtils.MAX_DIFF_SIZE) {
+					return DiffUtils.diff(
+							oldLines, oldBlobIdent.isFile()?newBlobIdent.path:"a.txt", 
+							newLines, newBlobIdent.isFile()?newBlobIdent.path:"b.txt", 
+							whitespaceOption);
+				} 
+			} 
+		}
+		return new ArrayList<>();
+	}
+	
 	public int getAdditions() {
 		int additions = 0;
 		for (DiffBlock<Tokenized> diff: getDiffBlocks()) {
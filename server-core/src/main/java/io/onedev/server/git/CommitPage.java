@@ -0,0 +1,34 @@
+package io.onedev.server.git;
+
+import java.io.Serializable;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+public class CommitPage implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final List<String> commitHashes;
+
+	private final String nextCursor;
+
+	public CommitPage(List<String> commitHashes, @Nullable String nextCursor) {
+		this.commitHashes = commitHashes;
+		this.nextCursor = nextCursor;
+	}
+
+	public List<String> getCommitHashes() {
+		return commitHashes;
+	}
+
+	/**
+	 * @return
+	 * 			cursor to get next page, or <tt>null</tt> if this is the last page
+	 */
+	@Nullable
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+}
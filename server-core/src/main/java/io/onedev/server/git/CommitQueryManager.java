@@ -0,0 +1,59 @@
+package io.onedev.server.git;
+
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jgit.revwalk.RevCommit;
+
+import io.onedev.server.model.Project;
+import io.onedev.server.search.commit.CommitQuery;
+
+/**
+ * Queries commits page by page, and caches parsed commits and ref labels across
+ * requests and users, so that showing more commits does not need to query and
+ * parse previously shown commits again.
+ *
+ * @author robin
+ *
+ */
+public interface CommitQueryManager {
+
+	/**
+	 * Query a page of commits matching specified query. The commit walk is kept in memory for a 
+	 * while after returning a page, and next page continues from where it stops, so cost of a 
+	 * page does not grow with number of previous pages. If the walk has been evicted, it is 
+	 * re-created and walks commits of previous pages again to reach position of the cursor
+	 *
+	 * @param defaultRevision
+	 * 			revision to list commits from if the query does not specify any. All branches
+	 * 			will be used if this is <tt>null</tt>
+	 * @param cursor
+	 * 			cursor returned by previous page, or <tt>null</tt> to get the first page
+	 * @param count
+	 * 			max number of commits in the page
+	 * @throws io.onedev.commons.utils.ExplicitException
+	 * 			if cursor is malformed, or matching commits changed since previous page
+	 */
+	CommitPage query(Project project, CommitQuery query, @Nullable String defaultRevision,
+			@Nullable String cursor, int count);
+
+	/**
+	 * Get parsed commits of specified hashes
+	 *
+	 * @return
+	 * 			commits in same order as specified hashes. Returned commits are shared and
+	 * 			should not be modified
+	 */
+	List<RevCommit> getCommits(Project project, List<String> commitHashes);
+
+	/**
+	 * Get branch and tag names pointing to commits of specified project
+	 *
+	 * @return
+	 * 			map of commit hash to short names of branches and tags pointing to it
+	 */
+	Map<String, List<String>> getRefLabels(Project project);
+
+}
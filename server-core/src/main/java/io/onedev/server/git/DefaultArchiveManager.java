@@ -0,0 +1,216 @@
+package io.onedev.server.git;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.eclipse.jgit.api.ArchiveCommand;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.archive.TgzFormat;
+import org.eclipse.jgit.archive.ZipFormat;
+import org.eclipse.jgit.lib.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.launcher.bootstrap.Bootstrap;
+import io.onedev.commons.launcher.loader.Listen;
+import io.onedev.commons.utils.ExceptionUtils;
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.model.Project;
+import io.onedev.server.util.ServerConfig;
+
+@Singleton
+public class DefaultArchiveManager implements ArchiveManager {
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultArchiveManager.class);
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private final long maxCacheSize;
+
+	/*
+	 * Archives are keyed by commit instead of tree, as archive entries carry commit time
+	 * as modification time
+	 */
+	private final Map<String, CompletableFuture<File>> generatings = new ConcurrentHashMap<>();
+
+	// cached archive file name to size, in least recently used order
+	private final LinkedHashMap<String, Long> cachedArchives = new LinkedHashMap<>(16, 0.75f, true);
+
+	private long cachedSize;
+
+	private final AtomicLong hitCount = new AtomicLong(0);
+
+	private final AtomicLong missCount = new AtomicLong(0);
+
+	@Inject
+	public DefaultArchiveManager(ServerConfig serverConfig) {
+		maxCacheSize = serverConfig.getArchiveCacheSize() * 1024L * 1024L;
+	}
+
+	private File getCacheDir() {
+		return new File(Bootstrap.getTempDir(), "archives");
+	}
+
+	private String getFileName(ObjectId commitId, String format) {
+		if (FORMAT_ZIP.equals(format))
+			return commitId.name() + ".zip";
+		else
+			return commitId.name() + ".tar.gz";
+	}
+
+	@Nullable
+	@Override
+	public File getArchive(Project project, ObjectId commitId, String format) {
+		if (maxCacheSize == 0)
+			return null;
+
+		String fileName = getFileName(commitId, format);
+		File archiveFile = new File(getCacheDir(), fileName);
+		synchronized (cachedArchives) {
+			if (cachedArchives.get(fileName) != null && archiveFile.exists()) {
+				hitCount.incrementAndGet();
+				// keep recency across restarts
+				archiveFile.setLastModified(System.currentTimeMillis());
+				return archiveFile;
+			}
+		}
+
+		CompletableFuture<File> future = new CompletableFuture<>();
+		CompletableFuture<File> existingFuture = generatings.putIfAbsent(fileName, future);
+		if (existingFuture != null) {
+			hitCount.incrementAndGet();
+			try {
+				return existingFuture.get();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				throw ExceptionUtils.unchecked(e.getCause());
+			}
+		}
+
+		missCount.incrementAndGet();
+		try {
+			File tempFile = new File(getCacheDir(), UUID.randomUUID().toString() + TEMP_SUFFIX);
+			try {
+				FileUtils.createDir(getCacheDir());
+				try (OutputStream os = new FileOutputStream(tempFile)) {
+					writeArchive(project, commitId, format, os);
+				}
+				Files.move(tempFile.toPath(), archiveFile.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			} finally {
+				if (tempFile.exists())
+					FileUtils.deleteFile(tempFile);
+			}
+			synchronized (cachedArchives) {
+				Long previousSize = cachedArchives.put(fileName, archiveFile.length());
+				if (previousSize != null)
+					cachedSize -= previousSize;
+				cachedSize += archiveFile.length();
+				evict(fileName);
+			}
+			future.complete(archiveFile);
+			return archiveFile;
+		} catch (Exception e) {
+			future.completeExceptionally(e);
+			throw ExceptionUtils.unchecked(e);
+		} finally {
+			generatings.remove(fileName);
+		}
+	}
+
+	/*
+	 * Archive just generated is never evicted, even if it alone exceeds the cache size, as
+	 * it is about to be served
+	 */
+	private void evict(String excludeFileName) {
+		for (Iterator<Map.Entry<String, Long>> it = cachedArchives.entrySet().iterator();
+				it.hasNext() && cachedSize > maxCacheSize;) {
+			Map.Entry<String, Long> entry = it.next();
+			if (!entry.getKey().equals(excludeFileName)) {
+				File file = new File(getCacheDir(), entry.getKey());
+				// archive being served may not be deletable on some platforms, retry next time
+				if (!file.exists() || file.delete()) {
+					cachedSize -= entry.getValue();
+					it.remove();
+				}
+			}
+		}
+	}
+
+	@Override
+	public void writeArchive(Project project, ObjectId commitId, String format, OutputStream os) {
+		if (format.equals(FORMAT_ZIP))
+			ArchiveCommand.registerFormat(format, new ZipFormat());
+		else
+			ArchiveCommand.registerFormat(format, new TgzFormat());
+		try {
+			ArchiveCommand archive = Git.wrap(project.getRepository()).archive();
+			archive.setFormat(format);
+			archive.setTree(commitId);
+			archive.setOutputStream(os);
+			archive.call();
+		} catch (GitAPIException e) {
+			throw new RuntimeException(e);
+		} finally {
+			ArchiveCommand.unregisterFormat(format);
+		}
+	}
+
+	@Listen
+	public void on(SystemStarted event) {
+		File[] files = getCacheDir().listFiles();
+		if (files != null) {
+			Arrays.sort(files, Comparator.comparingLong(File::lastModified));
+			synchronized (cachedArchives) {
+				for (File file: files) {
+					if (file.getName().endsWith(TEMP_SUFFIX) || maxCacheSize == 0) {
+						FileUtils.deleteFile(file);
+					} else {
+						cachedArchives.put(file.getName(), file.length());
+						cachedSize += file.length();
+					}
+				}
+				evict(null);
+			}
+			logger.debug("Loaded {} cached archives", cachedArchives.size());
+		}
+	}
+
+	@Override
+	public long getHitCount() {
+		return hitCount.get();
+	}
+
+	@Override
+	public long getMissCount() {
+		return missCount.get();
+	}
+
+	@Override
+	public long getCachedSize() {
+		synchronized (cachedArchives) {
+			return cachedSize;
+		}
+	}
+
+}
@@ -0,0 +1,454 @@
+package io.onedev.server.git;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+import javax.inject.Singleton;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.revwalk.filter.AndRevFilter;
+import org.eclipse.jgit.revwalk.filter.AuthorRevFilter;
+import org.eclipse.jgit.revwalk.filter.CommitTimeRevFilter;
+import org.eclipse.jgit.revwalk.filter.CommitterRevFilter;
+import org.eclipse.jgit.revwalk.filter.MessageRevFilter;
+import org.eclipse.jgit.revwalk.filter.OrRevFilter;
+import org.eclipse.jgit.revwalk.filter.RevFilter;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.AndTreeFilter;
+import org.eclipse.jgit.treewalk.filter.OrTreeFilter;
+import org.eclipse.jgit.treewalk.filter.PathFilterGroup;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.collect.Lists;
+
+import io.onedev.commons.launcher.loader.Listen;
+import io.onedev.commons.utils.ExplicitException;
+import io.onedev.server.event.RefUpdated;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.git.command.RevListCommand;
+import io.onedev.server.model.Project;
+import io.onedev.server.search.commit.CommitQuery;
+import io.onedev.server.util.DateUtils;
+import io.onedev.server.util.match.WildcardUtils;
+
+@Singleton
+public class DefaultCommitQueryManager implements CommitQueryManager {
+
+	private static final int MAX_CACHED_COMMITS = 20000;
+
+	private static final int MAX_CACHED_WALKS = 50;
+
+	private static final int WALK_TIMEOUT = 10; // in minutes
+
+	private static final String CURSOR_SEPARATOR = ":";
+
+	/*
+	 * Commits are keyed by commit id only, as parsed commit is decided by its content and
+	 * can be shared between projects forked from each other
+	 */
+	private final Cache<ObjectId, RevCommit> commits = CacheBuilder.newBuilder()
+			.maximumSize(MAX_CACHED_COMMITS)
+			.expireAfterAccess(1, TimeUnit.HOURS)
+			.build();
+
+	/*
+	 * Walks are kept between pages so that next page continues from where previous page
+	 * stops, instead of walking commits of previous pages again. Evicted walk is re-created
+	 * and forwarded to position of the cursor when next page is requested
+	 */
+	private final Cache<String, CommitWalk> walks = CacheBuilder.newBuilder()
+			.maximumSize(MAX_CACHED_WALKS)
+			.expireAfterAccess(WALK_TIMEOUT, TimeUnit.MINUTES)
+			.removalListener((RemovalListener<String, CommitWalk>) notification -> notification.getValue().close())
+			.build();
+
+	// incremented whenever a ref of the project is updated
+	private final Map<Long, Long> refVersions = new ConcurrentHashMap<>();
+
+	private final Map<Long, RefLabels> refLabels = new ConcurrentHashMap<>();
+
+	/*
+	 * Cursor records walk to continue with, number of commits returned so far, and hash of
+	 * last returned commit to verify position if the walk has to be re-created
+	 */
+	private String encodeCursor(String walkId, int offset, String lastCommitHash) {
+		String cursor = walkId + CURSOR_SEPARATOR + offset + CURSOR_SEPARATOR + lastCommitHash;
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+	}
+
+	@Override
+	public CommitPage query(Project project, CommitQuery query, @Nullable String defaultRevision,
+			@Nullable String cursor, int count) {
+		String walkId;
+		int offset;
+		String lastCommitHash;
+		if (cursor != null) {
+			try {
+				String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+				String[] fields = decoded.split(CURSOR_SEPARATOR);
+				if (fields.length != 3)
+					throw new ExplicitException("Malformed cursor");
+				walkId = fields[0];
+				offset = Integer.parseInt(fields[1]);
+				lastCommitHash = fields[2];
+				if (offset <= 0 || !ObjectId.isId(lastCommitHash))
+					throw new ExplicitException("Malformed cursor");
+			} catch (IllegalArgumentException e) {
+				throw new ExplicitException("Malformed cursor");
+			}
+		} else {
+			walkId = null;
+			offset = 0;
+			lastCommitHash = null;
+		}
+
+		try {
+			List<String> commitHashes = null;
+			boolean walkCreated = false;
+
+			CommitWalk walk = walkId != null? walks.getIfPresent(walkId): null;
+			if (walk != null && walk.projectId.equals(project.getId()))
+				commitHashes = walk.next(offset, lastCommitHash, count);
+
+			if (commitHashes == null) {
+				RevListCommand command = new RevListCommand(project.getGitDir());
+				command.ignoreCase(true);
+				query.fill(project, command);
+				if (command.revisions().isEmpty() && defaultRevision != null)
+					command.revisions(Lists.newArrayList(defaultRevision));
+
+				walk = new CommitWalk(project, command);
+				try {
+					if (lastCommitHash != null)
+						walk.forward(offset, lastCommitHash);
+					commitHashes = walk.next(offset, lastCommitHash, count);
+				} catch (Exception e) {
+					walk.close();
+					throw e;
+				}
+				walkId = UUID.randomUUID().toString();
+				walkCreated = true;
+			}
+
+			// one more commit is returned if there is a next page
+			if (commitHashes.size() > count) {
+				if (walkCreated)
+					walks.put(walkId, walk);
+				commitHashes = new ArrayList<>(commitHashes.subList(0, count));
+				String nextCursor = encodeCursor(walkId, offset + count, commitHashes.get(count - 1));
+				return new CommitPage(commitHashes, nextCursor);
+			} else {
+				if (walkCreated)
+					walk.close();
+				else
+					walks.invalidate(walkId);
+				return new CommitPage(commitHashes, null);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public List<RevCommit> getCommits(Project project, List<String> commitHashes) {
+		List<RevCommit> result = new ArrayList<>();
+		try (RevWalk revWalk = new RevWalk(project.getRepository())) {
+			for (String commitHash: commitHashes) {
+				ObjectId commitId = ObjectId.fromString(commitHash);
+				RevCommit commit = commits.getIfPresent(commitId);
+				if (commit == null) {
+					commit = revWalk.parseCommit(commitId);
+					commits.put(commitId, commit);
+				}
+				result.add(commit);
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return result;
+	}
+
+	@Override
+	public Map<String, List<String>> getRefLabels(Project project) {
+		Long refVersion = refVersions.computeIfAbsent(project.getId(), key -> 0L);
+		RefLabels labels = refLabels.get(project.getId());
+		if (labels == null || labels.version != refVersion) {
+			Map<String, List<String>> labelMap = new HashMap<>();
+			List<RefInfo> refInfos = project.getBranchRefInfos();
+			refInfos.addAll(project.getTagRefInfos());
+			for (RefInfo refInfo: refInfos) {
+				if (refInfo.getPeeledObj() instanceof RevCommit) {
+					RevCommit commit = (RevCommit) refInfo.getPeeledObj();
+					List<String> commitLabels = labelMap.get(commit.name());
+					if (commitLabels == null) {
+						commitLabels = new ArrayList<>();
+						labelMap.put(commit.name(), commitLabels);
+					}
+					commitLabels.add(Repository.shortenRefName(refInfo.getRef().getName()));
+				}
+			}
+			labels = new RefLabels(refVersion, Collections.unmodifiableMap(labelMap));
+			refLabels.put(project.getId(), labels);
+		}
+		return labels.labels;
+	}
+
+	@Listen
+	public void on(RefUpdated event) {
+		refVersions.merge(event.getProject().getId(), 1L, Long::sum);
+	}
+
+	@Listen
+	public void on(EntityRemoved event) {
+		if (event.getEntity() instanceof Project) {
+			Long projectId = event.getEntity().getId();
+			refVersions.remove(projectId);
+			refLabels.remove(projectId);
+			walks.asMap().values().removeIf(walk -> walk.projectId.equals(projectId));
+		}
+	}
+
+	private static RevFilter or(List<RevFilter> filters) {
+		return filters.size() == 1? filters.get(0): OrRevFilter.create(filters);
+	}
+
+	private static Date parseDate(String value) {
+		Date date = DateUtils.parseRelaxed(value);
+		if (date != null)
+			return date;
+		else
+			throw new ExplicitException("Unrecognized date: " + value);
+	}
+
+	/*
+	 * Walks commits in-process with JGit so that it can be suspended between pages without
+	 * occupying a git process. Criteria set up by the commit query is translated to filters
+	 * with same meaning as corresponding options of git rev-list
+	 */
+	private static class CommitWalk {
+
+		final Long projectId;
+
+		private final RevWalk revWalk;
+
+		// max number of commits to return, 0 means no limit
+		private final int limit;
+
+		private int offset;
+
+		private String lastCommitHash;
+
+		private RevCommit lookahead;
+
+		private boolean closed;
+
+		CommitWalk(Project project, RevListCommand command) throws IOException {
+			projectId = project.getId();
+			limit = command.count();
+			revWalk = new RevWalk(project.getRepository());
+			try {
+				revWalk.setRetainBody(false);
+
+				boolean hasRevisions = false;
+				for (String revision: command.revisions()) {
+					if (revision.startsWith("^")) {
+						revWalk.markUninteresting(parseCommit(project, revision.substring(1)));
+					} else {
+						revWalk.markStart(parseCommit(project, revision));
+						hasRevisions = true;
+					}
+				}
+				if (!hasRevisions) {
+					for (Ref ref: project.getRepository().getRefDatabase().getRefsByPrefix(Constants.R_HEADS))
+						revWalk.markStart(revWalk.parseCommit(ref.getObjectId()));
+				}
+
+				List<RevFilter> filters = new ArrayList<>();
+				if (command.before() != null)
+					filters.add(CommitTimeRevFilter.before(parseDate(command.before())));
+				if (command.after() != null)
+					filters.add(CommitTimeRevFilter.after(parseDate(command.after())));
+
+				// JGit text filters are always case insensitive, same as rev-list with ignore case
+				List<RevFilter> authorFilters = new ArrayList<>();
+				for (String author: command.authors())
+					authorFilters.add(AuthorRevFilter.create(author));
+				if (!authorFilters.isEmpty())
+					filters.add(or(authorFilters));
+				List<RevFilter> committerFilters = new ArrayList<>();
+				for (String committer: command.committers())
+					committerFilters.add(CommitterRevFilter.create(committer));
+				if (!committerFilters.isEmpty())
+					filters.add(or(committerFilters));
+				List<RevFilter> messageFilters = new ArrayList<>();
+				for (String message: command.messages())
+					messageFilters.add(MessageRevFilter.create(message));
+				if (!messageFilters.isEmpty())
+					filters.add(or(messageFilters));
+
+				if (filters.size() == 1)
+					revWalk.setRevFilter(filters.get(0));
+				else if (filters.size() > 1)
+					revWalk.setRevFilter(AndRevFilter.create(filters));
+
+				if (!command.paths().isEmpty()) {
+					List<String> paths = new ArrayList<>();
+					List<String> wildcardPaths = new ArrayList<>();
+					for (String path: command.paths()) {
+						if (path.contains("*") || path.contains("?"))
+							wildcardPaths.add(path);
+						else
+							paths.add(path);
+					}
+					TreeFilter pathFilter;
+					if (wildcardPaths.isEmpty())
+						pathFilter = PathFilterGroup.createFromStrings(paths);
+					else if (paths.isEmpty())
+						pathFilter = new WildcardPathFilter(wildcardPaths);
+					else
+						pathFilter = OrTreeFilter.create(PathFilterGroup.createFromStrings(paths), new WildcardPathFilter(wildcardPaths));
+					revWalk.setTreeFilter(AndTreeFilter.create(pathFilter, TreeFilter.ANY_DIFF));
+				}
+			} catch (Exception e) {
+				revWalk.close();
+				throw e;
+			}
+		}
+
+		private RevCommit parseCommit(Project project, String revision) throws IOException {
+			ObjectId commitId = project.getObjectId(revision, false);
+			if (commitId != null)
+				return revWalk.parseCommit(commitId);
+			else
+				throw new ExplicitException("Unable to find revision: " + revision);
+		}
+
+		@Nullable
+		private RevCommit peek() throws IOException {
+			if (lookahead == null && (limit == 0 || offset < limit))
+				lookahead = revWalk.next();
+			return lookahead;
+		}
+
+		@Nullable
+		private RevCommit poll() throws IOException {
+			RevCommit commit = peek();
+			if (commit != null) {
+				lookahead = null;
+				offset++;
+				lastCommitHash = commit.name();
+			}
+			return commit;
+		}
+
+		/**
+		 * Forward a newly created walk to position of specified cursor. This walks commits
+		 * of all previous pages, and is only needed if the walk of the cursor is evicted
+		 */
+		synchronized void forward(int offset, String lastCommitHash) throws IOException {
+			while (this.offset < offset && poll() != null);
+			if (this.offset != offset || !this.lastCommitHash.equals(lastCommitHash))
+				throw new ExplicitException("Commits changed since previous page, please query again");
+		}
+
+		/**
+		 * Get next commits if the walk is at specified position
+		 *
+		 * @return
+		 * 			hashes of next commits, plus hash of one more commit if there are more commits.
+		 * 			<tt>null</tt> if the walk is closed or not at specified position, for instance
+		 * 			if it is continued by another request with the same cursor
+		 */
+		@Nullable
+		synchronized List<String> next(int offset, @Nullable String lastCommitHash, int count) throws IOException {
+			if (closed || this.offset != offset
+					|| lastCommitHash != null && !lastCommitHash.equals(this.lastCommitHash)) {
+				return null;
+			}
+			List<String> commitHashes = new ArrayList<>();
+			RevCommit commit;
+			while (commitHashes.size() < count && (commit = poll()) != null)
+				commitHashes.add(commit.name());
+			if ((commit = peek()) != null)
+				commitHashes.add(commit.name());
+			return commitHashes;
+		}
+
+		synchronized void close() {
+			if (!closed) {
+				closed = true;
+				revWalk.close();
+			}
+		}
+
+	}
+
+	/*
+	 * Matches wildcard path against the whole file path, and '*' also matches '/', which
+	 * is the same as wildcard pathspec of git
+	 */
+	private static class WildcardPathFilter extends TreeFilter {
+
+		private final List<String> paths;
+
+		WildcardPathFilter(List<String> paths) {
+			this.paths = paths;
+		}
+
+		@Override
+		public boolean include(TreeWalk walker) {
+			if (walker.isSubtree())
+				return true;
+			String filePath = walker.getPathString();
+			for (String path: paths) {
+				if (WildcardUtils.matchString(path, filePath))
+					return true;
+			}
+			return false;
+		}
+
+		@Override
+		public boolean shouldBeRecursive() {
+			return true;
+		}
+
+		@Override
+		public TreeFilter clone() {
+			return this;
+		}
+
+	}
+
+	private static class RefLabels {
+
+		final long version;
+
+		final Map<String, List<String>> labels;
+
+		RefLabels(long version, Map<String, List<String>> labels) {
+			this.version = version;
+			this.labels = labels;
+		}
+
+	}
+
+}
@@ -0,0 +1,184 @@
+package io.onedev.server.git;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.Nullable;
+import javax.inject.Singleton;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffEntry.ChangeType;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import io.onedev.commons.jsyntax.Tokenized;
+import io.onedev.commons.utils.ExceptionUtils;
+import io.onedev.server.model.Project;
+import io.onedev.server.util.diff.DiffBlock;
+import io.onedev.server.util.diff.WhitespaceOption;
+
+@Singleton
+public class DefaultDiffManager implements DiffManager {
+
+	// total number of diff entries held by cached commit diffs
+	private static final int MAX_CACHED_DIFF_ENTRIES = 100000;
+
+	// total number of lines held by cached file diffs
+	private static final int MAX_CACHED_DIFF_LINES = 500000;
+
+	private final Cache<CommitDiffKey, List<DiffEntry>> commitDiffs = CacheBuilder.newBuilder()
+			.maximumWeight(MAX_CACHED_DIFF_ENTRIES)
+			.<CommitDiffKey, List<DiffEntry>>weigher((key, value) -> value.size() + 1)
+			.recordStats()
+			.build();
+
+	private final Cache<FileDiffKey, List<DiffBlock<Tokenized>>> fileDiffs = CacheBuilder.newBuilder()
+			.maximumWeight(MAX_CACHED_DIFF_LINES)
+			.<FileDiffKey, List<DiffBlock<Tokenized>>>weigher((key, value) -> {
+				int lines = 1;
+				for (DiffBlock<Tokenized> block: value)
+					lines += block.getUnits().size();
+				return lines;
+			})
+			.recordStats()
+			.build();
+
+	@Override
+	public List<DiffEntry> getDiffEntries(Project project, AnyObjectId oldCommitId, AnyObjectId newCommitId) {
+		CommitDiffKey key = new CommitDiffKey(oldCommitId.copy(), newCommitId.copy());
+		try {
+			return commitDiffs.get(key, () -> Collections.unmodifiableList(
+					GitUtils.diff(project.getRepository(), oldCommitId, newCommitId)));
+		} catch (ExecutionException|UncheckedExecutionException e) {
+			throw ExceptionUtils.unchecked(e.getCause());
+		}
+	}
+
+	@Override
+	public List<DiffBlock<Tokenized>> getDiffBlocks(BlobChange change) {
+		ObjectId oldBlobId = change.getOldBlobIdent().path != null? change.getOldBlob().getBlobId(): null;
+		ObjectId newBlobId = change.getNewBlobIdent().path != null? change.getNewBlob().getBlobId(): null;
+		FileDiffKey key = new FileDiffKey(change.getType(), oldBlobId, change.getOldBlobIdent(),
+				newBlobId, change.getNewBlobIdent(), change.getWhitespaceOption());
+		try {
+			return fileDiffs.get(key, () -> Collections.unmodifiableList(change.calcDiffBlocks()));
+		} catch (ExecutionException|UncheckedExecutionException e) {
+			throw ExceptionUtils.unchecked(e.getCause());
+		}
+	}
+
+	@Override
+	public long getCommitDiffRequestCount() {
+		return commitDiffs.stats().requestCount();
+	}
+
+	@Override
+	public double getCommitDiffHitRate() {
+		return commitDiffs.stats().hitRate();
+	}
+
+	@Override
+	public long getFileDiffRequestCount() {
+		return fileDiffs.stats().requestCount();
+	}
+
+	@Override
+	public double getFileDiffHitRate() {
+		return fileDiffs.stats().hitRate();
+	}
+
+	@Override
+	public long getCachedFileDiffCount() {
+		return fileDiffs.size();
+	}
+
+	private static class CommitDiffKey {
+
+		private final ObjectId oldCommitId;
+
+		private final ObjectId newCommitId;
+
+		CommitDiffKey(ObjectId oldCommitId, ObjectId newCommitId) {
+			this.oldCommitId = oldCommitId;
+			this.newCommitId = newCommitId;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof CommitDiffKey))
+				return false;
+			CommitDiffKey otherKey = (CommitDiffKey) other;
+			return oldCommitId.equals(otherKey.oldCommitId) && newCommitId.equals(otherKey.newCommitId);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(oldCommitId, newCommitId);
+		}
+
+	}
+
+	/*
+	 * Path and mode are part of the key as they decide how content is tokenized, and
+	 * whether it is treated as text
+	 */
+	private static class FileDiffKey {
+
+		private final ChangeType changeType;
+
+		private final ObjectId oldBlobId;
+
+		private final String oldPath;
+
+		private final Integer oldMode;
+
+		private final ObjectId newBlobId;
+
+		private final String newPath;
+
+		private final Integer newMode;
+
+		private final WhitespaceOption whitespaceOption;
+
+		FileDiffKey(ChangeType changeType, @Nullable ObjectId oldBlobId, BlobIdent oldBlobIdent,
+				@Nullable ObjectId newBlobId, BlobIdent newBlobIdent, WhitespaceOption whitespaceOption) {
+			this.changeType = changeType;
+			this.oldBlobId = oldBlobId;
+			oldPath = oldBlobIdent.path;
+			oldMode = oldBlobIdent.mode;
+			this.newBlobId = newBlobId;
+			newPath = newBlobIdent.path;
+			newMode = newBlobIdent.mode;
+			this.whitespaceOption = whitespaceOption;
+		}
+
+		@Override
+		public boolean equals(Object other) {
+			if (!(other instanceof FileDiffKey))
+				return false;
+			FileDiffKey otherKey = (FileDiffKey) other;
+			return changeType == otherKey.changeType
+					&& Objects.equal(oldBlobId, otherKey.oldBlobId)
+					&& Objects.equal(oldPath, otherKey.oldPath)
+					&& Objects.equal(oldMode, otherKey.oldMode)
+					&& Objects.equal(newBlobId, otherKey.newBlobId)
+					&& Objects.equal(newPath, otherKey.newPath)
+					&& Objects.equal(newMode, otherKey.newMode)
+					&& whitespaceOption == otherKey.whitespaceOption;
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hashCode(changeType, oldBlobId, oldPath, oldMode, newBlobId, newPath,
+					newMode, whitespaceOption);
+		}
+
+	}
+
+}
@@ -0,0 +1,258 @@
+package io.onedev.server.git;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.quartz.ScheduleBuilder;
+import org.quartz.SimpleScheduleBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.launcher.loader.Listen;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.entitymanager.SettingManager;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.git.command.CountObjectsCommand;
+import io.onedev.server.git.command.GitCommand;
+import io.onedev.server.git.command.RepackCommand;
+import io.onedev.server.git.command.WriteCommitGraphCommand;
+import io.onedev.server.model.Project;
+import io.onedev.server.persistence.SessionManager;
+import io.onedev.server.storage.StorageManager;
+import io.onedev.server.util.schedule.SchedulableTask;
+import io.onedev.server.util.schedule.TaskScheduler;
+
+@Singleton
+public class DefaultGitMaintenanceManager implements GitMaintenanceManager, SchedulableTask {
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultGitMaintenanceManager.class);
+
+	private static final int LOOSE_OBJECTS_THRESHOLD = 1000;
+
+	private static final int PACKS_THRESHOLD = 20;
+
+	private static final long REPACK_INTERVAL = 7*24*3600*1000L;
+
+	private static final GitVersion COMMIT_GRAPH_VERSION = new GitVersion("2.18");
+
+	private static final GitVersion SPLIT_COMMIT_GRAPH_VERSION = new GitVersion("2.24");
+
+	private static final GitVersion CHANGED_PATHS_VERSION = new GitVersion("2.27");
+
+	private static final GitVersion GEOMETRIC_REPACK_VERSION = new GitVersion("2.34");
+
+	private final ProjectManager projectManager;
+
+	private final SettingManager settingManager;
+
+	private final StorageManager storageManager;
+
+	private final SessionManager sessionManager;
+
+	private final TaskScheduler taskScheduler;
+
+	private final GitTransportExecutor gitTransportExecutor;
+
+	private final ExecutorService executorService;
+
+	private final Map<Long, MaintenanceRecord> lastMaintenances = new ConcurrentHashMap<>();
+
+	private final Set<Long> maintainingIds = ConcurrentHashMap.newKeySet();
+
+	private final AtomicBoolean executing = new AtomicBoolean(false);
+
+	private String taskId;
+
+	@Inject
+	public DefaultGitMaintenanceManager(ProjectManager projectManager, SettingManager settingManager,
+			StorageManager storageManager, SessionManager sessionManager, TaskScheduler taskScheduler,
+			GitTransportExecutor gitTransportExecutor, ExecutorService executorService) {
+		this.projectManager = projectManager;
+		this.settingManager = settingManager;
+		this.storageManager = storageManager;
+		this.sessionManager = sessionManager;
+		this.taskScheduler = taskScheduler;
+		this.gitTransportExecutor = gitTransportExecutor;
+		this.executorService = executorService;
+	}
+
+	@Override
+	public RepositoryStats getStats(Project project) {
+		return new CountObjectsCommand(project.getGitDir()).call();
+	}
+
+	@Nullable
+	@Override
+	public MaintenanceRecord getLastMaintenance(Project project) {
+		return lastMaintenances.get(project.getId());
+	}
+
+	@Override
+	public void requestMaintenance(Project project) {
+		Long projectId = project.getId();
+		File gitDir = project.getGitDir();
+		GitVersion gitVersion = getGitVersion();
+		executorService.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				try {
+					maintain(projectId, gitDir, gitVersion);
+				} catch (Exception e) {
+					logger.error("Error maintaining git repository (project id: " + projectId + ")", e);
+				}
+			}
+
+		});
+	}
+
+	@Override
+	public boolean isMaintaining(Project project) {
+		return maintainingIds.contains(project.getId());
+	}
+
+	private GitVersion getGitVersion() {
+		String gitExe = sessionManager.call(() -> settingManager.getSystemSetting().getGitConfig().getExecutable());
+		GitVersion gitVersion = GitCommand.getVersion(gitExe);
+		if (gitVersion != null)
+			return gitVersion;
+		else
+			throw new IllegalStateException("Unable to determine git version of '" + gitExe + "'");
+	}
+
+	private void maintain(Long projectId, File gitDir, GitVersion gitVersion) {
+		if (!maintainingIds.add(projectId))
+			return;
+		try {
+			long time = System.currentTimeMillis();
+			RepositoryStats statsBefore = new CountObjectsCommand(gitDir).call();
+
+			new RepackCommand(gitDir)
+					.geometric(gitVersion.isNotOlderThan(GEOMETRIC_REPACK_VERSION))
+					.call();
+			if (gitVersion.isNotOlderThan(COMMIT_GRAPH_VERSION)) {
+				new WriteCommitGraphCommand(gitDir)
+						.split(gitVersion.isNotOlderThan(SPLIT_COMMIT_GRAPH_VERSION))
+						.changedPaths(gitVersion.isNotOlderThan(CHANGED_PATHS_VERSION))
+						.call();
+			}
+
+			RepositoryStats statsAfter = new CountObjectsCommand(gitDir).call();
+			long duration = System.currentTimeMillis() - time;
+			lastMaintenances.put(projectId, new MaintenanceRecord(new Date(), duration, statsBefore, statsAfter));
+			logger.debug("Maintained git repository (project id: {}, loose objects: {}->{}, packs: {}->{}, duration: {} ms)",
+					projectId, statsBefore.getLooseObjects(), statsAfter.getLooseObjects(),
+					statsBefore.getPacks(), statsAfter.getPacks(), duration);
+		} finally {
+			maintainingIds.remove(projectId);
+		}
+	}
+
+	/*
+	 * Score repository health, higher score means more urgent maintenance, and 0 means
+	 * no maintenance is needed
+	 */
+	private double getMaintenanceScore(RepositoryStats stats) {
+		double score = 0;
+		if (stats.getLooseObjects() >= LOOSE_OBJECTS_THRESHOLD)
+			score += (double)stats.getLooseObjects() / LOOSE_OBJECTS_THRESHOLD;
+		if (stats.getPacks() >= PACKS_THRESHOLD)
+			score += (double)stats.getPacks() / PACKS_THRESHOLD;
+		if (score == 0 && (stats.getLooseObjects() != 0 || stats.getPacks() > 1)
+				&& stats.getLastPackDate() != null
+				&& System.currentTimeMillis() - stats.getLastPackDate().getTime() > REPACK_INTERVAL) {
+			score = 1;
+		}
+		return score;
+	}
+
+	private boolean isServerBusy() {
+		if (gitTransportExecutor.getActiveCount() != 0 || gitTransportExecutor.getQueuedCount() != 0)
+			return true;
+		// Load average is not available on some platforms, in which case it is negative
+		double loadAverage = ManagementFactory.getOperatingSystemMXBean().getSystemLoadAverage();
+		return loadAverage >= Runtime.getRuntime().availableProcessors() / 2.0;
+	}
+
+	@Override
+	public void execute() {
+		if (!executing.compareAndSet(false, true))
+			return;
+		try {
+			if (isServerBusy())
+				return;
+
+			GitVersion gitVersion = getGitVersion();
+			List<Long> projectIds = sessionManager.call(() -> projectManager.query().stream()
+					.map(it->it.getId()).collect(Collectors.toList()));
+
+			List<Pair<Long, Double>> candidates = new ArrayList<>();
+			for (Long projectId: projectIds) {
+				try {
+					File gitDir = storageManager.getProjectGitDir(projectId);
+					double score = getMaintenanceScore(new CountObjectsCommand(gitDir).call());
+					if (score != 0)
+						candidates.add(new ImmutablePair<>(projectId, score));
+				} catch (Exception e) {
+					logger.error("Error checking git repository (project id: " + projectId + ")", e);
+				}
+			}
+			candidates.sort(Comparator.comparing(Pair<Long, Double>::getRight).reversed());
+
+			// Maintain one repository at a time and stop as soon as server gets busy
+			for (Pair<Long, Double> candidate: candidates) {
+				if (isServerBusy())
+					break;
+				try {
+					maintain(candidate.getLeft(), storageManager.getProjectGitDir(candidate.getLeft()), gitVersion);
+				} catch (Exception e) {
+					logger.error("Error maintaining git repository (project id: " + candidate.getLeft() + ")", e);
+				}
+			}
+		} catch (Exception e) {
+			logger.error("Error maintaining git repositories", e);
+		} finally {
+			executing.set(false);
+		}
+	}
+
+	@Override
+	public ScheduleBuilder<?> getScheduleBuilder() {
+		return SimpleScheduleBuilder.repeatHourlyForever();
+	}
+
+	@Listen
+	public void on(SystemStarted event) {
+		taskId = taskScheduler.schedule(this);
+	}
+
+	@Listen
+	public void on(SystemStopping event) {
+		taskScheduler.unschedule(taskId);
+	}
+
+	@Listen
+	public void on(EntityRemoved event) {
+		if (event.getEntity() instanceof Project)
+			lastMaintenances.remove(event.getEntity().getId());
+	}
+
+}
@@ -0,0 +1,226 @@
+package io.onedev.server.git;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import io.onedev.commons.launcher.loader.Listen;
+import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.git.exception.ServerBusyException;
+import io.onedev.server.security.SecurityUtils;
+import io.onedev.server.util.ServerConfig;
+
+@Singleton
+public class DefaultGitTransportExecutor implements GitTransportExecutor {
+
+	private final ExecutorService delegator;
+	
+	private final int concurrency;
+	
+	private final int queueSize;
+	
+	/*
+	 * Queued tasks of each project in submission order. Projects are served round-robin in 
+	 * iteration order, and a project is removed once it has no queued tasks
+	 */
+	private final Map<Long, Deque<TransportTask>> queuedTasks = new LinkedHashMap<>();
+	
+	private final AtomicInteger pendingCount = new AtomicInteger(0);
+	
+	private final AtomicInteger activeCount = new AtomicInteger(0);
+	
+	private final AtomicLong startedCount = new AtomicLong(0);
+	
+	private final AtomicLong completedCount = new AtomicLong(0);
+	
+	private final AtomicLong cancelledCount = new AtomicLong(0);
+	
+	private final AtomicLong rejectedCount = new AtomicLong(0);
+	
+	private final AtomicLong totalWaitTime = new AtomicLong(0);
+	
+	private final AtomicLong bytesServed = new AtomicLong(0);
+	
+	@Inject
+	public DefaultGitTransportExecutor(ServerConfig serverConfig) {
+		concurrency = serverConfig.getGitConcurrency();
+		queueSize = serverConfig.getGitQueueSize();
+		delegator = new ThreadPoolExecutor(concurrency, concurrency, 0L, TimeUnit.MILLISECONDS, 
+				new LinkedBlockingQueue<Runnable>());
+	}
+	
+	@Override
+	public Future<?> submit(Long projectId, Runnable task) {
+		if (pendingCount.incrementAndGet() > concurrency + queueSize) {
+			pendingCount.decrementAndGet();
+			rejectedCount.incrementAndGet();
+			throw new ServerBusyException("Too many pending git operations, please retry later");
+		}
+		
+		long submitTime = System.currentTimeMillis();
+		
+		Runnable runnable = SecurityUtils.inheritSubject(new Runnable() {
+			
+			@Override
+			public void run() {
+				totalWaitTime.addAndGet(System.currentTimeMillis() - submitTime);
+				startedCount.incrementAndGet();
+				activeCount.incrementAndGet();
+				try {
+					task.run();
+				} finally {
+					activeCount.decrementAndGet();
+				}
+			}
+			
+		});
+		
+		TransportTask transportTask = new TransportTask(projectId, runnable);
+		synchronized (queuedTasks) {
+			queuedTasks.computeIfAbsent(projectId, key -> new ArrayDeque<>()).add(transportTask);
+		}
+		try {
+			/*
+			 * Each submission adds a runner instead of the task itself, and the runner picks 
+			 * the task to run when a thread becomes available, so that order of queued tasks 
+			 * reflects projects submitting tasks afterwards
+			 */
+			delegator.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					TransportTask nextTask = pollNextTask();
+					if (nextTask != null)
+						nextTask.run();
+				}
+				
+			});
+		} catch (RuntimeException e) {
+			removeQueuedTask(transportTask);
+			pendingCount.decrementAndGet();
+			rejectedCount.incrementAndGet();
+			throw e;
+		}
+		return transportTask;
+	}
+	
+	/*
+	 * Take first queued task of the project at head of the rotation, and move the project to 
+	 * end of the rotation if it still has queued tasks
+	 */
+	@Nullable
+	private TransportTask pollNextTask() {
+		synchronized (queuedTasks) {
+			Iterator<Map.Entry<Long, Deque<TransportTask>>> it = queuedTasks.entrySet().iterator();
+			if (it.hasNext()) {
+				Map.Entry<Long, Deque<TransportTask>> entry = it.next();
+				it.remove();
+				TransportTask task = entry.getValue().poll();
+				if (!entry.getValue().isEmpty())
+					queuedTasks.put(entry.getKey(), entry.getValue());
+				return task;
+			} else {
+				return null;
+			}
+		}
+	}
+	
+	private void removeQueuedTask(TransportTask task) {
+		synchronized (queuedTasks) {
+			Deque<TransportTask> tasksOfProject = queuedTasks.get(task.projectId);
+			if (tasksOfProject != null && tasksOfProject.remove(task) && tasksOfProject.isEmpty())
+				queuedTasks.remove(task.projectId);
+		}
+	}
+
+	@Override
+	public void onBytesServed(long bytes) {
+		bytesServed.addAndGet(bytes);
+	}
+
+	@Override
+	public int getActiveCount() {
+		return activeCount.get();
+	}
+
+	@Override
+	public int getQueuedCount() {
+		return Math.max(0, pendingCount.get() - activeCount.get());
+	}
+
+	@Override
+	public long getCompletedCount() {
+		return completedCount.get();
+	}
+
+	@Override
+	public long getCancelledCount() {
+		return cancelledCount.get();
+	}
+
+	@Override
+	public long getRejectedCount() {
+		return rejectedCount.get();
+	}
+
+	@Override
+	public long getAverageWaitTime() {
+		long started = startedCount.get();
+		if (started != 0)
+			return totalWaitTime.get() / started;
+		else
+			return 0;
+	}
+
+	@Override
+	public long getBytesServed() {
+		return bytesServed.get();
+	}
+
+	@Listen
+	public void on(SystemStopping event) {
+		delegator.shutdown();
+	}
+	
+	private class TransportTask extends FutureTask<Void> {
+
+		private final Long projectId;
+		
+		public TransportTask(Long projectId, Runnable runnable) {
+			super(runnable, null);
+			this.projectId = projectId;
+		}
+		
+		/*
+		 * Counters are released in done() so that tasks cancelled before running are also 
+		 * accounted. Cancelled task is removed from queue so that it does not take turn of 
+		 * its project
+		 */
+		@Override
+		protected void done() {
+			if (isCancelled())
+				removeQueuedTask(this);
+			pendingCount.decrementAndGet();
+			if (isCancelled())
+				cancelledCount.incrementAndGet();
+			else
+				completedCount.incrementAndGet();
+		}
+
+	}
+	
+}
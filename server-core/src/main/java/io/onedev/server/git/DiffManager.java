@@ -0,0 +1,48 @@
+package io.onedev.server.git;
+
+import java.util.List;
+
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.AnyObjectId;
+
+import io.onedev.commons.jsyntax.Tokenized;
+import io.onedev.server.model.Project;
+import io.onedev.server.util.diff.DiffBlock;
+
+/**
+ * Calculates and caches diffs across requests and users. As commits and blobs are
+ * identified by content hash, cached diffs never go stale and can be shared between
+ * projects forked from each other.
+ *
+ * @author robin
+ *
+ */
+public interface DiffManager {
+
+	/**
+	 * Get changed entries between two commits
+	 *
+	 * @return
+	 * 			unmodifiable list of diff entries, with same content as {@link GitUtils#diff}
+	 */
+	List<DiffEntry> getDiffEntries(Project project, AnyObjectId oldCommitId, AnyObjectId newCommitId);
+
+	/**
+	 * Get diff blocks of specified blob change
+	 *
+	 * @return
+	 * 			diff blocks which should not be modified as they are shared
+	 */
+	List<DiffBlock<Tokenized>> getDiffBlocks(BlobChange change);
+
+	long getCommitDiffRequestCount();
+
+	double getCommitDiffHitRate();
+
+	long getFileDiffRequestCount();
+
+	double getFileDiffHitRate();
+
+	long getCachedFileDiffCount();
+
+}
@@ -22,6 +22,7 @@ import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.commons.io.output.CountingOutputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.shiro.authz.UnauthorizedException;
 import org.eclipse.jgit.http.server.GitSmartHttpTools;
@@ -41,21 +42,20 @@ import io.onedev.server.git.command.AdvertiseUploadRefsCommand;
 import io.onedev.server.git.command.ReceivePackCommand;
 import io.onedev.server.git.command.UploadPackCommand;
 import io.onedev.server.git.exception.GitException;
+import io.onedev.server.git.exception.ServerBusyException;
 import io.onedev.server.model.Project;
 import io.onedev.server.persistence.SessionManager;
 import io.onedev.server.security.CodePullAuthorizationSource;
 import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.storage.StorageManager;
 import io.onedev.server.util.ServerConfig;
-import io.onedev.server.util.concurrent.PrioritizedRunnable;
-import io.onedev.server.util.work.WorkExecutor;
 
 @Singleton
 public class GitFilter implements Filter {
 	
 	private static final Logger logger = LoggerFactory.getLogger(GitFilter.class);
 
-	private static final int PRIORITY = 2;
+	private static final int RETRY_AFTER_SECONDS = 10;
 	
 	private static final String INFO_REFS = "info/refs";
 	
@@ -65,7 +65,7 @@ public class GitFilter implements Filter {
 	
 	private final ProjectManager projectManager;
 	
-	private final WorkExecutor workExecutor;
+	private final GitTransportExecutor transportExecutor;
 	
 	private final ServerConfig serverConfig;
 	
@@ -77,12 +77,12 @@ public class GitFilter implements Filter {
 	
 	@Inject
 	public GitFilter(OneDev oneDev, StorageManager storageManager, ProjectManager projectManager, 
-			WorkExecutor workExecutor, ServerConfig serverConfig, SettingManager settingManager,
+			GitTransportExecutor transportExecutor, ServerConfig serverConfig, SettingManager settingManager,
 			SessionManager sessionManager, Set<CodePullAuthorizationSource> codePullAuthorizationSources) {
 		this.oneDev = oneDev;
 		this.storageManager = storageManager;
 		this.projectManager = projectManager;
-		this.workExecutor = workExecutor;
+		this.transportExecutor = transportExecutor;
 		this.serverConfig = serverConfig;
 		this.settingManager = settingManager;
 		this.sessionManager = sessionManager;
@@ -119,6 +119,7 @@ public class GitFilter implements Filter {
 			throws ServletException, IOException, InterruptedException, ExecutionException {
 		File gitDir;
 		boolean upload;
+		Long projectId;
 		Map<String, String> environments = new HashMap<>();
 		
 		sessionManager.openSession();
@@ -150,7 +151,8 @@ public class GitFilter implements Filter {
 			environments.put("GITPLEX_USER_ID", SecurityUtils.getUserId().toString());
 			environments.put("GITPLEX_REPOSITORY_ID", project.getId().toString());
 			
-			gitDir = storageManager.getProjectGitDir(project.getId());
+			projectId = project.getId();
+			gitDir = storageManager.getProjectGitDir(projectId);
 
 			if (GitSmartHttpTools.isUploadPack(request)) {
 				checkPullPermission(request, project);
@@ -165,13 +167,13 @@ public class GitFilter implements Filter {
 		}
 		
 		if (upload) {
-			workExecutor.submit(new PrioritizedRunnable(PRIORITY) {
+			transportExecutor.submit(projectId, new Runnable() {
 				
 				@Override
 				public void run() {
 					try {
 						InputStream stdin = ServletUtils.getInputStream(request);
-						OutputStream stdout = response.getOutputStream();
+						CountingOutputStream stdout = new CountingOutputStream(response.getOutputStream());
 						
 						AtomicBoolean toleratedErrors = new AtomicBoolean(false);
 						ErrorCollector stderr = new ErrorCollector(StandardCharsets.UTF_8.name()) {
@@ -191,7 +193,12 @@ public class GitFilter implements Filter {
 						};
 						UploadPackCommand upload = new UploadPackCommand(gitDir, environments);
 						upload.stdin(stdin).stdout(stdout).stderr(stderr).statelessRpc(true);
-						ExecutionResult result = upload.call();
+						ExecutionResult result;
+						try {
+							result = upload.call();
+						} finally {
+							transportExecutor.onBytesServed(stdout.getByteCount());
+						}
 						result.setStderr(stderr.getMessage());
 						
 						if (result.getReturnCode() != 0 && !toleratedErrors.get())
@@ -203,7 +210,7 @@ public class GitFilter implements Filter {
 				
 			}).get();
 		} else {
-			workExecutor.submit(new PrioritizedRunnable(PRIORITY) {
+			transportExecutor.submit(projectId, new Runnable() {
 				
 				@Override
 				public void run() {
@@ -316,6 +323,10 @@ public class GitFilter implements Filter {
 			} else {
 				chain.doFilter(request, response);
 			}
+		} catch (ServerBusyException e) {
+			logger.warn(e.getMessage());
+			httpResponse.setHeader("Retry-After", String.valueOf(RETRY_AFTER_SECONDS));
+			GitSmartHttpTools.sendError(httpRequest, httpResponse, HttpServletResponse.SC_SERVICE_UNAVAILABLE, e.getMessage());
 		} catch (GitException|InterruptedException|ExecutionException e) {
 			logger.error("Error serving git request", e);
 			GitSmartHttpTools.sendError(httpRequest, httpResponse, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, e.getMessage());
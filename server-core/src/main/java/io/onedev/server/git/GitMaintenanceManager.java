@@ -0,0 +1,40 @@
+package io.onedev.server.git;
+
+import javax.annotation.Nullable;
+
+import io.onedev.server.model.Project;
+
+/**
+ * Keeps object storage of project repositories in good shape. Repositories accumulating 
+ * too many loose objects or packs are repacked with reachability bitmaps, and get their 
+ * commit-graph rewritten. Maintenance runs in background while server load is low.
+ * 
+ * @author robin
+ *
+ */
+public interface GitMaintenanceManager {
+
+	/**
+	 * Get current object storage statistics of repository of specified project
+	 */
+	RepositoryStats getStats(Project project);
+	
+	/**
+	 * Get last maintenance of repository of specified project since server start
+	 * 
+	 * @return
+	 * 			last maintenance record, or <tt>null</tt> if repository is not maintained 
+	 * 			since server start
+	 */
+	@Nullable
+	MaintenanceRecord getLastMaintenance(Project project);
+	
+	/**
+	 * Maintain repository of specified project in background right away, regardless of 
+	 * repository health and server load
+	 */
+	void requestMaintenance(Project project);
+	
+	boolean isMaintaining(Project project);
+	
+}
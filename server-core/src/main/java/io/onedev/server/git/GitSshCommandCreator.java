@@ -13,6 +13,7 @@ import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.apache.commons.io.output.CountingOutputStream;
 import org.apache.shiro.util.ThreadContext;
 import org.apache.sshd.common.channel.ChannelOutputStream;
 import org.apache.sshd.server.Environment;
@@ -30,14 +31,13 @@ import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.entitymanager.SettingManager;
 import io.onedev.server.git.command.ReceivePackCommand;
 import io.onedev.server.git.command.UploadPackCommand;
+import io.onedev.server.git.exception.ServerBusyException;
 import io.onedev.server.model.Project;
 import io.onedev.server.persistence.SessionManager;
 import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.ssh.SshAuthenticator;
 import io.onedev.server.ssh.SshCommandCreator;
 import io.onedev.server.util.ServerConfig;
-import io.onedev.server.util.concurrent.PrioritizedRunnable;
-import io.onedev.server.util.work.WorkExecutor;
 
 @Singleton
 public class GitSshCommandCreator implements SshCommandCreator {
@@ -54,17 +54,17 @@ public class GitSshCommandCreator implements SshCommandCreator {
 	
 	private final SshAuthenticator authenticator;
 	
-	private final WorkExecutor workExecutor;
+	private final GitTransportExecutor transportExecutor;
 	
 	@Inject
 	public GitSshCommandCreator(ServerConfig serverConfig, SettingManager settingManager, 
 			ProjectManager projectManager, SessionManager sessionManager, 
-			WorkExecutor workExecutor, SshAuthenticator authenticator) {
+			GitTransportExecutor transportExecutor, SshAuthenticator authenticator) {
 		this.serverConfig = serverConfig;
 		this.settingManager = settingManager;
 		this.projectManager = projectManager;
 		this.sessionManager = sessionManager;
-		this.workExecutor = workExecutor;
+		this.transportExecutor = transportExecutor;
 		this.authenticator = authenticator;
 	}
 	
@@ -75,11 +75,16 @@ public class GitSshCommandCreator implements SshCommandCreator {
 
 				@Override
 				protected ExecutionResult execute(File gitDir, Map<String, String> gitEnvs) {
-		            return new UploadPackCommand(gitDir, gitEnvs)
-		            		.stdin(inputStream)
-		            		.stdout(outputStream)
-		            		.stderr(errorStream)
-		            		.call();
+					CountingOutputStream countingOutputStream = new CountingOutputStream(outputStream);
+					try {
+			            return new UploadPackCommand(gitDir, gitEnvs)
+			            		.stdin(inputStream)
+			            		.stdout(countingOutputStream)
+			            		.stderr(errorStream)
+			            		.call();
+					} finally {
+						transportExecutor.onBytesServed(countingOutputStream.getByteCount());
+					}
 		        }
 
 				@Override
@@ -119,8 +124,6 @@ public class GitSshCommandCreator implements SshCommandCreator {
 
 	private abstract class GitSshCommand implements Command, SessionAware {
 		
-		private static final int PRIORITY = 2;
-
 		final String command;
 		
 		InputStream inputStream;
@@ -160,6 +163,7 @@ public class GitSshCommandCreator implements SshCommandCreator {
 			ThreadContext.bind(SecurityUtils.asSubject(authenticator.getPublicKeyOwnerId(session)));
 			
             File gitDir;
+            Long projectId;
             Map<String, String> gitEnvs;
             
             sessionManager.openSession(); 
@@ -177,26 +181,32 @@ public class GitSshCommandCreator implements SshCommandCreator {
             		return;
             	} 
 
+                projectId = project.getId();
                 gitDir = project.getGitDir();
                 gitEnvs = buildGitEnvs(project);
             } finally {                
                 sessionManager.closeSession();
             }
 			
-			commandFuture = workExecutor.submit(new PrioritizedRunnable(PRIORITY) {
-				
-				@Override
-				public void run() {
-					try {
-						ExecutionResult result = execute(gitDir, gitEnvs);
-						onExit(result.getReturnCode(), null);
-					} catch (Exception e) {
-						logger.error("Error executing git command", e);
-						onExit(-1, e.getMessage());
+			try {
+				commandFuture = transportExecutor.submit(projectId, new Runnable() {
+					
+					@Override
+					public void run() {
+						try {
+							ExecutionResult result = execute(gitDir, gitEnvs);
+							onExit(result.getReturnCode(), null);
+						} catch (Exception e) {
+							logger.error("Error executing git command", e);
+							onExit(-1, e.getMessage());
+						}
 					}
-				}
-				
-			});
+					
+				});
+			} catch (ServerBusyException e) {
+				logger.warn(e.getMessage());
+				onExit(-1, e.getMessage());
+			}
 			
 		}
 		
@@ -0,0 +1,66 @@
+package io.onedev.server.git;
+
+import java.util.concurrent.Future;
+
+import io.onedev.server.git.exception.ServerBusyException;
+
+/**
+ * This executor runs git pack transports (upload pack and receive pack) over http and 
+ * ssh. It is separated from {@link io.onedev.server.util.work.WorkExecutor} so that 
+ * bursts of clones/pushes do not starve background works such as code indexing, and 
+ * vice versa. 
+ * 
+ * @author robin
+ *
+ */
+public interface GitTransportExecutor {
+	
+	/**
+	 * Submit a git transport task.
+	 * 
+	 * @param projectId
+	 * 			id of the project the transport is operating on. Queued tasks of each project 
+	 * 			are executed in submission order, and projects are served round-robin to avoid 
+	 * 			a single busy project occupying all slots 
+	 * @param task
+	 * 			task to run
+	 * @return
+	 * 			future of the submitted task
+	 * @throws ServerBusyException
+	 * 			if too many git transports are already pending 
+	 */
+	Future<?> submit(Long projectId, Runnable task);
+	
+	/**
+	 * Record bytes sent to client by git transports
+	 */
+	void onBytesServed(long bytes);
+	
+	int getActiveCount();
+	
+	int getQueuedCount();
+	
+	/**
+	 * @return
+	 * 			number of tasks finished running, either successfully or with error
+	 */
+	long getCompletedCount();
+	
+	/**
+	 * @return
+	 * 			number of tasks cancelled before or while running, for instance when client 
+	 * 			disconnects while waiting in queue 
+	 */
+	long getCancelledCount();
+	
+	long getRejectedCount();
+	
+	/**
+	 * @return
+	 * 			average time in milliseconds started tasks waited in queue before being executed
+	 */
+	long getAverageWaitTime();
+	
+	long getBytesServed();
+	
+}
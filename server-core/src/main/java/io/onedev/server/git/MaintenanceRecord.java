@@ -0,0 +1,46 @@
+package io.onedev.server.git;
+
+import java.io.Serializable;
+import java.util.Date;
+
+public class MaintenanceRecord implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Date date;
+	
+	private final long duration;
+	
+	private final RepositoryStats statsBefore;
+	
+	private final RepositoryStats statsAfter;
+	
+	public MaintenanceRecord(Date date, long duration, RepositoryStats statsBefore, 
+			RepositoryStats statsAfter) {
+		this.date = date;
+		this.duration = duration;
+		this.statsBefore = statsBefore;
+		this.statsAfter = statsAfter;
+	}
+
+	public Date getDate() {
+		return date;
+	}
+
+	/**
+	 * @return
+	 * 			time spent by the maintenance in milliseconds
+	 */
+	public long getDuration() {
+		return duration;
+	}
+
+	public RepositoryStats getStatsBefore() {
+		return statsBefore;
+	}
+
+	public RepositoryStats getStatsAfter() {
+		return statsAfter;
+	}
+	
+}
@@ -0,0 +1,74 @@
+package io.onedev.server.git;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import javax.annotation.Nullable;
+
+/**
+ * Object storage statistics of a git repository, as reported by <tt>git count-objects</tt>
+ */
+public class RepositoryStats implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long looseObjects;
+	
+	private final long looseSize;
+	
+	private final long packedObjects;
+	
+	private final int packs;
+	
+	private final long packSize;
+	
+	private final Date lastPackDate;
+	
+	public RepositoryStats(long looseObjects, long looseSize, long packedObjects, int packs, 
+			long packSize, @Nullable Date lastPackDate) {
+		this.looseObjects = looseObjects;
+		this.looseSize = looseSize;
+		this.packedObjects = packedObjects;
+		this.packs = packs;
+		this.packSize = packSize;
+		this.lastPackDate = lastPackDate;
+	}
+
+	public long getLooseObjects() {
+		return looseObjects;
+	}
+
+	/**
+	 * @return
+	 * 			size of loose objects in bytes
+	 */
+	public long getLooseSize() {
+		return looseSize;
+	}
+
+	public long getPackedObjects() {
+		return packedObjects;
+	}
+
+	public int getPacks() {
+		return packs;
+	}
+
+	/**
+	 * @return
+	 * 			size of pack files in bytes
+	 */
+	public long getPackSize() {
+		return packSize;
+	}
+
+	/**
+	 * @return
+	 * 			modification date of newest pack file, or <tt>null</tt> if there is no pack
+	 */
+	@Nullable
+	public Date getLastPackDate() {
+		return lastPackDate;
+	}
+	
+}
@@ -0,0 +1,65 @@
+package io.onedev.server.git.command;
+
+import java.io.File;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.utils.command.Commandline;
+import io.onedev.commons.utils.command.LineConsumer;
+import io.onedev.server.git.RepositoryStats;
+
+public class CountObjectsCommand extends GitCommand<RepositoryStats> {
+
+	private static final Logger logger = LoggerFactory.getLogger(CountObjectsCommand.class);
+	
+	public CountObjectsCommand(File gitDir) {
+		super(gitDir);
+	}
+	
+	@Override
+	public RepositoryStats call() {
+		Commandline cmd = cmd();
+		cmd.addArgs("count-objects", "-v");
+		
+		Map<String, Long> values = new HashMap<>();
+		cmd.execute(new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+				String name = StringUtils.substringBefore(line, ":").trim();
+				String value = StringUtils.substringAfter(line, ":").trim();
+				if (StringUtils.isNumeric(value))
+					values.put(name, Long.valueOf(value));
+			}
+			
+		}, new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+				logger.error(line);
+			}
+			
+		}).checkReturnCode();
+		
+		long lastPackTime = 0;
+		File[] packFiles = new File(gitDir, "objects/pack").listFiles();
+		if (packFiles != null) {
+			for (File packFile: packFiles) {
+				if (packFile.getName().endsWith(".pack") && packFile.lastModified() > lastPackTime)
+					lastPackTime = packFile.lastModified();
+			}
+		}
+		
+		// sizes are reported in KiB
+		return new RepositoryStats(values.getOrDefault("count", 0L), 
+				values.getOrDefault("size", 0L)*1024, values.getOrDefault("in-pack", 0L), 
+				values.getOrDefault("packs", 0L).intValue(), values.getOrDefault("size-pack", 0L)*1024, 
+				lastPackTime!=0?new Date(lastPackTime):null);
+	}
+
+}
@@ -0,0 +1,63 @@
+package io.onedev.server.git.command;
+
+import java.io.File;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.utils.command.Commandline;
+import io.onedev.commons.utils.command.LineConsumer;
+
+/**
+ * Repack objects of a repository and write reachability bitmaps so that objects to 
+ * send can be calculated without walking the history when serving clones and fetches 
+ */
+public class RepackCommand extends GitCommand<Void> {
+
+	private static final Logger logger = LoggerFactory.getLogger(RepackCommand.class);
+	
+	private boolean geometric;
+	
+	public RepackCommand(File gitDir) {
+		super(gitDir);
+	}
+	
+	/**
+	 * Only combine packs to keep sizes of remaining packs in geometric progression instead 
+	 * of rewriting all objects into a single pack. Much cheaper for large repositories 
+	 * receiving frequent pushes. Requires git 2.34 or later
+	 */
+	public RepackCommand geometric(boolean geometric) {
+		this.geometric = geometric;
+		return this;
+	}
+	
+	@Override
+	public Void call() {
+		Commandline cmd = cmd();
+		cmd.addArgs("repack", "-d", "-l", "-q");
+		if (geometric)
+			cmd.addArgs("--geometric=2", "--write-midx", "--write-bitmap-index");
+		else
+			cmd.addArgs("-a", "--write-bitmap-index");
+		
+		cmd.execute(new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+				logger.debug(line);
+			}
+			
+		}, new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+				logger.warn(line);
+			}
+			
+		}).checkReturnCode();
+		
+		return null;
+	}
+
+}
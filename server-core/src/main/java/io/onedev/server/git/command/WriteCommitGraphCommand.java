@@ -0,0 +1,72 @@
+package io.onedev.server.git.command;
+
+import java.io.File;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.utils.command.Commandline;
+import io.onedev.commons.utils.command.LineConsumer;
+
+/**
+ * Write commit-graph file of a repository to speed up history walks of native git 
+ */
+public class WriteCommitGraphCommand extends GitCommand<Void> {
+
+	private static final Logger logger = LoggerFactory.getLogger(WriteCommitGraphCommand.class);
+	
+	private boolean split;
+	
+	private boolean changedPaths;
+	
+	public WriteCommitGraphCommand(File gitDir) {
+		super(gitDir);
+	}
+	
+	/**
+	 * Write incremental commit-graph chain instead of rewriting the whole file. Requires 
+	 * git 2.24 or later
+	 */
+	public WriteCommitGraphCommand split(boolean split) {
+		this.split = split;
+		return this;
+	}
+	
+	/**
+	 * Write changed-path Bloom filters to speed up path limited history walks such as 
+	 * file history and blame. Requires git 2.27 or later
+	 */
+	public WriteCommitGraphCommand changedPaths(boolean changedPaths) {
+		this.changedPaths = changedPaths;
+		return this;
+	}
+	
+	@Override
+	public Void call() {
+		Commandline cmd = cmd();
+		cmd.addArgs("commit-graph", "write", "--reachable");
+		if (split)
+			cmd.addArgs("--split");
+		if (changedPaths)
+			cmd.addArgs("--changed-paths");
+		
+		cmd.execute(new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+				logger.debug(line);
+			}
+			
+		}, new LineConsumer() {
+
+			@Override
+			public void consume(String line) {
+				logger.warn(line);
+			}
+			
+		}).checkReturnCode();
+		
+		return null;
+	}
+
+}
@@ -0,0 +1,11 @@
+package io.onedev.server.git.exception;
+
+public class ServerBusyException extends GitException {
+
+	private static final long serialVersionUID = 1L;
+
+	public ServerBusyException(String message) {
+		super(message);
+	}
+	
+}
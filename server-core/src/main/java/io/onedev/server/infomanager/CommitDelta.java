@@ -0,0 +1,145 @@
+package io.onedev.server.infomanager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import io.onedev.commons.utils.StringUtils;
+import io.onedev.server.git.command.FileChange;
+import io.onedev.server.git.command.GitCommit;
+import io.onedev.server.model.Project;
+import io.onedev.server.util.IssueUtils;
+import io.onedev.server.util.NameAndEmail;
+import io.onedev.server.util.Pair;
+
+/**
+ * Information of a commit derived without accessing commit info stores. Deltas of
+ * different commits are computed concurrently by {@link DefaultCommitInfoManager},
+ * and are then applied to stores one by one in git log order, so that path and user
+ * indexes are assigned in the same order as if commits were processed serially.
+ * <p>
+ * This class is immutable once constructed.
+ */
+class CommitDelta {
+
+	private final GitCommit commit;
+
+	private final ObjectId commitId;
+
+	private final List<ObjectId> parentIds;
+
+	private final Collection<Long> fixedIssueNumbers;
+
+	private final NameAndEmail committer;
+
+	private final NameAndEmail author;
+
+	private final List<String> authoredPaths;
+
+	private final List<Pair<String, String>> renames;
+
+	private final Collection<String> changedFiles;
+
+	CommitDelta(Project project, GitCommit commit) {
+		this.commit = commit;
+		commitId = ObjectId.fromString(commit.getHash());
+
+		parentIds = new ArrayList<>();
+		for (String parentHash: commit.getParentHashes())
+			parentIds.add(ObjectId.fromString(parentHash));
+
+		String commitMessage = commit.getSubject();
+		if (commit.getBody() != null)
+			commitMessage += "\n\n" + commit.getBody();
+		fixedIssueNumbers = IssueUtils.parseFixedIssueNumbers(project, commitMessage);
+
+		committer = commit.getCommitter() != null? new NameAndEmail(commit.getCommitter()): null;
+
+		if (commit.getAuthor() != null) {
+			author = new NameAndEmail(commit.getAuthor());
+
+			/*
+			 * Each changed path is followed by all its parent directories and then the
+			 * root directory. Duplicates are kept as commit count of the author is
+			 * increased for every occurrence
+			 */
+			authoredPaths = new ArrayList<>();
+			for (FileChange change: commit.getFileChanges()) {
+				for (String path: change.getPaths()) {
+					authoredPaths.add(path);
+					while (path.contains("/")) {
+						path = StringUtils.substringBeforeLast(path, "/");
+						authoredPaths.add(path);
+					}
+					authoredPaths.add("");
+				}
+			}
+		} else {
+			author = null;
+			authoredPaths = Collections.emptyList();
+		}
+
+		renames = new ArrayList<>();
+		for (FileChange change: commit.getFileChanges()) {
+			if (change.getOldPath() != null && change.getNewPath() != null
+					&& !change.getOldPath().equals(change.getNewPath())) {
+				renames.add(new Pair<>(change.getOldPath(), change.getNewPath()));
+			}
+		}
+
+		changedFiles = commit.getChangedFiles();
+	}
+
+	public GitCommit getCommit() {
+		return commit;
+	}
+
+	public ObjectId getCommitId() {
+		return commitId;
+	}
+
+	public List<ObjectId> getParentIds() {
+		return parentIds;
+	}
+
+	public Collection<Long> getFixedIssueNumbers() {
+		return fixedIssueNumbers;
+	}
+
+	@Nullable
+	public NameAndEmail getCommitter() {
+		return committer;
+	}
+
+	@Nullable
+	public NameAndEmail getAuthor() {
+		return author;
+	}
+
+	/**
+	 * @return
+	 * 			paths whose commit count of the author should be increased, in the order
+	 * 			they were visited by the serial collector. Empty if author is unknown
+	 */
+	public List<String> getAuthoredPaths() {
+		return authoredPaths;
+	}
+
+	/**
+	 * @return
+	 * 			list of old path and new path pairs of renamed files
+	 */
+	public List<Pair<String, String>> getRenames() {
+		return renames;
+	}
+
+	public Collection<String> getChangedFiles() {
+		return changedFiles;
+	}
+
+}
@@ -0,0 +1,138 @@
+package io.onedev.server.infomanager;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdOwnerMap;
+
+/**
+ * Compact in-memory representation of parent to child relationship of commits
+ * in a project. Commit ids are interned to int ordinals, and children of each
+ * commit are stored as primitive int arrays, so that descendant queries do not
+ * need to hit the store or allocate an object id for every visited commit.
+ * <p>
+ * The graph lives on heap instead of in a memory-mapped file, as it is built from 
+ * the commit store which is already persisted. Graphs are cached by 
+ * {@link DefaultCommitInfoManager} weighed by number of commits, and evicted graphs 
+ * are loaded again on demand.
+ *
+ * This class is thread-safe.
+ */
+class CommitGraph {
+
+	private static final int[] NO_CHILDREN = new int[0];
+
+	private final ObjectIdOwnerMap<Node> nodes = new ObjectIdOwnerMap<>();
+
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private Node[] nodesByOrdinal = new Node[1024];
+
+	private int[][] children = new int[1024][];
+
+	private int[] childCounts = new int[1024];
+
+	public void addChild(AnyObjectId parentId, AnyObjectId childId) {
+		lock.writeLock().lock();
+		try {
+			int parent = intern(parentId);
+			int child = intern(childId);
+			int[] childrenOfParent = children[parent];
+			int count = childCounts[parent];
+			for (int i=0; i<count; i++) {
+				if (childrenOfParent[i] == child)
+					return;
+			}
+			if (childrenOfParent == NO_CHILDREN)
+				childrenOfParent = children[parent] = new int[1];
+			else if (count == childrenOfParent.length)
+				childrenOfParent = children[parent] = Arrays.copyOf(childrenOfParent, count*2);
+			childrenOfParent[count] = child;
+			childCounts[parent]++;
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public Set<ObjectId> getDescendants(Collection<ObjectId> ancestors) {
+		Set<ObjectId> descendants = new HashSet<>(ancestors);
+		lock.readLock().lock();
+		try {
+			BitSet visited = new BitSet(nodes.size());
+			int[] stack = new int[64];
+			int top = 0;
+			for (ObjectId ancestor: ancestors) {
+				Node node = nodes.get(ancestor);
+				if (node != null && !visited.get(node.ordinal)) {
+					visited.set(node.ordinal);
+					if (top == stack.length)
+						stack = Arrays.copyOf(stack, top*2);
+					stack[top++] = node.ordinal;
+				}
+			}
+			while (top != 0) {
+				int current = stack[--top];
+				int[] childrenOfCurrent = children[current];
+				for (int i=0; i<childCounts[current]; i++) {
+					int child = childrenOfCurrent[i];
+					if (!visited.get(child)) {
+						visited.set(child);
+						descendants.add(nodesByOrdinal[child].copy());
+						if (top == stack.length)
+							stack = Arrays.copyOf(stack, top*2);
+						stack[top++] = child;
+					}
+				}
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
+		return descendants;
+	}
+
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return nodes.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	private int intern(AnyObjectId commitId) {
+		Node node = nodes.get(commitId);
+		if (node == null) {
+			int ordinal = nodes.size();
+			if (ordinal == nodesByOrdinal.length) {
+				int newLength = ordinal*2;
+				nodesByOrdinal = Arrays.copyOf(nodesByOrdinal, newLength);
+				children = Arrays.copyOf(children, newLength);
+				childCounts = Arrays.copyOf(childCounts, newLength);
+			}
+			node = new Node(commitId, ordinal);
+			nodes.add(node);
+			nodesByOrdinal[ordinal] = node;
+			children[ordinal] = NO_CHILDREN;
+		}
+		return node.ordinal;
+	}
+
+	private static class Node extends ObjectIdOwnerMap.Entry {
+
+		final int ordinal;
+
+		Node(AnyObjectId id, int ordinal) {
+			super(id);
+			this.ordinal = ordinal;
+		}
+
+	}
+
+}
@@ -8,7 +8,6 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -18,9 +17,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.Stack;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
 import java.util.function.Consumer;
 
 import javax.annotation.Nullable;
@@ -40,10 +44,14 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Sets;
 
 import io.onedev.commons.launcher.loader.Listen;
+import io.onedev.commons.utils.ExceptionUtils;
 import io.onedev.commons.utils.FileUtils;
+import io.onedev.commons.utils.LockUtils;
 import io.onedev.commons.utils.PathUtils;
 import io.onedev.commons.utils.StringUtils;
 import io.onedev.server.entitymanager.ProjectManager;
@@ -51,6 +59,7 @@ import io.onedev.server.entitymanager.UserManager;
 import io.onedev.server.event.RefUpdated;
 import io.onedev.server.event.entity.EntityRemoved;
 import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.event.system.SystemStopping;
 import io.onedev.server.git.GitContribution;
 import io.onedev.server.git.GitContributor;
 import io.onedev.server.git.GitUtils;
@@ -67,7 +76,6 @@ import io.onedev.server.persistence.annotation.Sessional;
 import io.onedev.server.storage.StorageManager;
 import io.onedev.server.util.Day;
 import io.onedev.server.util.ElementPumper;
-import io.onedev.server.util.IssueUtils;
 import io.onedev.server.util.NameAndEmail;
 import io.onedev.server.util.Pair;
 import io.onedev.server.util.concurrent.Prioritized;
@@ -79,6 +87,7 @@ import jetbrains.exodus.ByteIterable;
 import jetbrains.exodus.backup.BackupStrategy;
 import jetbrains.exodus.backup.BackupStrategy.FileDescriptor;
 import jetbrains.exodus.backup.VirtualFileDescriptor;
+import jetbrains.exodus.env.Cursor;
 import jetbrains.exodus.env.Environment;
 import jetbrains.exodus.env.Store;
 import jetbrains.exodus.env.Transaction;
@@ -102,6 +111,20 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 	
 	private static final int MAX_COMMIT_FILES = 100;
 	
+	private static final int PROGRESS_REPORT_INTERVAL = 1000;
+	
+	private static final int DELTA_CONCURRENCY = Runtime.getRuntime().availableProcessors();
+	
+	// Max number of commits whose deltas are being computed or waiting to be applied
+	private static final int DELTA_BUFFER_SIZE = 1000;
+	
+	/*
+	 * Max number of commits of all cached commit graphs. Graphs are weighed by their 
+	 * commit count, and evicted as a whole as a partially cached graph can not answer 
+	 * descendant queries
+	 */
+	private static final int MAX_CACHED_GRAPH_COMMITS = 1000000;
+	
 	private static final String INFO_DIR = "commit";
 	
 	private static final String DEFAULT_STORE = "default";
@@ -294,6 +317,15 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 	
 	private final Map<Long, List<NameAndEmail>> usersCache = new ConcurrentHashMap<>();
 	
+	private final Cache<Long, CommitGraph> commitGraphCache = CacheBuilder.newBuilder()
+			.maximumWeight(MAX_CACHED_GRAPH_COMMITS)
+			.<Long, CommitGraph>weigher((key, value) -> value.size())
+			.build();
+	
+	// Shared by all collecting projects so that total number of delta computing threads is bounded
+	private final ThreadPoolExecutor deltaExecutor = new ThreadPoolExecutor(DELTA_CONCURRENCY, 
+			DELTA_CONCURRENCY, 60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+	
 	@Inject
 	public DefaultCommitInfoManager(ProjectManager projectManager, StorageManager storageManager, 
 			BatchWorkManager batchWorkManager, SessionManager sessionManager, UserManager userManager) {
@@ -302,6 +334,7 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 		this.batchWorkManager = batchWorkManager;
 		this.sessionManager = sessionManager;
 		this.userManager = userManager;
+		deltaExecutor.allowCoreThreadTimeOut(true);
 	}
 	
 	private boolean isCommitCollected(byte[] commitBytes) {
@@ -358,11 +391,15 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 
 				@Override
 				public void process(ObjectId untilCommitId, ObjectId sinceCommitId) {
+					List<Pair<ObjectId, ObjectId>> newParentChildPairs = new ArrayList<>();
+					
 					env.executeInTransaction(new TransactionalExecutable() {
 						
 						@SuppressWarnings("unchecked")
 						@Override
 						public void execute(Transaction txn) {
+							newParentChildPairs.clear();
+							
 							AtomicInteger totalCommitCount = new AtomicInteger(readInt(defaultStore, txn, COMMIT_COUNT_KEY, 0));
 							
 							NextIndex nextIndex = new NextIndex();
@@ -371,6 +408,17 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 							
 							Map<Long, Integer> commitCountCache = new HashMap<>();
 							
+							/*
+							 * Path and user indexes only grow within the transaction, so we cache them 
+							 * in memory to avoid reading the same keys from store over and over again, 
+							 * for instance parent directories are looked up for every changed file 
+							 */
+							Map<String, Integer> pathIndexCache = new HashMap<>();
+							
+							Map<NameAndEmail, Integer> userIndexCache = new HashMap<>();
+							
+							AtomicInteger collectedCommitCount = new AtomicInteger(0);
+							
 							Set<NameAndEmail> users;
 							byte[] userBytes = readBytes(defaultStore, txn, USERS_KEY);
 							if (userBytes != null)
@@ -385,10 +433,15 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 							else
 								files = new HashMap<>();
 
-							new ElementPumper<GitCommit>() {
+							/*
+							 * Deltas of commits are computed concurrently by the delta executor, and 
+							 * are pumped to this thread in git log order to be applied to stores one 
+							 * by one. Store contents are thus identical to processing commits serially
+							 */
+							new ElementPumper<Future<CommitDelta>>(DELTA_BUFFER_SIZE) {
 
 								@Override
-								public void generate(Consumer<GitCommit> consumer) {
+								public void generate(Consumer<Future<CommitDelta>> consumer) {
 									List<String> revisions = new ArrayList<>();
 									revisions.add(untilCommitId.name());
 
@@ -401,15 +454,24 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 
 										@Override
 										protected void consume(GitCommit commit) {
-											consumer.accept(commit);
+											consumer.accept(deltaExecutor.submit(() -> new CommitDelta(project, commit)));
 										}
 										
 									}.revisions(revisions).fields(fields).call();
 								}
 
 								@Override
-								public void process(GitCommit currentCommit) {
-									ObjectId currentCommitId = ObjectId.fromString(currentCommit.getHash());
+								public void process(Future<CommitDelta> future) {
+									CommitDelta delta;
+									try {
+										delta = future.get();
+									} catch (InterruptedException e) {
+										throw new RuntimeException(e);
+									} catch (ExecutionException e) {
+										throw ExceptionUtils.unchecked(e.getCause());
+									}
+									GitCommit currentCommit = delta.getCommit();
+									ObjectId currentCommitId = delta.getCommitId();
 									ByteIterable currentCommitKey = new CommitByteIterable(currentCommitId);
 									byte[] currentCommitBytes = readBytes(commitsStore, txn, currentCommitKey);
 									
@@ -426,8 +488,8 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 										
 										commitsStore.put(txn, currentCommitKey, new ArrayByteIterable(newCurrentCommitBytes));
 										
-										for (String parentCommitHash: currentCommit.getParentHashes()) {
-											ByteIterable parentCommitKey = new CommitByteIterable(ObjectId.fromString(parentCommitHash));
+										for (ObjectId parentCommitId: delta.getParentIds()) {
+											ByteIterable parentCommitKey = new CommitByteIterable(parentCommitId);
 											byte[] parentCommitBytes = readBytes(commitsStore, txn, parentCommitKey);
 											byte[] newParentCommitBytes;
 											if (parentCommitBytes != null) {
@@ -438,13 +500,10 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 											}
 											currentCommitId.copyRawTo(newParentCommitBytes, newParentCommitBytes.length-20);
 											commitsStore.put(txn, parentCommitKey, new ArrayByteIterable(newParentCommitBytes));
+											newParentChildPairs.add(new Pair<>(parentCommitId, currentCommitId));
 										}
 										
-										String commitMessage = currentCommit.getSubject();
-										if (currentCommit.getBody() != null)
-											commitMessage += "\n\n" + currentCommit.getBody();
-										
-										for (Long issueNumber: IssueUtils.parseFixedIssueNumbers(project, commitMessage)) {
+										for (Long issueNumber: delta.getFixedIssueNumbers()) {
 											ByteIterable issueKey = new LongByteIterable(issueNumber);
 											Collection<ObjectId> fixingCommits = readCommits(fixCommitsStore, txn, issueKey);
 											
@@ -464,79 +523,74 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 										}
 										
 										if (currentCommit.getCommitDate() != null) {
-											for (String file: currentCommit.getChangedFiles())
+											for (String file: delta.getChangedFiles())
 												files.put(file, currentCommit.getCommitDate().getTime());
 										}
 										
-										if (currentCommit.getCommitter() != null)
-											users.add(new NameAndEmail(currentCommit.getCommitter()));
+										if (delta.getCommitter() != null)
+											users.add(delta.getCommitter());
 
-										if (currentCommit.getAuthor() != null) {
-											NameAndEmail nameAndEmail = new NameAndEmail(currentCommit.getAuthor());
+										NameAndEmail nameAndEmail = delta.getAuthor();
+										if (nameAndEmail != null) {
 											users.add(nameAndEmail);
 											
-											ByteIterable authorKey = new ArrayByteIterable(SerializationUtils.serialize(nameAndEmail));											
-											int userIndex = readInt(userToIndexStore, txn, authorKey, -1);
-											if (userIndex == -1) {
-												userIndex = nextIndex.user++;
-												writeInt(userToIndexStore, txn, authorKey, userIndex);
-												indexToUserStore.put(txn, new IntByteIterable(userIndex), authorKey);
+											Integer userIndex = userIndexCache.get(nameAndEmail);
+											if (userIndex == null) {
+												ByteIterable authorKey = new ArrayByteIterable(SerializationUtils.serialize(nameAndEmail));											
+												userIndex = readInt(userToIndexStore, txn, authorKey, -1);
+												if (userIndex == -1) {
+													userIndex = nextIndex.user++;
+													writeInt(userToIndexStore, txn, authorKey, userIndex);
+													indexToUserStore.put(txn, new IntByteIterable(userIndex), authorKey);
+												}
+												userIndexCache.put(nameAndEmail, userIndex);
 											}
 											
-											for (FileChange change: currentCommit.getFileChanges()) {
-												for (String path: change.getPaths()) {
-													int pathIndex = getPathIndex(pathToIndexStore, indexToPathStore, txn, 
-															nextIndex, path);
-													updateCommitCount(commitCountsStore, txn, commitCountCache, userIndex, pathIndex);
-													while (path.contains("/")) {
-														path = StringUtils.substringBeforeLast(path, "/");
-														pathIndex = getPathIndex(pathToIndexStore, indexToPathStore, txn, 
-																nextIndex, path);
-														updateCommitCount(commitCountsStore, txn, commitCountCache, userIndex, pathIndex);
-													}
-													pathIndex = getPathIndex(pathToIndexStore, indexToPathStore, txn, 
-															nextIndex, "");
-													updateCommitCount(commitCountsStore, txn, commitCountCache, userIndex, pathIndex);
-												}
+											for (String path: delta.getAuthoredPaths()) {
+												int pathIndex = getPathIndex(pathToIndexStore, indexToPathStore, txn, 
+														nextIndex, pathIndexCache, path);
+												updateCommitCount(commitCountsStore, txn, commitCountCache, userIndex, pathIndex);
 											}
 										}
 										
-										for (FileChange change: currentCommit.getFileChanges()) {
-											if (change.getOldPath() != null && change.getNewPath() != null 
-													&& !change.getOldPath().equals(change.getNewPath())) {
-												int pathIndex = getPathIndex(pathToIndexStore, indexToPathStore, txn, 
-														nextIndex, change.getNewPath());
-												ByteIterable pathKey = new IntByteIterable(pathIndex);
-												Set<Integer> historyPathIndexes = new HashSet<>();
-												byte[] bytesOfHistoryPaths = readBytes(historyPathsStore, txn, pathKey);
-												if (bytesOfHistoryPaths == null) {
-													bytesOfHistoryPaths = new byte[0];
-													int pos = 0;
-													for (int i=0; i<bytesOfHistoryPaths.length/Integer.SIZE; i++) {
-														historyPathIndexes.add(ByteBuffer.wrap(bytesOfHistoryPaths, pos, Integer.SIZE).getInt());
-														pos += Integer.SIZE;
-													}
-												} else {
-													historyPathIndexes = new HashSet<>();
+										for (Pair<String, String> rename: delta.getRenames()) {
+											int pathIndex = getPathIndex(pathToIndexStore, indexToPathStore, txn, 
+													nextIndex, pathIndexCache, rename.getSecond());
+											ByteIterable pathKey = new IntByteIterable(pathIndex);
+											Set<Integer> historyPathIndexes = new HashSet<>();
+											byte[] bytesOfHistoryPaths = readBytes(historyPathsStore, txn, pathKey);
+											if (bytesOfHistoryPaths == null) {
+												bytesOfHistoryPaths = new byte[0];
+												int pos = 0;
+												for (int i=0; i<bytesOfHistoryPaths.length/Integer.SIZE; i++) {
+													historyPathIndexes.add(ByteBuffer.wrap(bytesOfHistoryPaths, pos, Integer.SIZE).getInt());
+													pos += Integer.SIZE;
 												}
-												if (historyPathIndexes.size() < MAX_HISTORY_PATHS) {
-													int oldPathIndex = getPathIndex(pathToIndexStore, indexToPathStore, txn, 
-															nextIndex, change.getOldPath());
-													if (!historyPathIndexes.contains(oldPathIndex)) {
-														historyPathIndexes.add(oldPathIndex);
-														byte[] newBytesOfHistoryPaths = 
-																new byte[bytesOfHistoryPaths.length+Integer.SIZE];
-														System.arraycopy(bytesOfHistoryPaths, 0, 
-																newBytesOfHistoryPaths, 0, bytesOfHistoryPaths.length);
-														ByteBuffer buffer = ByteBuffer.wrap(newBytesOfHistoryPaths, 
-																bytesOfHistoryPaths.length, Integer.BYTES);
-														buffer.putInt(oldPathIndex);
-														historyPathsStore.put(txn, pathKey, 
-																new ArrayByteIterable(newBytesOfHistoryPaths));
-													}
+											} else {
+												historyPathIndexes = new HashSet<>();
+											}
+											if (historyPathIndexes.size() < MAX_HISTORY_PATHS) {
+												int oldPathIndex = getPathIndex(pathToIndexStore, indexToPathStore, txn, 
+														nextIndex, pathIndexCache, rename.getFirst());
+												if (!historyPathIndexes.contains(oldPathIndex)) {
+													historyPathIndexes.add(oldPathIndex);
+													byte[] newBytesOfHistoryPaths = 
+															new byte[bytesOfHistoryPaths.length+Integer.SIZE];
+													System.arraycopy(bytesOfHistoryPaths, 0, 
+															newBytesOfHistoryPaths, 0, bytesOfHistoryPaths.length);
+													ByteBuffer buffer = ByteBuffer.wrap(newBytesOfHistoryPaths, 
+															bytesOfHistoryPaths.length, Integer.BYTES);
+													buffer.putInt(oldPathIndex);
+													historyPathsStore.put(txn, pathKey, 
+															new ArrayByteIterable(newBytesOfHistoryPaths));
 												}
 											}
 										}											
+										
+										if (collectedCommitCount.incrementAndGet() % PROGRESS_REPORT_INTERVAL == 0) {
+											logger.debug("Collected {} commits (project: {}, ref: {})", 
+													collectedCommitCount.get(), project.getName(), refName);
+										}
 									}
 								}
 
@@ -568,6 +622,24 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 							defaultStore.put(txn, LAST_COMMIT_KEY, new CommitByteIterable(untilCommitId));
 						}
 					});
+					
+					/*
+					 * Commit graph is loaded while holding the graph lock, so this waits for any 
+					 * in-progress loading, and edges already seen by the loader are ignored by 
+					 * the graph. Graph is put again so that its weight in cache is updated
+					 */
+					Lock graphLock = LockUtils.getLock(getCommitGraphLockKey(project.getId()));
+					graphLock.lock();
+					try {
+						CommitGraph commitGraph = commitGraphCache.getIfPresent(project.getId());
+						if (commitGraph != null) {
+							for (Pair<ObjectId, ObjectId> pair: newParentChildPairs)
+								commitGraph.addChild(pair.getFirst(), pair.getSecond());
+							commitGraphCache.put(project.getId(), commitGraph);
+						}
+					} finally {
+						graphLock.unlock();
+					}
 				}
 				
 			});
@@ -883,13 +955,17 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 	}
 	
 	private int getPathIndex(Store pathToIndexStore, Store indexToPathStore, Transaction txn, 
-			NextIndex nextIndex, String path) {
-		StringByteIterable pathKey = new StringByteIterable(path);
-		int pathIndex = readInt(pathToIndexStore, txn, pathKey, -1);
-		if (pathIndex == -1) {
-			pathIndex = nextIndex.path++;
-			writeInt(pathToIndexStore, txn, pathKey, pathIndex);
-			indexToPathStore.put(txn, new IntByteIterable(pathIndex), new StringByteIterable(path));
+			NextIndex nextIndex, Map<String, Integer> pathIndexCache, String path) {
+		Integer pathIndex = pathIndexCache.get(path);
+		if (pathIndex == null) {
+			StringByteIterable pathKey = new StringByteIterable(path);
+			pathIndex = readInt(pathToIndexStore, txn, pathKey, -1);
+			if (pathIndex == -1) {
+				pathIndex = nextIndex.path++;
+				writeInt(pathToIndexStore, txn, pathKey, pathIndex);
+				indexToPathStore.put(txn, new IntByteIterable(pathIndex), new StringByteIterable(path));
+			}
+			pathIndexCache.put(path, pathIndex);
 		}
 		return pathIndex;
 	}
@@ -1042,44 +1118,57 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 	
 	@Override
 	public Collection<ObjectId> getDescendants(Project project, Collection<ObjectId> ancestors) {
-		Environment env = getEnv(project.getId().toString());
-		final Store store = getStore(env, COMMITS_STORE);
-
-		return env.computeInReadonlyTransaction(new TransactionalComputable<Set<ObjectId>>() {
+		return getCommitGraph(project.getId()).getDescendants(ancestors);
+	}
+	
+	private String getCommitGraphLockKey(Long projectId) {
+		return "commit-graph:" + projectId;
+	}
+	
+	/*
+	 * Graph is loaded under a per-project lock instead of inside a cache operation, 
+	 * so that loading of a large history does not block access to other graphs
+	 */
+	private CommitGraph getCommitGraph(Long projectId) {
+		CommitGraph commitGraph = commitGraphCache.getIfPresent(projectId);
+		if (commitGraph == null) {
+			Lock graphLock = LockUtils.getLock(getCommitGraphLockKey(projectId));
+			graphLock.lock();
+			try {
+				commitGraph = commitGraphCache.getIfPresent(projectId);
+				if (commitGraph == null) {
+					commitGraph = loadCommitGraph(projectId);
+					commitGraphCache.put(projectId, commitGraph);
+				}
+			} finally {
+				graphLock.unlock();
+			}
+		}
+		return commitGraph;
+	}
+	
+	private CommitGraph loadCommitGraph(Long projectId) {
+		Environment env = getEnv(projectId.toString());
+		Store store = getStore(env, COMMITS_STORE);
+		
+		return env.computeInReadonlyTransaction(new TransactionalComputable<CommitGraph>() {
 
 			@Override
-			public Set<ObjectId> compute(Transaction txn) {
-				Set<ObjectId> descendants = new HashSet<>();
-				
-				// Use stack instead of recursion to avoid StackOverflowException
-				Stack<ObjectId> stack = new Stack<>();
-				descendants.addAll(ancestors);
-				stack.addAll(ancestors);
-				while (!stack.isEmpty()) {
-					ObjectId current = stack.pop();
-					byte[] valueBytes = readBytes(store, txn, new CommitByteIterable(current));
-					if (valueBytes != null) {
-						if (valueBytes.length % 20 == 0) {
-							for (int i=0; i<valueBytes.length/20; i++) {
-								ObjectId child = ObjectId.fromRaw(valueBytes, i*20);
-								if (!descendants.contains(child)) {
-									descendants.add(child);
-									stack.push(child);
-								}
-							}
-						} else { 
-							for (int i=0; i<(valueBytes.length-1)/20; i++) {
-								ObjectId child = ObjectId.fromRaw(valueBytes, i*20+1);
-								if (!descendants.contains(child)) {
-									descendants.add(child);
-									stack.push(child);
-								}
-							}
-						}
+			public CommitGraph compute(Transaction txn) {
+				CommitGraph commitGraph = new CommitGraph();
+				try (Cursor cursor = store.openCursor(txn)) {
+					while (cursor.getNext()) {
+						ObjectId parent = ObjectId.fromRaw(cursor.getKey().getBytesUnsafe());
+						byte[] valueBytes = cursor.getValue().getBytesUnsafe();
+						int valueLength = cursor.getValue().getLength();
+						
+						// Skip the flag byte of collected commits
+						int offset = valueLength % 20; 
+						for (int i=0; i<valueLength/20; i++) 
+							commitGraph.addChild(parent, ObjectId.fromRaw(valueBytes, offset+i*20));
 					}
 				}
-				
-				return descendants;
+				return commitGraph;
 			}
 			
 		});
@@ -1093,6 +1182,7 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 			filesCache.remove(projectId);
 			totalCommitCountCache.remove(projectId);
 			usersCache.remove(projectId);
+			commitGraphCache.invalidate(projectId);
 		}
 	}
 	
@@ -1152,6 +1242,13 @@ public class DefaultCommitInfoManager extends AbstractEnvironmentManager impleme
 		}
 	}
 	
+	@Listen
+	@Override
+	public void on(SystemStopping event) {
+		deltaExecutor.shutdownNow();
+		super.on(event);
+	}
+	
 	@Sessional
 	@Listen
 	public void on(RefUpdated event) {
@@ -29,7 +29,6 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.Stack;
-import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.annotation.Nullable;
@@ -57,8 +56,6 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 
-import io.onedev.commons.utils.FileUtils;
-import io.onedev.commons.utils.LockUtils;
 import io.onedev.commons.utils.StringUtils;
 import io.onedev.server.OneDev;
 import io.onedev.server.buildspec.BuildSpec;
@@ -79,6 +76,7 @@ import io.onedev.server.model.support.build.actionauthorization.CloseMilestoneAu
 import io.onedev.server.model.support.build.actionauthorization.CreateTagAuthorization;
 import io.onedev.server.model.support.inputspec.SecretInput;
 import io.onedev.server.search.entity.EntityCriteria;
+import io.onedev.server.storage.ArtifactStorageManager;
 import io.onedev.server.storage.StorageManager;
 import io.onedev.server.util.CollectionUtils;
 import io.onedev.server.util.ComponentContext;
@@ -801,25 +799,9 @@ public class Build extends AbstractEntity implements Referenceable {
 	}
 	
 	public void publishArtifacts(File workspaceDir, String artifacts) {
-		LockUtils.write(getArtifactsLockKey(), new Callable<Void>() {
-
-			@Override
-			public Void call() throws Exception {
-				File artifactsDir = getArtifactsDir();
-				FileUtils.createDir(artifactsDir);
-				PatternSet patternSet = PatternSet.parse(artifacts);
-				int baseLen = workspaceDir.getAbsolutePath().length() + 1;
-				for (File file: patternSet.listFiles(workspaceDir)) {
-					try {
-						FileUtils.copyFile(file, new File(artifactsDir, file.getAbsolutePath().substring(baseLen)));
-					} catch (IOException e) {
-						throw new RuntimeException(e);
-					}
-				}
-				return null;
-			}
-			
-		});
+		PatternSet patternSet = PatternSet.parse(artifacts);
+		OneDev.getInstance(ArtifactStorageManager.class).publish(this, workspaceDir, 
+				patternSet.listFiles(workspaceDir));
 	}
 	
 	@Nullable
@@ -0,0 +1,544 @@
+package io.onedev.server.notification;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+
+import javax.annotation.Nullable;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.lang.SerializationUtils;
+import org.quartz.ScheduleBuilder;
+import org.quartz.SimpleScheduleBuilder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.onedev.commons.launcher.loader.Listen;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.event.ProjectEvent;
+import io.onedev.server.event.entity.EntityPersisted;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.infomanager.AbstractEnvironmentManager;
+import io.onedev.server.model.Project;
+import io.onedev.server.model.support.WebHook;
+import io.onedev.server.persistence.TransactionManager;
+import io.onedev.server.persistence.annotation.Sessional;
+import io.onedev.server.persistence.annotation.Transactional;
+import io.onedev.server.storage.StorageManager;
+import io.onedev.server.util.Pair;
+import io.onedev.server.util.schedule.SchedulableTask;
+import io.onedev.server.util.schedule.TaskScheduler;
+import jetbrains.exodus.ArrayByteIterable;
+import jetbrains.exodus.ByteIterable;
+import jetbrains.exodus.env.Cursor;
+import jetbrains.exodus.env.Environment;
+import jetbrains.exodus.env.Store;
+
+/**
+ * Web hook deliveries are written to a per-project outbox store before being sent, and
+ * are removed from the outbox only after being delivered or given up, so that pending
+ * deliveries survive server restart. Deliveries are queued per endpoint (project and post 
+ * url), and each endpoint has its own concurrency limit and circuit breaker, so that a 
+ * slow or unavailable endpoint does not hold up deliveries to others. Web hook secrets 
+ * are not written to the outbox, and are kept with endpoints instead.
+ */
+@Singleton
+public class DefaultWebHookManager extends AbstractEnvironmentManager implements WebHookManager, SchedulableTask {
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultWebHookManager.class);
+
+	private static final int INFO_VERSION = 1;
+
+	private static final String INFO_DIR = "webHook";
+
+	private static final String OUTBOX_STORE = "outbox";
+
+	static final int ENDPOINT_CONCURRENCY = 2;
+
+	static final int BATCH_SIZE = 20;
+
+	static final int MAX_ATTEMPTS = 10;
+
+	static final long INITIAL_RETRY_DELAY = 10*1000L;
+
+	static final long MAX_RETRY_DELAY = 3600*1000L;
+
+	static final int CIRCUIT_BREAK_THRESHOLD = 5;
+
+	static final long CIRCUIT_BREAK_PERIOD = 60*1000L;
+
+	private static final int MAX_RECENT_DELIVERIES = 100;
+
+	private final ObjectMapper mapper;
+
+	private final ExecutorService executorService;
+
+	private final StorageManager storageManager;
+
+	private final ProjectManager projectManager;
+
+	private final TaskScheduler taskScheduler;
+
+	private final TransactionManager transactionManager;
+
+	private final WebHookSender sender = new WebHookSender(ENDPOINT_CONCURRENCY);
+
+	// keyed by project id and post url
+	private final Map<Pair<Long, String>, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+	private final Set<Long> removedProjectIds = ConcurrentHashMap.newKeySet();
+
+	private volatile boolean stopping;
+
+	private String taskId;
+
+	@Inject
+	public DefaultWebHookManager(ObjectMapper mapper, ExecutorService executorService,
+			StorageManager storageManager, ProjectManager projectManager, TaskScheduler taskScheduler, 
+			TransactionManager transactionManager) {
+		this.mapper = mapper;
+		this.executorService = executorService;
+		this.storageManager = storageManager;
+		this.projectManager = projectManager;
+		this.taskScheduler = taskScheduler;
+		this.transactionManager = transactionManager;
+	}
+
+	@Override
+	protected File getEnvDir(String envKey) {
+		return new File(storageManager.getProjectInfoDir(Long.valueOf(envKey)), INFO_DIR);
+	}
+
+	@Override
+	protected int getEnvVersion() {
+		return INFO_VERSION;
+	}
+
+	private Endpoint getEndpoint(Long projectId, WebHook webHook) {
+		Endpoint endpoint = endpoints.computeIfAbsent(new Pair<>(projectId, webHook.getPostUrl()), 
+				k -> new Endpoint(webHook.getSecret()));
+		endpoint.setSecret(webHook.getSecret());
+		return endpoint;
+	}
+
+	@Nullable
+	private WebHook findWebHook(Project project, String postUrl) {
+		for (WebHook webHook: project.getWebHooks()) {
+			if (webHook.getPostUrl().equals(postUrl))
+				return webHook;
+		}
+		return null;
+	}
+
+	private ByteIterable getOutboxKey(WebHookDelivery delivery) {
+		return new ArrayByteIterable(delivery.getId().getBytes(StandardCharsets.UTF_8));
+	}
+
+	void writeOutbox(Long projectId, Collection<WebHookDelivery> deliveries) {
+		if (removedProjectIds.contains(projectId))
+			return;
+		Environment env = getEnv(projectId.toString());
+		Store store = getStore(env, OUTBOX_STORE);
+		env.executeInTransaction(txn -> {
+			for (WebHookDelivery delivery: deliveries) {
+				store.put(txn, getOutboxKey(delivery),
+						new ArrayByteIterable(SerializationUtils.serialize(delivery)));
+			}
+		});
+	}
+
+	void removeFromOutbox(WebHookDelivery delivery) {
+		if (removedProjectIds.contains(delivery.getProjectId()))
+			return;
+		Environment env = getEnv(delivery.getProjectId().toString());
+		Store store = getStore(env, OUTBOX_STORE);
+		env.executeInTransaction(txn -> store.delete(txn, getOutboxKey(delivery)));
+	}
+
+	List<WebHookDelivery> readOutbox(Long projectId) {
+		Environment env = getEnv(projectId.toString());
+		Store store = getStore(env, OUTBOX_STORE);
+		return env.computeInReadonlyTransaction(txn -> {
+			List<WebHookDelivery> deliveries = new ArrayList<>();
+			try (Cursor cursor = store.openCursor(txn)) {
+				while (cursor.getNext()) {
+					ByteIterable value = cursor.getValue();
+					byte[] bytes = Arrays.copyOf(value.getBytesUnsafe(), value.getLength());
+					deliveries.add((WebHookDelivery) SerializationUtils.deserialize(bytes));
+				}
+			}
+			return deliveries;
+		});
+	}
+
+	@Sessional
+	@Listen
+	public void on(ProjectEvent event) {
+		String jsonOfEvent;
+		try {
+			jsonOfEvent = mapper.writeValueAsString(event);
+		} catch (JsonProcessingException e) {
+			throw new RuntimeException(e);
+		}
+
+		Long projectId = event.getProject().getId();
+		Map<WebHookDelivery, WebHook> deliveries = new LinkedHashMap<>();
+		for (WebHook webHook: event.getProject().getWebHooks()) {
+			for (WebHook.EventType eventType: webHook.getEventTypes()) {
+				if (eventType.includes(event)) {
+					deliveries.put(new WebHookDelivery(projectId, webHook.getPostUrl(),
+							eventType.name(), jsonOfEvent), webHook);
+					break;
+				}
+			}
+		}
+
+		if (!deliveries.isEmpty()) {
+			writeOutbox(projectId, deliveries.keySet());
+			for (Map.Entry<WebHookDelivery, WebHook> entry: deliveries.entrySet()) {
+				Endpoint endpoint = getEndpoint(projectId, entry.getValue());
+				endpoint.queue(entry.getKey());
+				dispatch(endpoint);
+			}
+		}
+	}
+
+	@Transactional
+	@Listen
+	public void on(EntityPersisted event) {
+		if (event.getEntity() instanceof Project) {
+			Project project = (Project) event.getEntity();
+			Long projectId = project.getId();
+			Map<String, String> secrets = new HashMap<>();
+			for (WebHook webHook: project.getWebHooks())
+				secrets.put(webHook.getPostUrl(), webHook.getSecret());
+			transactionManager.runAfterCommit(new Runnable() {
+
+				@Override
+				public void run() {
+					syncEndpoints(projectId, secrets);
+				}
+				
+			});
+		}
+	}
+
+	/*
+	 * Drop endpoints of removed web hooks together with their pending deliveries, and 
+	 * update secrets of remaining endpoints
+	 * 
+	 * @param secrets
+	 * 			map of post url to secret of current web hooks of the project
+	 */
+	private void syncEndpoints(Long projectId, Map<String, String> secrets) {
+		Iterator<Map.Entry<Pair<Long, String>, Endpoint>> it = endpoints.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Pair<Long, String>, Endpoint> entry = it.next();
+			if (entry.getKey().getFirst().equals(projectId)) {
+				String secret = secrets.get(entry.getKey().getSecond());
+				if (secret != null) {
+					entry.getValue().setSecret(secret);
+				} else {
+					it.remove();
+					for (WebHookDelivery delivery: entry.getValue().clear())
+						removeFromOutbox(delivery);
+				}
+			}
+		}
+	}
+
+	private void dispatch(Endpoint endpoint) {
+		if (stopping)
+			return;
+		List<WebHookDelivery> batch;
+		while (!(batch = endpoint.takeBatch(System.currentTimeMillis())).isEmpty()) {
+			List<WebHookDelivery> finalBatch = batch;
+			executorService.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					deliver(endpoint, finalBatch);
+				}
+
+			});
+		}
+	}
+
+	/*
+	 * Deliveries in a batch are sent one after another so that they reuse the same
+	 * kept-alive connection
+	 */
+	private void deliver(Endpoint endpoint, List<WebHookDelivery> batch) {
+		try {
+			Iterator<WebHookDelivery> it = batch.iterator();
+			while (it.hasNext() && !stopping && !endpoint.isCircuitOpen(System.currentTimeMillis())) {
+				WebHookDelivery delivery = it.next();
+				it.remove();
+
+				long time = System.currentTimeMillis();
+				Integer responseCode = null;
+				String error = null;
+				try {
+					responseCode = sender.send(delivery.getPostUrl(), endpoint.getSecret(), delivery.getPayload());
+					if (responseCode < 200 || responseCode >= 300)
+						error = "Unexpected response code: " + responseCode;
+				} catch (Exception e) {
+					error = e.getMessage() != null? e.getMessage(): e.getClass().getName();
+				}
+				delivery.onAttempt(responseCode, error);
+
+				long now = System.currentTimeMillis();
+				boolean retry = false;
+				try {
+					if (error == null) {
+						endpoint.onDelivered(delivery, now - time);
+						removeFromOutbox(delivery);
+					} else if (endpoint.onFailed(delivery, now)) {
+						logger.error("Giving up web hook delivery (url: {}, attempts: {}, error: {})",
+								delivery.getPostUrl(), delivery.getAttempts(), error);
+						removeFromOutbox(delivery);
+					} else {
+						retry = true;
+						writeOutbox(delivery.getProjectId(), Arrays.asList(delivery));
+					}
+				} catch (Exception e) {
+					if (!stopping)
+						logger.error("Error updating web hook outbox", e);
+				}
+				
+				// Queue for retry only after outbox is updated, so that the retry never races with the update 
+				if (retry)
+					endpoint.queue(delivery);
+			}
+		} finally {
+			endpoint.release(batch);
+		}
+		dispatch(endpoint);
+	}
+
+	@Override
+	public WebHookStatus getStatus(Project project, String postUrl) {
+		Endpoint endpoint = endpoints.get(new Pair<>(project.getId(), postUrl));
+		if (endpoint != null)
+			return endpoint.getStatus(System.currentTimeMillis());
+		else
+			return new WebHookStatus(0, 0, 0, 0, 0, null, new ArrayList<>());
+	}
+
+	@Sessional
+	@Listen
+	public void on(SystemStarted event) {
+		int numOfPending = 0;
+		for (Project project: projectManager.query()) {
+			/*
+			 * Outbox only exists for projects having triggered web hooks. Do not open it 
+			 * for other projects as that creates the store. Also close loaded outbox as it 
+			 * will be opened again only if there are deliveries to update  
+			 */
+			String envKey = project.getId().toString();
+			if (getEnvDir(envKey).exists()) {
+				for (WebHookDelivery delivery: readOutbox(project.getId())) {
+					WebHook webHook = findWebHook(project, delivery.getPostUrl());
+					if (webHook != null) {
+						getEndpoint(project.getId(), webHook).queue(delivery);
+						numOfPending++;
+					} else {
+						removeFromOutbox(delivery);
+					}
+				}
+				removeEnv(envKey);
+			}
+		}
+		if (numOfPending != 0)
+			logger.info("Loaded {} pending web hook deliveries", numOfPending);
+
+		for (Endpoint endpoint: endpoints.values())
+			dispatch(endpoint);
+		taskId = taskScheduler.schedule(this);
+	}
+
+	@Listen
+	@Override
+	public void on(SystemStopping event) {
+		stopping = true;
+		if (taskId != null)
+			taskScheduler.unschedule(taskId);
+		try {
+			sender.close();
+		} catch (IOException e) {
+		}
+		super.on(event);
+	}
+
+	@Listen
+	public void on(EntityRemoved event) {
+		if (event.getEntity() instanceof Project) {
+			Long projectId = event.getEntity().getId();
+			removedProjectIds.add(projectId);
+			endpoints.keySet().removeIf(it -> it.getFirst().equals(projectId));
+			removeEnv(projectId.toString());
+		}
+	}
+
+	@Override
+	public void execute() {
+		// pick up deliveries due for retry, and endpoints whose circuit can be closed again
+		for (Endpoint endpoint: endpoints.values())
+			dispatch(endpoint);
+	}
+
+	@Override
+	public ScheduleBuilder<?> getScheduleBuilder() {
+		return SimpleScheduleBuilder.repeatSecondlyForever(5);
+	}
+
+	static long getRetryDelay(int attempts) {
+		return Math.min(INITIAL_RETRY_DELAY << Math.min(attempts-1, 20), MAX_RETRY_DELAY);
+	}
+	
+	static class Endpoint {
+
+		private volatile String secret;
+		
+		private final PriorityQueue<WebHookDelivery> pendingDeliveries =
+				new PriorityQueue<>(Comparator.comparing(WebHookDelivery::getNextAttemptDate));
+
+		private final Deque<WebHookDeliveryInfo> recentDeliveries = new ArrayDeque<>();
+
+		private int running;
+
+		private int consecutiveFailures;
+
+		private long circuitOpenUntil;
+
+		private long deliveredCount;
+
+		private long failedCount;
+
+		private long totalLatency;
+
+		Endpoint(String secret) {
+			this.secret = secret;
+		}
+		
+		String getSecret() {
+			return secret;
+		}
+		
+		void setSecret(String secret) {
+			this.secret = secret;
+		}
+		
+		synchronized void queue(WebHookDelivery delivery) {
+			pendingDeliveries.add(delivery);
+		}
+
+		synchronized List<WebHookDelivery> clear() {
+			List<WebHookDelivery> deliveries = new ArrayList<>(pendingDeliveries);
+			pendingDeliveries.clear();
+			return deliveries;
+		}
+
+		synchronized boolean isCircuitOpen(long now) {
+			return now < circuitOpenUntil;
+		}
+
+		/*
+		 * Take due deliveries to send if concurrency limit and circuit breaker allow. When
+		 * circuit is half open (break period passed but last delivery still failed), only
+		 * a single delivery is let through to probe the endpoint
+		 */
+		synchronized List<WebHookDelivery> takeBatch(long now) {
+			List<WebHookDelivery> batch = new ArrayList<>();
+			boolean halfOpen = consecutiveFailures >= CIRCUIT_BREAK_THRESHOLD;
+			int concurrency = halfOpen? 1: ENDPOINT_CONCURRENCY;
+			int batchSize = halfOpen? 1: BATCH_SIZE;
+			if (running < concurrency && now >= circuitOpenUntil) {
+				while (batch.size() < batchSize && !pendingDeliveries.isEmpty()
+						&& pendingDeliveries.peek().getNextAttemptDate().getTime() <= now) {
+					batch.add(pendingDeliveries.poll());
+				}
+				if (!batch.isEmpty())
+					running++;
+			}
+			return batch;
+		}
+
+		synchronized void release(List<WebHookDelivery> unsentDeliveries) {
+			running--;
+			pendingDeliveries.addAll(unsentDeliveries);
+		}
+
+		synchronized void onDelivered(WebHookDelivery delivery, long latency) {
+			consecutiveFailures = 0;
+			circuitOpenUntil = 0;
+			deliveredCount++;
+			totalLatency += latency;
+			delivery.setStatus(WebHookDelivery.Status.DELIVERED);
+			addRecentDelivery(delivery);
+		}
+
+		/*
+		 * Give up failed delivery if max attempts reached, otherwise schedule it for retry with 
+		 * exponential back off. Caller should queue the delivery again if it is not given up
+		 * 
+		 * @return true if delivery is given up
+		 */
+		synchronized boolean onFailed(WebHookDelivery delivery, long now) {
+			consecutiveFailures++;
+			if (consecutiveFailures >= CIRCUIT_BREAK_THRESHOLD)
+				circuitOpenUntil = now + CIRCUIT_BREAK_PERIOD;
+			if (delivery.getAttempts() >= MAX_ATTEMPTS) {
+				delivery.setStatus(WebHookDelivery.Status.FAILED);
+				failedCount++;
+				addRecentDelivery(delivery);
+				return true;
+			} else {
+				delivery.setNextAttemptDate(new Date(now + getRetryDelay(delivery.getAttempts())));
+				return false;
+			}
+		}
+
+		// record a snapshot as the delivery object is still updated by delivering threads 
+		private void addRecentDelivery(WebHookDelivery delivery) {
+			recentDeliveries.addFirst(new WebHookDeliveryInfo(delivery));
+			if (recentDeliveries.size() > MAX_RECENT_DELIVERIES)
+				recentDeliveries.removeLast();
+		}
+
+		synchronized WebHookStatus getStatus(long now) {
+			Date circuitOpenUntilDate;
+			if (now < circuitOpenUntil)
+				circuitOpenUntilDate = new Date(circuitOpenUntil);
+			else
+				circuitOpenUntilDate = null;
+			long averageLatency = deliveredCount != 0? totalLatency / deliveredCount: 0;
+			return new WebHookStatus(pendingDeliveries.size(), running, deliveredCount, failedCount,
+					averageLatency, circuitOpenUntilDate, new ArrayList<>(recentDeliveries));
+		}
+
+	}
+
+}
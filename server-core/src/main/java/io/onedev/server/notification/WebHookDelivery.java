@@ -0,0 +1,113 @@
+package io.onedev.server.notification;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+public class WebHookDelivery implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public enum Status {PENDING, DELIVERED, FAILED};
+
+	private final String id = UUID.randomUUID().toString();
+
+	private final Long projectId;
+
+	// web hook is referenced by project and post url, and its secret is resolved when sending 
+	private final String postUrl;
+
+	private final String eventType;
+
+	private final String payload;
+
+	private final Date createDate = new Date();
+
+	private Status status = Status.PENDING;
+
+	private int attempts;
+
+	private Date nextAttemptDate = createDate;
+
+	private Date lastAttemptDate;
+
+	private Integer lastResponseCode;
+
+	private String lastError;
+
+	public WebHookDelivery(Long projectId, String postUrl, String eventType, String payload) {
+		this.projectId = projectId;
+		this.postUrl = postUrl;
+		this.eventType = eventType;
+		this.payload = payload;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	public Long getProjectId() {
+		return projectId;
+	}
+
+	public String getPostUrl() {
+		return postUrl;
+	}
+
+	public String getEventType() {
+		return eventType;
+	}
+
+	public String getPayload() {
+		return payload;
+	}
+
+	public Date getCreateDate() {
+		return createDate;
+	}
+
+	public Status getStatus() {
+		return status;
+	}
+
+	public void setStatus(Status status) {
+		this.status = status;
+	}
+
+	public int getAttempts() {
+		return attempts;
+	}
+
+	public Date getNextAttemptDate() {
+		return nextAttemptDate;
+	}
+
+	public void setNextAttemptDate(Date nextAttemptDate) {
+		this.nextAttemptDate = nextAttemptDate;
+	}
+
+	@Nullable
+	public Date getLastAttemptDate() {
+		return lastAttemptDate;
+	}
+
+	@Nullable
+	public Integer getLastResponseCode() {
+		return lastResponseCode;
+	}
+
+	@Nullable
+	public String getLastError() {
+		return lastError;
+	}
+
+	public void onAttempt(@Nullable Integer responseCode, @Nullable String error) {
+		attempts++;
+		lastAttemptDate = new Date();
+		lastResponseCode = responseCode;
+		lastError = error;
+	}
+
+}
@@ -0,0 +1,71 @@
+package io.onedev.server.notification;
+
+import java.io.Serializable;
+import java.util.Date;
+
+import javax.annotation.Nullable;
+
+/**
+ * Detached snapshot of a web hook delivery for display. It does not contain secret and 
+ * payload of the delivery, and is not affected by further delivery attempts.
+ */
+public class WebHookDeliveryInfo implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final String eventType;
+
+	private final Date createDate;
+
+	private final WebHookDelivery.Status status;
+
+	private final int attempts;
+
+	private final Date lastAttemptDate;
+
+	private final Integer lastResponseCode;
+
+	private final String lastError;
+
+	public WebHookDeliveryInfo(WebHookDelivery delivery) {
+		eventType = delivery.getEventType();
+		createDate = delivery.getCreateDate();
+		status = delivery.getStatus();
+		attempts = delivery.getAttempts();
+		lastAttemptDate = delivery.getLastAttemptDate();
+		lastResponseCode = delivery.getLastResponseCode();
+		lastError = delivery.getLastError();
+	}
+
+	public String getEventType() {
+		return eventType;
+	}
+
+	public Date getCreateDate() {
+		return createDate;
+	}
+
+	public WebHookDelivery.Status getStatus() {
+		return status;
+	}
+
+	public int getAttempts() {
+		return attempts;
+	}
+
+	@Nullable
+	public Date getLastAttemptDate() {
+		return lastAttemptDate;
+	}
+
+	@Nullable
+	public Integer getLastResponseCode() {
+		return lastResponseCode;
+	}
+
+	@Nullable
+	public String getLastError() {
+		return lastError;
+	}
+
+}
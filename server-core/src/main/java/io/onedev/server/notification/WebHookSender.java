@@ -0,0 +1,90 @@
+package io.onedev.server.notification;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+
+import org.apache.http.HttpEntity;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Posts web hook payloads with a shared pooled http client, so that connections to
+ * the same endpoint are kept alive and reused across deliveries.
+ */
+public class WebHookSender implements Closeable {
+
+	public static final String SIGNATURE_HEAD = "X-OneDev-Signature";
+
+	private static final int MAX_CONNECTIONS = 200;
+
+	private static final int CONNECT_TIMEOUT = 10000;
+
+	private static final int SOCKET_TIMEOUT = 30000;
+
+	private static final long IDLE_CONNECTION_TIMEOUT = 60;
+
+	private final PoolingHttpClientConnectionManager connectionManager;
+
+	private final CloseableHttpClient client;
+
+	public WebHookSender(int maxConnectionsPerEndpoint) {
+		connectionManager = new PoolingHttpClientConnectionManager(IDLE_CONNECTION_TIMEOUT, TimeUnit.SECONDS);
+		connectionManager.setMaxTotal(MAX_CONNECTIONS);
+		connectionManager.setDefaultMaxPerRoute(maxConnectionsPerEndpoint);
+
+		RequestConfig requestConfig = RequestConfig.custom()
+				.setConnectTimeout(CONNECT_TIMEOUT)
+				.setConnectionRequestTimeout(CONNECT_TIMEOUT)
+				.setSocketTimeout(SOCKET_TIMEOUT)
+				.build();
+
+		client = HttpClients.custom()
+				.setConnectionManager(connectionManager)
+				.setDefaultRequestConfig(requestConfig)
+				.evictIdleConnections(IDLE_CONNECTION_TIMEOUT, TimeUnit.SECONDS)
+				.build();
+	}
+
+	/**
+	 * Post specified payload to specified url
+	 *
+	 * @return
+	 * 			http status code of the response
+	 * @throws IOException
+	 * 			if the endpoint can not be reached
+	 */
+	public int send(String postUrl, String secret, String payload) throws IOException {
+	    HttpPost httpPost = new HttpPost(postUrl);
+
+	    httpPost.setEntity(new StringEntity(payload, StandardCharsets.UTF_8.name()));
+	    httpPost.setHeader(HttpHeaders.ACCEPT, MediaType.APPLICATION_JSON);
+	    httpPost.setHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON);
+	    httpPost.setHeader(HttpHeaders.ACCEPT_CHARSET, StandardCharsets.UTF_8.name());
+	    httpPost.setHeader(SIGNATURE_HEAD, secret);
+
+	    try (CloseableHttpResponse response = client.execute(httpPost)) {
+	    	// consume the entity so that connection can be returned to the pool
+	    	HttpEntity responseEntity = response.getEntity();
+	    	if (responseEntity != null)
+	    		EntityUtils.consume(responseEntity);
+	    	return response.getStatusLine().getStatusCode();
+	    }
+	}
+
+	@Override
+	public void close() throws IOException {
+		client.close();
+	}
+
+}
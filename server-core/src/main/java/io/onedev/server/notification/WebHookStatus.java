@@ -0,0 +1,92 @@
+package io.onedev.server.notification;
+
+import java.io.Serializable;
+import java.util.Date;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+public class WebHookStatus implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int pendingCount;
+	
+	private final int runningCount;
+	
+	private final long deliveredCount;
+	
+	private final long failedCount;
+	
+	private final long averageLatency;
+	
+	private final Date circuitOpenUntil;
+	
+	private final List<WebHookDeliveryInfo> recentDeliveries;
+	
+	public WebHookStatus(int pendingCount, int runningCount, long deliveredCount, long failedCount, 
+			long averageLatency, @Nullable Date circuitOpenUntil, List<WebHookDeliveryInfo> recentDeliveries) {
+		this.pendingCount = pendingCount;
+		this.runningCount = runningCount;
+		this.deliveredCount = deliveredCount;
+		this.failedCount = failedCount;
+		this.averageLatency = averageLatency;
+		this.circuitOpenUntil = circuitOpenUntil;
+		this.recentDeliveries = recentDeliveries;
+	}
+
+	/**
+	 * @return
+	 * 			number of deliveries waiting to be sent or retried
+	 */
+	public int getPendingCount() {
+		return pendingCount;
+	}
+
+	/**
+	 * @return
+	 * 			number of delivery batches being sent
+	 */
+	public int getRunningCount() {
+		return runningCount;
+	}
+
+	public long getDeliveredCount() {
+		return deliveredCount;
+	}
+
+	/**
+	 * @return
+	 * 			number of deliveries given up after all retries failed
+	 */
+	public long getFailedCount() {
+		return failedCount;
+	}
+
+	/**
+	 * @return
+	 * 			average latency of successful deliveries in milliseconds
+	 */
+	public long getAverageLatency() {
+		return averageLatency;
+	}
+
+	/**
+	 * @return
+	 * 			time until which deliveries to this endpoint are suspended due to consecutive 
+	 * 			failures, or <tt>null</tt> if deliveries are not suspended
+	 */
+	@Nullable
+	public Date getCircuitOpenUntil() {
+		return circuitOpenUntil;
+	}
+
+	/**
+	 * @return
+	 * 			recent deliveries, with latest first
+	 */
+	public List<WebHookDeliveryInfo> getRecentDeliveries() {
+		return recentDeliveries;
+	}
+	
+}
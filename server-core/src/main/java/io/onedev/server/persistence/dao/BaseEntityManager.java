@@ -4,6 +4,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
 
 import org.hibernate.Session;
 import org.hibernate.query.Query;
@@ -14,6 +16,8 @@ import io.onedev.server.util.ReflectionUtils;
 
 public abstract class BaseEntityManager<T extends AbstractEntity> implements EntityManager<T> {
 
+	private static final int SCROLL_BATCH_SIZE = 100;
+	
 	private final Class<T> entityClass;
 	
 	protected final Dao dao;
@@ -126,6 +130,32 @@ public abstract class BaseEntityManager<T extends AbstractEntity> implements Ent
 		return dao.count(detachedCriteria);
 	}
 
+	/**
+	 * Iterate over entities batch by batch with constant memory. JDBC drivers do not reliably 
+	 * stream a scrollable result (PostgreSQL ignores fetch size in auto commit mode, and MySQL 
+	 * only streams with a special fetch size), so each batch is queried separately by seeking 
+	 * after id of last entity of previous batch. Session is cleared after each batch, so 
+	 * consumer should not hold consumed entities, and entities loaded before calling this 
+	 * method should not be used afterwards
+	 * 
+	 * @param batchQuery
+	 * 			function to query a batch of entities ordered by id descending. It takes id of 
+	 * 			last entity of previous batch (<tt>null</tt> for the first batch) and max number 
+	 * 			of entities to return
+	 */
+	protected void scroll(BiFunction<Long, Integer, List<T>> batchQuery, Consumer<T> consumer) {
+		Long afterId = null;
+		List<T> entities;
+		do {
+			entities = batchQuery.apply(afterId, SCROLL_BATCH_SIZE);
+			for (T entity: entities)
+				consumer.accept(entity);
+			if (!entities.isEmpty())
+				afterId = entities.get(entities.size()-1).getId();
+			getSession().clear();
+		} while (entities.size() == SCROLL_BATCH_SIZE);
+	}
+	
 	protected Session getSession() {
 		return dao.getSession();
 	}
@@ -1,7 +1,14 @@
 package io.onedev.server.rest;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -14,15 +21,27 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.shiro.authz.UnauthorizedException;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Lists;
+
+import io.onedev.commons.utils.ExceptionUtils;
+import io.onedev.server.buildspec.job.log.LogManager;
+import io.onedev.server.buildspec.job.log.LogMatch;
 import io.onedev.server.entitymanager.BuildManager;
 import io.onedev.server.model.Build;
 import io.onedev.server.model.BuildDependence;
 import io.onedev.server.model.BuildParam;
+import io.onedev.server.persistence.SessionManager;
 import io.onedev.server.rest.annotation.Api;
 import io.onedev.server.rest.jersey.InvalidParamException;
+import io.onedev.server.rest.support.CursorPage;
+import io.onedev.server.rest.support.JsonLinesOutput;
 import io.onedev.server.rest.support.RestConstants;
 import io.onedev.server.search.entity.build.BuildQuery;
 import io.onedev.server.security.SecurityUtils;
@@ -36,11 +55,27 @@ import io.onedev.server.security.SecurityUtils;
 @Singleton
 public class BuildResource {
 
+	private static final int MAX_LOG_SEARCH_BUILDS = 10000;
+	
+	private static final int MAX_LOG_MATCHES = 10000;
+	
+	private static final int LOG_SEARCH_PAGE_SIZE = 100;
+	
 	private final BuildManager buildManager;
 	
+	private final LogManager logManager;
+	
+	private final SessionManager sessionManager;
+	
+	private final ObjectMapper objectMapper;
+	
 	@Inject
-	public BuildResource(BuildManager buildManager) {
+	public BuildResource(BuildManager buildManager, LogManager logManager, SessionManager sessionManager, 
+			ObjectMapper objectMapper) {
 		this.buildManager = buildManager;
+		this.logManager = logManager;
+		this.sessionManager = sessionManager;
+		this.objectMapper = objectMapper;
 	}
 
 	@Api(order=100)
@@ -112,6 +147,151 @@ public class BuildResource {
     	
     	return buildManager.query(null, parsedQuery, offset, count);
     }
+
+	@Api(order=610, description="Query builds with a cursor instead of an offset. Cost of getting a page does not grow with "
+			+ "number of previous pages, which makes it suitable to walk through all builds. Builds are ordered by id descending, "
+			+ "and order clauses in the query are ignored")
+	@Path("/page")
+    @GET
+    public CursorPage<Build> queryPage(
+    		@QueryParam("query") @Api(description="Syntax of this query is the same as query box in <a href='/builds'>builds page</a>", example="\"Job\" is \"ci\"") String query,
+    		@QueryParam("cursor") @Api(description="Next cursor returned by previous page. Leave empty to get the first page") String cursor,
+    		@QueryParam("count") @Api(example="100") int count) {
+
+    	if (count <= 0 || count > RestConstants.MAX_PAGE_SIZE)
+    		throw new InvalidParamException("Count should be within 1 and " + RestConstants.MAX_PAGE_SIZE);
+
+    	BuildQuery parsedQuery;
+		try {
+			parsedQuery = BuildQuery.parse(null, query, true, true);
+		} catch (Exception e) {
+			throw new InvalidParamException("Error parsing query", e);
+		}
+
+		// query one more build to know whether there is a next page
+		List<Build> builds = buildManager.queryAfter(null, parsedQuery, CursorPage.decode(cursor), count+1);
+		return CursorPage.of(builds, count, Build::getId);
+    }
+
+	@Api(order=620, description="Export all builds matching specified query as newline delimited JSON, one build per line. "
+			+ "Builds are read from database batch by batch while being exported, so there is no limit on number of exported "
+			+ "builds. Builds are ordered by id descending, and order clauses in the query are ignored")
+	@Path("/export")
+    @GET
+	@Produces(JsonLinesOutput.MEDIA_TYPE)
+    public StreamingOutput export(
+    		@QueryParam("query") @Api(description="Syntax of this query is the same as query box in <a href='/builds'>builds page</a>", example="\"Job\" is \"ci\"") String query) {
+    	BuildQuery parsedQuery;
+		try {
+			parsedQuery = BuildQuery.parse(null, query, true, true);
+		} catch (Exception e) {
+			throw new InvalidParamException("Error parsing query", e);
+		}
+
+		return new JsonLinesOutput<Build>(objectMapper, consumer -> buildManager.scroll(null, parsedQuery, consumer));
+    }
+	
+	@Api(order=650, exampleProvider="getLogMatchesExample", description="Search log of specified build for lines matching "
+			+ "specified regular expression. Matches are streamed as a JSON array while the log is being searched")
+	@Path("/{buildId}/log-matches")
+    @GET
+    public StreamingOutput searchLog(@PathParam("buildId") Long buildId, 
+    		@QueryParam("pattern") @Api(description="Java regular expression", example="FAILED") String pattern, 
+    		@QueryParam("maxMatches") @Api(example="100") int maxMatches) {
+		Pattern compiledPattern = parseLogSearchParams(pattern, maxMatches);
+		Build build = buildManager.load(buildId);
+    	if (!SecurityUtils.canAccessLog(build)) 
+			throw new UnauthorizedException();
+    	return newLogMatchesOutput(consumer -> logManager.search(Lists.newArrayList(build), 
+    			compiledPattern, maxMatches, consumer));
+    }
+	
+	@Api(order=660, exampleProvider="getLogMatchesExample", description="Search logs of builds matching specified query for lines "
+			+ "matching specified regular expression. Builds are loaded page by page in query order, logs of each "
+			+ "page are searched in parallel, and matches are streamed as a JSON array while searching. Builds without log access permission are ignored")
+	@Path("/log-matches")
+    @GET
+    public StreamingOutput searchLogs(
+    		@QueryParam("query") @Api(description="Syntax of this query is the same as query box in <a href='/builds'>builds page</a>", example="\"Job\" is \"ci\"") String query, 
+    		@QueryParam("count") @Api(description="Max number of builds to search, ordered by the query", example="1000") int count, 
+    		@QueryParam("pattern") @Api(description="Java regular expression", example="FAILED") String pattern, 
+    		@QueryParam("maxMatches") @Api(example="100") int maxMatches) {
+		
+    	if (count <= 0 || count > MAX_LOG_SEARCH_BUILDS)
+    		throw new InvalidParamException("Count should be within 1 and " + MAX_LOG_SEARCH_BUILDS);
+		Pattern compiledPattern = parseLogSearchParams(pattern, maxMatches);
+
+    	BuildQuery parsedQuery;
+		try {
+			parsedQuery = BuildQuery.parse(null, query, true, true);
+		} catch (Exception e) {
+			throw new InvalidParamException("Error parsing query", e);
+		}
+    	
+		return newLogMatchesOutput(consumer -> {
+			int[] numOfMatches = new int[] {0};
+			int offset = 0;
+			while (offset < count && numOfMatches[0] < maxMatches) {
+				int pageSize = Math.min(LOG_SEARCH_PAGE_SIZE, count - offset);
+				List<Build> builds = buildManager.query(null, parsedQuery, offset, pageSize);
+				List<Build> accessibleBuilds = builds.stream()
+						.filter(it->SecurityUtils.canAccessLog(it))
+						.collect(Collectors.toList());
+				logManager.search(accessibleBuilds, compiledPattern, maxMatches - numOfMatches[0], match -> {
+					numOfMatches[0]++;
+					consumer.accept(match);
+				});
+				
+				// Builds of searched page are no longer needed, do not let them pile up in session
+				sessionManager.getSession().clear();
+				
+				if (builds.size() < pageSize)
+					break;
+				offset += builds.size();
+			}
+		});
+    }
+	
+	// validate before querying builds so that invalid requests do not cost anything 
+	private Pattern parseLogSearchParams(String pattern, int maxMatches) {
+		if (StringUtils.isBlank(pattern))
+			throw new InvalidParamException("Pattern should be specified");
+		if (maxMatches <= 0 || maxMatches > MAX_LOG_MATCHES)
+			throw new InvalidParamException("Max matches should be within 1 and " + MAX_LOG_MATCHES);
+		
+		try {
+			return Pattern.compile(pattern);
+		} catch (Exception e) {
+			throw new InvalidParamException("Malformed pattern", e);
+		}
+	}
+	
+	private StreamingOutput newLogMatchesOutput(Consumer<Consumer<LogMatch>> searcher) {
+		return new StreamingOutput() {
+
+			@Override
+			public void write(OutputStream os) throws IOException {
+				try (JsonGenerator generator = objectMapper.getFactory().createGenerator(os)) {
+					generator.writeStartArray();
+					searcher.accept(match -> {
+						try {
+							generator.writeObject(match);
+							generator.flush();
+						} catch (IOException e) {
+							throw ExceptionUtils.unchecked(e);
+						}
+					});
+					generator.writeEndArray();
+				}
+			}
+			
+		};
+	}
+	
+	@SuppressWarnings("unused")
+	private static ArrayList<LogMatch> getLogMatchesExample() {
+		return Lists.newArrayList(new LogMatch(1L, 100L, 25, new Date(), "Tests run: 10, Failures: 1"));
+	}
 	
 	@Api(order=700)
 	@Path("/{buildId}")
@@ -24,10 +24,13 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.shiro.authz.UnauthorizedException;
 import org.hibernate.validator.constraints.NotEmpty;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+
 import io.onedev.server.entitymanager.IssueChangeManager;
 import io.onedev.server.entitymanager.IssueManager;
 import io.onedev.server.entitymanager.MilestoneManager;
@@ -48,6 +51,8 @@ import io.onedev.server.rest.annotation.Api;
 import io.onedev.server.rest.annotation.EntityCreate;
 import io.onedev.server.rest.annotation.EntityId;
 import io.onedev.server.rest.jersey.InvalidParamException;
+import io.onedev.server.rest.support.CursorPage;
+import io.onedev.server.rest.support.JsonLinesOutput;
 import io.onedev.server.rest.support.RestConstants;
 import io.onedev.server.search.entity.issue.IssueQuery;
 import io.onedev.server.security.SecurityUtils;
@@ -71,15 +76,18 @@ public class IssueResource {
 	
 	private final ProjectManager projectManager;
 	
+	private final ObjectMapper objectMapper;
+	
 	@Inject
 	public IssueResource(SettingManager settingManager, IssueManager issueManager, 
 			IssueChangeManager issueChangeManager, MilestoneManager milestoneManager, 
-			ProjectManager projectManager) {
+			ProjectManager projectManager, ObjectMapper objectMapper) {
 		this.settingManager = settingManager;
 		this.issueManager = issueManager;
 		this.issueChangeManager = issueChangeManager;
 		this.milestoneManager = milestoneManager;
 		this.projectManager = projectManager;
+		this.objectMapper = objectMapper;
 	}
 
 	@Api(order=100)
@@ -182,6 +190,49 @@ public class IssueResource {
     	return issueManager.query(null, parsedQuery, offset, count, false);
     }
 	
+	@Api(order=910, description="Query issues with a cursor instead of an offset. Cost of getting a page does not grow with "
+			+ "number of previous pages, which makes it suitable to walk through all issues. Issues are ordered by id descending, "
+			+ "and order clauses in the query are ignored")
+	@Path("/page")
+    @GET
+    public CursorPage<Issue> queryPage(
+    		@QueryParam("query") @Api(description="Syntax of this query is the same as query box in <a href='/issues'>issues page</a>", example="\"State\" is \"Open\"") String query, 
+    		@QueryParam("cursor") @Api(description="Next cursor returned by previous page. Leave empty to get the first page") String cursor, 
+    		@QueryParam("count") @Api(example="100") int count) {
+		
+    	if (count <= 0 || count > RestConstants.MAX_PAGE_SIZE)
+    		throw new InvalidParamException("Count should be within 1 and " + RestConstants.MAX_PAGE_SIZE);
+
+    	IssueQuery parsedQuery;
+		try {
+			parsedQuery = IssueQuery.parse(null, query, true, true, false, false, false);
+		} catch (Exception e) {
+			throw new InvalidParamException("Error parsing query", e);
+		}
+    	
+		// query one more issue to know whether there is a next page
+		List<Issue> issues = issueManager.queryAfter(null, parsedQuery, CursorPage.decode(cursor), count+1);
+		return CursorPage.of(issues, count, Issue::getId);
+    }
+	
+	@Api(order=920, description="Export all issues matching specified query as newline delimited JSON, one issue per line. "
+			+ "Issues are read from database batch by batch while being exported, so there is no limit on number of exported "
+			+ "issues. Issues are ordered by id descending, and order clauses in the query are ignored")
+	@Path("/export")
+    @GET
+	@Produces(JsonLinesOutput.MEDIA_TYPE)
+    public StreamingOutput export(
+    		@QueryParam("query") @Api(description="Syntax of this query is the same as query box in <a href='/issues'>issues page</a>", example="\"State\" is \"Open\"") String query) {
+    	IssueQuery parsedQuery;
+		try {
+			parsedQuery = IssueQuery.parse(null, query, true, true, false, false, false);
+		} catch (Exception e) {
+			throw new InvalidParamException("Error parsing query", e);
+		}
+    	
+		return new JsonLinesOutput<Issue>(objectMapper, consumer -> issueManager.scroll(null, parsedQuery, consumer));
+    }
+	
 	@Api(order=1000)
     @POST
     public Long create(@NotNull @Valid IssueOpenData data) {
@@ -49,6 +49,8 @@ import io.onedev.server.rest.jersey.InvalidParamException;
 import io.onedev.server.rest.support.RestConstants;
 import io.onedev.server.search.entity.project.ProjectQuery;
 import io.onedev.server.security.SecurityUtils;
+import io.onedev.server.storage.ArtifactStorageManager;
+import io.onedev.server.storage.ArtifactStorageStats;
 import io.onedev.server.util.DateUtils;
 import io.onedev.server.util.Day;
 import io.onedev.server.web.page.project.setting.ContributedProjectSetting;
@@ -66,12 +68,15 @@ public class ProjectResource {
 	
 	private final CommitInfoManager commitInfoManager;
 	
+	private final ArtifactStorageManager artifactStorageManager;
+	
 	@Inject
 	public ProjectResource(ProjectManager projectManager, MilestoneManager milestoneManager, 
-			CommitInfoManager commitInfoManager) {
+			CommitInfoManager commitInfoManager, ArtifactStorageManager artifactStorageManager) {
 		this.projectManager = projectManager;
 		this.milestoneManager = milestoneManager;
 		this.commitInfoManager = commitInfoManager;
+		this.artifactStorageManager = artifactStorageManager;
 	}
 
 	@Api(order=100)
@@ -203,6 +208,16 @@ public class ProjectResource {
     	return commitInfoManager.getTopContributors(project, count, type, sinceDay.getValue(), untilDay.getValue());
     }
 	
+	@Api(order=770, description="Get storage statistics of deduplicated build artifacts")
+	@Path("/{projectId}/artifact-storage")
+	@GET
+    public ArtifactStorageStats getArtifactStorageStats(@PathParam("projectId") Long projectId) {
+    	Project project = projectManager.load(projectId);
+    	if (!SecurityUtils.canManage(project)) 
+			throw new UnauthorizedException();
+    	return artifactStorageManager.getStats(project);
+    }
+	
 	@SuppressWarnings("unused")
 	private static String getDateExample() {
 		return DateUtils.formatISO8601Date(new Date());
@@ -18,12 +18,14 @@ import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.shiro.authz.UnauthorizedException;
 import org.eclipse.jgit.lib.ObjectId;
 import org.hibernate.validator.constraints.NotEmpty;
 import org.joda.time.DateTime;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.collect.Lists;
 
 import io.onedev.commons.utils.ExplicitException;
@@ -47,6 +49,8 @@ import io.onedev.server.rest.annotation.Api;
 import io.onedev.server.rest.annotation.EntityCreate;
 import io.onedev.server.rest.annotation.EntityId;
 import io.onedev.server.rest.jersey.InvalidParamException;
+import io.onedev.server.rest.support.CursorPage;
+import io.onedev.server.rest.support.JsonLinesOutput;
 import io.onedev.server.rest.support.RestConstants;
 import io.onedev.server.search.entity.pullrequest.PullRequestQuery;
 import io.onedev.server.security.SecurityUtils;
@@ -67,12 +71,16 @@ public class PullRequestResource {
 	
 	private final UserManager userManager;
 	
+	private final ObjectMapper objectMapper;
+	
 	@Inject
 	public PullRequestResource(PullRequestManager pullRequestManager, 
-			PullRequestChangeManager pullRequestChangeManager, UserManager userManager) {
+			PullRequestChangeManager pullRequestChangeManager, UserManager userManager, 
+			ObjectMapper objectMapper) {
 		this.pullRequestManager = pullRequestManager;
 		this.pullRequestChangeManager = pullRequestChangeManager;
 		this.userManager = userManager;
+		this.objectMapper = objectMapper;
 	}
 
 	@Api(order=100)
@@ -194,6 +202,49 @@ public class PullRequestResource {
     	
     	return pullRequestManager.query(null, parsedQuery, offset, count, false, false);
     }
+	
+	@Api(order=1110, description="Query pull requests with a cursor instead of an offset. Cost of getting a page does not grow with "
+			+ "number of previous pages, which makes it suitable to walk through all pull requests. Pull requests are ordered by "
+			+ "id descending, and order clauses in the query are ignored")
+	@Path("/page")
+    @GET
+    public CursorPage<PullRequest> queryPage(
+    		@QueryParam("query") @Api(description="Syntax of this query is the same as query box in <a href='/pull-requests'>pull requests page</a>", example="open") String query, 
+    		@QueryParam("cursor") @Api(description="Next cursor returned by previous page. Leave empty to get the first page") String cursor, 
+    		@QueryParam("count") @Api(example="100") int count) {
+		
+    	if (count <= 0 || count > RestConstants.MAX_PAGE_SIZE)
+    		throw new InvalidParamException("Count should be within 1 and " + RestConstants.MAX_PAGE_SIZE);
+
+    	PullRequestQuery parsedQuery;
+		try {
+			parsedQuery = PullRequestQuery.parse(null, query);
+		} catch (Exception e) {
+			throw new InvalidParamException("Error parsing query", e);
+		}
+    	
+		// query one more pull request to know whether there is a next page
+		List<PullRequest> requests = pullRequestManager.queryAfter(null, parsedQuery, CursorPage.decode(cursor), count+1);
+		return CursorPage.of(requests, count, PullRequest::getId);
+    }
+	
+	@Api(order=1120, description="Export all pull requests matching specified query as newline delimited JSON, one pull request "
+			+ "per line. Pull requests are read from database batch by batch while being exported, so there is no limit on number "
+			+ "of exported pull requests. Pull requests are ordered by id descending, and order clauses in the query are ignored")
+	@Path("/export")
+    @GET
+	@Produces(JsonLinesOutput.MEDIA_TYPE)
+    public StreamingOutput export(
+    		@QueryParam("query") @Api(description="Syntax of this query is the same as query box in <a href='/pull-requests'>pull requests page</a>", example="open") String query) {
+    	PullRequestQuery parsedQuery;
+		try {
+			parsedQuery = PullRequestQuery.parse(null, query);
+		} catch (Exception e) {
+			throw new InvalidParamException("Error parsing query", e);
+		}
+    	
+		return new JsonLinesOutput<PullRequest>(objectMapper, consumer -> pullRequestManager.scroll(null, parsedQuery, consumer));
+    }
 
 	@Api(order=1200)
 	@POST
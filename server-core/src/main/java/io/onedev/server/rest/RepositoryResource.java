@@ -24,6 +24,7 @@ import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
 import org.apache.commons.codec.binary.Base64;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.shiro.authz.UnauthorizedException;
 import org.eclipse.jgit.lib.Constants;
 import org.eclipse.jgit.lib.FileMode;
@@ -40,11 +41,14 @@ import org.hibernate.validator.constraints.NotEmpty;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
 
+import io.onedev.commons.utils.ExplicitException;
 import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.git.Blob;
 import io.onedev.server.git.BlobContent;
 import io.onedev.server.git.BlobEdits;
 import io.onedev.server.git.BlobIdent;
+import io.onedev.server.git.CommitPage;
+import io.onedev.server.git.CommitQueryManager;
 import io.onedev.server.git.GitUtils;
 import io.onedev.server.git.command.RevListCommand;
 import io.onedev.server.git.exception.ObjectNotFoundException;
@@ -53,6 +57,7 @@ import io.onedev.server.rest.annotation.Api;
 import io.onedev.server.rest.jersey.InvalidParamException;
 import io.onedev.server.rest.support.FileCreateOrUpdateRequest;
 import io.onedev.server.rest.support.FileEditRequest;
+import io.onedev.server.rest.support.RestConstants;
 import io.onedev.server.search.commit.CommitQuery;
 import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.util.RevisionAndPath;
@@ -67,10 +72,13 @@ public class RepositoryResource {
 	private static final int MAX_COMMITS = 10000;
 	
 	private final ProjectManager projectManager;
+	
+	private final CommitQueryManager commitQueryManager;
 
 	@Inject
-	public RepositoryResource(ProjectManager projectManager) {
+	public RepositoryResource(ProjectManager projectManager, CommitQueryManager commitQueryManager) {
 		this.projectManager = projectManager;
+		this.commitQueryManager = commitQueryManager;
 	}
 
 	@Api(order=10, description="List all branches")
@@ -257,6 +265,40 @@ public class RepositoryResource {
 		return command.call();
     }
 	
+	@Api(order=84, description="Query commits of specified project page by page. Pass cursor returned by previous page "
+			+ "to get next page. Unlike the offset based query, the commit walk is kept on server for a while after returning "
+			+ "a page, and next page continues from where it stops, so cost of getting a page does not grow with number of "
+			+ "previous pages. If the walk has expired, commits of previous pages are walked again, and an error is reported "
+			+ "if matching commits changed since previous page")
+	@Path("/{projectId}/commits/page")
+	@GET
+    public CommitPage queryCommitPage(
+			@PathParam("projectId") Long projectId, 
+    		@QueryParam("query") @Api(description="Syntax of this query is the same as query box in commits page", example="since tag(v4.0.0) until tag(v4.7.0)") String query, 
+    		@QueryParam("cursor") @Api(description="Next cursor returned by previous page. Leave empty to get the first page") String cursor, 
+    		@QueryParam("count") @Api(example="100", description="Number of commits in the page") int count) {
+		Project project = projectManager.load(projectId);
+		if (!SecurityUtils.canReadCode(project)) {
+			throw new UnauthorizedException();
+		}
+		
+    	if (count <= 0 || count > RestConstants.MAX_PAGE_SIZE)
+    		throw new InvalidParamException("Count should be within 1 and " + RestConstants.MAX_PAGE_SIZE);
+
+    	CommitQuery parsedQuery;
+		try {
+			parsedQuery = CommitQuery.parse(project, query);
+		} catch (Exception e) {
+			throw new InvalidParamException("Error parsing query", e);
+		}
+		
+		try {
+			return commitQueryManager.query(project, parsedQuery, null, StringUtils.trimToNull(cursor), count);
+		} catch (ExplicitException e) {
+			throw new InvalidParamException(e.getMessage());
+		}
+    }
+	
 	@Api(order=86, description="Get specified commit")
 	@Path("/{projectId}/commits/{commitHash}")
 	@GET
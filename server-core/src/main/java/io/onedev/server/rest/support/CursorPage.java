@@ -0,0 +1,71 @@
+package io.onedev.server.rest.support;
+
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+
+import io.onedev.server.rest.annotation.Api;
+import io.onedev.server.rest.jersey.InvalidParamException;
+
+public class CursorPage<T> implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final String CURSOR_PREFIX = "id:";
+	
+	@Api(order=100)
+	private final List<T> items;
+	
+	@Api(order=200, description="Pass this as cursor param to get next page. Absent if there are no more items")
+	private final String nextCursor;
+	
+	public CursorPage(List<T> items, @Nullable String nextCursor) {
+		this.items = items;
+		this.nextCursor = nextCursor;
+	}
+
+	public List<T> getItems() {
+		return items;
+	}
+
+	@Nullable
+	public String getNextCursor() {
+		return nextCursor;
+	}
+	
+	/**
+	 * Create a page from items queried with one more than requested count, so that we 
+	 * know whether there is a next page without an extra count query
+	 */
+	public static <T> CursorPage<T> of(List<T> items, int count, Function<T, Long> idGetter) {
+		if (items.size() > count) {
+			List<T> pageItems = items.subList(0, count);
+			return new CursorPage<>(pageItems, encode(idGetter.apply(pageItems.get(count-1))));
+		} else {
+			return new CursorPage<>(items, null);
+		}
+	}
+	
+	public static String encode(Long id) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(
+				(CURSOR_PREFIX + id).getBytes(StandardCharsets.UTF_8));
+	}
+	
+	@Nullable
+	public static Long decode(@Nullable String cursor) {
+		if (cursor == null || cursor.length() == 0)
+			return null;
+		try {
+			String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+			if (decoded.startsWith(CURSOR_PREFIX))
+				return Long.valueOf(decoded.substring(CURSOR_PREFIX.length()));
+		} catch (IllegalArgumentException e) {
+		}
+		throw new InvalidParamException("Malformed cursor");
+	}
+	
+}
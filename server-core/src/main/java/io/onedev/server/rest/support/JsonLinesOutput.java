@@ -0,0 +1,55 @@
+package io.onedev.server.rest.support;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.Consumer;
+
+import javax.ws.rs.core.StreamingOutput;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import io.onedev.commons.utils.ExceptionUtils;
+
+/**
+ * Streams objects as newline delimited JSON, one object per line. Objects are written 
+ * while being produced so that exporting large result set does not hold it in memory
+ */
+public class JsonLinesOutput<T> implements StreamingOutput {
+
+	public static final String MEDIA_TYPE = "application/x-ndjson";
+	
+	private static final int FLUSH_INTERVAL = 100;
+	
+	private final ObjectMapper objectMapper;
+	
+	private final Consumer<Consumer<T>> producer;
+	
+	/**
+	 * @param producer
+	 * 			producer to feed objects to the consumer passed to it
+	 */
+	public JsonLinesOutput(ObjectMapper objectMapper, Consumer<Consumer<T>> producer) {
+		this.objectMapper = objectMapper;
+		this.producer = producer;
+	}
+	
+	@Override
+	public void write(OutputStream os) throws IOException {
+		try (JsonGenerator generator = objectMapper.getFactory().createGenerator(os)) {
+			generator.setRootValueSeparator(null);
+			int[] count = new int[] {0};
+			producer.accept(object -> {
+				try {
+					generator.writeObject(object);
+					generator.writeRaw('\n');
+					if (++count[0] % FLUSH_INTERVAL == 0)
+						generator.flush();
+				} catch (IOException e) {
+					throw ExceptionUtils.unchecked(e);
+				}
+			});
+		}
+	}
+
+}
@@ -20,11 +20,22 @@ import static io.onedev.server.search.code.IndexConstants.NGRAM_SIZE;
 import java.io.File;
 import java.io.IOException;
 import java.io.Serializable;
+import java.nio.channels.ClosedByInterruptException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Deque;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicReference;
 
+import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
@@ -42,15 +53,23 @@ import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.SearcherManager;
 import org.apache.lucene.search.SimpleCollector;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.IOUtils;
 import org.apache.wicket.request.cycle.RequestCycle;
 import org.eclipse.jgit.lib.AnyObjectId;
 import org.eclipse.jgit.lib.Constants;
@@ -61,6 +80,8 @@ import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.treewalk.filter.TreeFilter;
+import org.quartz.ScheduleBuilder;
+import org.quartz.SimpleScheduleBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -76,14 +97,20 @@ import io.onedev.commons.utils.FileUtils;
 import io.onedev.commons.utils.StringUtils;
 import io.onedev.server.entitymanager.ProjectManager;
 import io.onedev.server.event.RefUpdated;
+import io.onedev.server.event.entity.EntityRemoved;
 import io.onedev.server.event.system.SystemStarted;
+import io.onedev.server.event.system.SystemStopping;
 import io.onedev.server.model.Project;
 import io.onedev.server.persistence.SessionManager;
 import io.onedev.server.persistence.annotation.Sessional;
+import io.onedev.server.persistence.annotation.Transactional;
 import io.onedev.server.storage.StorageManager;
 import io.onedev.server.util.ContentDetector;
 import io.onedev.server.util.IndexResult;
+import io.onedev.server.util.ServerConfig;
 import io.onedev.server.util.concurrent.Prioritized;
+import io.onedev.server.util.schedule.SchedulableTask;
+import io.onedev.server.util.schedule.TaskScheduler;
 import io.onedev.server.util.work.BatchWorkManager;
 import io.onedev.server.util.work.BatchWorker;
 
@@ -98,6 +125,11 @@ public class DefaultIndexManager implements IndexManager {
 	
 	private static final int DATA_VERSION = 6;
 	
+	private static final int INDEX_BATCH_SIZE = 10;
+	
+	// searchers of projects not used for this long will be closed 
+	private static final long SEARCHER_IDLE_TIMEOUT = 5*60*1000L;
+	
 	private final StorageManager storageManager;
 	
 	private final BatchWorkManager batchWorkManager;
@@ -108,14 +140,38 @@ public class DefaultIndexManager implements IndexManager {
 	
 	private final ListenerRegistry listenerRegistry;
 	
+	private final TaskScheduler taskScheduler;
+	
+	/*
+	 * Each project index is guarded by its own monitor, so that opening or closing index 
+	 * of one project does not block searches of other projects
+	 */
+	private final Map<Long, ProjectIndex> projectIndexes = new ConcurrentHashMap<>();
+	
+	private final int extractorParallelism;
+	
+	/*
+	 * Text conversion and symbol extraction of blobs are cpu intensive, and are 
+	 * performed in this pool while the batch worker thread walks the tree and feeds 
+	 * resulting documents to index writer
+	 */
+	private final ExecutorService extractorExecutor;
+	
+	private String evictTaskId;
+	
 	@Inject
 	public DefaultIndexManager(ListenerRegistry listenerRegistry, StorageManager storageManager, 
-			BatchWorkManager batchWorkManager, SessionManager sessionManager, ProjectManager projectManager) {
+			BatchWorkManager batchWorkManager, SessionManager sessionManager, 
+			ProjectManager projectManager, TaskScheduler taskScheduler, ServerConfig serverConfig) {
 		this.listenerRegistry = listenerRegistry;
 		this.storageManager = storageManager;
 		this.batchWorkManager = batchWorkManager;
 		this.sessionManager = sessionManager;
 		this.projectManager = projectManager;
+		this.taskScheduler = taskScheduler;
+		
+		extractorParallelism = serverConfig.getIndexingParallelism();
+		extractorExecutor = new ForkJoinPool(extractorParallelism);
 	}
 
 	private String getCommitIndexVersion(final IndexSearcher searcher, AnyObjectId commitId) throws IOException {
@@ -144,6 +200,49 @@ public class DefaultIndexManager implements IndexManager {
 		return indexVersion.get();
 	}
 	
+	/*
+	 * Look up index version of specified blob by intersecting postings of blob hash and 
+	 * blob path terms in each segment directly, which is much cheaper than running a 
+	 * boolean query for every changed blob 
+	 */
+	@Nullable
+	private String getBlobIndexVersion(IndexSearcher searcher, ObjectId blobId, String blobPath) 
+			throws IOException {
+		BytesRef blobHashBytes = new BytesRef(blobId.name());
+		BytesRef blobPathBytes = new BytesRef(blobPath);
+		for (LeafReaderContext context: searcher.getIndexReader().leaves()) {
+			LeafReader reader = context.reader();
+			Terms blobHashTerms = reader.terms(BLOB_HASH.name());
+			Terms blobPathTerms = reader.terms(BLOB_PATH.name());
+			if (blobHashTerms == null || blobPathTerms == null)
+				continue;
+			TermsEnum blobHashEnum = blobHashTerms.iterator();
+			if (!blobHashEnum.seekExact(blobHashBytes))
+				continue;
+			TermsEnum blobPathEnum = blobPathTerms.iterator();
+			if (!blobPathEnum.seekExact(blobPathBytes))
+				continue;
+			
+			PostingsEnum blobHashDocs = blobHashEnum.postings(null, PostingsEnum.NONE);
+			PostingsEnum blobPathDocs = blobPathEnum.postings(null, PostingsEnum.NONE);
+			Bits liveDocs = reader.getLiveDocs();
+			int doc = blobHashDocs.nextDoc();
+			while (doc != DocIdSetIterator.NO_MORE_DOCS) {
+				int blobPathDoc = blobPathDocs.advance(doc);
+				if (blobPathDoc == DocIdSetIterator.NO_MORE_DOCS) {
+					break;
+				} else if (blobPathDoc == doc) {
+					if (liveDocs == null || liveDocs.get(doc)) 
+						return reader.document(doc).get(BLOB_INDEX_VERSION.name());
+					doc = blobHashDocs.nextDoc();
+				} else {
+					doc = blobHashDocs.advance(blobPathDoc);
+				}
+			}
+		}
+		return null;
+	}
+	
 	private IndexResult index(Repository repository, AnyObjectId commitId, 
 			IndexWriter writer, final IndexSearcher searcher) throws Exception {
 		try (	RevWalk revWalk = new RevWalk(repository); 
@@ -169,57 +268,52 @@ public class DefaultIndexManager implements IndexManager {
 	
 			int indexed = 0;
 			int checked = 0;
-			while (treeWalk.next()) {
-				if ((treeWalk.getRawMode(0) & FileMode.TYPE_MASK) == FileMode.TYPE_FILE 
-						&& (treeWalk.getTreeCount() == 1 || !treeWalk.idEqual(0, 1))) {
-					ObjectId blobId = treeWalk.getObjectId(0);
-					String blobPath = treeWalk.getPathString();
-					String blobName = treeWalk.getNameString();
-					
-					BooleanQuery.Builder builder = new BooleanQuery.Builder();
-					builder.add(BLOB_HASH.query(blobId.name()), Occur.MUST);
-					builder.add(BLOB_PATH.query(blobPath), Occur.MUST);
-					BooleanQuery query = builder.build();
-					
-					final AtomicReference<String> blobIndexVersionRef = new AtomicReference<>(null);
-					if (searcher != null) {
-						searcher.search(query, new SimpleCollector() {
-	
-							private LeafReaderContext context;
-	
-							@Override
-							public void collect(int doc) throws IOException {
-								blobIndexVersionRef.set(searcher.doc(context.docBase+doc).get(BLOB_INDEX_VERSION.name()));
-							}
-	
-							@Override
-							protected void doSetNextReader(LeafReaderContext context) throws IOException {
-								this.context = context;
-							}
-	
-							@Override
-							public boolean needsScores() {
-								return false;
+			
+			/*
+			 * Documents are extracted in parallel, but added to writer in tree walk order. 
+			 * Number of pending extractions is bounded so that memory held by blob content 
+			 * does not grow with size of the commit
+			 */
+			Deque<Future<Document>> pendingDocuments = new ArrayDeque<>();
+			int maxPendingDocuments = extractorParallelism * 2;
+			try {
+				while (treeWalk.next()) {
+					if ((treeWalk.getRawMode(0) & FileMode.TYPE_MASK) == FileMode.TYPE_FILE 
+							&& (treeWalk.getTreeCount() == 1 || !treeWalk.idEqual(0, 1))) {
+						ObjectId blobId = treeWalk.getObjectId(0);
+						String blobPath = treeWalk.getPathString();
+						String blobName = treeWalk.getNameString();
+						
+						String blobIndexVersion;
+						if (searcher != null) {
+							blobIndexVersion = getBlobIndexVersion(searcher, blobId, blobPath);
+							checked++;
+						} else {
+							blobIndexVersion = null;
+						}
+		
+						SymbolExtractor<Symbol> extractor = SymbolExtractorRegistry.getExtractor(blobName);
+						String currentBlobIndexVersion = getIndexVersion(extractor);
+						if (blobIndexVersion == null || !blobIndexVersion.equals(currentBlobIndexVersion)) {
+							if (blobIndexVersion != null) {
+								BooleanQuery.Builder builder = new BooleanQuery.Builder();
+								builder.add(BLOB_HASH.query(blobId.name()), Occur.MUST);
+								builder.add(BLOB_PATH.query(blobPath), Occur.MUST);
+								writer.deleteDocuments(builder.build());
 							}
-							
-						});
-						checked++;
-					}
-	
-					SymbolExtractor<Symbol> extractor = SymbolExtractorRegistry.getExtractor(blobName);
-					String currentBlobIndexVersion = getIndexVersion(extractor);
-					String blobIndexVersion = blobIndexVersionRef.get();
-					if (blobIndexVersion != null) {
-						if (!blobIndexVersion.equals(currentBlobIndexVersion)) {
-							writer.deleteDocuments(query);
-							indexBlob(writer, repository, extractor, blobId, blobPath);
+							if (pendingDocuments.size() >= maxPendingDocuments)
+								writer.addDocument(getDocument(pendingDocuments.poll()));
+							pendingDocuments.add(extractorExecutor.submit(
+									() -> newBlobDocument(repository, extractor, blobId, blobPath)));
 							indexed++;
 						}
-					} else {
-						indexBlob(writer, repository, extractor, blobId, blobPath);
-						indexed++;
 					}
 				}
+				while (!pendingDocuments.isEmpty()) 
+					writer.addDocument(getDocument(pendingDocuments.poll()));
+			} finally {
+				for (Future<Document> pendingDocument: pendingDocuments)
+					pendingDocument.cancel(true);
 			}
 	
 			// record current commit so that we know which commit has been indexed
@@ -239,8 +333,19 @@ public class DefaultIndexManager implements IndexManager {
 		}
 	}
 	
-	private void indexBlob(IndexWriter writer, Repository repository, 
-			SymbolExtractor<Symbol> extractor, ObjectId blobId, String blobPath) throws IOException {
+	private Document getDocument(Future<Document> future) throws Exception {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception)
+				throw (Exception) e.getCause();
+			else
+				throw e;
+		}
+	}
+	
+	private Document newBlobDocument(Repository repository, @Nullable SymbolExtractor<Symbol> extractor, 
+			ObjectId blobId, String blobPath) throws IOException {
 		Document document = new Document();
 		
 		document.add(new StoredField(BLOB_INDEX_VERSION.name(), getIndexVersion(extractor)));
@@ -293,11 +398,11 @@ public class DefaultIndexManager implements IndexManager {
 			logger.debug("Ignore content of large file '{}'.", blobPath);
 		}
 
-		writer.addDocument(document);
+		return document;
 	}
 	
 	private BatchWorker getBatchWorker(Long projectId) {
-		return new BatchWorker("project-" + projectId + "-indexBlob", 1) {
+		return new BatchWorker("project-" + projectId + "-indexBlob", INDEX_BATCH_SIZE) {
 
 			@Override
 			public void doWorks(Collection<Prioritized> works) {
@@ -305,13 +410,77 @@ public class DefaultIndexManager implements IndexManager {
 
 					@Override
 					public void run() {
-						Preconditions.checkState(works.size() == 1);
-
 						Project project = projectManager.load(projectId);
-						ObjectId commitId = ((IndexWork) works.iterator().next()).getCommitId();
-						doIndex(project, commitId);
 						
-						listenerRegistry.post(new CommitIndexed(project, commitId.copy()));
+						/*
+						 * Index all commits of the batch with a writer opened for the batch, and 
+						 * commit only once at the end to avoid flushing and syncing index files 
+						 * for each commit. The writer is closed afterwards so that index write 
+						 * lock and buffers are not held by projects not being indexed
+						 */
+						List<IndexWork> indexedWorks = new ArrayList<>();
+						List<IndexWork> pendingWorks = new ArrayList<>();
+						for (Prioritized work: works)
+							pendingWorks.add((IndexWork) work);
+						
+						Directory directory = null;
+						IndexWriter writer = null;
+						SearcherManager searcherManager = null;
+						try {
+							directory = FSDirectory.open(storageManager.getProjectIndexDir(projectId).toPath());
+							writer = new IndexWriter(directory, newWriterConfig());
+							searcherManager = new SearcherManager(writer, null);
+							while (!pendingWorks.isEmpty()) {
+								IndexWork work = pendingWorks.remove(0);
+								try {
+									doIndex(project, work.getCommitId(), writer, searcherManager);
+									indexedWorks.add(work);
+								} catch (Exception e) {
+									/*
+									 * Documents of the failed commit can not be removed from 
+									 * writer alone, so roll back the batch and queue other 
+									 * commits of the batch again. Only the failed commit is 
+									 * dropped
+									 */
+									logger.error("Error indexing commit (project: " + project.getName() 
+											+ ", commit: " + work.getCommitId().name() + ")", e);
+									for (IndexWork requeuedWork: indexedWorks)
+										batchWorkManager.submit(getBatchWorker(projectId), requeuedWork);
+									for (IndexWork requeuedWork: pendingWorks)
+										batchWorkManager.submit(getBatchWorker(projectId), requeuedWork);
+									indexedWorks.clear();
+									searcherManager.close();
+									searcherManager = null;
+									writer.rollback();
+									writer = null;
+									break;
+								}
+							}
+							if (writer != null) {
+								searcherManager.close();
+								searcherManager = null;
+								writer.close();
+								writer = null;
+							}
+						} catch (Exception e) {
+							throw ExceptionUtils.unchecked(e);
+						} finally {
+							IOUtils.closeWhileHandlingException(searcherManager);
+							if (writer != null) {
+								try {
+									writer.rollback();
+								} catch (Exception e) {
+									logger.error("Error rolling back index writer (project id: " + projectId + ")", e);
+								}
+							}
+							IOUtils.closeWhileHandlingException(directory);
+						}
+						
+						if (!indexedWorks.isEmpty()) {
+							refreshSearcher(projectId);
+							for (IndexWork work: indexedWorks)
+								listenerRegistry.post(new CommitIndexed(project, work.getCommitId().copy()));
+						}
 					}
 					
 				});
@@ -320,39 +489,180 @@ public class DefaultIndexManager implements IndexManager {
 		};
 	}
 
-	private IndexResult doIndex(Project project, ObjectId commit, Directory directory, IndexSearcher searcher) {
+	private IndexWriterConfig newWriterConfig() {
 		IndexWriterConfig writerConfig = new IndexWriterConfig(new NGramAnalyzer(NGRAM_SIZE, NGRAM_SIZE));
 		writerConfig.setOpenMode(OpenMode.CREATE_OR_APPEND);
-		try (IndexWriter writer = new IndexWriter(directory, writerConfig)) {
-			try {
+		return writerConfig;
+	}
+	
+	private IndexResult doIndex(Project project, ObjectId commit, IndexWriter writer, 
+			SearcherManager searcherManager) throws Exception {
+		// Refresh to see documents added for previous commits of current batch 
+		searcherManager.maybeRefreshBlocking();
+		IndexSearcher searcher = searcherManager.acquire();
+		try {
+			if (getIndexVersion().equals(getCommitIndexVersion(searcher, commit))) {
+				return new IndexResult(0, 0);
+			} else {
 				logger.debug("Indexing commit (project: {}, commit: {})", project.getName(), commit.getName());
-				IndexResult indexResult = index(project.getRepository(), commit, writer, searcher);
-				writer.commit();
-				return indexResult;
-			} catch (Exception e) {
-				writer.rollback();
-				throw ExceptionUtils.unchecked(e);
+				if (searcher.getIndexReader().numDocs() != 0)
+					return index(project.getRepository(), commit, writer, searcher);
+				else
+					return index(project.getRepository(), commit, writer, null);
 			}
-		} catch (IOException e) {
-			throw new RuntimeException(e);
+		} finally {
+			searcherManager.release(searcher);
 		}
 	}
 	
-	private IndexResult doIndex(Project project, ObjectId commit) {
-		try (Directory directory = FSDirectory.open(storageManager.getProjectIndexDir(project.getId()).toPath())) {
-			if (DirectoryReader.indexExists(directory)) {
-				try (IndexReader reader = DirectoryReader.open(directory)) {
-					IndexSearcher searcher = new IndexSearcher(reader);
-					if (getIndexVersion().equals(getCommitIndexVersion(searcher, commit)))
-						return new IndexResult(0, 0);
+	/*
+	 * Retain index of specified project for reading so that it will not be closed until 
+	 * released. Index is opened on directory without index writer, and reads committed 
+	 * documents only
+	 * 
+	 * @return retained index, or null if project is not indexed yet and openIfAbsent is false 
+	 * 			or index does not exist
+	 */
+	@Nullable
+	private ProjectIndex retainProjectIndex(Long projectId, boolean openIfAbsent) throws IOException {
+		while (true) {
+			ProjectIndex projectIndex;
+			if (openIfAbsent)
+				projectIndex = projectIndexes.computeIfAbsent(projectId, key -> new ProjectIndex());
+			else
+				projectIndex = projectIndexes.get(projectId);
+			if (projectIndex == null)
+				return null;
+			
+			synchronized (projectIndex) {
+				// closed after we got it from the map, try again with a new one 
+				if (projectIndex.removed)
+					continue;
+				if (projectIndex.searcherManager == null) {
+					Directory directory = FSDirectory.open(storageManager.getProjectIndexDir(projectId).toPath());
+					try {
+						if (DirectoryReader.indexExists(directory)) {
+							projectIndex.searcherManager = new SearcherManager(directory, null);
+							projectIndex.directory = directory;
+						} else {
+							directory.close();
+						}
+					} catch (Exception e) {
+						IOUtils.closeWhileHandlingException(directory);
+						removeProjectIndex(projectId, projectIndex);
+						throw e;
+					}
+					if (projectIndex.searcherManager == null) {
+						removeProjectIndex(projectId, projectIndex);
+						return null;
+					}
+				}
+				projectIndex.refCount++;
+				return projectIndex;
+			}
+		}
+	}
+	
+	private void releaseProjectIndex(Long projectId, ProjectIndex projectIndex) {
+		synchronized (projectIndex) {
+			projectIndex.refCount--;
+			projectIndex.lastUsed = System.currentTimeMillis();
+			if (projectIndex.refCount == 0 && projectIndex.closing) 
+				closeProjectIndex(projectId, projectIndex);
+		}
+	}
+	
+	/*
+	 * Close index of specified project, or defer the close until it is released if 
+	 * searchers of the index are still in use 
+	 */
+	private void closeProjectIndex(Long projectId) {
+		ProjectIndex projectIndex = projectIndexes.get(projectId);
+		if (projectIndex != null) {
+			synchronized (projectIndex) {
+				if (!projectIndex.removed) {
+					if (projectIndex.refCount == 0)
+						closeProjectIndex(projectId, projectIndex);
 					else
-						return doIndex(project, commit, directory, searcher);
+						projectIndex.closing = true;
+				}
+			}
+		}
+	}
+	
+	// Caller should hold monitor of the project index
+	private void closeProjectIndex(Long projectId, ProjectIndex projectIndex) {
+		removeProjectIndex(projectId, projectIndex);
+		try {
+			if (projectIndex.searcherManager != null)
+				projectIndex.searcherManager.close();
+			if (projectIndex.directory != null)
+				projectIndex.directory.close();
+		} catch (IOException e) {
+			logger.error("Error closing index (project id: " + projectId + ")", e);
+		}
+	}
+	
+	// Caller should hold monitor of the project index
+	private void removeProjectIndex(Long projectId, ProjectIndex projectIndex) {
+		projectIndex.removed = true;
+		projectIndexes.remove(projectId, projectIndex);
+	}
+	
+	private void refreshSearcher(Long projectId) {
+		try {
+			ProjectIndex projectIndex = retainProjectIndex(projectId, false);
+			if (projectIndex != null) {
+				try {
+					projectIndex.searcherManager.maybeRefresh();
+				} finally {
+					releaseProjectIndex(projectId, projectIndex);
+				}
+			}
+		} catch (IOException e) {
+			logger.error("Error refreshing index searcher (project id: " + projectId + ")", e);
+		}
+	}
+	
+	@Nullable
+	@Override
+	public IndexSearcher acquireSearcher(Project project) throws InterruptedException {
+		try {
+			ProjectIndex projectIndex = retainProjectIndex(project.getId(), true);
+			if (projectIndex != null) {
+				try {
+					return projectIndex.searcherManager.acquire();
+				} catch (Exception e) {
+					releaseProjectIndex(project.getId(), projectIndex);
+					throw e;
 				}
 			} else {
-				return doIndex(project, commit, directory, null);
+				return null;
 			}
+		} catch (Exception e) {
+			/*
+			 * Convert to normal InterruptedException as we do not want to throw the original 
+			 * exception to surprise the user when they searches by typing fast (and subsequent 
+			 * typing will cancel search of previous typing by interrupting previous search 
+			 * thread which may be opening the index
+			 */
+			if (ExceptionUtils.find(e, ClosedByInterruptException.class) != null)
+				throw new InterruptedException();
+			else
+				throw ExceptionUtils.unchecked(e);
+		}
+	}
+	
+	@Override
+	public void releaseSearcher(Project project, IndexSearcher searcher) {
+		// index retained by the searcher is not closed or removed until released
+		ProjectIndex projectIndex = Preconditions.checkNotNull(projectIndexes.get(project.getId()));
+		try {
+			projectIndex.searcherManager.release(searcher);
 		} catch (IOException e) {
 			throw new RuntimeException(e);
+		} finally {
+			releaseProjectIndex(project.getId(), projectIndex);
 		}
 	}
 
@@ -373,12 +683,18 @@ public class DefaultIndexManager implements IndexManager {
 
 	@Override
 	public boolean isIndexed(Project project, ObjectId commit) {
-		File indexDir = storageManager.getProjectIndexDir(project.getId());
-		try (Directory directory = FSDirectory.open(indexDir.toPath())) {
-			if (DirectoryReader.indexExists(directory)) {
-				try (IndexReader reader = DirectoryReader.open(directory)) {
-					IndexSearcher searcher = new IndexSearcher(reader);
-					return getIndexVersion().equals(getCommitIndexVersion(searcher, commit));
+		try {
+			ProjectIndex projectIndex = retainProjectIndex(project.getId(), true);
+			if (projectIndex != null) {
+				try {
+					IndexSearcher searcher = projectIndex.searcherManager.acquire();
+					try {
+						return getIndexVersion().equals(getCommitIndexVersion(searcher, commit));
+					} finally {
+						projectIndex.searcherManager.release(searcher);
+					}
+				} finally {
+					releaseProjectIndex(project.getId(), projectIndex);
 				}
 			} else {
 				return false;
@@ -417,6 +733,45 @@ public class DefaultIndexManager implements IndexManager {
 				}
 			}
 		}
+		
+		evictTaskId = taskScheduler.schedule(new SchedulableTask() {
+			
+			@Override
+			public ScheduleBuilder<?> getScheduleBuilder() {
+				return SimpleScheduleBuilder.repeatMinutelyForever();
+			}
+			
+			@Override
+			public void execute() {
+				long threshold = System.currentTimeMillis() - SEARCHER_IDLE_TIMEOUT;
+				for (Map.Entry<Long, ProjectIndex> entry: projectIndexes.entrySet()) {
+					ProjectIndex projectIndex = entry.getValue();
+					synchronized (projectIndex) {
+						if (!projectIndex.removed && projectIndex.refCount == 0 
+								&& projectIndex.lastUsed < threshold) {
+							closeProjectIndex(entry.getKey(), projectIndex);
+						}
+					}
+				}
+			}
+			
+		});
+	}
+	
+	@Transactional
+	@Listen
+	public void on(EntityRemoved event) {
+		if (event.getEntity() instanceof Project) 
+			closeProjectIndex(event.getEntity().getId());
+	}
+	
+	@Listen
+	public void on(SystemStopping event) {
+		if (evictTaskId != null)
+			taskScheduler.unschedule(evictTaskId);
+		for (Long projectId: new ArrayList<>(projectIndexes.keySet()))
+			closeProjectIndex(projectId);
+		extractorExecutor.shutdownNow();
 	}
 	
 	@Sessional
@@ -445,5 +800,27 @@ public class DefaultIndexManager implements IndexManager {
 		}
 		
 	}
+	
+	/*
+	 * Index is opened by the first retainer while holding monitor of this object. Fields 
+	 * are guarded by this object, except that directory and searcher manager can be read 
+	 * by retainers without the monitor as they do not change while retained
+	 */
+	private static class ProjectIndex {
+		
+		volatile Directory directory;
+		
+		volatile SearcherManager searcherManager;
+		
+		int refCount;
+		
+		long lastUsed = System.currentTimeMillis();
+		
+		boolean closing;
+		
+		// removed from project indexes map, and should not be used any more
+		boolean removed;
+		
+	}
 
 }
@@ -2,6 +2,7 @@ package io.onedev.server.search.code;
 
 import javax.annotation.Nullable;
 
+import org.apache.lucene.search.IndexSearcher;
 import org.eclipse.jgit.lib.ObjectId;
 
 import io.onedev.commons.jsymbol.Symbol;
@@ -18,4 +19,19 @@ public interface IndexManager {
 	
 	String getIndexVersion(@Nullable SymbolExtractor<Symbol> extractor);
 	
+	/**
+	 * Acquire searcher of specified project. The searcher reads committed index without 
+	 * holding index write lock, and is refreshed after indexing is committed. Acquired 
+	 * searcher should be released via {@link #releaseSearcher(Project, IndexSearcher)}
+	 * 
+	 * @return
+	 * 			searcher of the project, or <tt>null</tt> if the project is not indexed yet
+	 * @throws InterruptedException
+	 * 			if current thread is interrupted while opening index of the project
+	 */
+	@Nullable
+	IndexSearcher acquireSearcher(Project project) throws InterruptedException;
+	
+	void releaseSearcher(Project project, IndexSearcher searcher);
+	
 }
@@ -0,0 +1,263 @@
+package io.onedev.server.security.realm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.shiro.authz.Permission;
+
+import io.onedev.commons.launcher.loader.Listen;
+import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.entitymanager.SettingManager;
+import io.onedev.server.entitymanager.UserManager;
+import io.onedev.server.event.entity.EntityEvent;
+import io.onedev.server.event.entity.EntityPersisted;
+import io.onedev.server.event.entity.EntityRemoved;
+import io.onedev.server.model.Group;
+import io.onedev.server.model.GroupAuthorization;
+import io.onedev.server.model.Membership;
+import io.onedev.server.model.Project;
+import io.onedev.server.model.Role;
+import io.onedev.server.model.Setting;
+import io.onedev.server.model.User;
+import io.onedev.server.model.UserAuthorization;
+import io.onedev.server.persistence.SessionManager;
+import io.onedev.server.persistence.TransactionManager;
+import io.onedev.server.security.permission.ProjectPermission;
+import io.onedev.server.security.permission.SystemAdministration;
+import io.onedev.server.security.permission.UserAdministration;
+
+/**
+ * Caches compiled authorization info of users across requests. Permissions granted via
+ * project default roles are compiled once and shared by all users. Cached info is
+ * invalidated when relevant entities are changed.
+ */
+@Singleton
+public class AuthorizationCache {
+
+	private final UserManager userManager;
+
+	private final ProjectManager projectManager;
+
+	private final SettingManager settingManager;
+
+	private final SessionManager sessionManager;
+
+	private final TransactionManager transactionManager;
+
+	private final Map<Long, CompiledAuthorizationInfo> userInfos = new ConcurrentHashMap<>();
+
+	private volatile CompiledAuthorizationInfo defaultInfo;
+
+	private volatile Boolean anonymousAccessEnabled;
+
+	private long version;
+
+	@Inject
+	public AuthorizationCache(UserManager userManager, ProjectManager projectManager,
+			SettingManager settingManager, SessionManager sessionManager,
+			TransactionManager transactionManager) {
+		this.userManager = userManager;
+		this.projectManager = projectManager;
+		this.settingManager = settingManager;
+		this.sessionManager = sessionManager;
+		this.transactionManager = transactionManager;
+	}
+
+	public CompiledAuthorizationInfo getAuthorizationInfo(Long userId) {
+		CompiledAuthorizationInfo userInfo;
+		if (userId != 0L) {
+			userInfo = userInfos.get(userId);
+			if (userInfo == null) {
+				long versionBeforeCompile = getVersion();
+				userInfo = compileUserInfo(userId);
+				synchronized (this) {
+					// do not cache info compiled from data changed during compilation
+					if (version == versionBeforeCompile)
+						userInfos.put(userId, userInfo);
+				}
+			}
+		} else {
+			userInfo = new CompiledAuthorizationInfo(new ArrayList<>(), new HashSet<>());
+		}
+		if (userId != 0L || isAnonymousAccessEnabled())
+			return userInfo.withDefault(getDefaultInfo());
+		else
+			return userInfo;
+	}
+
+	private synchronized long getVersion() {
+		return version;
+	}
+
+	private boolean isAnonymousAccessEnabled() {
+		Boolean anonymousAccessEnabled = this.anonymousAccessEnabled;
+		if (anonymousAccessEnabled == null) {
+			anonymousAccessEnabled = sessionManager.call(new Callable<Boolean>() {
+
+				@Override
+				public Boolean call() throws Exception {
+					return settingManager.getSecuritySetting().isEnableAnonymousAccess();
+				}
+
+			});
+			this.anonymousAccessEnabled = anonymousAccessEnabled;
+		}
+		return anonymousAccessEnabled;
+	}
+
+	private CompiledAuthorizationInfo getDefaultInfo() {
+		CompiledAuthorizationInfo defaultInfo = this.defaultInfo;
+		if (defaultInfo == null) {
+			long versionBeforeCompile = getVersion();
+			defaultInfo = sessionManager.call(new Callable<CompiledAuthorizationInfo>() {
+
+				@Override
+				public CompiledAuthorizationInfo call() throws Exception {
+					Collection<Permission> permissions = new ArrayList<>();
+			        for (Project project: projectManager.query()) {
+			        	if (project.getDefaultRole() != null)
+			        		permissions.add(new ProjectPermission(project, project.getDefaultRole()));
+			        }
+					return new CompiledAuthorizationInfo(permissions, new HashSet<>());
+				}
+
+			});
+			synchronized (this) {
+				if (version == versionBeforeCompile)
+					this.defaultInfo = defaultInfo;
+			}
+		}
+		return defaultInfo;
+	}
+
+	private CompiledAuthorizationInfo compileUserInfo(Long userId) {
+		return sessionManager.call(new Callable<CompiledAuthorizationInfo>() {
+
+			@Override
+			public CompiledAuthorizationInfo call() throws Exception {
+				Collection<Permission> permissions = new ArrayList<>();
+				Collection<Long> groupIds = new HashSet<>();
+
+	            User user = userManager.load(userId);
+	        	if (user.isRoot() || user.isSystem())
+	        		permissions.add(new SystemAdministration());
+	        	permissions.add(new UserAdministration(user));
+	           	for (Group group: user.getGroups()) {
+	           		groupIds.add(group.getId());
+	           		if (group.isAdministrator())
+	           			permissions.add(new SystemAdministration());
+	        		for (GroupAuthorization authorization: group.getAuthorizations())
+	        			permissions.add(new ProjectPermission(authorization.getProject(), authorization.getRole()));
+	           	}
+	        	for (UserAuthorization authorization: user.getAuthorizations())
+					permissions.add(new ProjectPermission(authorization.getProject(), authorization.getRole()));
+
+				return new CompiledAuthorizationInfo(permissions, groupIds);
+			}
+
+		});
+	}
+
+	private void invalidateAfterCommit(Runnable invalidation) {
+		synchronized (this) {
+			version++;
+			invalidation.run();
+		}
+		transactionManager.runAfterCommit(new Runnable() {
+
+			@Override
+			public void run() {
+				synchronized (AuthorizationCache.this) {
+					version++;
+					invalidation.run();
+				}
+			}
+
+		});
+	}
+
+	private void invalidateUser(Long userId) {
+		invalidateAfterCommit(new Runnable() {
+
+			@Override
+			public void run() {
+				userInfos.remove(userId);
+			}
+
+		});
+	}
+
+	private void invalidateGroup(Long groupId) {
+		invalidateAfterCommit(new Runnable() {
+
+			@Override
+			public void run() {
+				userInfos.values().removeIf(it->it.getGroupIds().contains(groupId));
+			}
+
+		});
+	}
+
+	private void invalidateDefault() {
+		invalidateAfterCommit(new Runnable() {
+
+			@Override
+			public void run() {
+				defaultInfo = null;
+			}
+
+		});
+	}
+
+	private void invalidateAll() {
+		invalidateAfterCommit(new Runnable() {
+
+			@Override
+			public void run() {
+				userInfos.clear();
+				defaultInfo = null;
+				anonymousAccessEnabled = null;
+			}
+
+		});
+	}
+
+	private void onEntityChange(EntityEvent event) {
+		Object entity = event.getEntity();
+		if (entity instanceof User) {
+			invalidateUser(((User) entity).getId());
+		} else if (entity instanceof Membership) {
+			invalidateUser(User.idOf(((Membership) entity).getUser()));
+		} else if (entity instanceof UserAuthorization) {
+			invalidateUser(User.idOf(((UserAuthorization) entity).getUser()));
+		} else if (entity instanceof Group) {
+			invalidateGroup(((Group) entity).getId());
+		} else if (entity instanceof GroupAuthorization) {
+			invalidateGroup(Group.idOf(((GroupAuthorization) entity).getGroup()));
+		} else if (entity instanceof Project) {
+			invalidateDefault();
+		} else if (entity instanceof Role) {
+			invalidateAll();
+		} else if (entity instanceof Setting && ((Setting) entity).getKey() == Setting.Key.SECURITY) {
+			invalidateAll();
+		}
+	}
+
+	@Listen
+	public void on(EntityPersisted event) {
+		onEntityChange(event);
+	}
+
+	@Listen
+	public void on(EntityRemoved event) {
+		onEntityChange(event);
+	}
+
+}
@@ -0,0 +1,121 @@
+package io.onedev.server.security.realm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import org.apache.shiro.authz.AuthorizationInfo;
+import org.apache.shiro.authz.Permission;
+import org.hibernate.Hibernate;
+
+import io.onedev.server.model.AbstractEntity;
+import io.onedev.server.security.permission.ProjectPermission;
+
+/**
+ * Authorization info with project permissions indexed by project id. It does not
+ * reference any project entity, and privileges are un-proxied at construction time,
+ * so that it can be shared across requests and sessions.
+ */
+class CompiledAuthorizationInfo implements AuthorizationInfo {
+
+	private static final long serialVersionUID = 1L;
+
+	private final Collection<Permission> generalPermissions;
+
+	private final Map<Long, Collection<Permission>> projectPrivileges;
+
+	private final Collection<Long> groupIds;
+
+	@Nullable
+	private final CompiledAuthorizationInfo defaultInfo;
+
+	public CompiledAuthorizationInfo(Collection<Permission> permissions, Collection<Long> groupIds) {
+		generalPermissions = new ArrayList<>();
+		projectPrivileges = new HashMap<>();
+		for (Permission permission: permissions) {
+			if (permission instanceof ProjectPermission) {
+				ProjectPermission projectPermission = (ProjectPermission) permission;
+				Long projectId = AbstractEntity.idOf(projectPermission.getProject());
+				Permission privilege = (Permission) Hibernate.unproxy(projectPermission.getPrivilege());
+				Collection<Permission> privileges = projectPrivileges.get(projectId);
+				if (privileges == null) {
+					privileges = new ArrayList<>();
+					projectPrivileges.put(projectId, privileges);
+				}
+				privileges.add(privilege);
+			} else {
+				generalPermissions.add(permission);
+			}
+		}
+		this.groupIds = groupIds;
+		defaultInfo = null;
+	}
+
+	private CompiledAuthorizationInfo(CompiledAuthorizationInfo info, CompiledAuthorizationInfo defaultInfo) {
+		generalPermissions = info.generalPermissions;
+		projectPrivileges = info.projectPrivileges;
+		groupIds = info.groupIds;
+		this.defaultInfo = defaultInfo;
+	}
+
+	/**
+	 * @return
+	 * 			a new authorization info checking permissions of specified default info
+	 * 			in addition to permissions of this info
+	 */
+	public CompiledAuthorizationInfo withDefault(CompiledAuthorizationInfo defaultInfo) {
+		return new CompiledAuthorizationInfo(this, defaultInfo);
+	}
+
+	public Collection<Long> getGroupIds() {
+		return groupIds;
+	}
+
+	public boolean isPermitted(Permission permission) {
+		for (Permission each: generalPermissions) {
+			if (each.implies(permission))
+				return true;
+		}
+		if (permission instanceof ProjectPermission) {
+			ProjectPermission projectPermission = (ProjectPermission) permission;
+			Collection<Permission> privileges = projectPrivileges.get(
+					AbstractEntity.idOf(projectPermission.getProject()));
+			if (privileges != null) {
+				for (Permission privilege: privileges) {
+					if (privilege.implies(projectPermission.getPrivilege()))
+						return true;
+				}
+			}
+		}
+		return defaultInfo != null && defaultInfo.isPermitted(permission);
+	}
+
+	@Override
+	public Collection<String> getRoles() {
+		return new HashSet<>();
+	}
+
+	@Override
+	public Collection<String> getStringPermissions() {
+		return new HashSet<>();
+	}
+
+	@Override
+	public Collection<Permission> getObjectPermissions() {
+		Collection<Permission> permissions = new ArrayList<>();
+		permissions.add(new Permission() {
+
+			@Override
+			public boolean implies(Permission p) {
+				return isPermitted(p);
+			}
+
+		});
+		return permissions;
+	}
+
+}
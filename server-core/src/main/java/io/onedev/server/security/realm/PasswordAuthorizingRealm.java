@@ -48,8 +48,8 @@ public class PasswordAuthorizingRealm extends AbstractAuthorizingRealm {
     		MembershipManager membershipManager, GroupManager groupManager, 
     		ProjectManager projectManager, SessionManager sessionManager, 
     		TransactionManager transactionManager, SshKeyManager sshKeyManager, 
-    		PasswordService passwordService) {
-		super(userManager, groupManager, projectManager, sessionManager, settingManager);
+    		PasswordService passwordService, AuthorizationCache authorizationCache) {
+		super(userManager, groupManager, projectManager, sessionManager, settingManager, authorizationCache);
 		
 	    PasswordMatcher passwordMatcher = new PasswordMatcher();
 	    passwordMatcher.setPasswordService(passwordService);
@@ -38,8 +38,8 @@ public class SsoAuthorizingRealm extends AbstractAuthorizingRealm {
     public SsoAuthorizingRealm(UserManager userManager, MembershipManager membershipManager, 
     		GroupManager groupManager, ProjectManager projectManager, SessionManager sessionManager, 
     		TransactionManager transactionManager, SshKeyManager sshKeyManager, 
-    		SettingManager settingManager) {
-		super(userManager, groupManager, projectManager, sessionManager, settingManager);
+    		SettingManager settingManager, AuthorizationCache authorizationCache) {
+		super(userManager, groupManager, projectManager, sessionManager, settingManager, authorizationCache);
 		setCredentialsMatcher(new AllowAllCredentialsMatcher());
 		
     	this.membershipManager = membershipManager;
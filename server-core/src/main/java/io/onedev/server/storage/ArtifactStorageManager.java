@@ -0,0 +1,38 @@
+package io.onedev.server.storage;
+
+import java.io.File;
+import java.util.Collection;
+
+import io.onedev.server.model.Build;
+import io.onedev.server.model.Project;
+
+/**
+ * Publishes build artifacts. With artifact deduplication enabled, artifact files are 
+ * stored in a per-project content addressed store, and each build's artifacts directory 
+ * hard links to stored blobs. Number of hard links of a blob serves as its reference 
+ * count, so that deleting build directory releases references without extra bookkeeping.
+ * 
+ * @author robin
+ *
+ */
+public interface ArtifactStorageManager {
+
+	/**
+	 * Publish specified files as artifacts of specified build. Existing artifacts with 
+	 * same paths will be replaced
+	 * 
+	 * @param baseDir
+	 * 			base directory of specified files. Artifact paths are relative to this directory 
+	 * @param files
+	 * 			files under base directory to publish 
+	 */
+	void publish(Build build, File baseDir, Collection<File> files);
+	
+	/**
+	 * Remove stored blobs no longer referenced by any build of specified project
+	 */
+	void collectGarbage(Long projectId);
+	
+	ArtifactStorageStats getStats(Project project);
+	
+}
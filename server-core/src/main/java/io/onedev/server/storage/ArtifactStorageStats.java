@@ -0,0 +1,67 @@
+package io.onedev.server.storage;
+
+import java.io.Serializable;
+
+public class ArtifactStorageStats implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final long blobCount;
+	
+	private final long referenceCount;
+	
+	private final long storedSize;
+	
+	private final long referencedSize;
+	
+	public ArtifactStorageStats(long blobCount, long referenceCount, long storedSize, long referencedSize) {
+		this.blobCount = blobCount;
+		this.referenceCount = referenceCount;
+		this.storedSize = storedSize;
+		this.referencedSize = referencedSize;
+	}
+
+	/**
+	 * @return
+	 * 			number of distinct blobs in artifact store
+	 */
+	public long getBlobCount() {
+		return blobCount;
+	}
+
+	/**
+	 * @return
+	 * 			number of artifact files referencing stored blobs
+	 */
+	public long getReferenceCount() {
+		return referenceCount;
+	}
+
+	/**
+	 * @return
+	 * 			size in bytes actually occupied by stored blobs
+	 */
+	public long getStoredSize() {
+		return storedSize;
+	}
+
+	/**
+	 * @return
+	 * 			size in bytes artifact files would occupy without deduplication
+	 */
+	public long getReferencedSize() {
+		return referencedSize;
+	}
+	
+	/**
+	 * @return
+	 * 			ratio of referenced size to stored size, <tt>1</tt> if nothing is stored
+	 */
+	public double getDeduplicationRatio() {
+		if (storedSize != 0)
+			return (double)referencedSize / storedSize;
+		else
+			return 1;
+	}
+	
+}
@@ -0,0 +1,200 @@
+package io.onedev.server.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.commons.utils.LockUtils;
+import io.onedev.server.model.Build;
+import io.onedev.server.model.Project;
+import io.onedev.server.util.ServerConfig;
+
+@Singleton
+public class DefaultArtifactStorageManager implements ArtifactStorageManager {
+
+	private static final Logger logger = LoggerFactory.getLogger(DefaultArtifactStorageManager.class);
+
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private static final String ATTR_LINK_COUNT = "unix:nlink";
+
+	private final StorageManager storageManager;
+
+	private final boolean deduplication;
+
+	@Inject
+	public DefaultArtifactStorageManager(StorageManager storageManager, ServerConfig serverConfig) {
+		this.storageManager = storageManager;
+
+		// Link count is used as reference count, and is only available via unix attribute view
+		if (serverConfig.isArtifactDeduplication()
+				&& !FileSystems.getDefault().supportedFileAttributeViews().contains("unix")) {
+			logger.warn("Artifact deduplication is disabled as file system does not report hard link count");
+			deduplication = false;
+		} else {
+			deduplication = serverConfig.isArtifactDeduplication();
+		}
+	}
+
+	private String getStoreLockKey(Long projectId) {
+		return "artifact-store:" + projectId;
+	}
+
+	@Override
+	public void publish(Build build, File baseDir, Collection<File> files) {
+		LockUtils.write(build.getArtifactsLockKey(), new Callable<Void>() {
+
+			@Override
+			public Void call() throws Exception {
+				File artifactsDir = build.getArtifactsDir();
+				FileUtils.createDir(artifactsDir);
+				Path basePath = baseDir.toPath();
+				if (deduplication) {
+					Long projectId = build.getProject().getId();
+					File storeDir = storageManager.getProjectArtifactStoreDir(projectId);
+					FileUtils.createDir(storeDir);
+					LockUtils.read(getStoreLockKey(projectId), new Callable<Void>() {
+
+						@Override
+						public Void call() throws Exception {
+							for (File file: files) {
+								Path artifactPath = artifactsDir.toPath().resolve(basePath.relativize(file.toPath()));
+								link(storeDir, file, artifactPath.toFile());
+							}
+							return null;
+						}
+
+					});
+				} else {
+					for (File file: files) {
+						Path artifactPath = artifactsDir.toPath().resolve(basePath.relativize(file.toPath()));
+						// existing artifact may be linked while deduplication was enabled
+						Files.deleteIfExists(artifactPath);
+						FileUtils.copyFile(file, artifactPath.toFile());
+					}
+				}
+				return null;
+			}
+
+		});
+	}
+
+	private void link(File storeDir, File file, File artifactFile) throws IOException {
+		String hash;
+		try (InputStream is = Files.newInputStream(file.toPath())) {
+			hash = DigestUtils.sha256Hex(is);
+		}
+		File blobDir = new File(storeDir, hash.substring(0, 2));
+		File blobFile = new File(blobDir, hash);
+		if (!blobFile.exists()) {
+			FileUtils.createDir(blobDir);
+			File tempFile = new File(blobDir, UUID.randomUUID().toString() + TEMP_SUFFIX);
+			try {
+				Files.copy(file.toPath(), tempFile.toPath());
+				Files.move(tempFile.toPath(), blobFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+			} catch (FileAlreadyExistsException e) {
+				// stored concurrently by another build
+			} finally {
+				if (tempFile.exists())
+					FileUtils.deleteFile(tempFile);
+			}
+		}
+
+		/*
+		 * Never write into an existing artifact file as it may share content with
+		 * other builds
+		 */
+		FileUtils.createDir(artifactFile.getParentFile());
+		Files.deleteIfExists(artifactFile.toPath());
+		Files.createLink(artifactFile.toPath(), blobFile.toPath());
+	}
+
+	private int getLinkCount(File file) throws IOException {
+		return (int) Files.getAttribute(file.toPath(), ATTR_LINK_COUNT);
+	}
+
+	@Override
+	public void collectGarbage(Long projectId) {
+		File storeDir = storageManager.getProjectArtifactStoreDir(projectId);
+		
+		// Store dir only exists if deduplication is or was enabled for the project
+		if (!deduplication && !storeDir.exists())
+			return;
+		
+		LockUtils.write(getStoreLockKey(projectId), new Callable<Void>() {
+
+			@Override
+			public Void call() throws Exception {
+				long reclaimedSize = 0;
+				for (File blobDir: listFiles(storeDir)) {
+					for (File blobFile: listFiles(blobDir)) {
+						if (blobFile.getName().endsWith(TEMP_SUFFIX) || getLinkCount(blobFile) <= 1) {
+							reclaimedSize += blobFile.length();
+							FileUtils.deleteFile(blobFile);
+						}
+					}
+					if (listFiles(blobDir).length == 0)
+						FileUtils.deleteDir(blobDir);
+				}
+				if (reclaimedSize != 0)
+					logger.debug("Reclaimed {} bytes of artifact store (project id: {})", reclaimedSize, projectId);
+				return null;
+			}
+
+		});
+	}
+
+	@Override
+	public ArtifactStorageStats getStats(Project project) {
+		File storeDir = storageManager.getProjectArtifactStoreDir(project.getId());
+		return LockUtils.read(getStoreLockKey(project.getId()), new Callable<ArtifactStorageStats>() {
+
+			@Override
+			public ArtifactStorageStats call() throws Exception {
+				long blobCount = 0;
+				long referenceCount = 0;
+				long storedSize = 0;
+				long referencedSize = 0;
+				for (File blobDir: listFiles(storeDir)) {
+					for (File blobFile: listFiles(blobDir)) {
+						if (!blobFile.getName().endsWith(TEMP_SUFFIX)) {
+							// one of the links is the blob itself
+							int references = getLinkCount(blobFile) - 1;
+							if (references > 0) {
+								long size = blobFile.length();
+								blobCount++;
+								referenceCount += references;
+								storedSize += size;
+								referencedSize += size * references;
+							}
+						}
+					}
+				}
+				return new ArtifactStorageStats(blobCount, referenceCount, storedSize, referencedSize);
+			}
+
+		});
+	}
+
+	private File[] listFiles(File dir) {
+		File[] files = dir.listFiles();
+		return files != null? files: new File[0];
+	}
+
+}
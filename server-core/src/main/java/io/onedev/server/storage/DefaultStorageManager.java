@@ -83,6 +83,11 @@ public class DefaultStorageManager implements StorageManager {
         return attachmentDir;
 	}
 
+	@Override
+	public File getProjectArtifactStoreDir(Long projectId) {
+        return new File(getProjectDir(projectId), "artifact-store");
+	}
+
 	@Listen
 	public void on(SystemStarting event) {
         for (File projectDir: getProjectsDir().listFiles()) {
@@ -36,6 +36,15 @@ public interface StorageManager {
      */
     File getProjectAttachmentDir(Long projectId);
     
+    /**
+     * Get directory to store content addressed blobs of build artifacts of specified project
+     * 
+     * @return 
+     * 			directory to store artifact blobs. The directory is not created by this method, and 
+     * 			does not exist if artifacts of the project were never deduplicated
+     */
+    File getProjectArtifactStoreDir(Long projectId);
+    
     File getUserInfoDir(Long userId);
     
     /**
@@ -1,6 +1,8 @@
 package io.onedev.server.util;
 
 import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.atomic.AtomicReference;
@@ -13,7 +15,11 @@ import io.onedev.server.OneDev;
  * A pumper generates elements in a different thread, and consumes the element 
  * in current thread. It is designed as some scenario requires that elements 
  * should be consumed in current thread, and collecting all generated elements 
- * into a collection before processing is not acceptable due to memory constraint
+ * into a collection before processing is not acceptable due to memory constraint.
+ * <p>
+ * By default each generated element is handed off to consuming thread directly. 
+ * A buffer size can be specified to let generating thread run ahead of consuming 
+ * thread without holding all elements in memory
  * 
  * @author robin
  *
@@ -21,8 +27,27 @@ import io.onedev.server.OneDev;
  */
 public abstract class ElementPumper<T> {
 
+	private final int bufferSize;
+	
+	public ElementPumper() {
+		this(0);
+	}
+	
+	/**
+	 * @param bufferSize
+	 * 			max number of generated elements waiting to be consumed, or <tt>0</tt> to 
+	 * 			hand off each element directly
+	 */
+	public ElementPumper(int bufferSize) {
+		this.bufferSize = bufferSize;
+	}
+	
 	public void pump() {
-		SynchronousQueue<Optional<T>> queue = new SynchronousQueue<>(); 
+		BlockingQueue<Optional<T>> queue;
+		if (bufferSize != 0)
+			queue = new ArrayBlockingQueue<>(bufferSize);
+		else
+			queue = new SynchronousQueue<>();
 		AtomicReference<Exception> exceptionRef = new AtomicReference<>(null);
 
 		OneDev.getInstance(ExecutorService.class).execute(new Runnable() {
@@ -44,5 +44,59 @@ public interface ServerConfig {
      *          ssh port of the server
      */
     int getSshPort();
+    
+    /**
+     * Get max number of git pack transports (clone, fetch and push over http or ssh) 
+     * allowed to run concurrently.
+     * <p>
+     * @return
+     * 			max number of concurrent git transports
+     */
+    int getGitConcurrency();
+    
+    /**
+     * Get max number of git pack transports allowed to wait for execution. Transports 
+     * exceeding this limit will be rejected so that clients can retry later.
+     * <p>
+     * @return
+     * 			max number of queued git transports
+     */
+    int getGitQueueSize();
+    
+    /**
+     * Get number of threads used to extract text and symbols of blobs when indexing 
+     * code of a commit.
+     * <p>
+     * @return
+     * 			number of symbol extraction threads
+     */
+    int getIndexingParallelism();
+    
+    /**
+     * Get max total size of cached repository archives in megabytes. Least recently 
+     * downloaded archives will be removed when this limit is exceeded.
+     * <p>
+     * @return
+     * 			max size of archive cache in megabytes, <tt>0</tt> to disable archive caching
+     */
+    int getArchiveCacheSize();
+    
+    /**
+     * Whether or not to store published build artifacts by content. Identical artifact files 
+     * of different builds in same project are then hard linked to a single copy on disk.
+     * <p>
+     * @return
+     * 			<tt>true</tt> to deduplicate build artifacts
+     */
+    boolean isArtifactDeduplication();
+    
+    /**
+     * Get interval in milliseconds to write received build log entries and notify log 
+     * viewers. Log of a running build is written and notified at most once per interval.
+     * <p>
+     * @return
+     * 			log notification interval in milliseconds
+     */
+    int getLogNotificationInterval();
 	
 }
@@ -10,7 +10,6 @@ import java.util.regex.Pattern;
 
 import javax.annotation.Nullable;
 
-import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
 
 import io.onedev.commons.jsyntax.TextToken;
@@ -21,14 +20,20 @@ import io.onedev.commons.jsyntax.Tokenizer;
 import io.onedev.commons.jsyntax.TokenizerRegistry;
 import io.onedev.commons.utils.StringUtils;
 import io.onedev.commons.utils.PlanarRange;
-import io.onedev.server.util.diff.DiffMatchPatch.Diff;
 import io.onedev.server.util.diff.DiffMatchPatch.Operation;
+import io.onedev.server.util.diff.MyersDiff.Chunk;
 
 public class DiffUtils {
 
 	private static final int CHANGE_CALC_TIMEOUT = 100;
 	
-	public static final int MAX_DIFF_SIZE = 65535;
+	private static final int DIFF_TIMEOUT = 1000;
+	
+	/*
+	 * Diff engine itself does not limit number of lines. This only guards memory used to 
+	 * hold tokenized lines and rendered diff 
+	 */
+	public static final int MAX_DIFF_SIZE = 250000;
 	
 	private static final Pattern pattern = Pattern.compile("\\w+");
 	
@@ -109,9 +114,6 @@ public class DiffUtils {
 	 */
 	public static List<DiffBlock<Tokenized>> diff(List<String> oldLines, @Nullable String oldFileName, 
 			List<String> newLines, @Nullable String newFileName, WhitespaceOption whitespaceOption) {
-		Preconditions.checkArgument(oldLines.size() + newLines.size() <= MAX_DIFF_SIZE, 
-				"Total size of old lines and new lines should be less than " + MAX_DIFF_SIZE + ".");
-		
 		List<String> processedOldLines = new ArrayList<>();
 		for (String line: oldLines) 
 			processedOldLines.add(whitespaceOption.process(line));
@@ -123,72 +125,65 @@ public class DiffUtils {
 		List<Tokenized> oldTokenizedLines = tokenize(oldLines, oldFileName);
 		List<Tokenized> newTokenizedLines = tokenize(newLines, newFileName);
 
-		DiffMatchPatch dmp = new DiffMatchPatch();
-		TokensToCharsResult<String> result1 = tokensToChars(processedOldLines, processedNewLines);
-		
-		List<DiffMatchPatch.Diff> diffs = dmp.diff_main(result1.chars1, result1.chars2, false);
-
-		List<DiffBlock<Tokenized>> diffBlocks = new ArrayList<>();
-		int oldLineNo = 0;
-		int newLineNo = 0;
-		for (Diff diff : diffs) {
-			List<Tokenized> lines = new ArrayList<>();
-			if (diff.operation == Operation.EQUAL) {
-				for (int i = 0; i < diff.text.length(); i++) {
-					lines.add(newTokenizedLines.get(newLineNo));
-					oldLineNo++;
-					newLineNo++;
-				}
-				diffBlocks.add(new DiffBlock<>(diff.operation, lines, 
-						oldLineNo-lines.size(), newLineNo-lines.size()));
-			} else if (diff.operation == Operation.INSERT) {
-				for (int i = 0; i < diff.text.length(); i++)
-					lines.add(newTokenizedLines.get(newLineNo++));
-				diffBlocks.add(new DiffBlock<>(diff.operation, lines, 
-						oldLineNo, newLineNo-lines.size()));
-			} else {
-				for (int i = 0; i < diff.text.length(); i++)
-					lines.add(oldTokenizedLines.get(oldLineNo++));
-				diffBlocks.add(new DiffBlock<>(diff.operation, lines, 
-						oldLineNo-lines.size(), newLineNo));
+		List<Chunk> chunks = diffChunks(processedOldLines, processedNewLines, DIFF_TIMEOUT);
+		return toDiffBlocks(chunks, oldTokenizedLines, newTokenizedLines);
+	}
+	
+	public static <T> List<DiffBlock<T>> diff(List<T> oldLines, List<T> newLines) {
+		List<Chunk> chunks = diffChunks(oldLines, newLines, DIFF_TIMEOUT);
+		return toDiffBlocks(chunks, oldLines, newLines);
+	}
+	
+	/*
+	 * Map each distinct element to an int id so that diff engine compares ints instead of 
+	 * calling equals on elements
+	 */
+	private static <T> List<Chunk> diffChunks(List<T> oldElements, List<T> newElements, long timeout) {
+		Map<T, Integer> ids = new HashMap<>();
+		int[] oldIds = toIds(oldElements, ids);
+		int[] newIds = toIds(newElements, ids);
+		return MyersDiff.diff(oldIds, newIds, timeout);
+	}
+	
+	private static <T> int[] toIds(List<T> elements, Map<T, Integer> ids) {
+		int[] array = new int[elements.size()];
+		int index = 0;
+		for (T element: elements) {
+			Integer id = ids.get(element);
+			if (id == null) {
+				id = ids.size();
+				ids.put(element, id);
 			}
+			array[index++] = id;
 		}
-		
-		return diffBlocks;
+		return array;
 	}
 	
-	public static <T> List<DiffBlock<T>> diff(List<T> oldLines, List<T> newLines) {
-		Preconditions.checkArgument(oldLines.size() + newLines.size() <= MAX_DIFF_SIZE, 
-				"Total size of old lines and new lines should be less than " + MAX_DIFF_SIZE + ".");
-		
-		DiffMatchPatch dmp = new DiffMatchPatch();
-		TokensToCharsResult<T> result1 = tokensToChars(oldLines, newLines);
-		
-		List<DiffMatchPatch.Diff> diffs = dmp.diff_main(result1.chars1, result1.chars2, false);
-
+	/*
+	 * Units of equal blocks are taken from new elements, as they might differ from old 
+	 * elements when whitespace is ignored 
+	 */
+	private static <T> List<DiffBlock<T>> toDiffBlocks(List<Chunk> chunks, List<T> oldElements, 
+			List<T> newElements) {
 		List<DiffBlock<T>> diffBlocks = new ArrayList<>();
-		int oldLineNo = 0;
-		int newLineNo = 0;
-		for (Diff diff : diffs) {
-			List<T> lines = new ArrayList<>();
-			if (diff.operation == Operation.EQUAL) {
-				for (int i = 0; i < diff.text.length(); i++) {
-					lines.add(newLines.get(newLineNo));
-					oldLineNo++;
-					newLineNo++;
-				}
-				diffBlocks.add(new DiffBlock<T>(diff.operation, lines, oldLineNo-lines.size(), newLineNo-lines.size()));
-			} else if (diff.operation == Operation.INSERT) {
-				for (int i = 0; i < diff.text.length(); i++)
-					lines.add(newLines.get(newLineNo++));
-				diffBlocks.add(new DiffBlock<T>(diff.operation, lines, oldLineNo, newLineNo-lines.size()));
+		int oldIndex = 0;
+		int newIndex = 0;
+		for (Chunk chunk: chunks) {
+			if (chunk.operation == Operation.EQUAL) {
+				List<T> units = new ArrayList<>(newElements.subList(newIndex, newIndex+chunk.length));
+				diffBlocks.add(new DiffBlock<T>(chunk.operation, units, oldIndex, newIndex));
+				oldIndex += chunk.length;
+				newIndex += chunk.length;
+			} else if (chunk.operation == Operation.INSERT) {
+				List<T> units = new ArrayList<>(newElements.subList(newIndex, newIndex+chunk.length));
+				diffBlocks.add(new DiffBlock<T>(chunk.operation, units, oldIndex, newIndex));
+				newIndex += chunk.length;
 			} else {
-				for (int i = 0; i < diff.text.length(); i++)
-					lines.add(oldLines.get(oldLineNo++));
-				diffBlocks.add(new DiffBlock<T>(diff.operation, lines, oldLineNo-lines.size(), newLineNo));
+				List<T> units = new ArrayList<>(oldElements.subList(oldIndex, oldIndex+chunk.length));
+				diffBlocks.add(new DiffBlock<T>(chunk.operation, units, oldIndex, newIndex));
+				oldIndex += chunk.length;
 			}
 		}
-		
 		return diffBlocks;
 	}
 	
@@ -204,8 +199,6 @@ public class DiffUtils {
 			List<Tokenized> deleteLines, List<Tokenized> insertLines, boolean forceAlign) {
 		LinkedHashMap<Integer, LineDiff> lineDiffs = new LinkedHashMap<>();
 		
-		DiffMatchPatch dmp = new DiffMatchPatch();
-		
 		long time = System.currentTimeMillis();
 		int nextInsert = 0;
 		for (int i=0; i<deleteLines.size(); i++) {
@@ -215,48 +208,20 @@ public class DiffUtils {
 				Tokenized insertLine = insertLines.get(j);
 				List<TextToken> insertTokens = TokenUtils.getTextTokens(insertLine);
 				
-				TokensToCharsResult<TextToken> result = DiffUtils.tokensToChars(deleteTokens, insertTokens);						
-				List<DiffMatchPatch.Diff> diffs = dmp.diff_main(result.chars1, result.chars2, false);
+				List<Chunk> chunks = diffChunks(deleteTokens, insertTokens, CHANGE_CALC_TIMEOUT);
+				List<DiffBlock<TextToken>> diffBlocks = toDiffBlocks(chunks, deleteTokens, insertTokens);
 				int equal = 0;
 				int total = 0;
-				for (DiffMatchPatch.Diff diff: diffs) {
-					for (int k=0; k<diff.text.length(); k++) {
-						int pos = diff.text.charAt(k);
-						TextToken token = result.tokenArray.get(pos);
+				for (DiffBlock<TextToken> diffBlock: diffBlocks) {
+					for (TextToken token: diffBlock.getUnits()) {
 						if (StringUtils.isNotBlank(token.getText())) {
 							total += token.getText().length();
-							if (diff.operation == Operation.EQUAL)
+							if (diffBlock.getOperation() == Operation.EQUAL)
 								equal += token.getText().length();
 						}
 					}
 				}
 				if (forceAlign || equal*3 >= total) {
-					List<DiffBlock<TextToken>> diffBlocks = new ArrayList<>();
-					int oldLineNo = 0;
-					int newLineNo = 0;
-					for (Diff diff : diffs) {
-						List<TextToken> tokens = new ArrayList<>();
-						if (diff.operation == Operation.EQUAL) {
-							for (int k = 0; k < diff.text.length(); k++) {
-								tokens.add(insertTokens.get(newLineNo));
-								oldLineNo++;
-								newLineNo++;
-							}
-							diffBlocks.add(new DiffBlock<TextToken>(
-									diff.operation, tokens, oldLineNo-tokens.size(), newLineNo-tokens.size()));
-						} else if (diff.operation == Operation.INSERT) {
-							for (int k = 0; k < diff.text.length(); k++)
-								tokens.add(insertTokens.get(newLineNo++));
-							diffBlocks.add(new DiffBlock<>(
-									diff.operation, tokens, oldLineNo, newLineNo-tokens.size()));
-						} else {
-							for (int k = 0; k < diff.text.length(); k++)
-								tokens.add(deleteTokens.get(oldLineNo++));
-							diffBlocks.add(new DiffBlock<>(
-									diff.operation, tokens, oldLineNo-tokens.size(), newLineNo));
-						}
-					}
-
 					LineDiff lineDiff = new LineDiff(j, diffBlocks);
 					lineDiffs.put(i, lineDiff);
 					nextInsert = j+1;
@@ -357,47 +322,6 @@ public class DiffUtils {
 		return lineMapping;
 	}
 	
-	public static <T> TokensToCharsResult<T> tokensToChars(List<T> tokens1, List<T> tokens2) {
-		List<T> tokenArray = new ArrayList<>();
-		Map<T, Integer> tokenHash = new HashMap<>();
-		// e.g. linearray[4] == "Hello\n"
-		// e.g. linehash.get("Hello\n") == 4
-
-		// "\x00" is a valid character, but various debuggers don't like it.
-		// So we'll insert a junk entry to avoid generating a null character.
-		tokenArray.add(null);
-
-		String chars1 = tokensToCharsMunge(tokens1, tokenArray, tokenHash);
-		String chars2 = tokensToCharsMunge(tokens2, tokenArray, tokenHash);
-		return new TokensToCharsResult<T>(chars1, chars2, tokenArray);
-	}
-
-	private static <T> String tokensToCharsMunge(List<T> tokens, List<T> tokenArray, Map<T, Integer> tokenHash) {
-		StringBuilder chars = new StringBuilder();
-		for (T token: tokens) {
-			if (tokenHash.containsKey(token)) {
-				chars.append(String.valueOf((char) (int) tokenHash.get(token)));
-			} else {
-				tokenArray.add(token);
-				tokenHash.put(token, tokenArray.size() - 1);
-				chars.append(String.valueOf((char) (tokenArray.size() - 1)));
-			}
-		}
-		return chars.toString();
-	}
-	
-	private static class TokensToCharsResult<T> {
-		private String chars1;
-		private String chars2;
-		private List<T> tokenArray;
-
-		private TokensToCharsResult(String chars1, String chars2, List<T> tokenArray) {
-			this.chars1 = chars1;
-			this.chars2 = chars2;
-			this.tokenArray = tokenArray;
-		}
-	}
-
 	private static void appendTokenized(StringBuilder builder, Tokenized tokenized) {
 		if (tokenized.getTokens().length == 0) {
 			builder.append("&nbsp;");
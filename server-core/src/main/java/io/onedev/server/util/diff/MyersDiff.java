@@ -0,0 +1,242 @@
+package io.onedev.server.util.diff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.onedev.server.util.diff.DiffMatchPatch.Operation;
+
+/**
+ * Diff of two sequences of int token ids with Myers' algorithm. The middle snake is
+ * searched with linear space and sequences are split around it recursively. Compared
+ * to diff of characters, there is no limit on number of distinct tokens.
+ *
+ * If calculation does not finish before the deadline, remaining ranges are reported as
+ * deleted and inserted as a whole, so the result is still valid but may not be minimal.
+ */
+class MyersDiff {
+
+	static class Chunk {
+
+		final Operation operation;
+
+		final int length;
+
+		Chunk(Operation operation, int length) {
+			this.operation = operation;
+			this.length = length;
+		}
+
+	}
+
+	/**
+	 * @return
+	 * 			list of chunks with adjacent chunks of same operation merged, and deletions
+	 * 			placed before insertions between two equal chunks
+	 */
+	static List<Chunk> diff(int[] seq1, int[] seq2, long timeout) {
+		long deadline = System.currentTimeMillis() + timeout;
+		List<Chunk> chunks = new ArrayList<>();
+		diff(seq1, 0, seq1.length, seq2, 0, seq2.length, deadline, chunks);
+		return normalize(chunks);
+	}
+
+	private static void diff(int[] seq1, int from1, int to1, int[] seq2, int from2, int to2,
+			long deadline, List<Chunk> chunks) {
+		int prefix = 0;
+		while (from1+prefix < to1 && from2+prefix < to2 && seq1[from1+prefix] == seq2[from2+prefix])
+			prefix++;
+		int suffix = 0;
+		while (to1-suffix > from1+prefix && to2-suffix > from2+prefix
+				&& seq1[to1-suffix-1] == seq2[to2-suffix-1]) {
+			suffix++;
+		}
+		add(chunks, Operation.EQUAL, prefix);
+		compute(seq1, from1+prefix, to1-suffix, seq2, from2+prefix, to2-suffix, deadline, chunks);
+		add(chunks, Operation.EQUAL, suffix);
+	}
+
+	private static void compute(int[] seq1, int from1, int to1, int[] seq2, int from2, int to2,
+			long deadline, List<Chunk> chunks) {
+		int length1 = to1 - from1;
+		int length2 = to2 - from2;
+		if (length1 == 0) {
+			add(chunks, Operation.INSERT, length2);
+		} else if (length2 == 0) {
+			add(chunks, Operation.DELETE, length1);
+		} else if (length1 == 1) {
+			int index = indexOf(seq2, from2, to2, seq1[from1]);
+			if (index != -1) {
+				add(chunks, Operation.INSERT, index-from2);
+				add(chunks, Operation.EQUAL, 1);
+				add(chunks, Operation.INSERT, to2-index-1);
+			} else {
+				add(chunks, Operation.DELETE, length1);
+				add(chunks, Operation.INSERT, length2);
+			}
+		} else if (length2 == 1) {
+			int index = indexOf(seq1, from1, to1, seq2[from2]);
+			if (index != -1) {
+				add(chunks, Operation.DELETE, index-from1);
+				add(chunks, Operation.EQUAL, 1);
+				add(chunks, Operation.DELETE, to1-index-1);
+			} else {
+				add(chunks, Operation.DELETE, length1);
+				add(chunks, Operation.INSERT, length2);
+			}
+		} else {
+			bisect(seq1, from1, to1, seq2, from2, to2, deadline, chunks);
+		}
+	}
+
+	private static int indexOf(int[] seq, int from, int to, int token) {
+		for (int i=from; i<to; i++) {
+			if (seq[i] == token)
+				return i;
+		}
+		return -1;
+	}
+
+	/*
+	 * Find the middle snake of the two ranges and split the problem around it. See paper
+	 * "An O(ND) Difference Algorithm and Its Variations" by Eugene W. Myers
+	 */
+	private static void bisect(int[] seq1, int from1, int to1, int[] seq2, int from2, int to2,
+			long deadline, List<Chunk> chunks) {
+		int length1 = to1 - from1;
+		int length2 = to2 - from2;
+		int maxD = (length1 + length2 + 1) / 2;
+		int vOffset = maxD;
+		int vLength = 2 * maxD;
+		int[] v1 = new int[vLength];
+		int[] v2 = new int[vLength];
+		Arrays.fill(v1, -1);
+		Arrays.fill(v2, -1);
+		v1[vOffset + 1] = 0;
+		v2[vOffset + 1] = 0;
+		int delta = length1 - length2;
+
+		// If the total number of tokens is odd, then the front path will collide with
+		// the reverse path
+		boolean front = (delta % 2 != 0);
+
+		// Offsets for start and end of k loop to prevent mapping of space beyond the grid
+		int k1start = 0;
+		int k1end = 0;
+		int k2start = 0;
+		int k2end = 0;
+		for (int d = 0; d < maxD; d++) {
+			if (System.currentTimeMillis() > deadline)
+				break;
+
+			// Walk the front path one step
+			for (int k1 = -d + k1start; k1 <= d - k1end; k1 += 2) {
+				int k1Offset = vOffset + k1;
+				int x1;
+				if (k1 == -d || (k1 != d && v1[k1Offset - 1] < v1[k1Offset + 1]))
+					x1 = v1[k1Offset + 1];
+				else
+					x1 = v1[k1Offset - 1] + 1;
+				int y1 = x1 - k1;
+				while (x1 < length1 && y1 < length2 && seq1[from1 + x1] == seq2[from2 + y1]) {
+					x1++;
+					y1++;
+				}
+				v1[k1Offset] = x1;
+				if (x1 > length1) {
+					// Ran off the right of the graph
+					k1end += 2;
+				} else if (y1 > length2) {
+					// Ran off the bottom of the graph
+					k1start += 2;
+				} else if (front) {
+					int k2Offset = vOffset + delta - k1;
+					if (k2Offset >= 0 && k2Offset < vLength && v2[k2Offset] != -1) {
+						// Mirror x2 onto top-left coordinate system
+						int x2 = length1 - v2[k2Offset];
+						if (x1 >= x2) {
+							split(seq1, from1, to1, seq2, from2, to2, x1, y1, deadline, chunks);
+							return;
+						}
+					}
+				}
+			}
+
+			// Walk the reverse path one step
+			for (int k2 = -d + k2start; k2 <= d - k2end; k2 += 2) {
+				int k2Offset = vOffset + k2;
+				int x2;
+				if (k2 == -d || (k2 != d && v2[k2Offset - 1] < v2[k2Offset + 1]))
+					x2 = v2[k2Offset + 1];
+				else
+					x2 = v2[k2Offset - 1] + 1;
+				int y2 = x2 - k2;
+				while (x2 < length1 && y2 < length2
+						&& seq1[to1 - x2 - 1] == seq2[to2 - y2 - 1]) {
+					x2++;
+					y2++;
+				}
+				v2[k2Offset] = x2;
+				if (x2 > length1) {
+					k2end += 2;
+				} else if (y2 > length2) {
+					k2start += 2;
+				} else if (!front) {
+					int k1Offset = vOffset + delta - k2;
+					if (k1Offset >= 0 && k1Offset < vLength && v1[k1Offset] != -1) {
+						int x1 = v1[k1Offset];
+						int y1 = vOffset + x1 - k1Offset;
+						// Mirror x2 onto top-left coordinate system
+						x2 = length1 - x2;
+						if (x1 >= x2) {
+							split(seq1, from1, to1, seq2, from2, to2, x1, y1, deadline, chunks);
+							return;
+						}
+					}
+				}
+			}
+		}
+
+		// Deadline reached, or number of diffs equals number of tokens, no commonality at all
+		add(chunks, Operation.DELETE, length1);
+		add(chunks, Operation.INSERT, length2);
+	}
+
+	private static void split(int[] seq1, int from1, int to1, int[] seq2, int from2, int to2,
+			int x, int y, long deadline, List<Chunk> chunks) {
+		diff(seq1, from1, from1 + x, seq2, from2, from2 + y, deadline, chunks);
+		diff(seq1, from1 + x, to1, seq2, from2 + y, to2, deadline, chunks);
+	}
+
+	private static void add(List<Chunk> chunks, Operation operation, int length) {
+		if (length != 0)
+			chunks.add(new Chunk(operation, length));
+	}
+
+	private static List<Chunk> normalize(List<Chunk> chunks) {
+		List<Chunk> normalized = new ArrayList<>();
+		int deletions = 0;
+		int insertions = 0;
+		int equals = 0;
+		for (Chunk chunk: chunks) {
+			if (chunk.operation == Operation.EQUAL) {
+				add(normalized, Operation.DELETE, deletions);
+				add(normalized, Operation.INSERT, insertions);
+				deletions = insertions = 0;
+				equals += chunk.length;
+			} else {
+				add(normalized, Operation.EQUAL, equals);
+				equals = 0;
+				if (chunk.operation == Operation.DELETE)
+					deletions += chunk.length;
+				else
+					insertions += chunk.length;
+			}
+		}
+		add(normalized, Operation.DELETE, deletions);
+		add(normalized, Operation.INSERT, insertions);
+		add(normalized, Operation.EQUAL, equals);
+		return normalized;
+	}
+
+}
@@ -1,23 +1,16 @@
 package io.onedev.server.util.facade;
 
-public class BuildFacade extends EntityFacade {
+public class BuildFacade extends ProjectBelongingFacade {
 	
 	private static final long serialVersionUID = 1L;
 	
-	private final Long projectId;
-	
 	private final String commitHash;
 	
 	public BuildFacade(Long buildId, Long projectId, String commitHash) {
-		super(buildId);
-		this.projectId = projectId;
+		super(buildId, projectId);
 		this.commitHash = commitHash;
 	}
 
-	public Long getProjectId() {
-		return projectId;
-	}
-
 	public String getCommitHash() {
 		return commitHash;
 	}
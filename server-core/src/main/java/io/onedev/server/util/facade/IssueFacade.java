@@ -2,17 +2,14 @@ package io.onedev.server.util.facade;
 
 import io.onedev.server.model.Issue;
 
-public class IssueFacade extends EntityFacade {
+public class IssueFacade extends ProjectBelongingFacade {
 	
 	private static final long serialVersionUID = 1L;
 	
-	private final Long projectId;
-	
 	private final Long number;
 	
 	public IssueFacade(Long issueId, Long projectId, Long number) {
-		super(issueId);
-		this.projectId = projectId;
+		super(issueId, projectId);
 		this.number = number;
 	}
 
@@ -20,10 +17,6 @@ public class IssueFacade extends EntityFacade {
 		this(issue.getId(), issue.getProject().getId(), issue.getNumber());
 	}
 	
-	public Long getProjectId() {
-		return projectId;
-	}
-
 	public Long getNumber() {
 		return number;
 	}
@@ -0,0 +1,74 @@
+package io.onedev.server.util.facade;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+/**
+ * Facades of project belonging entities indexed by project, so that lookups of a 
+ * single project do not need to scan facades of all projects. 
+ * 
+ * This class is not thread-safe, and callers should guard access with their own lock.
+ *
+ * @param <T>
+ */
+public class ProjectBelongingFacades<T extends ProjectBelongingFacade> {
+
+	private final Map<Long, T> facades = new HashMap<>();
+	
+	private final Map<Long, Map<Long, T>> facadesByProject = new HashMap<>();
+	
+	public void put(T facade) {
+		T prevFacade = facades.put(facade.getId(), facade);
+		if (prevFacade != null && !prevFacade.getProjectId().equals(facade.getProjectId()))
+			removeFromProject(prevFacade);
+		facadesByProject.computeIfAbsent(facade.getProjectId(), k -> new HashMap<>()).put(facade.getId(), facade);
+	}
+	
+	@Nullable
+	public T get(Long id) {
+		return facades.get(id);
+	}
+	
+	public void remove(Long id) {
+		T facade = facades.remove(id);
+		if (facade != null)
+			removeFromProject(facade);
+	}
+	
+	public void removeProject(Long projectId) {
+		Map<Long, T> facadesOfProject = facadesByProject.remove(projectId);
+		if (facadesOfProject != null)
+			facades.keySet().removeAll(facadesOfProject.keySet());
+	}
+	
+	public Collection<T> getFacades(Long projectId) {
+		Map<Long, T> facadesOfProject = facadesByProject.get(projectId);
+		if (facadesOfProject != null)
+			return new ArrayList<>(facadesOfProject.values());
+		else
+			return new ArrayList<>();
+	}
+	
+	public Collection<Long> getIds(Long projectId) {
+		Map<Long, T> facadesOfProject = facadesByProject.get(projectId);
+		if (facadesOfProject != null)
+			return new HashSet<>(facadesOfProject.keySet());
+		else
+			return new HashSet<>();
+	}
+	
+	private void removeFromProject(T facade) {
+		Map<Long, T> facadesOfProject = facadesByProject.get(facade.getProjectId());
+		if (facadesOfProject != null) {
+			facadesOfProject.remove(facade.getId());
+			if (facadesOfProject.isEmpty())
+				facadesByProject.remove(facade.getProjectId());
+		}
+	}
+	
+}
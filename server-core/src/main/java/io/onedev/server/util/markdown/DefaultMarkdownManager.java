@@ -3,16 +3,21 @@ package io.onedev.server.util.markdown;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.commons.text.StringEscapeUtils;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.vladsch.flexmark.Extension;
 import com.vladsch.flexmark.ast.Node;
 import com.vladsch.flexmark.ext.anchorlink.AnchorLinkExtension;
@@ -27,6 +32,7 @@ import com.vladsch.flexmark.parser.ParserEmulationProfile;
 import com.vladsch.flexmark.util.options.MutableDataHolder;
 import com.vladsch.flexmark.util.options.MutableDataSet;
 
+import io.onedev.commons.utils.ExceptionUtils;
 import io.onedev.commons.utils.HtmlUtils;
 import io.onedev.server.entitymanager.SettingManager;
 import io.onedev.server.model.Project;
@@ -35,12 +41,29 @@ import io.onedev.server.web.resource.AttachmentResource;
 @Singleton
 public class DefaultMarkdownManager implements MarkdownManager {
 	
+	// max total number of characters of cached html
+	private static final int MAX_CACHED_HTML_LENGTH = 20000000;
+	
 	private final SettingManager settingManager;
 	
 	private final Set<Extension> contributedExtensions;
 	
 	private final Set<MarkdownProcessor> htmlTransformers;
 	
+	/*
+	 * Rendered html and sanitized html only depend on content, and are cached by content 
+	 * hash. Reference resolution via markdown processors depends on current request, 
+	 * project and states of referenced entities, and is always performed  
+	 */
+	private final Cache<String, String> renderedHtmls = newHtmlCache();
+	
+	private final Cache<String, String> sanitizedHtmls = newHtmlCache();
+	
+	// flexmark parser and renderer are immutable and thread-safe once built
+	private volatile Parser parser;
+	
+	private volatile HtmlRenderer renderer;
+	
 	@Inject
 	public DefaultMarkdownManager(SettingManager settingManager, Set<Extension> contributedExtensions, 
 			Set<MarkdownProcessor> htmlTransformers) {
@@ -48,6 +71,29 @@ public class DefaultMarkdownManager implements MarkdownManager {
 		this.contributedExtensions = contributedExtensions;
 		this.htmlTransformers = htmlTransformers;
 	}
+	
+	private static Cache<String, String> newHtmlCache() {
+		return CacheBuilder.newBuilder()
+				.maximumWeight(MAX_CACHED_HTML_LENGTH)
+				.<String, String>weigher((key, value) -> key.length() + value.length())
+				.build();
+	}
+	
+	private static String getCacheKey(String content) {
+		return DigestUtils.sha256Hex(content);
+	}
+	
+	private Parser getParser() {
+		if (parser == null)
+			parser = Parser.builder(setupOptions()).build();
+		return parser;
+	}
+	
+	private HtmlRenderer getRenderer() {
+		if (renderer == null)
+			renderer = HtmlRenderer.builder(setupOptions()).softBreak("<br>").build();
+		return renderer;
+	}
 
 	private MutableDataHolder setupOptions() {
 		List<Extension> extensions = new ArrayList<>();
@@ -75,9 +121,11 @@ public class DefaultMarkdownManager implements MarkdownManager {
 	
 	@Override
 	public String render(String markdown) {
-		MutableDataHolder options = setupOptions();
-		Node node = parse(markdown);
-		return HtmlRenderer.builder(options).softBreak("<br>").build().render(node);
+		try {
+			return renderedHtmls.get(getCacheKey(markdown), () -> getRenderer().render(parse(markdown)));
+		} catch (ExecutionException|UncheckedExecutionException e) {
+			throw ExceptionUtils.unchecked(e.getCause());
+		}
 	}
 
 	@Override
@@ -89,7 +137,11 @@ public class DefaultMarkdownManager implements MarkdownManager {
 
 	@Override
 	public Document process(Document document, @Nullable Project project, @Nullable Object context, boolean forExternal) {
-		document = HtmlUtils.sanitize(document);
+		return processSanitized(HtmlUtils.sanitize(document), project, context, forExternal);
+	}
+	
+	private Document processSanitized(Document document, @Nullable Project project, @Nullable Object context, 
+			boolean forExternal) {
 		for (MarkdownProcessor htmlTransformer: htmlTransformers)
 			htmlTransformer.process(document, project, context);
 		
@@ -116,14 +168,19 @@ public class DefaultMarkdownManager implements MarkdownManager {
 	
 	@Override
 	public String process(String html, Project project, Object context, boolean forExternal) {
-		return process(HtmlUtils.parse(html), project, context, forExternal).body().html();
+		String sanitizedHtml;
+		try {
+			sanitizedHtml = sanitizedHtmls.get(getCacheKey(html), 
+					() -> HtmlUtils.sanitize(HtmlUtils.parse(html)).body().html());
+		} catch (ExecutionException|UncheckedExecutionException e) {
+			throw ExceptionUtils.unchecked(e.getCause());
+		}
+		return processSanitized(HtmlUtils.parse(sanitizedHtml), project, context, forExternal).body().html();
 	}
 
 	@Override
 	public Node parse(String markdown) {
-		MutableDataHolder options = setupOptions();
-		Parser parser = Parser.builder(options).build();
-		return parser.parse(markdown);
+		return getParser().parse(markdown);
 	}
 
 }
@@ -1,6 +1,5 @@
 package io.onedev.server.web.component.commit.list;
 
-import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -41,9 +40,7 @@ import org.apache.wicket.model.Model;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.eclipse.jgit.lib.FileMode;
 import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.revwalk.RevWalk;
 import org.joda.time.DateTime;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,8 +54,8 @@ import io.onedev.server.OneDev;
 import io.onedev.server.entitymanager.BuildManager;
 import io.onedev.server.git.BlobIdent;
 import io.onedev.server.git.GitUtils;
-import io.onedev.server.git.RefInfo;
-import io.onedev.server.git.command.RevListCommand;
+import io.onedev.server.git.CommitPage;
+import io.onedev.server.git.CommitQueryManager;
 import io.onedev.server.model.Project;
 import io.onedev.server.model.PullRequest;
 import io.onedev.server.search.commit.CommitCriteria;
@@ -141,61 +138,27 @@ public abstract class CommitListPanel extends Panel {
 		
 		@Override
 		protected Commits load() {
-			CommitQuery query = queryModel.getObject();
-			Commits commits = new Commits();
-			List<String> commitHashes;
-			if (query != null) {
-				try {
-					RevListCommand command = new RevListCommand(getProject().getGitDir());
-					command.ignoreCase(true);
-					
-					if (page > MAX_PAGES)
-						throw new ExplicitException("Page should be no more than " + MAX_PAGES);
-					
-					command.count(page * COMMITS_PER_PAGE);
-					
-					query.fill(getProject(), command);
-					
-					if (command.revisions().isEmpty() && getCompareWith() != null)
-						command.revisions(Lists.newArrayList(getCompareWith()));
-					
-					commitHashes = command.call();
-				} catch (Exception e) {
-					if (e.getMessage() != null)
-						error(e.getMessage());
-					else
-						error("Error calculating commits: check log for details");
-					commitHashes = new ArrayList<>();
-					logger.error("Error calculating commits: ", e);
-				}
-			} else {
+			if (commitHashes == null) {
 				commitHashes = new ArrayList<>();
+				lastCount = 0;
+				nextCursor = null;
+				queryCommits();
 			}
 			
-			commits.hasMore = (commitHashes.size() == page * COMMITS_PER_PAGE);
+			Commits commits = new Commits();
+			commits.hasMore = nextCursor != null;
 			
-			try (RevWalk revWalk = new RevWalk(getProject().getRepository())) {
-				int lastMaxCount = Math.min((page - 1) * COMMITS_PER_PAGE, commitHashes.size());
-				
-				commits.last = new ArrayList<>();
-				
-				for (int i=0; i<lastMaxCount; i++) { 
-					commits.last.add(revWalk.parseCommit(ObjectId.fromString(commitHashes.get(i))));
-				}
-				
-				sort(commits.last, 0);
-				
-				commits.current = new ArrayList<>(commits.last);
-				for (int i=lastMaxCount; i<commitHashes.size(); i++)
-					commits.current.add(revWalk.parseCommit(ObjectId.fromString(commitHashes.get(i))));
-				
-				sort(commits.current, lastMaxCount);
+			List<RevCommit> loadedCommits = getCommitQueryManager().getCommits(getProject(), commitHashes);
+			
+			commits.last = new ArrayList<>(loadedCommits.subList(0, lastCount));
+			sort(commits.last, 0);
+			
+			commits.current = new ArrayList<>(commits.last);
+			commits.current.addAll(loadedCommits.subList(lastCount, loadedCommits.size()));
+			sort(commits.current, lastCount);
 
-				commits.last = separateByDate(commits.last);
-				commits.current = separateByDate(commits.current);
-			} catch (IOException e) {
-				throw new RuntimeException(e);
-			}
+			commits.last = separateByDate(commits.last);
+			commits.current = separateByDate(commits.current);
 			
 			return commits;
 		}
@@ -206,26 +169,20 @@ public abstract class CommitListPanel extends Panel {
 		
 		@Override
 		protected Map<String, List<String>> load() {
-			Map<String, List<String>> labels = new HashMap<>();
-			List<RefInfo> refInfos = getProject().getBranchRefInfos();
-			refInfos.addAll(getProject().getTagRefInfos());
-			for (RefInfo refInfo: refInfos) {
-				if (refInfo.getPeeledObj() instanceof RevCommit) {
-					RevCommit commit = (RevCommit) refInfo.getPeeledObj();
-					List<String> commitLabels = labels.get(commit.name());
-					if (commitLabels == null) {
-						commitLabels = new ArrayList<>();
-						labels.put(commit.name(), commitLabels);
-					}
-					commitLabels.add(Repository.shortenRefName(refInfo.getRef().getName()));
-				}
-			}
-			return labels;
+			return getCommitQueryManager().getRefLabels(getProject());
 		}
 	};
 	
 	private int page = 1;
 	
+	// hashes of commits loaded so far, null if not queried yet
+	private ArrayList<String> commitHashes;
+	
+	// number of commits loaded before last page
+	private int lastCount;
+	
+	private String nextCursor;
+	
 	private transient Collection<ObjectId> commitIdsToQueryStatus;
 	
 	private WebMarkupContainer body;
@@ -268,8 +225,36 @@ public abstract class CommitListPanel extends Panel {
 		return null;
 	}
 	
+	private CommitQueryManager getCommitQueryManager() {
+		return OneDev.getInstance(CommitQueryManager.class);
+	}
+	
+	/*
+	 * Query next page of commits and append to loaded commits. Previously loaded commits are 
+	 * neither queried nor parsed again
+	 */
+	private void queryCommits() {
+		CommitQuery query = queryModel.getObject();
+		if (query != null) {
+			try {
+				CommitPage commitPage = getCommitQueryManager().query(getProject(), query, 
+						getCompareWith(), nextCursor, COMMITS_PER_PAGE);
+				commitHashes.addAll(commitPage.getCommitHashes());
+				nextCursor = commitPage.getNextCursor();
+			} catch (Exception e) {
+				if (e.getMessage() != null)
+					error(e.getMessage());
+				else
+					error("Error calculating commits: check log for details");
+				nextCursor = null;
+				logger.error("Error calculating commits: ", e);
+			}
+		}
+	}
+	
 	private void doQuery(AjaxRequestTarget target) {
 		page = 1;
+		commitHashes = null;
 		target.add(body);
 		target.add(foot);
 		querySubmitted = true;
@@ -420,6 +405,9 @@ public abstract class CommitListPanel extends Panel {
 					@Override
 					protected void runTask(AjaxRequestTarget target) {
 						page++;
+						lastCount = commitHashes.size();
+						queryCommits();
+						commitsModel.detach();
 						
 						Commits commits = commitsModel.getObject();
 						int commitIndex = 0;
@@ -684,6 +672,7 @@ public abstract class CommitListPanel extends Panel {
 	@Override
 	protected void onBeforeRender() {
 		page = 1;
+		commitHashes = null;
 		super.onBeforeRender();
 	}
 
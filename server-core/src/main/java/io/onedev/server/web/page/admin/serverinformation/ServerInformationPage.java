@@ -1,7 +1,11 @@
 package io.onedev.server.web.page.admin.serverinformation;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 
+import org.apache.commons.lang3.StringUtils;
 import org.apache.wicket.Component;
 import org.apache.wicket.markup.ComponentTag;
 import org.apache.wicket.markup.html.basic.Label;
@@ -9,8 +13,19 @@ import org.apache.wicket.markup.html.link.Link;
 import org.apache.wicket.model.LoadableDetachableModel;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.server.OneDev;
+import io.onedev.server.buildspec.job.log.LogIngestionStats;
+import io.onedev.server.buildspec.job.log.LogManager;
+import io.onedev.server.entitymanager.BuildManager;
+import io.onedev.server.entitymanager.MergePreviewManager;
+import io.onedev.server.git.ArchiveManager;
+import io.onedev.server.git.DiffManager;
+import io.onedev.server.git.GitTransportExecutor;
+import io.onedev.server.model.Build;
 import io.onedev.server.util.DateUtils;
 import io.onedev.server.web.page.admin.AdministrationPage;
+import io.onedev.server.web.websocket.WebSocketManager;
 
 @SuppressWarnings("serial")
 public class ServerInformationPage extends AdministrationPage {
@@ -67,6 +82,116 @@ public class ServerInformationPage extends AdministrationPage {
 		
 		add(new Label("osUserName", System.getProperty("user.name")));
 		
+		add(new Label("gitTransports", new LoadableDetachableModel<String>() {
+
+			@Override
+			protected String load() {
+				GitTransportExecutor executor = OneDev.getInstance(GitTransportExecutor.class);
+				return String.format("%d active, %d queued, %d completed, %d cancelled, %d rejected, %d ms average wait, %s served", 
+						executor.getActiveCount(), executor.getQueuedCount(), executor.getCompletedCount(), 
+						executor.getCancelledCount(), executor.getRejectedCount(), executor.getAverageWaitTime(), 
+						FileUtils.byteCountToDisplaySize(executor.getBytesServed()));
+			}
+			
+		}));
+		
+		add(new Label("mergePreviews", new LoadableDetachableModel<String>() {
+
+			@Override
+			protected String load() {
+				MergePreviewManager mergePreviewManager = OneDev.getInstance(MergePreviewManager.class);
+				return String.format("%d calculating, %d queued, %d calculated, %d reused, %d deferred, "
+						+ "%d ms average wait, %d ms average calculation", 
+						mergePreviewManager.getCalculatingCount(), mergePreviewManager.getQueuedCount(), 
+						mergePreviewManager.getCalculatedCount(), mergePreviewManager.getReusedCount(), 
+						mergePreviewManager.getDeferredCount(), mergePreviewManager.getAverageWaitTime(), 
+						mergePreviewManager.getAverageCalculationTime());
+			}
+			
+		}));
+		
+		add(new Label("diffs", new LoadableDetachableModel<String>() {
+
+			@Override
+			protected String load() {
+				DiffManager diffManager = OneDev.getInstance(DiffManager.class);
+				return String.format("%d commit diff requests with %.1f%% hits, %d file diff requests with %.1f%% hits, "
+						+ "%d file diffs cached", 
+						diffManager.getCommitDiffRequestCount(), diffManager.getCommitDiffHitRate()*100, 
+						diffManager.getFileDiffRequestCount(), diffManager.getFileDiffHitRate()*100, 
+						diffManager.getCachedFileDiffCount());
+			}
+			
+		}));
+		
+		add(new Label("archives", new LoadableDetachableModel<String>() {
+
+			@Override
+			protected String load() {
+				ArchiveManager archiveManager = OneDev.getInstance(ArchiveManager.class);
+				return String.format("%d hits, %d misses, %s cached", 
+						archiveManager.getHitCount(), archiveManager.getMissCount(), 
+						FileUtils.byteCountToDisplaySize(archiveManager.getCachedSize()));
+			}
+			
+		}));
+		
+		add(new Label("buildCleanup", new LoadableDetachableModel<String>() {
+
+			@Override
+			protected String load() {
+				BuildManager buildManager = OneDev.getInstance(BuildManager.class);
+				String status;
+				if (buildManager.isCleaningUp()) {
+					status = String.format("running (%d of %d projects processed)", 
+							buildManager.getCleanupProcessedProjects(), buildManager.getCleanupTotalProjects());
+				} else {
+					status = "idle";
+				}
+				return String.format("%s, %d builds deleted", status, buildManager.getCleanupDeletedBuilds());
+			}
+			
+		}));
+		
+		add(new Label("logIngestion", new LoadableDetachableModel<String>() {
+
+			@Override
+			protected String load() {
+				Map<Long, LogIngestionStats> stats = OneDev.getInstance(LogManager.class).getIngestionStats();
+				if (!stats.isEmpty()) {
+					BuildManager buildManager = OneDev.getInstance(BuildManager.class);
+					List<String> descriptions = new ArrayList<>();
+					for (Map.Entry<Long, LogIngestionStats> entry: stats.entrySet()) {
+						Build build = buildManager.get(entry.getKey());
+						if (build != null) {
+							LogIngestionStats buildStats = entry.getValue();
+							descriptions.add(String.format("%s: %d entries (%.1f/s), %d pending, %d flushes, %d notifications", 
+									build.getFQN(), buildStats.getReceivedEntries(), buildStats.getEntriesPerSecond(), 
+									buildStats.getPendingEntries(), buildStats.getFlushes(), buildStats.getNotifications()));
+						}
+					}
+					return StringUtils.join(descriptions, "; ");
+				} else {
+					return "no running builds";
+				}
+			}
+			
+		}));
+		
+		add(new Label("webSockets", new LoadableDetachableModel<String>() {
+
+			@Override
+			protected String load() {
+				WebSocketManager webSocketManager = OneDev.getInstance(WebSocketManager.class);
+				return String.format("%d connections, %d observables, %d changes notified in %d dispatches, "
+						+ "%d messages sent", 
+						webSocketManager.getConnectionCount(), webSocketManager.getObservableCount(), 
+						webSocketManager.getNotificationCount(), webSocketManager.getDispatchCount(), 
+						webSocketManager.getMessageCount());
+			}
+			
+		}));
+		
 		add(new Link<Void>("gc") {
 
 			@Override
@@ -1,12 +1,15 @@
 package io.onedev.server.web.page.project.builds.detail.log;
 
 import org.apache.wicket.Component;
+import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.markup.html.link.ResourceLink;
 import org.apache.wicket.markup.html.panel.Fragment;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 
 import io.onedev.server.security.SecurityUtils;
 import io.onedev.server.web.component.build.log.BuildLogPanel;
+import io.onedev.server.web.component.modal.ModalLink;
+import io.onedev.server.web.component.modal.ModalPanel;
 import io.onedev.server.web.page.project.builds.detail.BuildDetailPage;
 import io.onedev.server.web.resource.BuildLogResource;
 import io.onedev.server.web.resource.BuildLogResourceReference;
@@ -32,6 +35,26 @@ public class BuildLogPage extends BuildDetailPage {
 
 	public Component renderOptions(String componentId) {
 		Fragment fragment = new Fragment(componentId, "optionsFrag", this);
+		fragment.add(new ModalLink("search") {
+
+			@Override
+			protected Component newContent(String id, ModalPanel modal) {
+				return new LogSearchPanel(id, buildModel) {
+
+					@Override
+					protected void onClose(AjaxRequestTarget target) {
+						modal.close();
+					}
+					
+				};
+			}
+			
+			@Override
+			protected String getModalCssClass() {
+				return "modal-lg";
+			}
+			
+		});
 		fragment.add(new ResourceLink<Void>("download", new BuildLogResourceReference(), 
 				BuildLogResource.paramsOf(projectModel.getObject(), getBuild().getNumber())));
 		return fragment;
@@ -0,0 +1,239 @@
+package io.onedev.server.web.page.project.builds.detail.log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+import java.util.stream.Collectors;
+
+import org.apache.wicket.ajax.AjaxRequestTarget;
+import org.apache.wicket.ajax.markup.html.AjaxLink;
+import org.apache.wicket.ajax.markup.html.form.AjaxButton;
+import org.apache.wicket.feedback.FencedFeedbackPanel;
+import org.apache.wicket.markup.html.WebMarkupContainer;
+import org.apache.wicket.markup.html.basic.Label;
+import org.apache.wicket.markup.html.form.CheckBox;
+import org.apache.wicket.markup.html.form.Form;
+import org.apache.wicket.markup.html.form.TextField;
+import org.apache.wicket.markup.html.link.BookmarkablePageLink;
+import org.apache.wicket.markup.html.link.Link;
+import org.apache.wicket.markup.html.list.ListItem;
+import org.apache.wicket.markup.html.list.ListView;
+import org.apache.wicket.markup.html.panel.GenericPanel;
+import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.Model;
+
+import com.google.common.collect.Lists;
+
+import io.onedev.server.OneDev;
+import io.onedev.server.buildspec.job.log.LogManager;
+import io.onedev.server.buildspec.job.log.LogMatch;
+import io.onedev.server.entitymanager.BuildManager;
+import io.onedev.server.model.Build;
+import io.onedev.server.search.entity.build.BuildQuery;
+import io.onedev.server.search.entity.build.JobCriteria;
+import io.onedev.server.security.SecurityUtils;
+import io.onedev.server.util.ProjectScopedNumber;
+
+@SuppressWarnings("serial")
+abstract class LogSearchPanel extends GenericPanel<Build> {
+
+	private static final int MAX_MATCHES = 500;
+	
+	private static final int MAX_JOB_BUILDS = 100;
+	
+	private String pattern;
+	
+	private boolean searchJobBuilds;
+	
+	private List<LogMatch> matches;
+	
+	private boolean matchesOfJobBuilds;
+	
+	public LogSearchPanel(String id, IModel<Build> model) {
+		super(id, model);
+	}
+
+	@Override
+	protected void onInitialize() {
+		super.onInitialize();
+		
+		add(new AjaxLink<Void>("close") {
+
+			@Override
+			public void onClick(AjaxRequestTarget target) {
+				onClose(target);
+			}
+			
+		});
+		
+		WebMarkupContainer result = new WebMarkupContainer("result") {
+
+			@Override
+			protected void onConfigure() {
+				super.onConfigure();
+				setVisible(matches != null);
+			}
+			
+		};
+		result.setOutputMarkupPlaceholderTag(true);
+		add(result);
+		
+		Form<?> form = new Form<Void>("form");
+		form.add(new TextField<String>("pattern", new IModel<String>() {
+
+			@Override
+			public void detach() {
+			}
+
+			@Override
+			public String getObject() {
+				return pattern;
+			}
+
+			@Override
+			public void setObject(String object) {
+				pattern = object;
+			}
+			
+		}).setRequired(true).setLabel(Model.of("Pattern")));
+		
+		form.add(new CheckBox("searchJobBuilds", new IModel<Boolean>() {
+
+			@Override
+			public void detach() {
+			}
+
+			@Override
+			public Boolean getObject() {
+				return searchJobBuilds;
+			}
+
+			@Override
+			public void setObject(Boolean object) {
+				searchJobBuilds = object;
+			}
+			
+		}));
+		
+		form.add(new FencedFeedbackPanel("feedback", form));
+		
+		form.add(new AjaxButton("search") {
+
+			@Override
+			protected void onSubmit(AjaxRequestTarget target, Form<?> form) {
+				super.onSubmit(target, form);
+				
+				Pattern compiledPattern;
+				try {
+					compiledPattern = Pattern.compile(pattern);
+				} catch (PatternSyntaxException e) {
+					form.error("Malformed pattern: " + e.getDescription());
+					target.add(form);
+					return;
+				}
+				
+				List<Build> builds;
+				if (searchJobBuilds) {
+					BuildQuery query = new BuildQuery(new JobCriteria(getBuild().getJobName()));
+					builds = OneDev.getInstance(BuildManager.class)
+							.query(getBuild().getProject(), query, 0, MAX_JOB_BUILDS).stream()
+							.filter(it->SecurityUtils.canAccessLog(it))
+							.collect(Collectors.toList());
+				} else {
+					builds = Lists.newArrayList(getBuild());
+				}
+				
+				List<LogMatch> matches = new ArrayList<>();
+				OneDev.getInstance(LogManager.class).search(builds, compiledPattern, MAX_MATCHES, matches::add);
+				LogSearchPanel.this.matches = matches;
+				matchesOfJobBuilds = searchJobBuilds;
+				target.add(form);
+				target.add(result);
+			}
+
+			@Override
+			protected void onError(AjaxRequestTarget target, Form<?> form) {
+				super.onError(target, form);
+				target.add(form);
+			}
+			
+		});
+		add(form.setOutputMarkupId(true));
+		
+		result.add(new ListView<LogMatch>("matches", new IModel<List<LogMatch>>() {
+
+			@Override
+			public void detach() {
+			}
+
+			@Override
+			public List<LogMatch> getObject() {
+				return matches;
+			}
+
+			@Override
+			public void setObject(List<LogMatch> object) {
+				throw new UnsupportedOperationException();
+			}
+			
+		}) {
+
+			@Override
+			protected void populateItem(ListItem<LogMatch> item) {
+				LogMatch match = item.getModelObject();
+				ProjectScopedNumber buildFQN = new ProjectScopedNumber(getBuild().getProject(), match.getBuildNumber());
+				Link<Void> buildLink = new BookmarkablePageLink<Void>("build", BuildLogPage.class, 
+						BuildLogPage.paramsOf(buildFQN));
+				buildLink.add(new Label("label", "#" + match.getBuildNumber()));
+				buildLink.setVisible(matchesOfJobBuilds);
+				item.add(buildLink);
+				item.add(new Label("line", "line " + match.getLine()));
+				item.add(new Label("text", match.getText()));
+			}
+
+			@Override
+			protected void onConfigure() {
+				super.onConfigure();
+				setVisible(!matches.isEmpty());
+			}
+			
+		});
+		
+		result.add(new WebMarkupContainer("noMatches") {
+
+			@Override
+			protected void onConfigure() {
+				super.onConfigure();
+				setVisible(matches.isEmpty());
+			}
+			
+		});
+		
+		result.add(new Label("truncated", "Too many matches, displaying first " + MAX_MATCHES) {
+
+			@Override
+			protected void onConfigure() {
+				super.onConfigure();
+				setVisible(matches.size() >= MAX_MATCHES);
+			}
+			
+		});
+		
+		add(new AjaxLink<Void>("done") {
+
+			@Override
+			public void onClick(AjaxRequestTarget target) {
+				onClose(target);
+			}
+			
+		});
+	}
+	
+	private Build getBuild() {
+		return getModelObject();
+	}
+	
+	protected abstract void onClose(AjaxRequestTarget target);
+	
+}
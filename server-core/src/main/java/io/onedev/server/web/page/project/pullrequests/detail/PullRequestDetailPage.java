@@ -55,6 +55,7 @@ import org.apache.wicket.request.mapper.parameter.PageParameters;
 import com.google.common.collect.Sets;
 
 import io.onedev.server.OneDev;
+import io.onedev.server.entitymanager.MergePreviewManager;
 import io.onedev.server.entitymanager.PullRequestChangeManager;
 import io.onedev.server.entitymanager.PullRequestManager;
 import io.onedev.server.entitymanager.PullRequestReviewManager;
@@ -428,6 +429,10 @@ public abstract class PullRequestDetailPage extends ProjectPage implements PullR
 			protected void onConfigure() {
 				super.onConfigure();
 				setVisible(getPullRequest().isOpen() && getPullRequest().getMergePreview() == null);
+				
+				// Merge preview of idle pull requests is only calculated when viewed
+				if (isVisible())
+					OneDev.getInstance(MergePreviewManager.class).calculate(getPullRequest(), true);
 			}
 			
 		});
@@ -7,17 +7,25 @@ import org.apache.wicket.Component;
 import org.apache.wicket.Session;
 import org.apache.wicket.ajax.AjaxRequestTarget;
 import org.apache.wicket.ajax.markup.html.AjaxLink;
+import org.apache.wicket.markup.html.WebMarkupContainer;
 import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.markup.html.form.Form;
+import org.apache.wicket.model.AbstractReadOnlyModel;
 import org.apache.wicket.model.IModel;
+import org.apache.wicket.model.LoadableDetachableModel;
 import org.apache.wicket.request.flow.RedirectToUrlException;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 
 import com.google.common.collect.Sets;
 
+import io.onedev.commons.utils.FileUtils;
 import io.onedev.server.OneDev;
 import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.git.GitMaintenanceManager;
+import io.onedev.server.git.MaintenanceRecord;
+import io.onedev.server.git.RepositoryStats;
 import io.onedev.server.model.Project;
+import io.onedev.server.util.DateUtils;
 import io.onedev.server.util.Path;
 import io.onedev.server.util.PathNode;
 import io.onedev.server.web.WebSession;
@@ -125,6 +133,107 @@ public class GeneralProjectSettingPage extends ProjectSettingPage {
 		});
 		
 		add(form);
+		
+		add(newMaintenanceContainer());
+	}
+	
+	private GitMaintenanceManager getMaintenanceManager() {
+		return OneDev.getInstance(GitMaintenanceManager.class);
+	}
+	
+	private WebMarkupContainer newMaintenanceContainer() {
+		WebMarkupContainer container = new WebMarkupContainer("maintenance");
+		container.setOutputMarkupId(true);
+		
+		IModel<RepositoryStats> statsModel = new LoadableDetachableModel<RepositoryStats>() {
+
+			@Override
+			protected RepositoryStats load() {
+				return getMaintenanceManager().getStats(getProject());
+			}
+			
+		};
+		
+		container.add(new Label("looseObjects", new LoadableDetachableModel<String>() {
+
+			@Override
+			protected String load() {
+				RepositoryStats stats = statsModel.getObject();
+				return stats.getLooseObjects() + " (" + FileUtils.byteCountToDisplaySize(stats.getLooseSize()) + ")";
+			}
+			
+		}));
+		container.add(new Label("packs", new LoadableDetachableModel<String>() {
+
+			@Override
+			protected String load() {
+				RepositoryStats stats = statsModel.getObject();
+				return stats.getPacks() + " (" + stats.getPackedObjects() + " objects, " 
+						+ FileUtils.byteCountToDisplaySize(stats.getPackSize()) + ")";
+			}
+			
+		}));
+		container.add(new Label("lastPackDate", new LoadableDetachableModel<String>() {
+
+			@Override
+			protected String load() {
+				RepositoryStats stats = statsModel.getObject();
+				if (stats.getLastPackDate() != null)
+					return DateUtils.formatDateTime(stats.getLastPackDate());
+				else
+					return "<i>N/A</i>";
+			}
+			
+		}).setEscapeModelStrings(false));
+		container.add(new Label("lastMaintenance", new LoadableDetachableModel<String>() {
+
+			@Override
+			protected String load() {
+				MaintenanceRecord record = getMaintenanceManager().getLastMaintenance(getProject());
+				if (record != null) {
+					RepositoryStats before = record.getStatsBefore();
+					RepositoryStats after = record.getStatsAfter();
+					return String.format("%s, took %s. Loose objects: %d -> %d, packs: %d -> %d, pack size: %s -> %s", 
+							DateUtils.formatDateTime(record.getDate()), DateUtils.formatDuration(record.getDuration()), 
+							before.getLooseObjects(), after.getLooseObjects(), before.getPacks(), after.getPacks(), 
+							FileUtils.byteCountToDisplaySize(before.getPackSize()), 
+							FileUtils.byteCountToDisplaySize(after.getPackSize()));
+				} else {
+					return "<i>Not maintained since server start</i>";
+				}
+			}
+			
+		}).setEscapeModelStrings(false));
+		
+		AjaxLink<Void> maintainLink = new AjaxLink<Void>("maintain") {
+
+			@Override
+			public void onClick(AjaxRequestTarget target) {
+				getMaintenanceManager().requestMaintenance(getProject());
+				target.add(container);
+			}
+
+			@Override
+			protected void onConfigure() {
+				super.onConfigure();
+				setEnabled(!getMaintenanceManager().isMaintaining(getProject()));
+			}
+			
+		};
+		maintainLink.add(new Label("label", new AbstractReadOnlyModel<String>() {
+
+			@Override
+			public String getObject() {
+				if (getMaintenanceManager().isMaintaining(getProject()))
+					return "Maintaining...";
+				else
+					return "Maintain Now";
+			}
+			
+		}));
+		container.add(maintainLink);
+		
+		return container;
 	}
 
 	@Override
@@ -1,15 +1,25 @@
 package io.onedev.server.web.page.project.setting.webhook;
 
 import java.io.Serializable;
+import java.util.List;
 
 import org.apache.wicket.Component;
 import org.apache.wicket.feedback.FencedFeedbackPanel;
+import org.apache.wicket.markup.html.WebMarkupContainer;
 import org.apache.wicket.markup.html.basic.Label;
 import org.apache.wicket.markup.html.form.Form;
+import org.apache.wicket.markup.html.list.ListItem;
+import org.apache.wicket.markup.html.list.ListView;
+import org.apache.wicket.model.LoadableDetachableModel;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 
 import io.onedev.server.OneDev;
 import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.model.support.WebHook;
+import io.onedev.server.notification.WebHookDeliveryInfo;
+import io.onedev.server.notification.WebHookManager;
+import io.onedev.server.notification.WebHookStatus;
+import io.onedev.server.util.DateUtils;
 import io.onedev.server.web.editable.PropertyContext;
 import io.onedev.server.web.editable.PropertyEditor;
 import io.onedev.server.web.page.project.setting.ProjectSettingPage;
@@ -45,6 +55,66 @@ public class WebHooksPage extends ProjectSettingPage {
 		form.add(new FencedFeedbackPanel("feedback", form));
 		form.add(editor);
 		add(form);
+		
+		WebMarkupContainer deliveries = new WebMarkupContainer("deliveries");
+		deliveries.setVisible(!getProject().getWebHooks().isEmpty());
+		add(deliveries);
+		
+		deliveries.add(new ListView<WebHook>("webHooks", new LoadableDetachableModel<List<WebHook>>() {
+
+			@Override
+			protected List<WebHook> load() {
+				return getProject().getWebHooks();
+			}
+			
+		}) {
+
+			@Override
+			protected void populateItem(ListItem<WebHook> item) {
+				WebHook webHook = item.getModelObject();
+				WebHookStatus status = OneDev.getInstance(WebHookManager.class)
+						.getStatus(getProject(), webHook.getPostUrl());
+				
+				item.add(new Label("postUrl", webHook.getPostUrl()));
+				item.add(new Label("pending", status.getPendingCount()));
+				item.add(new Label("delivered", status.getDeliveredCount()));
+				item.add(new Label("failed", status.getFailedCount()));
+				item.add(new Label("latency", status.getAverageLatency() + "ms"));
+				
+				if (status.getCircuitOpenUntil() != null) {
+					item.add(new Label("circuitOpen", "Deliveries suspended until " 
+							+ DateUtils.formatDateTime(status.getCircuitOpenUntil()) 
+							+ " due to consecutive failures"));
+				} else {
+					item.add(new WebMarkupContainer("circuitOpen").setVisible(false));
+				}
+				
+				WebMarkupContainer recentDeliveriesContainer = new WebMarkupContainer("recentDeliveries");
+				recentDeliveriesContainer.setVisible(!status.getRecentDeliveries().isEmpty());
+				item.add(recentDeliveriesContainer);
+				recentDeliveriesContainer.add(new ListView<WebHookDeliveryInfo>("delivery", status.getRecentDeliveries()) {
+
+					@Override
+					protected void populateItem(ListItem<WebHookDeliveryInfo> item) {
+						WebHookDeliveryInfo delivery = item.getModelObject();
+						item.add(new Label("created", DateUtils.formatDateTime(delivery.getCreateDate())));
+						item.add(new Label("event", delivery.getEventType()));
+						item.add(new Label("status", delivery.getStatus()));
+						item.add(new Label("attempts", delivery.getAttempts()));
+						String response;
+						if (delivery.getLastError() != null)
+							response = delivery.getLastError();
+						else if (delivery.getLastResponseCode() != null)
+							response = String.valueOf(delivery.getLastResponseCode());
+						else
+							response = "";
+						item.add(new Label("response", response));
+					}
+					
+				});
+			}
+			
+		});
 	}
 
 	@Override
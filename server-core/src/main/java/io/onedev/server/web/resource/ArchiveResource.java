@@ -1,25 +1,28 @@
 package io.onedev.server.web.resource;
 
+import java.io.File;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
 
 import javax.persistence.EntityNotFoundException;
+import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.shiro.authz.UnauthorizedException;
 import org.apache.tika.mime.MimeTypes;
+import org.apache.wicket.request.http.WebRequest;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.request.resource.AbstractResource;
-import org.eclipse.jgit.api.ArchiveCommand;
-import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.archive.TgzFormat;
-import org.eclipse.jgit.archive.ZipFormat;
+import org.eclipse.jgit.lib.ObjectId;
 
 import io.onedev.server.OneDev;
 import io.onedev.server.entitymanager.ProjectManager;
+import io.onedev.server.git.ArchiveManager;
 import io.onedev.server.model.Project;
 import io.onedev.server.security.SecurityUtils;
 
@@ -28,15 +31,15 @@ public class ArchiveResource extends AbstractResource {
 	private static final long serialVersionUID = 1L;
 
 	private static final String PARAM_PROJECT = "project";
-	
+
 	private static final String PARAM_REVISION = "revision";
-	
+
 	private static final String PARAM_FORMAT = "format";
-	
-	public static final String FORMAT_ZIP = "zip";
-	
-	public static final String FORMAT_TGZ = "tgz";
-	
+
+	public static final String FORMAT_ZIP = ArchiveManager.FORMAT_ZIP;
+
+	public static final String FORMAT_TGZ = ArchiveManager.FORMAT_TGZ;
+
 	@Override
 	protected ResourceResponse newResourceResponse(Attributes attributes) {
 		PageParameters params = attributes.getParameters();
@@ -44,29 +47,48 @@ public class ArchiveResource extends AbstractResource {
 		String projectName = params.get(PARAM_PROJECT).toString();
 		if (StringUtils.isBlank(projectName))
 			throw new IllegalArgumentException("project name has to be specified");
-		
+
 		Project project = OneDev.getInstance(ProjectManager.class).find(projectName);
-		
-		if (project == null) 
+
+		if (project == null)
 			throw new EntityNotFoundException("Unable to find project: " + projectName);
-		
+
 		String revision = params.get(PARAM_REVISION).toString();
 		if (StringUtils.isBlank(revision))
 			throw new IllegalArgumentException("revision parameter has to be specified");
-		
+
 		String format = params.get(PARAM_FORMAT).toString();
 		if (!FORMAT_ZIP.equals(format) && !FORMAT_TGZ.equals(format)) {
 			throw new IllegalArgumentException("format parameter should be specified either zip or tar.gz");
 		}
-		
-		if (!SecurityUtils.canReadCode(project)) 
+
+		if (!SecurityUtils.canReadCode(project))
 			throw new UnauthorizedException();
 
+		ObjectId commitId = project.getRevCommit(revision, true).copy();
+
 		ResourceResponse response = new ResourceResponse();
 		response.setContentType(MimeTypes.OCTET_STREAM);
-		
-		response.disableCaching();
-		
+
+		if (!ObjectId.isId(revision))
+			response.disableCaching();
+
+		// archive content is decided by commit, so commit id is a strong validator
+		String etag = "\"" + commitId.name() + "-" + format + "\"";
+		response.getHeaders().setHeader("ETag", etag);
+		String ifNoneMatch = ((WebRequest) attributes.getRequest()).getHeader("If-None-Match");
+		if (ifNoneMatch != null && (ifNoneMatch.trim().equals("*") || ifNoneMatch.contains(etag))) {
+			response.setStatusCode(HttpServletResponse.SC_NOT_MODIFIED);
+			response.setWriteCallback(new WriteCallback() {
+
+				@Override
+				public void writeData(Attributes attributes) throws IOException {
+				}
+
+			});
+			return response;
+		}
+
 		try {
 			String fileName;
 			if (FORMAT_ZIP.equals(format))
@@ -77,27 +99,43 @@ public class ArchiveResource extends AbstractResource {
 		} catch (UnsupportedEncodingException e) {
 			throw new RuntimeException(e);
 		}
-		response.setWriteCallback(new WriteCallback() {
-
-			@Override
-			public void writeData(Attributes attributes) throws IOException {
-				if (format.equals("zip"))
-					ArchiveCommand.registerFormat(format, new ZipFormat());
-				else
-					ArchiveCommand.registerFormat(format, new TgzFormat());
-				try {
-					ArchiveCommand archive = Git.wrap(project.getRepository()).archive();
-					archive.setFormat(format);
-					archive.setTree(project.getRevCommit(revision, true).getId());
-					archive.setOutputStream(attributes.getResponse().getOutputStream());
-					archive.call();
-				} catch (GitAPIException e) {
-					throw new RuntimeException(e);
-				} finally {
-					ArchiveCommand.unregisterFormat(format);
+
+		ArchiveManager archiveManager = OneDev.getInstance(ArchiveManager.class);
+		File archiveFile = archiveManager.getArchive(project, commitId, format);
+		if (archiveFile != null) {
+			response.setContentLength(archiveFile.length());
+			response.setAcceptRange(ContentRangeType.BYTES);
+			response.setWriteCallback(new WriteCallback() {
+
+				private FileChannel openChannel() throws IOException {
+					try {
+						return FileChannel.open(archiveFile.toPath(), StandardOpenOption.READ);
+					} catch (NoSuchFileException e) {
+						// evicted after response is prepared, and re-generated archive has same content
+						File archiveFile = archiveManager.getArchive(project, commitId, format);
+						return FileChannel.open(archiveFile.toPath(), StandardOpenOption.READ);
+					}
+				}
+
+				@Override
+				public void writeData(Attributes attributes) throws IOException {
+					try (FileChannel channel = openChannel()) {
+						ResourceUtils.transferRange(channel, attributes);
+					}
 				}
-			}				
-		});
+
+			});
+		} else {
+			response.setWriteCallback(new WriteCallback() {
+
+				@Override
+				public void writeData(Attributes attributes) throws IOException {
+					archiveManager.writeArchive(project, commitId, format,
+							attributes.getResponse().getOutputStream());
+				}
+
+			});
+		}
 
 		return response;
 	}
@@ -107,8 +145,8 @@ public class ArchiveResource extends AbstractResource {
 		params.set(PARAM_PROJECT, project.getName());
 		params.set(PARAM_REVISION, revision);
 		params.set(PARAM_FORMAT, format);
-		
+
 		return params;
 	}
-	
+
 }
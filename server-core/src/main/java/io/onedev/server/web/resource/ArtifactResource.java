@@ -7,18 +7,29 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import javax.persistence.EntityNotFoundException;
+import javax.servlet.http.HttpServletResponse;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.shiro.authz.UnauthorizedException;
-import org.apache.tika.io.IOUtils;
+import org.apache.wicket.request.http.WebRequest;
+import org.apache.wicket.request.http.WebResponse.CacheScope;
 import org.apache.wicket.request.mapper.parameter.PageParameters;
 import org.apache.wicket.request.resource.AbstractResource;
+import org.apache.wicket.util.time.Duration;
+import org.apache.wicket.util.time.Time;
 
 import com.google.common.base.Joiner;
 
@@ -88,11 +99,14 @@ public class ArtifactResource extends AbstractResource {
 		
 		File artifactsDir = build.getArtifactsDir();
 		File artifactFile = new File(artifactsDir, artifactPath);
-		if (!artifactFile.exists() || artifactFile.isDirectory()) {
-			String message = String.format("Specified artifact path does not exist or is a directory (project: %s, build number: %d, path: %s)", 
+		if (!artifactFile.exists() || !isInside(artifactsDir, artifactFile)) {
+			String message = String.format("Specified artifact path does not exist (project: %s, build number: %d, path: %s)", 
 					project.getName(), build.getNumber(), artifactPath);
 			throw new ExplicitException(message);
 		}
+		
+		if (artifactFile.isDirectory())
+			return newDirectoryResponse(build, artifactFile);
 			
 		ResourceResponse response = new ResourceResponse();
 		try (InputStream is = new BufferedInputStream(new FileInputStream(artifactFile))) {
@@ -101,7 +115,16 @@ public class ArtifactResource extends AbstractResource {
 			throw new RuntimeException(e);
 		}
 		
-		response.disableCaching();
+		/*
+		 * Artifacts of running build may still be published, while artifacts of finished build 
+		 * do not change. Clients can revalidate with etag or last modified time either way
+		 */
+		if (build.isFinished()) {
+			response.setCacheScope(CacheScope.PRIVATE);
+			response.setCacheDuration(Duration.hours(1));
+		} else {
+			response.disableCaching();
+		}
 		
 		try {
 			response.setFileName(URLEncoder.encode(artifactFile.getName(), StandardCharsets.UTF_8.name()));
@@ -109,7 +132,26 @@ public class ArtifactResource extends AbstractResource {
 			throw new RuntimeException(e);
 		}
 		
-		response.setContentLength(artifactFile.length());
+		long length = artifactFile.length();
+		long lastModified = artifactFile.lastModified();
+		response.setLastModified(Time.millis(lastModified));
+		String etag = "\"" + Long.toHexString(length) + "-" + Long.toHexString(lastModified) + "\"";
+		response.getHeaders().setHeader("ETag", etag);
+		String ifNoneMatch = ((WebRequest) attributes.getRequest()).getHeader("If-None-Match");
+		if (ifNoneMatch != null && (ifNoneMatch.trim().equals("*") || ifNoneMatch.contains(etag))) {
+			response.setStatusCode(HttpServletResponse.SC_NOT_MODIFIED);
+			response.setWriteCallback(new WriteCallback() {
+
+				@Override
+				public void writeData(Attributes attributes) throws IOException {
+				}
+
+			});
+			return response;
+		}
+		
+		response.setContentLength(length);
+		response.setAcceptRange(ContentRangeType.BYTES);
 		
 		response.setWriteCallback(new WriteCallback() {
 
@@ -119,8 +161,8 @@ public class ArtifactResource extends AbstractResource {
 
 					@Override
 					public Void call() throws Exception {
-						try (InputStream is = new FileInputStream(artifactFile)) {
-							IOUtils.copy(is, attributes.getResponse().getOutputStream());
+						try (FileChannel channel = FileChannel.open(artifactFile.toPath(), StandardOpenOption.READ)) {
+							ResourceUtils.transferRange(channel, attributes);
 						}
 						return null;
 					}
@@ -132,6 +174,68 @@ public class ArtifactResource extends AbstractResource {
 
 		return response;
 	}
+	
+	private boolean isInside(File dir, File file) {
+		try {
+			return file.getCanonicalFile().toPath().startsWith(dir.getCanonicalFile().toPath());
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+	
+	/*
+	 * Directory is zipped on the fly into response, so that no temp file is needed and 
+	 * download starts immediately. Content length is unknown in this case, and range 
+	 * requests are not supported
+	 */
+	private ResourceResponse newDirectoryResponse(Build build, File directory) {
+		ResourceResponse response = new ResourceResponse();
+		response.setContentType("application/zip");
+		response.disableCaching();
+		try {
+			response.setFileName(URLEncoder.encode(directory.getName() + ".zip", StandardCharsets.UTF_8.name()));
+		} catch (UnsupportedEncodingException e) {
+			throw new RuntimeException(e);
+		}
+		
+		response.setWriteCallback(new WriteCallback() {
+
+			@Override
+			public void writeData(Attributes attributes) throws IOException {
+				LockUtils.read(build.getArtifactsLockKey(), new Callable<Void>() {
+
+					@Override
+					public Void call() throws Exception {
+						Path basePath = directory.toPath();
+						ZipOutputStream zos = new ZipOutputStream(attributes.getResponse().getOutputStream());
+						try (Stream<Path> paths = Files.walk(basePath)) {
+							for (Path path: (Iterable<Path>) paths.sorted()::iterator) {
+								if (path.equals(basePath))
+									continue;
+								String entryName = basePath.relativize(path).toString().replace(File.separatorChar, '/');
+								if (Files.isDirectory(path)) {
+									zos.putNextEntry(new ZipEntry(entryName + "/"));
+								} else {
+									ZipEntry entry = new ZipEntry(entryName);
+									entry.setTime(Files.getLastModifiedTime(path).toMillis());
+									zos.putNextEntry(entry);
+									Files.copy(path, zos);
+								}
+								zos.closeEntry();
+							}
+						}
+						// finish instead of close as response output stream is managed by container 
+						zos.finish();
+						zos.flush();
+						return null;
+					}
+					
+				});
+			}			
+			
+		});
+		return response;
+	}
 
 	public static PageParameters paramsOf(Project project, Long buildNumber, String path) {
 		PageParameters params = new PageParameters();
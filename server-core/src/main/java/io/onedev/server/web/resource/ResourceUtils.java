@@ -0,0 +1,57 @@
+package io.onedev.server.web.resource;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+import org.apache.wicket.request.cycle.RequestCycle;
+import org.apache.wicket.request.resource.AbstractResource;
+import org.apache.wicket.request.resource.IResource.Attributes;
+import org.eclipse.jetty.io.EofException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import io.onedev.commons.utils.ExceptionUtils;
+
+public class ResourceUtils {
+
+	private static final Logger logger = LoggerFactory.getLogger(ResourceUtils.class);
+	
+	/**
+	 * Write requested byte range of specified file channel to response. Data is transferred 
+	 * with {@link FileChannel#transferTo} so that the operating system can send file content 
+	 * without copying it through heap buffers. Range is taken from request cycle metadata 
+	 * populated by {@link AbstractResource} when range is accepted by the resource response, 
+	 * and whole file is written if no range is requested
+	 */
+	public static void transferRange(FileChannel channel, Attributes attributes) throws IOException {
+		Long startByte = RequestCycle.get().getMetaData(AbstractResource.CONTENT_RANGE_STARTBYTE);
+		Long endByte = RequestCycle.get().getMetaData(AbstractResource.CONTENT_RANGE_ENDBYTE);
+
+		if (startByte == null)
+			startByte = 0L;
+		if (endByte == null || endByte == -1)
+			endByte = channel.size() - 1;
+
+		WritableByteChannel target = Channels.newChannel(attributes.getResponse().getOutputStream());
+		long position = startByte;
+		long count = endByte - startByte + 1;
+		try {
+			while (count > 0) {
+				long transferred = channel.transferTo(position, count, target);
+				if (transferred <= 0)
+					break;
+				position += transferred;
+				count -= transferred;
+			}
+		} catch (Exception e) {
+			EofException eofException = ExceptionUtils.find(e, EofException.class);
+			if (eofException != null)
+				logger.trace("EOF while writing data", eofException);
+			else
+				throw e;
+		}
+	}
+	
+}
@@ -2,12 +2,15 @@ package io.onedev.server.web.websocket;
 
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.Nullable;
 import javax.inject.Inject;
@@ -26,8 +29,6 @@ import org.quartz.SimpleScheduleBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.common.collect.Sets;
-
 import io.onedev.commons.launcher.loader.Listen;
 import io.onedev.commons.utils.StringUtils;
 import io.onedev.server.event.system.SystemStarted;
@@ -43,6 +44,8 @@ public class DefaultWebSocketManager implements WebSocketManager {
 
 	private static final Logger logger = LoggerFactory.getLogger(DefaultWebSocketManager.class);
 	
+	private static final int DISPATCH_DELAY = 100;
+	
 	private final Application application;
 	
 	private final TransactionManager transactionManager;
@@ -59,6 +62,19 @@ public class DefaultWebSocketManager implements WebSocketManager {
 	
 	private final Map<String, Date> notifiedObservables = new ConcurrentHashMap<>();
 	
+	// inverted index of registered observables, to find pages to notify without checking all connections
+	private final Map<String, Set<PageKey>> observingPages = new ConcurrentHashMap<>();
+	
+	private final Set<String> pendingObservables = ConcurrentHashMap.newKeySet();
+	
+	private final AtomicBoolean dispatchScheduled = new AtomicBoolean(false);
+	
+	private final AtomicLong notificationCount = new AtomicLong(0);
+	
+	private final AtomicLong dispatchCount = new AtomicLong(0);
+	
+	private final AtomicLong messageCount = new AtomicLong(0);
+	
 	private String keepAliveTaskId;
 
 	private String notifiedObservableCleanupTaskId;
@@ -85,6 +101,25 @@ public class DefaultWebSocketManager implements WebSocketManager {
 			IKey pageKey = new PageIdKey(page.getPageId());
 			Collection<String> observables = page.findWebSocketObservables();
 			Collection<String> prevObservables = sessionPages.put(pageKey, observables);
+			
+			PageKey observingPage = new PageKey(sessionId, pageKey);
+			if (prevObservables != null) {
+				for (String observable: prevObservables) {
+					if (!observables.contains(observable))
+						removeObservingPage(observable, observingPage);
+				}
+			}
+			
+			// add inside compute so that a concurrent removal can not drop the set right before adding
+			for (String observable: observables) {
+				observingPages.compute(observable, (key, value) -> {
+					if (value == null)
+						value = ConcurrentHashMap.newKeySet();
+					value.add(observingPage);
+					return value;
+				});
+			}
+			
 			if (prevObservables != null && !prevObservables.containsAll(observables)) {
 				IWebSocketConnection connection = connectionRegistry.getConnection(application, sessionId, pageKey);
 				if (connection != null)
@@ -93,9 +128,23 @@ public class DefaultWebSocketManager implements WebSocketManager {
 		}
 	}
 	
+	private void removeObservingPage(String observable, PageKey observingPage) {
+		observingPages.computeIfPresent(observable, (key, value) -> {
+			value.remove(observingPage);
+			return value.isEmpty()? null: value;
+		});
+	}
+	
 	@Override
 	public void onDestroySession(String sessionId) {
-		registeredObservables.remove(sessionId);
+		Map<IKey, Collection<String>> sessionPages = registeredObservables.remove(sessionId);
+		if (sessionPages != null) {
+			for (Map.Entry<IKey, Collection<String>> entry: sessionPages.entrySet()) {
+				PageKey observingPage = new PageKey(sessionId, entry.getKey());
+				for (String observable: entry.getValue())
+					removeObservingPage(observable, observingPage);
+			}
+		}
 	}
 	
 	@Nullable
@@ -116,6 +165,7 @@ public class DefaultWebSocketManager implements WebSocketManager {
 		String message = OBSERVABLE_CHANGED + ":" + StringUtils.join(observables, "\n"); 
 		try {
 			connection.sendMessage(message);
+			messageCount.incrementAndGet();
 		} catch (Exception e) {
 			logger.error("Error sending websocket message: " + message, e);
 		}
@@ -128,24 +178,81 @@ public class DefaultWebSocketManager implements WebSocketManager {
 
 			@Override
 			public void run() {
-				executorService.execute(new Runnable() {
-
-					@Override
-					public void run() {
-						notifiedObservables.put(observable, new Date());
-						for (IWebSocketConnection connection: connectionRegistry.getConnections(application)) {
-							Collection<String> registeredObservables = getRegisteredObservables(connection); 
-							if (registeredObservables != null && registeredObservables.contains(observable))
-								notifyObservables(connection, Sets.newHashSet(observable));
+				notificationCount.incrementAndGet();
+				pendingObservables.add(observable);
+				if (dispatchScheduled.compareAndSet(false, true)) {
+					executorService.execute(new Runnable() {
+	
+						@Override
+						public void run() {
+							try {
+								Thread.sleep(DISPATCH_DELAY);
+							} catch (InterruptedException e) {
+							}
+							// reset before dispatching so that changes during dispatch are not missed
+							dispatchScheduled.set(false);
+							dispatchPendingObservables();
 						}
-					}
-					
-				});
+						
+					});
+				}
 			}
 			
 		});
 	}
 	
+	/*
+	 * Changes of same observable within dispatch delay are notified only once, and multiple 
+	 * changed observables of a page are notified in a single message
+	 */
+	private void dispatchPendingObservables() {
+		dispatchCount.incrementAndGet();
+		Date now = new Date();
+		Map<PageKey, Set<String>> pageObservables = new HashMap<>();
+		for (Iterator<String> it = pendingObservables.iterator(); it.hasNext();) {
+			String observable = it.next();
+			it.remove();
+			notifiedObservables.put(observable, now);
+			Set<PageKey> pages = observingPages.get(observable);
+			if (pages != null) {
+				for (PageKey page: pages) 
+					pageObservables.computeIfAbsent(page, key -> new HashSet<>()).add(observable);
+			}
+		}
+		for (Map.Entry<PageKey, Set<String>> entry: pageObservables.entrySet()) {
+			PageKey page = entry.getKey();
+			IWebSocketConnection connection = connectionRegistry.getConnection(
+					application, page.getSessionId(), page.getPageId());
+			if (connection != null && connection.isOpen())
+				notifyObservables(connection, entry.getValue());
+		}
+	}
+	
+	@Override
+	public int getConnectionCount() {
+		return connectionRegistry.getConnections(application).size();
+	}
+	
+	@Override
+	public int getObservableCount() {
+		return observingPages.size();
+	}
+	
+	@Override
+	public long getNotificationCount() {
+		return notificationCount.get();
+	}
+	
+	@Override
+	public long getDispatchCount() {
+		return dispatchCount.get();
+	}
+	
+	@Override
+	public long getMessageCount() {
+		return messageCount.get();
+	}
+	
 	@Listen
 	public void on(SystemStarted event) {
 		keepAliveTaskId = taskScheduler.schedule(new SchedulableTask() {
@@ -19,4 +19,33 @@ public interface WebSocketManager {
 	void notifyObservableChange(String observable);
 	
 	void onConnect(IWebSocketConnection connection);
+	
+	int getConnectionCount();
+	
+	/**
+	 * @return
+	 * 			number of distinct observables registered by open pages
+	 */
+	int getObservableCount();
+	
+	/**
+	 * @return
+	 * 			number of observable changes notified since server start
+	 */
+	long getNotificationCount();
+	
+	/**
+	 * @return
+	 * 			number of dispatches since server start. Observable changes happened closely are 
+	 * 			dispatched together
+	 */
+	long getDispatchCount();
+	
+	/**
+	 * @return
+	 * 			number of messages sent to websocket connections for observable changes since 
+	 * 			server start
+	 */
+	long getMessageCount();
+	
 }
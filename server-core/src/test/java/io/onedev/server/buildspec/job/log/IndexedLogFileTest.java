@@ -0,0 +1,97 @@
+package io.onedev.server.buildspec.job.log;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import io.onedev.commons.utils.FileUtils;
+
+public class IndexedLogFileTest {
+
+	private File tempDir;
+
+	private IndexedLogFile logFile;
+
+	@Before
+	public void before() {
+		tempDir = FileUtils.createTempDir();
+		logFile = new IndexedLogFile(new File(tempDir, "log"), new File(tempDir, "log.index"));
+	}
+
+	@After
+	public void after() {
+		FileUtils.deleteDir(tempDir);
+	}
+
+	private JobLogEntryEx newEntry(String text) {
+		Style style = new Style(Style.FOREGROUND_COLOR_DEFAULT, Style.BACKGROUND_COLOR_DEFAULT, false);
+		return new JobLogEntryEx(new Date(), Lists.newArrayList(new Message(style, text)));
+	}
+
+	private List<String> readTexts() throws IOException {
+		List<String> texts = new ArrayList<>();
+		for (JobLogEntryEx entry: logFile.read(0, 0))
+			texts.add(entry.getMessages().get(0).getText());
+		return texts;
+	}
+
+	private void appendBytes(File file, byte[] bytes) throws IOException {
+		try (FileOutputStream os = new FileOutputStream(file, true)) {
+			os.write(bytes);
+		}
+	}
+
+	@Test
+	public void shouldReadAppendedEntries() throws IOException {
+		logFile.append(Lists.newArrayList(newEntry("line1"), newEntry("line2")));
+		logFile.append(Lists.newArrayList(newEntry("line3")));
+		assertEquals(3, logFile.size());
+		assertEquals(Lists.newArrayList("line1", "line2", "line3"), readTexts());
+		assertEquals("line3", logFile.read(2, 1).get(0).getMessages().get(0).getText());
+	}
+
+	@Test
+	public void shouldRepairTornWrites() throws IOException {
+		File dataFile = new File(tempDir, "log");
+		File indexFile = new File(tempDir, "log.index");
+
+		logFile.append(Lists.newArrayList(newEntry("line1"), newEntry("line2")));
+
+		// partially written offset, and data of an entry not recorded in index
+		appendBytes(indexFile, new byte[] {0, 0, 0});
+		appendBytes(dataFile, new byte[] {1, 2, 3, 4, 5});
+		assertEquals(2, logFile.size());
+
+		// torn writes are repaired on first append after the file is opened
+		logFile = new IndexedLogFile(dataFile, indexFile);
+		logFile.append(Lists.newArrayList(newEntry("line3")));
+		assertEquals(3, logFile.size());
+		assertEquals(Lists.newArrayList("line1", "line2", "line3"), readTexts());
+
+		// offset recorded for an entry whose data is incomplete
+		long dataLength = dataFile.length();
+		try (FileOutputStream os = new FileOutputStream(indexFile, true)) {
+			os.write(ByteBuffer.allocate(Long.BYTES).putLong(dataLength).array());
+		}
+		appendBytes(dataFile, new byte[] {0, 0});
+		assertEquals(4, logFile.size());
+
+		logFile = new IndexedLogFile(dataFile, indexFile);
+		logFile.append(Lists.newArrayList(newEntry("line4")));
+		assertEquals(4, logFile.size());
+		assertEquals(Lists.newArrayList("line1", "line2", "line3", "line4"), readTexts());
+	}
+
+}
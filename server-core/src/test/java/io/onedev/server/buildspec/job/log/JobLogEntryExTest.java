@@ -2,6 +2,12 @@ package io.onedev.server.buildspec.job.log;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
 import org.junit.Test;
 
 import com.google.common.collect.Lists;
@@ -54,4 +60,21 @@ public class JobLogEntryExTest {
 				), entry.getMessages());
 	}
 
+	@Test
+	public void testEncoding() throws IOException {
+		JobLogEntryEx entry = JobLogEntryEx.parse("plain \u001b[1;31mbold red\u001b[0m \u4e2d\u6587", new StyleBuilder());
+		
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		try (DataOutputStream dos = new DataOutputStream(baos)) {
+			entry.writeTo(dos);
+		}
+		JobLogEntryEx decoded;
+		try (DataInputStream dis = new DataInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+			decoded = JobLogEntryEx.readFrom(dis);
+		}
+		
+		assertEquals(entry.getDate(), decoded.getDate());
+		assertEquals(entry.getMessages(), decoded.getMessages());
+	}
+	
 }
@@ -0,0 +1,39 @@
+package io.onedev.server.buildspec.job.log;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+public class SecretMaskerTest {
+
+	@Test
+	public void test() {
+		SecretMasker masker = new SecretMasker(Lists.newArrayList("secret", "cret1", "token", ""), "***");
+		assertEquals("nothing to hide", masker.mask("nothing to hide"));
+		assertEquals("password: ***", masker.mask("password: secret"));
+		assertEquals("*** and ***", masker.mask("secret and token"));
+		assertEquals("******", masker.mask("secrettoken"));
+		assertEquals("***2", masker.mask("secret12"));
+		assertEquals("se***", masker.mask("setoken"));
+		assertEquals("sec", masker.mask("sec"));
+
+		masker = new SecretMasker(Lists.newArrayList("abcdef", "bc"), "***");
+		assertEquals("x***y", masker.mask("xabcdefy"));
+		assertEquals("x***y", masker.mask("xbcy"));
+
+		String keyLine = "MIIEvQIBADANBgkqhkiG9w0BAQEFAASCBKcwggSjAgEAAoIBAQC7VJTUt9Us8cKj";
+		masker = new SecretMasker(Lists.newArrayList("-----BEGIN KEY-----\r\n" + keyLine 
+				+ "\r\n\"type\": \"service_account\",\r\n}\r\n-----END KEY-----"), "***");
+		assertEquals("  ***", masker.mask("  " + keyLine));
+		assertEquals("-----BEGIN KEY-----", masker.mask("-----BEGIN KEY-----"));
+		assertEquals("\"type\": \"service_account\",", masker.mask("\"type\": \"service_account\","));
+		assertEquals("}", masker.mask("}"));
+
+		masker = new SecretMasker(Lists.newArrayList(), "***");
+		assertTrue(masker.isEmpty());
+		assertEquals("secret", masker.mask("secret"));
+	}
+
+}
@@ -0,0 +1,135 @@
+package io.onedev.server.infomanager;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+import io.onedev.commons.launcher.loader.AppLoader;
+import io.onedev.server.git.AbstractGitTest;
+import io.onedev.server.git.command.GitCommit;
+import io.onedev.server.git.command.LogCommand;
+import io.onedev.server.model.Project;
+import io.onedev.server.util.ElementPumper;
+import io.onedev.server.util.Pair;
+
+public class CommitDeltaTest extends AbstractGitTest {
+
+	private static final Logger logger = LoggerFactory.getLogger(CommitDeltaTest.class);
+
+	private static final int COMMITS = 200;
+
+	private ExecutorService executor;
+
+	@Override
+	protected void setup() {
+		super.setup();
+		executor = Executors.newCachedThreadPool();
+		Mockito.when(AppLoader.getInstance(ExecutorService.class)).thenReturn(executor);
+	}
+
+	@Override
+	protected void teardown() {
+		executor.shutdownNow();
+		super.teardown();
+	}
+
+	private List<GitCommit> log() {
+		List<GitCommit> commits = new ArrayList<>();
+		EnumSet<LogCommand.Field> fields = EnumSet.allOf(LogCommand.Field.class);
+		fields.remove(LogCommand.Field.LINE_CHANGES);
+		new LogCommand(git.getRepository().getDirectory()) {
+
+			@Override
+			protected void consume(GitCommit commit) {
+				commits.add(commit);
+			}
+
+		}.revisions(Lists.newArrayList("HEAD")).fields(fields).call();
+		return commits;
+	}
+
+	@Test
+	public void shouldDeriveCommitInfo() {
+		addFileAndCommit("dir1/dir2/file", "content", "fix issue #1");
+		rm("dir1/dir2/file");
+		addFile("dir1/renamed", "content");
+		commit("rename");
+
+		Project project = Mockito.mock(Project.class);
+		Mockito.when(project.getName()).thenReturn("test");
+
+		List<GitCommit> commits = log();
+		CommitDelta renameDelta = new CommitDelta(project, commits.get(0));
+		CommitDelta addDelta = new CommitDelta(project, commits.get(1));
+
+		assertEquals(Lists.newArrayList("dir1/dir2/file", "dir1/dir2", "dir1", ""), addDelta.getAuthoredPaths());
+		assertEquals(Lists.newArrayList(1L), new ArrayList<>(addDelta.getFixedIssueNumbers()));
+		assertTrue(addDelta.getRenames().isEmpty());
+
+		assertEquals(Lists.newArrayList(new Pair<>("dir1/dir2/file", "dir1/renamed")), renameDelta.getRenames());
+		assertEquals(Lists.newArrayList(addDelta.getCommitId()), renameDelta.getParentIds());
+		assertTrue(renameDelta.getFixedIssueNumbers().isEmpty());
+	}
+
+	@Test
+	public void shouldApplyConcurrentDeltasInLogOrder() {
+		for (int i=0; i<COMMITS; i++)
+			addFileAndCommit("dir" + i%10 + "/sub" + i%7 + "/file" + i, "content" + i, "commit " + i);
+
+		Project project = Mockito.mock(Project.class);
+		Mockito.when(project.getName()).thenReturn("test");
+
+		List<GitCommit> commits = log();
+
+		long time = System.currentTimeMillis();
+		List<List<String>> serialPaths = new ArrayList<>();
+		for (GitCommit commit: commits)
+			serialPaths.add(new CommitDelta(project, commit).getAuthoredPaths());
+		logger.info("Computed {} deltas serially in {} ms", commits.size(), System.currentTimeMillis() - time);
+
+		ExecutorService deltaExecutor = Executors.newFixedThreadPool(4);
+		try {
+			time = System.currentTimeMillis();
+			List<List<String>> concurrentPaths = new ArrayList<>();
+			new ElementPumper<Future<CommitDelta>>(10) {
+
+				@Override
+				public void generate(Consumer<Future<CommitDelta>> consumer) {
+					for (GitCommit commit: commits)
+						consumer.accept(deltaExecutor.submit(() -> new CommitDelta(project, commit)));
+				}
+
+				@Override
+				public void process(Future<CommitDelta> element) {
+					try {
+						concurrentPaths.add(element.get().getAuthoredPaths());
+					} catch (InterruptedException | ExecutionException e) {
+						throw new RuntimeException(e);
+					}
+				}
+
+			}.pump();
+			logger.info("Computed {} deltas concurrently in {} ms", commits.size(), System.currentTimeMillis() - time);
+
+			assertEquals(COMMITS, concurrentPaths.size());
+			assertEquals(serialPaths, concurrentPaths);
+		} finally {
+			deltaExecutor.shutdownNow();
+		}
+	}
+
+}
@@ -0,0 +1,179 @@
+package io.onedev.server.notification;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import io.onedev.commons.utils.FileUtils;
+import io.onedev.server.event.system.SystemStopping;
+import io.onedev.server.notification.DefaultWebHookManager.Endpoint;
+import io.onedev.server.storage.StorageManager;
+
+public class DefaultWebHookManagerTest {
+
+	private WebHookDelivery newDelivery() {
+		return new WebHookDelivery(1L, "http://localhost/hook", "PUSH", "{}");
+	}
+
+	/*
+	 * Take a batch and fail all deliveries of it as delivering thread does
+	 */
+	private int failBatch(Endpoint endpoint, long now) {
+		List<WebHookDelivery> batch = endpoint.takeBatch(now);
+		int size = batch.size();
+		for (WebHookDelivery delivery: batch) {
+			delivery.onAttempt(500, "Unexpected response code: 500");
+			if (!endpoint.onFailed(delivery, now))
+				endpoint.queue(delivery);
+		}
+		batch.clear();
+		endpoint.release(batch);
+		return size;
+	}
+
+	@Test
+	public void shouldCapRetryDelay() {
+		assertEquals(DefaultWebHookManager.INITIAL_RETRY_DELAY, DefaultWebHookManager.getRetryDelay(1));
+		assertEquals(DefaultWebHookManager.INITIAL_RETRY_DELAY*2, DefaultWebHookManager.getRetryDelay(2));
+		assertEquals(DefaultWebHookManager.INITIAL_RETRY_DELAY*4, DefaultWebHookManager.getRetryDelay(3));
+		assertEquals(DefaultWebHookManager.MAX_RETRY_DELAY, DefaultWebHookManager.getRetryDelay(20));
+		assertEquals(DefaultWebHookManager.MAX_RETRY_DELAY, DefaultWebHookManager.getRetryDelay(100));
+
+		Endpoint endpoint = new Endpoint("secret");
+		WebHookDelivery delivery = newDelivery();
+		endpoint.queue(delivery);
+		long now = System.currentTimeMillis();
+		assertEquals(1, failBatch(endpoint, now));
+		assertEquals(now + DefaultWebHookManager.INITIAL_RETRY_DELAY, delivery.getNextAttemptDate().getTime());
+
+		// not due for retry yet
+		assertTrue(endpoint.takeBatch(now).isEmpty());
+	}
+
+	@Test
+	public void shouldGiveUpAfterMaxAttempts() {
+		Endpoint endpoint = new Endpoint("secret");
+		WebHookDelivery delivery = newDelivery();
+		endpoint.queue(delivery);
+
+		long now = System.currentTimeMillis();
+		for (int i=1; i<DefaultWebHookManager.MAX_ATTEMPTS; i++) {
+			assertEquals(1, failBatch(endpoint, now));
+			assertEquals(WebHookDelivery.Status.PENDING, delivery.getStatus());
+			assertEquals(1, endpoint.getStatus(now).getPendingCount());
+			now += DefaultWebHookManager.MAX_RETRY_DELAY;
+		}
+
+		List<WebHookDelivery> batch = endpoint.takeBatch(now);
+		assertEquals(1, batch.size());
+		delivery.onAttempt(null, "Connection refused");
+		assertTrue(endpoint.onFailed(batch.remove(0), now));
+		endpoint.release(batch);
+
+		assertEquals(WebHookDelivery.Status.FAILED, delivery.getStatus());
+		assertEquals(DefaultWebHookManager.MAX_ATTEMPTS, delivery.getAttempts());
+		WebHookStatus status = endpoint.getStatus(now);
+		assertEquals(0, status.getPendingCount());
+		assertEquals(1, status.getFailedCount());
+		assertEquals(1, status.getRecentDeliveries().size());
+		assertEquals(WebHookDelivery.Status.FAILED, status.getRecentDeliveries().get(0).getStatus());
+		assertEquals("Connection refused", status.getRecentDeliveries().get(0).getLastError());
+		assertTrue(endpoint.takeBatch(now + DefaultWebHookManager.MAX_RETRY_DELAY).isEmpty());
+	}
+
+	@Test
+	public void shouldProbeHalfOpenCircuitWithSingleDelivery() {
+		Endpoint endpoint = new Endpoint("secret");
+		for (int i=0; i<DefaultWebHookManager.BATCH_SIZE*2; i++)
+			endpoint.queue(newDelivery());
+
+		long now = System.currentTimeMillis();
+
+		// first batch fails and opens the circuit
+		assertEquals(DefaultWebHookManager.BATCH_SIZE, failBatch(endpoint, now));
+		assertTrue(endpoint.isCircuitOpen(now));
+		assertNotNull(endpoint.getStatus(now).getCircuitOpenUntil());
+
+		// deliveries are not taken while circuit is open, even if due
+		now += DefaultWebHookManager.CIRCUIT_BREAK_PERIOD - 1;
+		assertTrue(endpoint.takeBatch(now).isEmpty());
+
+		// half open: only a single delivery is let through, and no other batch while probing
+		now += 1;
+		assertFalse(endpoint.isCircuitOpen(now));
+		List<WebHookDelivery> probe = endpoint.takeBatch(now);
+		assertEquals(1, probe.size());
+		assertTrue(endpoint.takeBatch(now).isEmpty());
+
+		// failed probe opens the circuit again
+		WebHookDelivery delivery = probe.remove(0);
+		delivery.onAttempt(503, "Unexpected response code: 503");
+		assertFalse(endpoint.onFailed(delivery, now));
+		endpoint.queue(delivery);
+		endpoint.release(probe);
+		assertTrue(endpoint.isCircuitOpen(now));
+		assertTrue(endpoint.takeBatch(now).isEmpty());
+
+		// successful probe closes the circuit, and full batches are taken again
+		now += DefaultWebHookManager.CIRCUIT_BREAK_PERIOD;
+		probe = endpoint.takeBatch(now);
+		assertEquals(1, probe.size());
+		delivery = probe.remove(0);
+		delivery.onAttempt(200, null);
+		endpoint.onDelivered(delivery, 10);
+		endpoint.release(probe);
+		assertFalse(endpoint.isCircuitOpen(now));
+		assertEquals(WebHookDelivery.Status.DELIVERED, delivery.getStatus());
+		assertEquals(DefaultWebHookManager.BATCH_SIZE, endpoint.takeBatch(now).size());
+		assertEquals(DefaultWebHookManager.BATCH_SIZE-1, endpoint.takeBatch(now).size());
+
+		// concurrency limit reached
+		endpoint.queue(newDelivery());
+		assertTrue(endpoint.takeBatch(now).isEmpty());
+	}
+
+	@Test
+	public void shouldRoundTripOutbox() {
+		File tempDir = FileUtils.createTempDir();
+		StorageManager storageManager = Mockito.mock(StorageManager.class);
+		Mockito.when(storageManager.getProjectInfoDir(1L)).thenReturn(tempDir);
+		DefaultWebHookManager manager = new DefaultWebHookManager(null, null, storageManager, null, null, null);
+		try {
+			WebHookDelivery delivery1 = newDelivery();
+			WebHookDelivery delivery2 = new WebHookDelivery(1L, "http://localhost/hook2", 
+					"ISSUE", "{\"issue\":1}");
+			delivery2.onAttempt(500, "Unexpected response code: 500");
+			delivery2.setNextAttemptDate(new Date(delivery2.getCreateDate().getTime() + 1000));
+			manager.writeOutbox(1L, Arrays.asList(delivery1, delivery2));
+
+			List<WebHookDelivery> deliveries = manager.readOutbox(1L);
+			assertEquals(2, deliveries.size());
+			WebHookDelivery read2 = deliveries.get(0).getId().equals(delivery2.getId())? deliveries.get(0): deliveries.get(1);
+			assertEquals("http://localhost/hook2", read2.getPostUrl());
+			assertEquals("ISSUE", read2.getEventType());
+			assertEquals("{\"issue\":1}", read2.getPayload());
+			assertEquals(1, read2.getAttempts());
+			assertEquals(Integer.valueOf(500), read2.getLastResponseCode());
+			assertEquals(delivery2.getNextAttemptDate(), read2.getNextAttemptDate());
+
+			// updating a delivery replaces it instead of adding another one
+			delivery1.onAttempt(500, "Unexpected response code: 500");
+			manager.writeOutbox(1L, Arrays.asList(delivery1));
+			manager.removeFromOutbox(delivery2);
+			deliveries = manager.readOutbox(1L);
+			assertEquals(1, deliveries.size());
+			assertEquals(delivery1.getId(), deliveries.get(0).getId());
+			assertEquals(1, deliveries.get(0).getAttempts());
+		} finally {
+			manager.on(new SystemStopping());
+			FileUtils.deleteDir(tempDir);
+		}
+	}
+
+}
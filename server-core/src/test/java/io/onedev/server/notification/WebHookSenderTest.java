@@ -0,0 +1,80 @@
+package io.onedev.server.notification;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpServer;
+
+public class WebHookSenderTest {
+
+	private HttpServer server;
+
+	private WebHookSender sender;
+
+	private final AtomicReference<String> receivedPayload = new AtomicReference<>();
+
+	private final AtomicReference<String> receivedSignature = new AtomicReference<>();
+
+	private final AtomicInteger responseCode = new AtomicInteger(200);
+
+	@Before
+	public void before() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/hook", exchange -> {
+			try (InputStream is = exchange.getRequestBody()) {
+				receivedPayload.set(IOUtils.toString(is, StandardCharsets.UTF_8));
+			}
+			receivedSignature.set(exchange.getRequestHeaders().getFirst(WebHookSender.SIGNATURE_HEAD));
+			exchange.sendResponseHeaders(responseCode.get(), -1);
+			exchange.close();
+		});
+		server.start();
+		sender = new WebHookSender(2);
+	}
+
+	private String getPostUrl() {
+		return "http://127.0.0.1:" + server.getAddress().getPort() + "/hook";
+	}
+
+	@Test
+	public void shouldPostPayloadWithSignature() throws IOException {
+		assertEquals(200, sender.send(getPostUrl(), "secret", "{\"event\":\"push\"}"));
+		assertEquals("{\"event\":\"push\"}", receivedPayload.get());
+		assertEquals("secret", receivedSignature.get());
+
+		// second delivery should work with the pooled connection
+		assertEquals(200, sender.send(getPostUrl(), "secret", "{\"event\":\"issue\"}"));
+		assertEquals("{\"event\":\"issue\"}", receivedPayload.get());
+	}
+
+	@Test
+	public void shouldReturnErrorResponseCode() throws IOException {
+		responseCode.set(503);
+		assertEquals(503, sender.send(getPostUrl(), "secret", "{}"));
+	}
+
+	@Test(expected=IOException.class)
+	public void shouldThrowIfEndpointUnreachable() throws IOException {
+		String postUrl = getPostUrl();
+		server.stop(0);
+		sender.send(postUrl, "secret", "{}");
+	}
+
+	@After
+	public void after() throws IOException {
+		sender.close();
+		server.stop(0);
+	}
+
+}
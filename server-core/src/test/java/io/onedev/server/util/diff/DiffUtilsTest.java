@@ -2,7 +2,9 @@ package io.onedev.server.util.diff;
 
 import static org.junit.Assert.*;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -54,4 +56,143 @@ public class DiffUtilsTest extends DiffUtils {
 		assertFalse(DiffUtils.isVisible(diffBlocks, false, 18, 3));
 	}
 
+	@Test
+	public void testDiffMoreLinesThanCharRange() {
+		List<String> oldLines = new ArrayList<>();
+		List<String> newLines = new ArrayList<>();
+		for (int i=0; i<100000; i++) {
+			oldLines.add("line " + i);
+			if (i != 50000)
+				newLines.add("line " + i);
+			else
+				newLines.add("changed line " + i);
+		}
+		
+		List<DiffBlock<String>> diffBlocks = DiffUtils.diff(oldLines, newLines);
+		assertEquals(4, diffBlocks.size());
+		assertEquals(DiffMatchPatch.Operation.DELETE, diffBlocks.get(1).getOperation());
+		assertEquals(50000, diffBlocks.get(1).getOldStart());
+		assertEquals(DiffMatchPatch.Operation.INSERT, diffBlocks.get(2).getOperation());
+		assertEquals("changed line 50000", diffBlocks.get(2).getUnits().get(0));
+		assertEquals(49999, diffBlocks.get(3).getUnits().size());
+	}
+
+	@Test
+	public void testDiffInterleavedChanges() {
+		List<String> oldLines = Lists.newArrayList("a", "b", "c", "d", "e", "f", "g", "h");
+		List<String> newLines = Lists.newArrayList("a", "x", "c", "d", "y", "f", "h", "z");
+		
+		List<DiffBlock<String>> diffBlocks = DiffUtils.diff(oldLines, newLines);
+		List<String> blocks = new ArrayList<>();
+		for (DiffBlock<String> diffBlock: diffBlocks)
+			blocks.add(diffBlock.getOperation().name() + diffBlock.getUnits());
+		assertEquals(Lists.newArrayList(
+				"EQUAL[a]", "DELETE[b]", "INSERT[x]", "EQUAL[c, d]", "DELETE[e]", "INSERT[y]", 
+				"EQUAL[f]", "DELETE[g]", "EQUAL[h]", "INSERT[z]"), blocks);
+		assertEquals(6, diffBlocks.get(7).getOldStart());
+		assertEquals(6, diffBlocks.get(7).getNewStart());
+	}
+
+	@Test
+	public void testDiffRandomSequences() {
+		Random random = new Random(12345);
+		for (int i=0; i<200; i++) {
+			int[] seq1 = randomSequence(random, random.nextInt(200), 2 + random.nextInt(10));
+			int[] seq2 = mutate(random, seq1, 2 + random.nextInt(10));
+			List<MyersDiff.Chunk> chunks = MyersDiff.diff(seq1, seq2, 10000);
+			int lcs = getLcsLength(seq1, seq2);
+			assertEquals(seq1.length + seq2.length - 2*lcs, verifyChunks(seq1, seq2, chunks));
+		}
+	}
+
+	@Test
+	public void testDiffAfterDeadline() {
+		Random random = new Random(54321);
+		int[] seq1 = randomSequence(random, 2000, 20);
+		int[] seq2 = mutate(random, seq1, 20);
+		seq1[0] = seq2[0] = -1;
+		seq1[seq1.length-1] = seq2[seq2.length-1] = -2;
+		
+		// deadline already passed, bisect should give up and still produce a valid diff
+		List<MyersDiff.Chunk> chunks = MyersDiff.diff(seq1, seq2, -1);
+		int edits = verifyChunks(seq1, seq2, chunks);
+		assertTrue(edits >= seq1.length + seq2.length - 2*getLcsLength(seq1, seq2));
+		assertEquals(DiffMatchPatch.Operation.EQUAL, chunks.get(0).operation);
+		assertEquals(DiffMatchPatch.Operation.EQUAL, chunks.get(chunks.size()-1).operation);
+	}
+
+	private int[] randomSequence(Random random, int length, int alphabetSize) {
+		int[] seq = new int[length];
+		for (int i=0; i<length; i++)
+			seq[i] = random.nextInt(alphabetSize);
+		return seq;
+	}
+
+	// interleave insertions, deletions and replacements over the sequence
+	private int[] mutate(Random random, int[] seq, int alphabetSize) {
+		List<Integer> mutated = new ArrayList<>();
+		for (int token: seq) {
+			int action = random.nextInt(8);
+			if (action == 0) {
+				continue;
+			} else if (action == 1) {
+				mutated.add(random.nextInt(alphabetSize));
+			} else if (action == 2) {
+				mutated.add(token);
+				mutated.add(random.nextInt(alphabetSize));
+			} else {
+				mutated.add(token);
+			}
+		}
+		int[] result = new int[mutated.size()];
+		for (int i=0; i<result.length; i++)
+			result[i] = mutated.get(i);
+		return result;
+	}
+
+	/*
+	 * Apply chunks to check that they transform first sequence into second sequence, and 
+	 * return number of deleted and inserted tokens 
+	 */
+	private int verifyChunks(int[] seq1, int[] seq2, List<MyersDiff.Chunk> chunks) {
+		int index1 = 0;
+		int index2 = 0;
+		int edits = 0;
+		MyersDiff.Chunk lastChunk = null;
+		for (MyersDiff.Chunk chunk: chunks) {
+			assertTrue(chunk.length > 0);
+			if (lastChunk != null)
+				assertTrue(lastChunk.operation != chunk.operation);
+			if (chunk.operation == DiffMatchPatch.Operation.EQUAL) {
+				for (int i=0; i<chunk.length; i++)
+					assertEquals(seq1[index1+i], seq2[index2+i]);
+				index1 += chunk.length;
+				index2 += chunk.length;
+			} else if (chunk.operation == DiffMatchPatch.Operation.DELETE) {
+				index1 += chunk.length;
+				edits += chunk.length;
+			} else {
+				index2 += chunk.length;
+				edits += chunk.length;
+			}
+			lastChunk = chunk;
+		}
+		assertEquals(seq1.length, index1);
+		assertEquals(seq2.length, index2);
+		return edits;
+	}
+
+	private int getLcsLength(int[] seq1, int[] seq2) {
+		int[][] lengths = new int[seq1.length+1][seq2.length+1];
+		for (int i=1; i<=seq1.length; i++) {
+			for (int j=1; j<=seq2.length; j++) {
+				if (seq1[i-1] == seq2[j-1])
+					lengths[i][j] = lengths[i-1][j-1] + 1;
+				else
+					lengths[i][j] = Math.max(lengths[i-1][j], lengths[i][j-1]);
+			}
+		}
+		return lengths[seq1.length][seq2.length];
+	}
+
 }
@@ -35,6 +35,24 @@ public class DefaultServerConfig implements ServerConfig {
 	
 	private static final String PROP_SESSION_TIMEOUT = "session_timeout";
 	
+	private static final String PROP_GIT_CONCURRENCY = "git_concurrency";
+	
+	private static final String PROP_GIT_QUEUE_SIZE = "git_queue_size";
+	
+	private static final int DEFAULT_GIT_QUEUE_SIZE = 100;
+	
+	private static final String PROP_INDEXING_PARALLELISM = "indexing_parallelism";
+	
+	private static final String PROP_ARCHIVE_CACHE_SIZE = "archive_cache_size";
+	
+	private static final int DEFAULT_ARCHIVE_CACHE_SIZE = 1024;
+	
+	private static final String PROP_ARTIFACT_DEDUPLICATION = "artifact_deduplication";
+	
+	private static final String PROP_LOG_NOTIFICATION_INTERVAL = "log_notification_interval";
+	
+	private static final int DEFAULT_LOG_NOTIFICATION_INTERVAL = 500;
+	
 	private int httpPort;
 	
 	private int sessionTimeout;
@@ -49,6 +67,18 @@ public class DefaultServerConfig implements ServerConfig {
 	
 	private String keystorePassword;
 	
+	private int gitConcurrency;
+	
+	private int gitQueueSize;
+	
+	private int indexingParallelism;
+	
+	private int archiveCacheSize;
+	
+	private boolean artifactDeduplication;
+	
+	private int logNotificationInterval;
+	
 	@Inject
 	public DefaultServerConfig(ServerProperties props) {
 		String httpPortStr = System.getenv(PROP_HTTPPORT);
@@ -127,6 +157,61 @@ public class DefaultServerConfig implements ServerConfig {
 			sessionTimeout = Integer.parseInt(sessionTimeoutStr.trim());
 		else
 			throw new ExplicitException(PROP_SESSION_TIMEOUT + " should be specified");
+		
+		String gitConcurrencyStr = System.getenv(PROP_GIT_CONCURRENCY);
+		if (StringUtils.isBlank(gitConcurrencyStr))
+			gitConcurrencyStr = props.getProperty(PROP_GIT_CONCURRENCY);
+		if (StringUtils.isNotBlank(gitConcurrencyStr))
+			gitConcurrency = Integer.parseInt(gitConcurrencyStr.trim());
+		else
+			gitConcurrency = Runtime.getRuntime().availableProcessors();
+		if (gitConcurrency <= 0)
+			throw new ExplicitException(PROP_GIT_CONCURRENCY + " should be a positive number");
+		
+		String gitQueueSizeStr = System.getenv(PROP_GIT_QUEUE_SIZE);
+		if (StringUtils.isBlank(gitQueueSizeStr))
+			gitQueueSizeStr = props.getProperty(PROP_GIT_QUEUE_SIZE);
+		if (StringUtils.isNotBlank(gitQueueSizeStr))
+			gitQueueSize = Integer.parseInt(gitQueueSizeStr.trim());
+		else
+			gitQueueSize = DEFAULT_GIT_QUEUE_SIZE;
+		if (gitQueueSize < 0)
+			throw new ExplicitException(PROP_GIT_QUEUE_SIZE + " should not be negative");
+		
+		String indexingParallelismStr = System.getenv(PROP_INDEXING_PARALLELISM);
+		if (StringUtils.isBlank(indexingParallelismStr))
+			indexingParallelismStr = props.getProperty(PROP_INDEXING_PARALLELISM);
+		if (StringUtils.isNotBlank(indexingParallelismStr))
+			indexingParallelism = Integer.parseInt(indexingParallelismStr.trim());
+		else
+			indexingParallelism = Runtime.getRuntime().availableProcessors();
+		if (indexingParallelism <= 0)
+			throw new ExplicitException(PROP_INDEXING_PARALLELISM + " should be a positive number");
+		
+		String archiveCacheSizeStr = System.getenv(PROP_ARCHIVE_CACHE_SIZE);
+		if (StringUtils.isBlank(archiveCacheSizeStr))
+			archiveCacheSizeStr = props.getProperty(PROP_ARCHIVE_CACHE_SIZE);
+		if (StringUtils.isNotBlank(archiveCacheSizeStr))
+			archiveCacheSize = Integer.parseInt(archiveCacheSizeStr.trim());
+		else
+			archiveCacheSize = DEFAULT_ARCHIVE_CACHE_SIZE;
+		if (archiveCacheSize < 0)
+			throw new ExplicitException(PROP_ARCHIVE_CACHE_SIZE + " should not be negative");
+		
+		String artifactDeduplicationStr = System.getenv(PROP_ARTIFACT_DEDUPLICATION);
+		if (StringUtils.isBlank(artifactDeduplicationStr))
+			artifactDeduplicationStr = props.getProperty(PROP_ARTIFACT_DEDUPLICATION);
+		artifactDeduplication = "true".equalsIgnoreCase(StringUtils.trim(artifactDeduplicationStr));
+		
+		String logNotificationIntervalStr = System.getenv(PROP_LOG_NOTIFICATION_INTERVAL);
+		if (StringUtils.isBlank(logNotificationIntervalStr))
+			logNotificationIntervalStr = props.getProperty(PROP_LOG_NOTIFICATION_INTERVAL);
+		if (StringUtils.isNotBlank(logNotificationIntervalStr))
+			logNotificationInterval = Integer.parseInt(logNotificationIntervalStr.trim());
+		else
+			logNotificationInterval = DEFAULT_LOG_NOTIFICATION_INTERVAL;
+		if (logNotificationInterval <= 0)
+			throw new ExplicitException(PROP_LOG_NOTIFICATION_INTERVAL + " should be a positive number");
 	}
 	
 	@Override
@@ -163,5 +248,35 @@ public class DefaultServerConfig implements ServerConfig {
     public int getSshPort() {
         return sshPort;
     }
+
+	@Override
+	public int getGitConcurrency() {
+		return gitConcurrency;
+	}
+
+	@Override
+	public int getGitQueueSize() {
+		return gitQueueSize;
+	}
+
+	@Override
+	public int getIndexingParallelism() {
+		return indexingParallelism;
+	}
+
+	@Override
+	public int getArchiveCacheSize() {
+		return archiveCacheSize;
+	}
+
+	@Override
+	public boolean isArtifactDeduplication() {
+		return artifactDeduplication;
+	}
+
+	@Override
+	public int getLogNotificationInterval() {
+		return logNotificationInterval;
+	}
 	
 }